@@ -5,7 +5,6 @@ import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
 import com.applitools.eyes.selenium.positioning.NullRegionPositionCompensation;
-import com.applitools.utils.GeneralUtils;
 
 import java.awt.image.BufferedImage;
 
@@ -24,6 +23,18 @@ public class AndroidFullPageCaptureAlgorithm extends AppiumFullPageCaptureAlgori
         this.coordinatesAreScaled = true;
     }
 
+    /**
+     * @return The time to wait before capturing a part. When waiting for the screen to be stable,
+     * the scroll provider doesn't wait for the scrollbars to disappear, so the maximum wait includes
+     * that time.
+     */
+    private int getPartWait() {
+        if (stabilityDetector == null) {
+            return waitBeforeScreenshots;
+        }
+        return waitBeforeScreenshots + AndroidScrollPositionProvider.DEFAULT_SCROLLBAR_FADE_WAIT;
+    }
+
     @SuppressWarnings("Duplicates")
     @Override
     protected void captureAndStitchTailParts(BufferedImage image, int stitchingOverlap, RectangleSize entireSize, RectangleSize initialPartSize) {
@@ -87,8 +98,7 @@ public class AndroidFullPageCaptureAlgorithm extends AppiumFullPageCaptureAlgori
     @Override
     protected RectangleSize captureAndStitchCurrentPart(Region partRegion, Region scrollViewRegion) {
         logger.verbose("Taking screenshot for current scroll location");
-        GeneralUtils.sleep(waitBeforeScreenshots);
-        BufferedImage partImage = imageProvider.getImage();
+        BufferedImage partImage = captureStableImage(getPartWait());
         debugScreenshotsProvider.save(partImage,
                 "original-scrolled=" + currentPosition.toStringForFilename());
 
@@ -22,13 +22,30 @@ import org.openqa.selenium.remote.RemoteWebElement;
 
 public class AndroidScrollPositionProvider extends AppiumScrollPositionProvider {
 
+    // Android scrollbars are visible a bit after touch.
+    public static final int DEFAULT_SCROLLBAR_FADE_WAIT = 750;
+
     private Location curScrollPos;
+    private int scrollbarFadeWait = DEFAULT_SCROLLBAR_FADE_WAIT;
     private Location scrollableViewLoc;
 
     public AndroidScrollPositionProvider(Logger logger, EyesAppiumDriver driver) {
         super(logger, driver);
     }
 
+    /**
+     * @param scrollbarFadeWait The time to wait after {@link #scrollTo(int, int, int, int)} for
+     *                          the scrollbars to disappear (Milliseconds). Can be 0 if the
+     *                          screenshotter itself waits for the screen to be stable.
+     */
+    public void setScrollbarFadeWait(int scrollbarFadeWait) {
+        this.scrollbarFadeWait = scrollbarFadeWait;
+    }
+
+    public int getScrollbarFadeWait() {
+        return scrollbarFadeWait;
+    }
+
     @Override
     public Location getScrollableViewLocation() {
         logger.verbose("Getting the location of the scrollable view..");
@@ -159,7 +176,7 @@ public class AndroidScrollPositionProvider extends AppiumScrollPositionProvider
 
         // because Android scrollbars are visible a bit after touch, we should wait for them to
         // disappear before handing control back to the screenshotter
-        try { Thread.sleep(750); } catch (InterruptedException ign) {}
+        try { Thread.sleep(DEFAULT_SCROLLBAR_FADE_WAIT); } catch (InterruptedException ign) {}
 
         LastScrollData lastScrollData = EyesAppiumUtils.getLastScrollData(driver);
         logger.verbose("After scroll lastScrollData was: " + lastScrollData);
@@ -183,7 +200,9 @@ public class AndroidScrollPositionProvider extends AppiumScrollPositionProvider
 
         // because Android scrollbars are visible a bit after touch, we should wait for them to
         // disappear before handing control back to the screenshotter
-        try { Thread.sleep(750); } catch (InterruptedException ign) {}
+        if (scrollbarFadeWait > 0) {
+            try { Thread.sleep(scrollbarFadeWait); } catch (InterruptedException ign) {}
+        }
     }
 
     private Location getScrollPosFromScrollData(ContentSize contentSize, LastScrollData scrollData, int supposedScrollAmt, boolean isDown) {
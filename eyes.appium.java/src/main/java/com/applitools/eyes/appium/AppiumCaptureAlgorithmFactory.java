@@ -5,6 +5,7 @@ import com.applitools.eyes.Logger;
 import com.applitools.eyes.ScaleProviderFactory;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.capture.ScreenStabilityDetector;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
 
 public class AppiumCaptureAlgorithmFactory {
@@ -18,12 +19,23 @@ public class AppiumCaptureAlgorithmFactory {
     private CutProvider cutProvider;
     private EyesScreenshotFactory screenshotFactory;
     private int waitBeforeScreenshot;
+    private ScreenStabilityDetector stabilityDetector;
 
     public AppiumCaptureAlgorithmFactory(EyesAppiumDriver driver, Logger logger,
         AppiumScrollPositionProvider scrollProvider,
         ImageProvider imageProvider, DebugScreenshotsProvider debugScreenshotsProvider,
         ScaleProviderFactory scaleProviderFactory, CutProvider cutProvider,
         EyesScreenshotFactory screenshotFactory, int waitBeforeScreenshots) {
+        this(driver, logger, scrollProvider, imageProvider, debugScreenshotsProvider, scaleProviderFactory,
+            cutProvider, screenshotFactory, waitBeforeScreenshots, null);
+    }
+
+    public AppiumCaptureAlgorithmFactory(EyesAppiumDriver driver, Logger logger,
+        AppiumScrollPositionProvider scrollProvider,
+        ImageProvider imageProvider, DebugScreenshotsProvider debugScreenshotsProvider,
+        ScaleProviderFactory scaleProviderFactory, CutProvider cutProvider,
+        EyesScreenshotFactory screenshotFactory, int waitBeforeScreenshots,
+        ScreenStabilityDetector stabilityDetector) {
 
         this.driver = driver;
         this.logger = logger;
@@ -34,19 +46,30 @@ public class AppiumCaptureAlgorithmFactory {
         this.cutProvider = cutProvider;
         this.screenshotFactory = screenshotFactory;
         this.waitBeforeScreenshot = waitBeforeScreenshots;
+        this.stabilityDetector = stabilityDetector;
     }
 
     public AppiumFullPageCaptureAlgorithm getAlgorithm () {
+        AppiumFullPageCaptureAlgorithm algorithm;
         if (EyesAppiumUtils.isAndroid(driver.getRemoteWebDriver())) {
-            return new AndroidFullPageCaptureAlgorithm(logger, scrollProvider, imageProvider,
+            if (scrollProvider instanceof AndroidScrollPositionProvider) {
+                // When waiting for the screen to be stable, the scrollbars fading is waited for
+                // by the algorithm.
+                ((AndroidScrollPositionProvider) scrollProvider).setScrollbarFadeWait(
+                    stabilityDetector != null ? 0 : AndroidScrollPositionProvider.DEFAULT_SCROLLBAR_FADE_WAIT);
+            }
+            algorithm = new AndroidFullPageCaptureAlgorithm(logger, scrollProvider, imageProvider,
                 debugScreenshotsProvider, scaleProviderFactory, cutProvider, screenshotFactory,
                 waitBeforeScreenshot);
         } else if (EyesAppiumUtils.isIOS(driver.getRemoteWebDriver())) {
-            return new AppiumFullPageCaptureAlgorithm(logger, scrollProvider, imageProvider,
+            algorithm = new AppiumFullPageCaptureAlgorithm(logger, scrollProvider, imageProvider,
                 debugScreenshotsProvider, scaleProviderFactory, cutProvider, screenshotFactory,
                 waitBeforeScreenshot);
+        } else {
+            throw new Error("Could not find driver type for getting capture algorithm");
         }
-        throw new Error("Could not find driver type for getting capture algorithm");
+        algorithm.setStabilityDetector(stabilityDetector);
+        return algorithm;
     }
 
 }
@@ -3,6 +3,7 @@ package com.applitools.eyes.appium;
 import com.applitools.eyes.*;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.capture.ScreenStabilityDetector;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
 import com.applitools.eyes.positioning.PositionMemento;
 import com.applitools.eyes.positioning.PositionProvider;
@@ -29,6 +30,7 @@ public class AppiumFullPageCaptureAlgorithm {
     private final ScaleProviderFactory scaleProviderFactory;
     private final EyesScreenshotFactory screenshotFactory;
     protected final int waitBeforeScreenshots;
+    protected ScreenStabilityDetector stabilityDetector;
 
     private PositionMemento originalPosition;
     private ScaleProvider scaleProvider;
@@ -85,11 +87,33 @@ public class AppiumFullPageCaptureAlgorithm {
             waitBeforeScreenshots);
     }
 
+    /**
+     * @param stabilityDetector The detector used for capturing parts once the screen is stable
+     *                          (waiting at most {@code waitBeforeScreenshots}), or {@code null} to
+     *                          always wait {@code waitBeforeScreenshots} before capturing a part.
+     */
+    public void setStabilityDetector(ScreenStabilityDetector stabilityDetector) {
+        this.stabilityDetector = stabilityDetector;
+    }
+
+    /**
+     * Captures the screen once it had time to stabilize after scrolling.
+     * @param maxWait The time to wait before capturing, or the maximum time to wait for the
+     *                screen to be stable (Milliseconds).
+     * @return The captured image.
+     */
+    protected BufferedImage captureStableImage(int maxWait) {
+        if (stabilityDetector != null) {
+            return stabilityDetector.getStableImage(maxWait, "Part at " + currentPosition);
+        }
+        GeneralUtils.sleep(maxWait);
+        return imageProvider.getImage();
+    }
+
     protected RectangleSize captureAndStitchCurrentPart(Region partRegion, Region scrollViewRegion) {
 
         logger.verbose("Taking screenshot for current scroll location");
-        GeneralUtils.sleep(waitBeforeScreenshots);
-        BufferedImage partImage = imageProvider.getImage();
+        BufferedImage partImage = captureStableImage(waitBeforeScreenshots);
         debugScreenshotsProvider.save(partImage,
             "original-scrolled=" + currentPosition.toStringForFilename());
 
@@ -308,20 +332,18 @@ public class AppiumFullPageCaptureAlgorithm {
     }
 
     private void captureAndStitchPart(Region partRegion) {
-        logger.verbose(String.format("Taking screenshot for %s", partRegion));
+        logger.verbose("Taking screenshot for %s", partRegion);
         // Set the position to the part's top/left. May need to downscale since partRegion is in
         // upscaled dimensions
         positionProvider.setPosition(downscaleSafe(partRegion.getLocation()));
-        // Giving it time to stabilize.
-        GeneralUtils.sleep(waitBeforeScreenshots);
         // Screen size may cause the scroll to only reach part of the way. Make sure we get the
         // current position in scaled coordinates if necessary
         currentPosition = scaleSafe(positionProvider.getCurrentPosition());
-        logger.verbose(String.format("Set position to %s", currentPosition));
+        logger.verbose("Set position to %s", currentPosition);
 
-        // Actually taking the screenshot.
+        // Actually taking the screenshot, giving the screen time to stabilize.
         logger.verbose("Getting image...");
-        BufferedImage partImage = imageProvider.getImage();
+        BufferedImage partImage = captureStableImage(waitBeforeScreenshots);
         debugScreenshotsProvider.save(partImage,
                 "original-scrolled-" + currentPosition.toStringForFilename());
 
@@ -354,11 +376,11 @@ public class AppiumFullPageCaptureAlgorithm {
 
         ArgumentGuard.notNull(region, "region");
 
-        logger.verbose(String.format(
+        logger.verbose(
                 "getStitchedRegion: originProvider: %s ; positionProvider: %s ; cutProvider: %s",
-                originProvider.getClass(), positionProvider.getClass(), cutProvider.getClass()));
+                originProvider.getClass(), positionProvider.getClass(), cutProvider.getClass());
 
-        logger.verbose(String.format("Region to check: %s", region));
+        logger.verbose("Region to check: %s", region);
 
         // Saving the original position (in case we were already in the outermost frame).
         originalPosition = originProvider.getState();
@@ -400,8 +422,8 @@ public class AppiumFullPageCaptureAlgorithm {
         Raster initialPart = image.getData();
         RectangleSize initialPartSize = new RectangleSize(initialPart.getWidth(),
                 initialPart.getHeight());
-        logger.verbose(String.format("Initial part:(0,0)[%d x %d]",
-                initialPart.getWidth(), initialPart.getHeight()));
+        logger.verbose("Initial part:(0,0)[%d x %d]",
+                initialPart.getWidth(), initialPart.getHeight());
         stitchedImage.getRaster().setRect(0, 0, initialPart);
         logger.verbose("Done!");
 
@@ -6,6 +6,7 @@ package com.applitools.eyes.appium;
 import com.applitools.eyes.*;
 import com.applitools.eyes.appium.capture.ImageProviderFactory;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
+import com.applitools.eyes.capture.ScreenStabilityDetector;
 import com.applitools.eyes.fluent.ICheckSettings;
 import com.applitools.eyes.fluent.ICheckSettingsInternal;
 import com.applitools.eyes.positioning.RegionProvider;
@@ -162,7 +163,8 @@ public class Eyes extends com.applitools.eyes.selenium.Eyes {
 
         AppiumCaptureAlgorithmFactory algoFactory = new AppiumCaptureAlgorithmFactory(getEyesDriver(), logger,
             scrollPositionProvider, imageProvider, debugScreenshotsProvider, scaleProviderFactory,
-            cutProviderHandler.get(), screenshotFactory, getWaitBeforeScreenshots());
+            cutProviderHandler.get(), screenshotFactory, getWaitBeforeScreenshots(),
+            getDetectScreenStability() ? new ScreenStabilityDetector(logger, imageProvider) : null);
 
         AppiumFullPageCaptureAlgorithm algo = algoFactory.getAlgorithm();
 
@@ -224,7 +226,7 @@ public class Eyes extends com.applitools.eyes.selenium.Eyes {
         ArgumentGuard.notNull(region, "region");
         if ((EyesAppiumUtils.isAndroid(driver) || EyesAppiumUtils.isIOS(driver))
                 && region.getCoordinatesType() != CoordinatesType.CONTEXT_RELATIVE) {
-            logger.verbose(String.format("getSubScreenshot([%s])", region));
+            logger.verbose("getSubScreenshot([%s])", region);
 
             BufferedImage image = screenshot.getImage();
             if (image.getWidth() < driver.getViewportRect().get("width")) {
@@ -0,0 +1,63 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the delta compression of a screenshot against the previous
+ * screenshot of the same page, on the calling thread and on a pool as done
+ * by the SDK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class DeltaCompressionBenchmark {
+
+    @Param({Fixtures.SYNTHETIC, Fixtures.REAL})
+    public String fixture;
+
+    @Param({Fixtures.VIEWPORT, Fixtures.FULL_PAGE})
+    public String size;
+
+    @Param({"1", "2", "3"})
+    public int dpr;
+
+    private BufferedImage source;
+    private BufferedImage target;
+    private byte[] targetEncoded;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        source = Fixtures.getScreenshot(fixture, size, dpr);
+        target = Fixtures.getNextScreenshot(fixture, size, dpr);
+        targetEncoded = ImageUtils.encodeAsPng(target);
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] compressByRawBlocks() throws IOException {
+        return ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, source,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE);
+    }
+
+    @Benchmark
+    public byte[] compressByRawBlocksParallel() throws IOException {
+        return ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, source,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, pool);
+    }
+}
@@ -0,0 +1,122 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Creates the screenshots the benchmarks run on. The sizes are given in CSS
+ * pixels, and multiplied by the device pixel ratio (DPR), as they would be
+ * in a screenshot taken by the SDK.
+ */
+final class Fixtures {
+
+    /**
+     * A page-like image of flat backgrounds with textured areas.
+     */
+    static final String SYNTHETIC = "synthetic";
+    /**
+     * A screenshot of a real page, tiled to the requested size.
+     */
+    static final String REAL = "real";
+
+    static final String VIEWPORT = "viewport";
+    static final String FULL_PAGE = "fullpage";
+
+    private static final int VIEWPORT_WIDTH = 1280;
+    private static final int VIEWPORT_HEIGHT = 800;
+    private static final int FULL_PAGE_HEIGHT = 3000;
+
+    private static final String REAL_SOURCE = "fixtures/screenshot-source.png";
+    private static final String REAL_TARGET = "fixtures/screenshot-target.png";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param fixture {@link #SYNTHETIC} or {@link #REAL}.
+     * @param size    {@link #VIEWPORT} or {@link #FULL_PAGE}.
+     * @param dpr     The device pixel ratio.
+     * @return A screenshot of type {@link ImageUtils#REQUIRED_IMAGE_TYPE}.
+     */
+    static BufferedImage getScreenshot(String fixture, String size, int dpr) {
+        return getScreenshot(fixture, size, dpr, false);
+    }
+
+    /**
+     * @return The screenshot of the same page a little later, for the delta
+     * compression: about 5% of its blocks differ from
+     * {@link #getScreenshot(String, String, int)}.
+     */
+    static BufferedImage getNextScreenshot(String fixture, String size, int dpr) {
+        return getScreenshot(fixture, size, dpr, true);
+    }
+
+    private static BufferedImage getScreenshot(String fixture, String size, int dpr, boolean isNext) {
+        int width = VIEWPORT_WIDTH * dpr;
+        int height = getHeight(size) * dpr;
+        if (REAL.equals(fixture)) {
+            return tile(ImageUtils.imageFromResource(isNext ? REAL_TARGET : REAL_SOURCE), width, height);
+        }
+        if (SYNTHETIC.equals(fixture)) {
+            BufferedImage image = createPage(width, height, dpr);
+            if (isNext) {
+                changeBlocks(image, 5);
+            }
+            return image;
+        }
+        throw new IllegalArgumentException("Unknown fixture: " + fixture);
+    }
+
+    private static int getHeight(String size) {
+        if (VIEWPORT.equals(size)) {
+            return VIEWPORT_HEIGHT;
+        }
+        if (FULL_PAGE.equals(size)) {
+            return FULL_PAGE_HEIGHT;
+        }
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+
+    private static BufferedImage createPage(int width, int height, int dpr) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        int columnWidth = 100 * dpr;
+        int rowHeight = 60 * dpr;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                boolean textured = ((x / columnWidth) + (y / rowHeight)) % 3 == 0;
+                image.setRGB(x, y, textured ? random.nextInt() | 0xFF000000 : 0xFFF5F5F5);
+            }
+        }
+        return image;
+    }
+
+    private static void changeBlocks(BufferedImage image, int changedPercent) {
+        Random random = new Random(7);
+        int blockSize = ImageDeltaCompressor.DEFAULT_BLOCK_SIZE;
+        for (int blockY = 0; blockY < image.getHeight(); blockY += blockSize) {
+            for (int blockX = 0; blockX < image.getWidth(); blockX += blockSize) {
+                if (random.nextInt(100) < changedPercent) {
+                    image.setRGB(Math.min(blockX + 3, image.getWidth() - 1),
+                            Math.min(blockY + 3, image.getHeight() - 1), random.nextInt() | 0xFF000000);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage tile(BufferedImage tile, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Graphics2D g = image.createGraphics();
+        for (int y = 0; y < height; y += tile.getHeight()) {
+            for (int x = 0; x < width; x += tile.getWidth()) {
+                g.drawImage(tile, x, y, null);
+            }
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,83 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput and allocation rate of the block comparison in
+ * {@link ImageDeltaCompressor} with the previous implementation
+ * ({@link LegacyImageDeltaCompressor}).
+ * <p>
+ * Run with {@code -Djmh.include=ImageDeltaCompressorBenchmark
+ * "-Djmh.args=-prof gc"} (see the module's pom), and compare the
+ * {@code gc.alloc.rate.norm} (bytes per operation) reported by the GC
+ * profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDeltaCompressorBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String size;
+
+    // The percentage of blocks which differ between the source and target.
+    @Param({"1", "20"})
+    public int changedPercent;
+
+    private BufferedImage source;
+    private BufferedImage target;
+    private byte[] targetEncoded;
+
+    @Setup
+    public void setup() {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        int blockSize = ImageDeltaCompressor.DEFAULT_BLOCK_SIZE;
+
+        // A page-like image: flat background with some textured areas.
+        Random random = new Random(42);
+        source = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                boolean textured = ((x / 100) + (y / 60)) % 3 == 0;
+                source.setRGB(x, y, textured ? random.nextInt() | 0xFF000000 : 0xFFF5F5F5);
+            }
+        }
+
+        target = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        target.setData(source.getData());
+        for (int blockY = 0; blockY < height; blockY += blockSize) {
+            for (int blockX = 0; blockX < width; blockX += blockSize) {
+                if (random.nextInt(100) < changedPercent) {
+                    target.setRGB(Math.min(blockX + 3, width - 1), Math.min(blockY + 3, height - 1),
+                            random.nextInt() | 0xFF000000);
+                }
+            }
+        }
+
+        // The comparison is what we measure, so make sure the compressor
+        // never falls back to the encoded image.
+        targetEncoded = new byte[width * height * 4];
+    }
+
+    @Benchmark
+    public byte[] compressByRawBlocks() throws IOException {
+        return ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, source);
+    }
+
+    @Benchmark
+    public byte[] compressByRawBlocksLegacy() throws IOException {
+        return LegacyImageDeltaCompressor.compressByRawBlocks(target, source, ImageDeltaCompressor.DEFAULT_BLOCK_SIZE);
+    }
+}
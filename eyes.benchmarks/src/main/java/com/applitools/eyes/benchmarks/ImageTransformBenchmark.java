@@ -0,0 +1,89 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.eyes.Region;
+import com.applitools.utils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the image operations done while capturing a screenshot: cutting
+ * parts for stitching, scaling by the device pixel ratio, rotating, cropping
+ * and converting driver images to the SDK's image type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ImageTransformBenchmark {
+
+    @Param({Fixtures.SYNTHETIC, Fixtures.REAL})
+    public String fixture;
+
+    @Param({Fixtures.VIEWPORT, Fixtures.FULL_PAGE})
+    public String size;
+
+    @Param({"1", "2", "3"})
+    public int dpr;
+
+    private BufferedImage image;
+    private BufferedImage rgbImage;
+    private Region part;
+    private Region crop;
+
+    @Setup
+    public void setup() {
+        image = Fixtures.getScreenshot(fixture, size, dpr);
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // A driver screenshot before it is normalized.
+        rgbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        rgbImage.getGraphics().drawImage(image, 0, 0, null);
+
+        // A stitched part: the middle half of the image, without the header
+        // and the scroll bar.
+        part = new Region(0, height / 4, width - 15 * dpr, height / 2);
+        crop = new Region(0, 60 * dpr, width, height - 60 * dpr);
+    }
+
+    @Benchmark
+    public BufferedImage getImagePart() {
+        return ImageUtils.getImagePart(image, part);
+    }
+
+    /**
+     * Up-scaling, which is done by a single bicubic interpolation.
+     */
+    @Benchmark
+    public BufferedImage scaleImageBicubic() {
+        return ImageUtils.scaleImage(image, 1.25);
+    }
+
+    /**
+     * Down-scaling by the device pixel ratio, which is done by incremental
+     * bicubic steps. (A DPR of 1 is scaled by half.)
+     */
+    @Benchmark
+    public BufferedImage scaleImageIncremental() {
+        return ImageUtils.scaleImage(image, 1.0 / Math.max(dpr, 2));
+    }
+
+    @Benchmark
+    public BufferedImage rotateImage() {
+        return ImageUtils.rotateImage(image, 90);
+    }
+
+    @Benchmark
+    public BufferedImage normalizeImageType() {
+        return ImageUtils.normalizeImageType(rgbImage);
+    }
+
+    @Benchmark
+    public BufferedImage cropImage() {
+        return ImageUtils.cropImage(image, crop);
+    }
+}
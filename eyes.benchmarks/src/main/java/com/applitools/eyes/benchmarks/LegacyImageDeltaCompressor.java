@@ -0,0 +1,103 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.utils.ImageDeltaCompressor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The block comparison of {@link ImageDeltaCompressor} before it was made
+ * allocation-free: a {@code Dimension}, a channel buffer and a result object
+ * per block and channel. Kept as the "before" of
+ * {@link ImageDeltaCompressorBenchmark}.
+ */
+class LegacyImageDeltaCompressor {
+
+    private static final byte[] PREAMBLE = "applitools".getBytes(Charset.forName("UTF-8"));
+    private static final byte COMPRESS_BY_RAW_BLOCKS_FORMAT = 3;
+
+    private static class CompareAndCopyBlockChannelDataResult {
+        private final boolean isIdentical;
+        private final byte[] buffer;
+
+        CompareAndCopyBlockChannelDataResult(boolean isIdentical, byte[] buffer) {
+            this.isIdentical = isIdentical;
+            this.buffer = buffer;
+        }
+    }
+
+    private static Dimension getActualBlockSize(Dimension imageSize, int blockSize, int blockColumn, int blockRow) {
+        int actualWidth = Math.min(imageSize.width - (blockColumn * blockSize), blockSize);
+        int actualHeight = Math.min(imageSize.height - (blockRow * blockSize), blockSize);
+        return new Dimension(actualWidth, actualHeight);
+    }
+
+    private static CompareAndCopyBlockChannelDataResult compareAndCopyBlockChannelData(
+            byte[] sourcePixels, byte[] targetPixels, Dimension imageSize, int pixelLength, int blockSize,
+            int blockColumn, int blockRow, int channel) {
+        boolean isIdentical = true;
+        Dimension actualBlockSize = getActualBlockSize(imageSize, blockSize, blockColumn, blockRow);
+        int stride = imageSize.width * pixelLength;
+
+        byte[] channelBytes = new byte[actualBlockSize.height * actualBlockSize.width];
+        int channelBytesOffset = 0;
+        for (int h = 0; h < actualBlockSize.height; ++h) {
+            int offset = (((blockSize * blockRow) + h) * stride) + (blockSize * blockColumn * pixelLength) + channel;
+            for (int w = 0; w < actualBlockSize.width; ++w) {
+                if (sourcePixels[offset] != targetPixels[offset]) {
+                    isIdentical = false;
+                }
+                channelBytes[channelBytesOffset++] = targetPixels[offset];
+                offset += pixelLength;
+            }
+        }
+        return new CompareAndCopyBlockChannelDataResult(isIdentical, channelBytes);
+    }
+
+    static byte[] compressByRawBlocks(BufferedImage target, BufferedImage source, int blockSize) throws IOException {
+        byte[] targetPixels = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        byte[] sourcePixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+        int pixelLength = (target.getAlphaRaster() != null) ? 4 : 3;
+        Dimension imageSize = new Dimension(target.getWidth(), target.getHeight());
+        int blockColumnsCount = (target.getWidth() + blockSize - 1) / blockSize;
+        int blockRowsCount = (target.getHeight() + blockSize - 1) / blockSize;
+
+        ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
+        DataOutputStream resultDataOutputStream = new DataOutputStream(resultStream);
+        DeflaterOutputStream compressed = new DeflaterOutputStream(resultStream,
+                new Deflater(Deflater.BEST_COMPRESSION, true));
+        DataOutputStream compressedDos = new DataOutputStream(compressed);
+
+        resultStream.write(PREAMBLE, 0, PREAMBLE.length);
+        resultStream.write(COMPRESS_BY_RAW_BLOCKS_FORMAT);
+        resultDataOutputStream.writeShort(0);
+        resultDataOutputStream.writeShort(blockSize);
+
+        for (int channel = 0; channel < 3; ++channel) {
+            int actualChannelIndex = (pixelLength == 4) ? channel + 1 : channel;
+            int blockNumber = 0;
+            for (int blockRow = 0; blockRow < blockRowsCount; ++blockRow) {
+                for (int blockColumn = 0; blockColumn < blockColumnsCount; ++blockColumn) {
+                    CompareAndCopyBlockChannelDataResult compareResult = compareAndCopyBlockChannelData(
+                            sourcePixels, targetPixels, imageSize, pixelLength, blockSize, blockColumn, blockRow,
+                            actualChannelIndex);
+                    if (!compareResult.isIdentical) {
+                        compressed.write(channel);
+                        compressedDos.writeInt(blockNumber);
+                        compressed.write(compareResult.buffer, 0, compareResult.buffer.length);
+                    }
+                    ++blockNumber;
+                }
+            }
+        }
+        compressedDos.close();
+        return resultStream.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.eyes.Logger;
+import com.applitools.eyes.NullLogHandler;
+import com.applitools.eyes.Region;
+import com.applitools.eyes.StdoutLogHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the cost of verbose log calls which the log handler ignores, as
+ * made by the stitching loops. With a {@link NullLogHandler} or a
+ * non-verbose handler, the format and supplier calls should cost about as
+ * much as the {@code baseline}.
+ * <p>
+ * Run with {@code -Djmh.include=LoggerBenchmark} (see the module's pom).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+    @Param({"null", "nonVerbose"})
+    public String handler;
+
+    private Logger logger;
+    private Region partRegion;
+
+    @Setup
+    public void setup() {
+        logger = new Logger();
+        logger.setLogHandler(handler.equals("null") ? new NullLogHandler() : new StdoutLogHandler(false));
+        partRegion = new Region(0, 1080, 1920, 1080);
+    }
+
+    @Benchmark
+    public Region baseline() {
+        return partRegion;
+    }
+
+    @Benchmark
+    public Region concatenated() {
+        logger.verbose("Taking screenshot for " + partRegion);
+        return partRegion;
+    }
+
+    @Benchmark
+    public Region formatted() {
+        logger.verbose("Taking screenshot for %s", partRegion);
+        return partRegion;
+    }
+
+    @Benchmark
+    public Region supplied() {
+        logger.verbose(new Supplier<String>() {
+            @Override
+            public String get() {
+                return "Taking screenshot for " + partRegion;
+            }
+        });
+        return partRegion;
+    }
+}
@@ -0,0 +1,48 @@
+package com.applitools.eyes.benchmarks;
+
+import com.applitools.utils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a screenshot as PNG, and decoding a base64 PNG
+ * screenshot as returned by the drivers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class PngBenchmark {
+
+    @Param({Fixtures.SYNTHETIC, Fixtures.REAL})
+    public String fixture;
+
+    @Param({Fixtures.VIEWPORT, Fixtures.FULL_PAGE})
+    public String size;
+
+    @Param({"1", "2", "3"})
+    public int dpr;
+
+    private BufferedImage image;
+    private String base64;
+
+    @Setup
+    public void setup() {
+        image = Fixtures.getScreenshot(fixture, size, dpr);
+        base64 = ImageUtils.base64FromImage(image);
+    }
+
+    @Benchmark
+    public byte[] encodeAsPng() {
+        return ImageUtils.encodeAsPng(image);
+    }
+
+    @Benchmark
+    public BufferedImage imageFromBase64() {
+        return ImageUtils.imageFromBase64(base64);
+    }
+}
@@ -1,11 +1,12 @@
 package com.applitools.eyes;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.apache.commons.codec.binary.Base64;
 
 /**
  * An application output (title, image, etc).
  */
-@JsonIgnoreProperties({"screenshot64"})
+@JsonIgnoreProperties({"screenshot64", "screenshot"})
 public class AppOutput {
 
     /**
@@ -13,7 +14,20 @@ public class AppOutput {
      */
     private final String title;
     private final String domUrl;
-    private final String screenshot64;
+    private byte[] screenshot;
+    private String screenshot64;
+
+    /**
+     * @param title      The title of the window.
+     * @param screenshot The screenshot's bytes (either in compressed or
+     *                   uncompressed form). The array is not copied.
+     * @param domUrl     The URL of the uploaded DOM snapshot, or {@code null}.
+     */
+    public AppOutput(String title, byte[] screenshot, String domUrl) {
+        this.title = title;
+        this.screenshot = screenshot;
+        this.domUrl = domUrl;
+    }
 
     /**
      * @param title        The title of the window.
@@ -31,11 +45,28 @@ public class AppOutput {
         return title;
     }
 
+    /**
+     * @return The screenshot's bytes. The returned array must not be modified.
+     */
+    public byte[] getScreenshot() {
+        if (screenshot == null && screenshot64 != null) {
+            screenshot = Base64.decodeBase64(screenshot64);
+        }
+        return screenshot;
+    }
+
+    /**
+     * @return Base64 encoding of the screenshot's bytes. Prefer
+     * {@link #getScreenshot()}, which doesn't need to encode the screenshot.
+     */
     public String getScreenshot64() {
+        if (screenshot64 == null && screenshot != null) {
+            screenshot64 = Base64.encodeBase64String(screenshot);
+        }
         return screenshot64;
     }
 
     public String getDomUrl() {
         return domUrl;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+/**
+ * Encapsulates the settings of the HTTP connection pool shared by all the
+ * Eyes instances in the process.
+ */
+public class ConnectionPoolSettings {
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 64;
+    public static final int DEFAULT_KEEP_ALIVE = 60 * 1000; // milliseconds
+    public static final int DEFAULT_EVICTION_INTERVAL = 10 * 1000; // milliseconds
+
+    /**
+     * The maximal number of open connections.
+     */
+    private int maxTotal = DEFAULT_MAX_TOTAL;
+
+    /**
+     * The maximal number of open connections to a single host.
+     */
+    private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+
+    /**
+     * The time an idle connection is kept open for reuse.
+     */
+    private int keepAlive = DEFAULT_KEEP_ALIVE;
+
+    /**
+     * The interval between checks for idle and expired connections.
+     */
+    private int evictionInterval = DEFAULT_EVICTION_INTERVAL;
+
+    /**
+     * Creates settings with the default values.
+     */
+    public ConnectionPoolSettings() {
+    }
+
+    /**
+     * @param other The settings to copy.
+     */
+    public ConnectionPoolSettings(ConnectionPoolSettings other) {
+        ArgumentGuard.notNull(other, "other");
+        this.maxTotal = other.maxTotal;
+        this.maxPerRoute = other.maxPerRoute;
+        this.keepAlive = other.keepAlive;
+        this.evictionInterval = other.evictionInterval;
+    }
+
+    /**
+     * @return The maximal number of open connections.
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @param maxTotal The maximal number of open connections.
+     */
+    public void setMaxTotal(int maxTotal) {
+        ArgumentGuard.greaterThanZero(maxTotal, "maxTotal");
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @return The maximal number of open connections to a single host.
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * @param maxPerRoute The maximal number of open connections to a single
+     *                    host.
+     */
+    public void setMaxPerRoute(int maxPerRoute) {
+        ArgumentGuard.greaterThanZero(maxPerRoute, "maxPerRoute");
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * @return The time (in milliseconds) an idle connection is kept open for
+     * reuse.
+     */
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @param keepAlive The time (in milliseconds) an idle connection is kept
+     *                  open for reuse.
+     */
+    public void setKeepAlive(int keepAlive) {
+        ArgumentGuard.greaterThanZero(keepAlive, "keepAlive");
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return The interval (in milliseconds) between checks for idle and
+     * expired connections.
+     */
+    public int getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    /**
+     * @param evictionInterval The interval (in milliseconds) between checks
+     *                         for idle and expired connections.
+     */
+    public void setEvictionInterval(int evictionInterval) {
+        ArgumentGuard.greaterThanZero(evictionInterval, "evictionInterval");
+        this.evictionInterval = evictionInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "maxTotal: " + maxTotal + "; maxPerRoute: " + maxPerRoute +
+                "; keepAlive: " + keepAlive + "; evictionInterval: " + evictionInterval;
+    }
+}
@@ -0,0 +1,67 @@
+package com.applitools.eyes;
+
+/**
+ * The result of a conditional download: either the downloaded content and
+ * its validators, or an indication that the resource wasn't modified.
+ */
+public class DownloadResult {
+
+    private final String content;
+    private final String eTag;
+    private final String lastModified;
+    private final boolean isNotModified;
+
+    private DownloadResult(String content, String eTag, String lastModified, boolean isNotModified) {
+        this.content = content;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.isNotModified = isNotModified;
+    }
+
+    /**
+     * @param content      The downloaded content.
+     * @param eTag         The value of the "ETag" header, or {@code null}.
+     * @param lastModified The value of the "Last-Modified" header, or
+     *                     {@code null}.
+     * @return A result of a resource which was downloaded.
+     */
+    public static DownloadResult downloaded(String content, String eTag, String lastModified) {
+        return new DownloadResult(content, eTag, lastModified, false);
+    }
+
+    /**
+     * @return A result of a resource which wasn't modified since the given
+     * validators.
+     */
+    public static DownloadResult notModified() {
+        return new DownloadResult(null, null, null, true);
+    }
+
+    /**
+     * @return The downloaded content, or {@code null} if not modified.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @return The value of the "ETag" header, or {@code null}.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return The value of the "Last-Modified" header, or {@code null}.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return Whether the resource wasn't modified, so nothing was downloaded.
+     */
+    public boolean isNotModified() {
+        return isNotModified;
+    }
+}
@@ -4,39 +4,128 @@
 package com.applitools.eyes;
 
 import com.applitools.utils.ArgumentGuard;
-import com.applitools.utils.GeneralUtils;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.TimeZone;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Writes log messages to a file.
+ * Writes log messages to a file. Messages are queued in a bounded buffer and
+ * written by a background thread, so logging doesn't wait for the disk.
+ * The thread writes the waiting messages in batches, and flushes the file
+ * once the buffer is empty, or at least every {@link #FLUSH_SIZE} characters
+ * or {@link #FLUSH_INTERVAL} ms. A single FileLogger can be shared by several
+ * Eyes instances.
  */
 @SuppressWarnings("UnusedDeclaration")
-public class FileLogger implements LogHandler {
+public class FileLogger implements LevelAwareLogHandler {
+
+    public static final int DEFAULT_CAPACITY = 8192; // messages
+    public static final int FLUSH_SIZE = 64 * 1024; // characters
+    public static final int FLUSH_INTERVAL = 1000; // milliseconds
+
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final int CLOSE_TIMEOUT = 10 * 1000; // milliseconds
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * What to do with a message logged while the buffer is full.
+     */
+    public enum BufferFullPolicy {
+        /**
+         * Drop the message, counting it in {@link #getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Wait until there's room for the message.
+         */
+        BLOCK
+    }
+
+    /**
+     * A message waiting to be written.
+     */
+    private static class Record {
+        final long time;
+        final String text;
+
+        Record(long time, String text) {
+            this.time = time;
+            this.text = text;
+        }
+    }
+
+    // Queued by close(), after the last message.
+    private static final Record END = new Record(0, null);
 
     private final boolean isVerbose;
     private final String filename;
     private final boolean append;
-    private BufferedWriter fileWriter;
+    private final int capacity;
+    private final BufferFullPolicy bufferFullPolicy;
+    private final long maxFileSize;
+    private final int maxBackupFiles;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile BlockingQueue<Record> buffer;
+    private Thread writerThread;
 
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    // Used by the writer thread only.
+    private Writer fileWriter;
+    private long fileSize;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private long cachedSecond = -1;
+    private String cachedTimeStamp;
 
     /**
      * Creates a new FileHandler instance.
+     * @param filename         The file in which to save the logs.
+     * @param append           Whether to append the logs if the current file
+     *                         exists, or to overwrite the existing file.
+     * @param isVerbose        Whether to handle or ignore verbose log
+     *                         messages.
+     * @param capacity         The maximal number of messages waiting to be
+     *                         written.
+     * @param bufferFullPolicy What to do with messages logged while there
+     *                         are already {@code capacity} messages waiting.
+     * @param maxFileSize      The size (characters) after which the file is
+     *                         renamed to {@code filename.1} and a new file is
+     *                         started, or 0 to never roll the file.
+     * @param maxBackupFiles   The number of rolled files to keep
+     *                         ({@code filename.1} is the newest).
+     */
+    public FileLogger(String filename, boolean append, boolean isVerbose, int capacity,
+                      BufferFullPolicy bufferFullPolicy, long maxFileSize, int maxBackupFiles) {
+        ArgumentGuard.notNullOrEmpty(filename, "filename");
+        ArgumentGuard.greaterThanZero(capacity, "capacity");
+        ArgumentGuard.notNull(bufferFullPolicy, "bufferFullPolicy");
+        ArgumentGuard.greaterThanOrEqualToZero(maxFileSize, "maxFileSize");
+        ArgumentGuard.greaterThanOrEqualToZero(maxBackupFiles, "maxBackupFiles");
+        this.filename = filename;
+        this.append = append;
+        this.isVerbose = isVerbose;
+        this.capacity = capacity;
+        this.bufferFullPolicy = bufferFullPolicy;
+        this.maxFileSize = maxFileSize;
+        this.maxBackupFiles = maxBackupFiles;
+    }
+
+    /**
+     * Creates a new FileHandler instance, which blocks when its buffer is
+     * full and never rolls the file.
      * @param filename The file in which to save the logs.
      * @param append Whether to append the logs if the current file exists,
      *               or to overwrite the existing file.
      * @param isVerbose Whether to handle or ignore verbose log messages.
      */
     public FileLogger(String filename, boolean append, boolean isVerbose) {
-        ArgumentGuard.notNullOrEmpty(filename, "filename");
-        this.filename = filename;
-        this.append = append;
-        this.isVerbose = isVerbose;
-        fileWriter = null;
+        this(filename, append, isVerbose, DEFAULT_CAPACITY, BufferFullPolicy.BLOCK, 0, 0);
     }
 
     /**
@@ -51,17 +140,18 @@ public class FileLogger implements LogHandler {
         this("eyes.log", true, isVerbose);
     }
 
+    public boolean isVerbose() {
+        return isVerbose;
+    }
+
     /**
-     * Open the log file for writing.
+     * Open the log file for writing. Does nothing if it is already open.
      */
-    public void open() {
+    public synchronized void open() {
+        if (buffer != null) {
+            return;
+        }
         try {
-            if (fileWriter != null) {
-                //noinspection EmptyCatchBlock
-                try {
-                    fileWriter.close();
-                } catch (Exception e) {}
-            }
             File file = new File(filename);
             File path = file.getParentFile();
             if (path != null && !path.exists()) {
@@ -70,10 +160,21 @@ public class FileLogger implements LogHandler {
                 System.out.println("Folder created");
             }
 
-            fileWriter = new BufferedWriter(new FileWriter(file, append));
+            openFile(append);
         } catch (IOException e) {
             throw new EyesException("Failed to create log file!", e);
         }
+
+        final BlockingQueue<Record> records = new ArrayBlockingQueue<>(capacity);
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords(records);
+            }
+        }, "eyes-file-logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        buffer = records;
     }
 
     /**
@@ -82,33 +183,143 @@ public class FileLogger implements LogHandler {
      * @param logString The string to log.
      */
     public void onMessage(boolean verbose, String logString) {
-        if (fileWriter != null && (!verbose || this.isVerbose)) {
+        BlockingQueue<Record> records = buffer;
+        if (records == null || (verbose && !this.isVerbose)) {
+            return;
+        }
 
-            try {
-                fileWriter.write(getFormattedTimeStamp() + " Eyes: " + logString);
-                fileWriter.newLine();
-                fileWriter.flush();
-            } catch (IOException e) {
-                throw new EyesException("Failed to write log to file!", e);
+        Record record = new Record(System.currentTimeMillis(), logString);
+        if (bufferFullPolicy == BufferFullPolicy.DROP) {
+            if (!records.offer(record)) {
+                droppedCount.incrementAndGet();
             }
+            return;
+        }
+        try {
+            records.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
         }
     }
 
     /**
-     * Close the log file for writing.
+     * Writes the waiting messages and closes the log file.
      */
-    public void close() {
-        //noinspection EmptyCatchBlock
+    public synchronized void close() {
+        BlockingQueue<Record> records = buffer;
+        if (records == null) {
+            return;
+        }
+        buffer = null;
         try {
-            if (fileWriter !=null) {
-                fileWriter.close();
+            records.put(END);
+            writerThread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    /**
+     * @return The number of messages dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void writeRecords(BlockingQueue<Record> records) {
+        List<Record> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long lastFlush = System.currentTimeMillis();
+        int unflushedSize = 0;
+        boolean isDone = false;
+        while (!isDone) {
+            try {
+                batch.add(records.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            records.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            try {
+                for (Record record : batch) {
+                    if (record == END) {
+                        // Messages queued while closing are still written.
+                        isDone = true;
+                        continue;
+                    }
+                    String line = getFormattedTimeStamp(record.time) + " Eyes: " + record.text
+                            + System.lineSeparator();
+                    fileWriter.write(line);
+                    unflushedSize += line.length();
+                    fileSize += line.length();
+                    if (maxFileSize > 0 && fileSize >= maxFileSize) {
+                        rollFile();
+                        unflushedSize = 0;
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (isDone || records.isEmpty() || unflushedSize >= FLUSH_SIZE || now - lastFlush >= FLUSH_INTERVAL) {
+                    fileWriter.flush();
+                    unflushedSize = 0;
+                    lastFlush = now;
+                }
+            } catch (IOException e) {
+                System.err.println("Eyes: Failed to write log to file! " + e.getMessage());
             }
+            batch.clear();
+        }
+
+        //noinspection EmptyCatchBlock
+        try {
+            fileWriter.close();
         } catch (IOException e) {}
         fileWriter = null;
     }
 
-    private String getFormattedTimeStamp(){
-        return dateFormat.format(Calendar.getInstance().getTime());
+    private void openFile(boolean append) throws IOException {
+        File file = new File(filename);
+        fileSize = append && file.exists() ? file.length() : 0;
+        fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), UTF8));
     }
 
+    /**
+     * Renames the current file to {@code filename.1} (shifting the older
+     * files), and starts a new one.
+     */
+    private void rollFile() throws IOException {
+        fileWriter.close();
+        File oldest = new File(filename + "." + maxBackupFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            System.err.println("Eyes: Failed to delete " + oldest);
+        }
+        for (int i = maxBackupFiles - 1; i >= 1; --i) {
+            File backup = new File(filename + "." + i);
+            if (backup.exists() && !backup.renameTo(new File(filename + "." + (i + 1)))) {
+                System.err.println("Eyes: Failed to rename " + backup);
+            }
+        }
+        File file = new File(filename);
+        if (maxBackupFiles > 0) {
+            if (!file.renameTo(new File(filename + ".1"))) {
+                System.err.println("Eyes: Failed to rename " + file);
+            }
+        }
+        openFile(false);
+    }
+
+    /**
+     * Formats the time, reusing the formatted date and time of the previous
+     * message if it was logged in the same second.
+     */
+    private String getFormattedTimeStamp(long time) {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimeStamp = dateFormat.format(new Date(second * 1000));
+        }
+        long millis = time % 1000;
+        return cachedTimeStamp + (millis < 10 ? ".00" : millis < 100 ? ".0" : ".") + millis;
+    }
 }
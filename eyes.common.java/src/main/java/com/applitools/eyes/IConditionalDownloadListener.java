@@ -0,0 +1,6 @@
+package com.applitools.eyes;
+
+public interface IConditionalDownloadListener {
+        void onDownloadComplete(DownloadResult result);
+        void onDownloadFailed();
+}
@@ -1,7 +1,10 @@
 package com.applitools.eyes;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Defines the interface which should be implemented by a ServerConnector.
@@ -50,6 +53,28 @@ public interface IServerConnector {
     TestResults stopSession(final RunningSession runningSession,
                                    final boolean isAborted, final boolean save);
 
+    /**
+     * Stops the running session, without blocking while the server processes
+     * the request.
+     * The default implementation calls {@link #stopSession}, so it blocks.
+     *
+     * @param runningSession The running session to be stopped.
+     * @param isAborted Indicates that the session is being aborted
+     * @param save Indicates whether the server should update the baseline.
+     * @return A future of the TestResults object for the stopped running session,
+     *         which fails with an EyesException if stopSession failed
+     */
+    default CompletableFuture<TestResults> stopSessionAsync(final RunningSession runningSession,
+                                                            final boolean isAborted, final boolean save) {
+        CompletableFuture<TestResults> results = new CompletableFuture<>();
+        try {
+            results.complete(stopSession(runningSession, isAborted, save));
+        } catch (RuntimeException e) {
+            results.completeExceptionally(e);
+        }
+        return results;
+    }
+
     /**
      * Deletes the given test result
      *
@@ -79,6 +104,58 @@ public interface IServerConnector {
      */
     void downloadString(URL uri, boolean isSecondRetry, IDownloadListener listener);
 
+    /**
+     * Downloads string from a given Url, unless it wasn't modified since it
+     * was last downloaded.
+     * The default implementation ignores the validators, and always downloads
+     * the string using {@link #downloadString(URL, boolean, IDownloadListener)}.
+     *
+     * @param uri The URI from which the IServerConnector will download the string
+     * @param eTag The "ETag" of the last download, or {@code null}.
+     * @param lastModified The "Last-Modified" of the last download, or {@code null}.
+     * @param listener the listener will be called when the request will be resolved.
+     */
+    default void downloadString(URL uri, String eTag, String lastModified,
+                                final IConditionalDownloadListener listener) {
+        downloadString(uri, false, new IDownloadListener() {
+            @Override
+            public void onDownloadComplete(String downloadedString) {
+                listener.onDownloadComplete(DownloadResult.downloaded(downloadedString, null, null));
+            }
+
+            @Override
+            public void onDownloadFailed() {
+                listener.onDownloadFailed();
+            }
+        });
+    }
 
+    /**
+     * Posts a DOM snapshot.
+     *
+     * @param domJson The DOM, as JSON.
+     * @return The URL of the posted DOM.
+     */
     String postDomSnapshot(String domJson);
+
+    /**
+     * Posts a DOM snapshot, gzipping the DOM as it's written into the
+     * request, so it doesn't have to be serialized into a string first.
+     * The default implementation writes the DOM into a string, and posts it
+     * using {@link #postDomSnapshot(String)}.
+     *
+     * @param domJson Writes the DOM, as UTF-8 encoded JSON. May be called
+     *                again if the request is retried.
+     * @return The URL of the posted DOM.
+     * @throws EyesException If writing the DOM failed.
+     */
+    default String postDomSnapshot(UploadSpool.Payload domJson) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            domJson.writeTo(output);
+            return postDomSnapshot(new String(output.toByteArray(), "UTF-8"));
+        } catch (IOException e) {
+            throw new EyesException("Failed to write the DOM snapshot", e);
+        }
+    }
 }
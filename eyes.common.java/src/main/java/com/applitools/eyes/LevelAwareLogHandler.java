@@ -0,0 +1,12 @@
+package com.applitools.eyes;
+
+/**
+ * A log handler which tells the {@link Logger} whether it handles verbose
+ * messages, so that verbose messages it would ignore aren't formatted at all.
+ */
+public interface LevelAwareLogHandler extends LogHandler {
+    /**
+     * @return Whether the handler handles verbose messages.
+     */
+    boolean isVerbose();
+}
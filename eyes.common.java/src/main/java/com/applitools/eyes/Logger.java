@@ -1,15 +1,23 @@
 package com.applitools.eyes;
 
+import java.util.function.Supplier;
+
 /**
- * Logs trace messages.
+ * Logs trace messages. Messages the log handler would ignore are not
+ * formatted at all, so callers which build costly messages should use the
+ * format or {@link Supplier} overloads, or check {@link #isVerboseEnabled()}.
  */
 public class Logger {
     private LogHandler logHandler;
     private String sessionId;
+    private boolean isLogEnabled;
+    private boolean isVerboseEnabled;
+    private boolean isCallerInfoEnabled;
 
     public Logger() {
-        logHandler = new NullLogHandler();
         sessionId = "";
+        isCallerInfoEnabled = true;
+        setLogHandler(new NullLogHandler());
     }
 
     public void setSessionId(String sessionId) {
@@ -31,19 +39,54 @@ public class Logger {
      */
     public void setLogHandler(LogHandler handler) {
         logHandler = handler == null ? NullLogHandler.instance : handler;
+        isLogEnabled = !(logHandler instanceof NullLogHandler);
+        isVerboseEnabled = isLogEnabled && (!(logHandler instanceof LevelAwareLogHandler) ||
+                ((LevelAwareLogHandler) logHandler).isVerbose());
+    }
+
+    /**
+     * @return Whether verbose messages are handled by the log handler.
+     */
+    public boolean isVerboseEnabled() {
+        return isVerboseEnabled;
+    }
+
+    /**
+     * @return Whether (non-verbose) messages are handled by the log handler.
+     */
+    public boolean isLogEnabled() {
+        return isLogEnabled;
+    }
+
+    /**
+     * @param isCallerInfoEnabled Whether to add the class and method which
+     *                            called the logger to each message. Finding
+     *                            the caller is the costliest part of
+     *                            logging a message. Default is {@code true}.
+     */
+    public void setCallerInfoEnabled(boolean isCallerInfoEnabled) {
+        this.isCallerInfoEnabled = isCallerInfoEnabled;
+    }
+
+    public boolean isCallerInfoEnabled() {
+        return isCallerInfoEnabled;
     }
 
     /**
      *
-     * @return The name of the method which called the logger, if possible,
-     * or an empty string.
+     * @return The session ID and, if enabled, the name of the method which
+     * called the logger.
      */
     private String getPrefix() {
-        StackTraceElement[] stackTraceElements =
-                Thread.currentThread().getStackTrace();
-
         String prefix = "{" + sessionId + "} ";
-        // getStackTrace()<-getPrefix()<-log()/verbose()<-"actual caller"
+        if (!isCallerInfoEnabled) {
+            return prefix;
+        }
+
+        // A new throwable is cheaper than Thread.getStackTrace(), which
+        // creates one as well.
+        StackTraceElement[] stackTraceElements = new Throwable().getStackTrace();
+        // getPrefix()<-emit()<-log()/verbose()<-"actual caller"
         if (stackTraceElements.length >= 4) {
             prefix += stackTraceElements[3].getClassName() + "."+ stackTraceElements[3].getMethodName() + "(): ";
         }
@@ -51,12 +94,46 @@ public class Logger {
         return prefix;
     }
 
+    /**
+     * Sends a message to the log handler. Must be called directly by the
+     * public logging methods, so that the caller is found at the same depth
+     * of the stack.
+     */
+    private void emit(boolean verbose, String message) {
+        logHandler.onMessage(verbose, (verbose ? "[VERBOSE] " : "[LOG    ] ") + getPrefix() + message);
+    }
+
     /**
      * Writes a verbose write message.
      * @param message The message to log as verbose.
      */
     public void verbose(String message) {
-        logHandler.onMessage(true, "[VERBOSE] " + getPrefix() +  message);
+        if (isVerboseEnabled) {
+            emit(true, message);
+        }
+    }
+
+    /**
+     * Writes a verbose write message, formatted only if verbose messages are
+     * handled.
+     * @param format The message format, as in {@link String#format}.
+     * @param args   The format arguments.
+     */
+    public void verbose(String format, Object... args) {
+        if (isVerboseEnabled) {
+            emit(true, String.format(format, args));
+        }
+    }
+
+    /**
+     * Writes a verbose write message, created only if verbose messages are
+     * handled.
+     * @param message Creates the message to log as verbose.
+     */
+    public void verbose(Supplier<String> message) {
+        if (isVerboseEnabled) {
+            emit(true, message.get());
+        }
     }
 
     /**
@@ -64,6 +141,31 @@ public class Logger {
      * @param message The message to log.
      */
     public void log(String message) {
-        logHandler.onMessage(false, "[LOG    ] " + getPrefix() + message);
+        if (isLogEnabled) {
+            emit(false, message);
+        }
+    }
+
+    /**
+     * Writes a (non-verbose) write message, formatted only if messages are
+     * handled.
+     * @param format The message format, as in {@link String#format}.
+     * @param args   The format arguments.
+     */
+    public void log(String format, Object... args) {
+        if (isLogEnabled) {
+            emit(false, String.format(format, args));
+        }
+    }
+
+    /**
+     * Writes a (non-verbose) write message, created only if messages are
+     * handled.
+     * @param message Creates the message to log.
+     */
+    public void log(Supplier<String> message) {
+        if (isLogEnabled) {
+            emit(false, message.get());
+        }
     }
 }
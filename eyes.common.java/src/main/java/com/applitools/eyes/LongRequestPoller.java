@@ -0,0 +1,254 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls a long running server request until it is done, without holding a
+ * thread while waiting between the polls. The delays between the polls are
+ * timed by a single shared scheduler thread, and the requests themselves
+ * are sent from a shared pool of request threads, so slow requests don't
+ * hold back the polls of other requests.
+ */
+public class LongRequestPoller {
+
+    public static final int DEFAULT_INITIAL_DELAY = 2000; // milliseconds
+    public static final int DEFAULT_MAX_DELAY = 10000; // milliseconds
+    public static final int DEFAULT_TIMEOUT = 1000 * 60 * 5; // milliseconds
+
+    private static final double BACKOFF_FACTOR = 1.5;
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "eyes-long-request-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // Threads are only held while a request is sent, and idle threads are
+    // released after a minute.
+    private static final ExecutorService requestExecutor =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger threadsCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "eyes-long-request-" + threadsCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * A single request of the polling, and how to read its response.
+     * @param <T> The response type.
+     */
+    public interface Request<T> {
+        /**
+         * @return The response of the request.
+         */
+        T call();
+
+        /**
+         * @param response The response of the request.
+         * @return Whether the server is still processing the request.
+         */
+        boolean isRunning(T response);
+
+        /**
+         * @param response The response of the request.
+         * @return The value of the "Retry-After" header, or {@code null}.
+         */
+        String getRetryAfter(T response);
+
+        /**
+         * Releases a response which is not returned.
+         * @param response The response of the request.
+         */
+        void release(T response);
+    }
+
+    private final Logger logger;
+    private final int initialDelay;
+    private final int maxDelay;
+    private final int timeout;
+
+    /**
+     * @param logger       A logger instance.
+     * @param initialDelay The delay before the first retry (ms).
+     * @param maxDelay     The maximal delay between retries (ms).
+     * @param timeout      The total time to poll before giving up (ms). 0
+     *                     means no limit.
+     */
+    public LongRequestPoller(Logger logger, int initialDelay, int maxDelay, int timeout) {
+        ArgumentGuard.greaterThanZero(initialDelay, "initialDelay");
+        if (maxDelay < initialDelay) {
+            throw new IllegalArgumentException("maxDelay must not be smaller than initialDelay");
+        }
+        ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
+        this.logger = logger;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates a poller with the default delays.
+     * @param logger  A logger instance.
+     * @param timeout The total time to poll before giving up (ms). 0 means no
+     *                limit.
+     */
+    public LongRequestPoller(Logger logger, int timeout) {
+        this(logger, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, timeout);
+    }
+
+    /**
+     * Sends the request, and repeats it while the server is still processing.
+     * @param name    The request name (for logging).
+     * @param request The request to send.
+     * @param <T>     The response type.
+     * @return A future of the final response.
+     */
+    public <T> CompletableFuture<T> poll(final String name, final Request<T> request) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long deadline = timeout == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        requestExecutor.execute(new Runnable() {
+            private int delay = initialDelay;
+
+            @Override
+            public void run() {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    T response = request.call();
+                    if (!request.isRunning(response)) {
+                        result.complete(response);
+                        return;
+                    }
+
+                    // Since we haven't read the entity, We must release the
+                    // response or the connection stays open.
+                    String retryAfter = request.getRetryAfter(response);
+                    request.release(response);
+
+                    long retryAfterDelay = getRetryAfterDelay(retryAfter);
+                    long nextDelay = retryAfterDelay >= 0 ? retryAfterDelay : getJitteredDelay(delay);
+                    delay = (int) Math.min(maxDelay, Math.floor(delay * BACKOFF_FACTOR));
+
+                    if (System.currentTimeMillis() + nextDelay > deadline) {
+                        result.completeExceptionally(new EyesException(String.format(
+                                "%s: The server did not finish processing the request within %d ms",
+                                name, timeout)));
+                        return;
+                    }
+
+                    logger.verbose("%s: Still running... Retrying in %d ms", name, nextDelay);
+                    final Runnable poll = this;
+                    scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                requestExecutor.execute(poll);
+                            } catch (Throwable e) {
+                                result.completeExceptionally(e);
+                            }
+                        }
+                    }, nextDelay, TimeUnit.MILLISECONDS);
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param delay The backoff delay.
+     * @return A random delay between half the given delay and the full delay,
+     * so requests that started together don't retry together.
+     */
+    static long getJitteredDelay(int delay) {
+        int half = delay / 2;
+        return half + ThreadLocalRandom.current().nextInt(delay - half + 1);
+    }
+
+    /**
+     * @param retryAfter The value of a "Retry-After" header: either a number
+     *                   of seconds or an HTTP date.
+     * @return The delay (ms) requested by the header, or -1 if there's no
+     * valid value.
+     */
+    static long getRetryAfterDelay(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, trying a date.
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Waits for the result of a request, rethrowing its failure.
+     * @param future The request result.
+     * @param <T>    The response type.
+     * @return The response.
+     * @throws EyesException If the request failed with a checked exception
+     *                       or was interrupted.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw new EyesException("Long request interrupted!", e);
+        } catch (CancellationException e) {
+            throw new EyesException("Long request cancelled!", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * @param e The failure of an asynchronous operation.
+     * @return The exception to rethrow for it.
+     */
+    public static RuntimeException unwrap(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new EyesException(e.getMessage(), e);
+    }
+}
@@ -396,7 +396,7 @@ public class Region {
      */
     public void intersect(Region other) {
 
-        logger.verbose(String.format("intersecting this region (%s) with %s ...", this, other));
+        logger.verbose("intersecting this region (%s) with %s ...", this, other);
 
         // If there's no intersection set this as the Empty region.
         if (!isIntersected(other)) {
@@ -427,7 +427,7 @@ public class Region {
         width = intersectionWidth;
         height = intersectionHeight;
 
-        logger.verbose(String.format("resulting region: (%s)...", this));
+        logger.verbose("resulting region: (%s)...", this);
     }
 
 
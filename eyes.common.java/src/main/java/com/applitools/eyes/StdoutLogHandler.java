@@ -8,7 +8,7 @@ import java.util.TimeZone;
 /**
  * Writes log messages to the standard output stream.
  */
-public class StdoutLogHandler implements LogHandler {
+public class StdoutLogHandler implements LevelAwareLogHandler {
 
     private final boolean isVerbose;
 
@@ -33,6 +33,10 @@ public class StdoutLogHandler implements LogHandler {
         this(false);
     }
 
+    public boolean isVerbose() {
+        return isVerbose;
+    }
+
     public void onMessage(boolean verbose, String message) {
         if (!verbose || this.isVerbose) {
             String currentTime = GeneralUtils.toISO8601DateTime(
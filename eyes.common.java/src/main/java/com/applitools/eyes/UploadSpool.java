@@ -0,0 +1,227 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads payloads from a local directory. Each payload is written to the
+ * directory once, and then uploaded by background workers, which retry with
+ * exponential backoff after transient failures. The retries read the
+ * payload from the disk, so it isn't serialized again for each attempt, and
+ * the workers don't hold a copy of it.
+ * <p>
+ * Note that this doesn't free the memory of a caller which waits for the
+ * upload: the objects the payload was written from are still referenced by
+ * the caller until the upload ends.
+ */
+public class UploadSpool {
+
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 6;
+    public static final int DEFAULT_INITIAL_DELAY = 500; // milliseconds
+    public static final int DEFAULT_MAX_DELAY = 15000; // milliseconds
+
+    private static final String FILE_SUFFIX = ".upload";
+
+    /**
+     * The content of an upload.
+     */
+    public interface Payload {
+        /**
+         * @param output The stream to write the payload to.
+         * @throws IOException If writing failed.
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Sends a payload to the server.
+     * @param <T> The response type.
+     */
+    public interface Upload<T> {
+        /**
+         * @param payload The file holding the payload.
+         * @return The server response.
+         * @throws RuntimeException If the upload failed, and should be retried.
+         */
+        T send(File payload);
+    }
+
+    private final Logger logger;
+    private final File directory;
+    private final int maxAttempts;
+    private final int initialDelay;
+    private final int maxDelay;
+    private final ScheduledExecutorService workers;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * @param logger       A logger instance.
+     * @param directory    The directory to keep the payloads in. Created if
+     *                     missing.
+     * @param workers      The number of uploads sent at the same time.
+     * @param maxAttempts  The number of times to try each upload.
+     * @param initialDelay The delay before the first retry (ms).
+     * @param maxDelay     The maximal delay between retries (ms).
+     */
+    public UploadSpool(Logger logger, File directory, int workers, int maxAttempts,
+                       int initialDelay, int maxDelay) {
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.notNull(directory, "directory");
+        ArgumentGuard.greaterThanZero(workers, "workers");
+        ArgumentGuard.greaterThanZero(maxAttempts, "maxAttempts");
+        ArgumentGuard.greaterThanZero(initialDelay, "initialDelay");
+        if (maxDelay < initialDelay) {
+            throw new IllegalArgumentException("maxDelay must not be smaller than initialDelay");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new EyesException("Failed to create the upload spool directory: " + directory);
+        }
+
+        this.logger = logger;
+        this.directory = directory;
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.workers = Executors.newScheduledThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger threadsCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "eyes-upload-" + threadsCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Creates a spool with the default number of workers and retry delays.
+     * @param logger    A logger instance.
+     * @param directory The directory to keep the payloads in. Created if
+     *                  missing.
+     */
+    public UploadSpool(Logger logger, File directory) {
+        this(logger, directory, DEFAULT_WORKERS, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Writes the payload to the spool directory, and uploads it in the
+     * background. The payload file is deleted once the upload succeeds or
+     * gives up.
+     * @param name    The upload name (for logging).
+     * @param payload The content to upload.
+     * @param upload  Sends the payload file to the server.
+     * @param <T>     The response type.
+     * @return A future of the server response.
+     * @throws EyesException If the payload could not be written.
+     */
+    public <T> CompletableFuture<T> submit(final String name, Payload payload, final Upload<T> upload) {
+        ArgumentGuard.notNull(payload, "payload");
+        ArgumentGuard.notNull(upload, "upload");
+
+        if (workers.isShutdown()) {
+            throw new EyesException(name + ": The upload spool is closed");
+        }
+        final File file = write(name, payload);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        pendingCount.incrementAndGet();
+        try {
+            workers.execute(new Runnable() {
+                private int attempt = 1;
+                private int delay = initialDelay;
+
+                @Override
+                public void run() {
+                    try {
+                        T response = upload.send(file);
+                        finish(file);
+                        result.complete(response);
+                    } catch (Throwable e) {
+                        if (attempt >= maxAttempts || !(e instanceof RuntimeException)) {
+                            logger.log("%s: Upload failed after %d attempts: %s",
+                                    name, attempt, e.getMessage());
+                            finish(file);
+                            result.completeExceptionally(e);
+                            return;
+                        }
+
+                        long nextDelay = LongRequestPoller.getJitteredDelay(delay);
+                        logger.verbose("%s: Upload attempt %d failed (%s). Retrying in %d ms",
+                                name, attempt, e.getMessage(), nextDelay);
+                        ++attempt;
+                        delay = Math.min(maxDelay, delay * 2);
+                        try {
+                            workers.schedule(this, nextDelay, TimeUnit.MILLISECONDS);
+                        } catch (RejectedExecutionException rejected) {
+                            finish(file);
+                            result.completeExceptionally(e);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The spool was closed after the check above.
+            finish(file);
+            result.completeExceptionally(new EyesException(name + ": The upload spool is closed", e));
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of uploads which haven't finished yet.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return The directory the payloads are kept in.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Stops accepting uploads. Uploads already submitted are still sent, but
+     * are not retried anymore.
+     */
+    public void close() {
+        workers.shutdown();
+    }
+
+    private File write(String name, Payload payload) {
+        File file = null;
+        try {
+            file = File.createTempFile("eyes-" + name + "-", FILE_SUFFIX, directory);
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+                payload.writeTo(output);
+            }
+            return file;
+        } catch (IOException e) {
+            if (file != null && !file.delete()) {
+                logger.verbose("Failed to delete " + file);
+            }
+            throw new EyesException(name + ": Failed to write the upload payload", e);
+        }
+    }
+
+    private void finish(File file) {
+        pendingCount.decrementAndGet();
+        if (!file.delete()) {
+            logger.verbose("Failed to delete " + file);
+        }
+    }
+}
@@ -53,4 +53,14 @@ public interface ISessionEventHandler {
      * @param validationResult The validation results.
      */
     void validationEnded(String autSessionId, String validationId, ValidationResult validationResult);
+
+    /**
+     * Called after a session had ended (or was aborted). Handlers which
+     * report events in the background should wait here until the events
+     * reported so far were handled, so they aren't lost if the process
+     * exits.
+     * @throws RuntimeException A failure of handling an earlier event.
+     */
+    default void flush() {
+    }
 }
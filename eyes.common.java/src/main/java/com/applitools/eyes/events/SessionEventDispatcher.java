@@ -0,0 +1,292 @@
+package com.applitools.eyes.events;
+
+import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends session events in the background, so the test doesn't wait for the
+ * event server. Events are sent one after the other by a single thread, in
+ * the order they were dispatched, so the order of the events of each session
+ * is preserved.
+ * <p>
+ * Each event is still sent as its own request: the event server has no batch
+ * endpoint, and every event is a different action on a different resource
+ * (e.g., starting a session, or ending one of its validations), so events
+ * can't be coalesced into one request. The sender drains all the waiting
+ * events and sends them back to back, over the same keep-alive connection.
+ * <p>
+ * The sender thread is started when an event is dispatched, and ends after
+ * it has been idle for a while, so a dispatcher which is never closed
+ * doesn't hold a thread.
+ */
+public class SessionEventDispatcher {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_CLOSE_TIMEOUT = 30 * 1000; // milliseconds
+
+    private static final int MAX_DRAIN_SIZE = 100;
+    private static final int DEFAULT_IDLE_TIMEOUT = 10 * 1000; // milliseconds
+
+    /**
+     * What to do with an event dispatched while the queue is full.
+     */
+    public enum QueueFullPolicy {
+        /**
+         * Drop the event.
+         */
+        DROP,
+        /**
+         * Wait until there's room for the event.
+         */
+        BLOCK
+    }
+
+    private final Logger logger;
+    private final QueueFullPolicy queueFullPolicy;
+    private final BlockingQueue<Runnable> queue;
+    private final String name;
+    private final int idleTimeout;
+    private final Object senderLock = new Object();
+    private final Object progressLock = new Object();
+
+    // Guarded by senderLock. Null while there's nothing to send.
+    private Thread sender;
+
+    private long dispatchedCount;
+    private long processedCount;
+    private long droppedCount;
+    private volatile boolean isClosed;
+
+    /**
+     * @param logger          A logger instance.
+     * @param name            The name of the sender thread.
+     * @param capacity        The maximal number of events waiting to be sent.
+     * @param queueFullPolicy What to do with events dispatched while there are
+     *                        already {@code capacity} events waiting.
+     */
+    public SessionEventDispatcher(Logger logger, String name, int capacity, QueueFullPolicy queueFullPolicy) {
+        this(logger, name, capacity, queueFullPolicy, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * See {@link #SessionEventDispatcher(Logger, String, int, QueueFullPolicy)}.
+     * @param idleTimeout The time the sender thread waits for events before
+     *                    it ends (ms).
+     */
+    SessionEventDispatcher(Logger logger, String name, int capacity, QueueFullPolicy queueFullPolicy,
+                           int idleTimeout) {
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.notNullOrEmpty(name, "name");
+        ArgumentGuard.greaterThanZero(capacity, "capacity");
+        ArgumentGuard.notNull(queueFullPolicy, "queueFullPolicy");
+        ArgumentGuard.greaterThanZero(idleTimeout, "idleTimeout");
+        this.logger = logger;
+        this.name = name;
+        this.queueFullPolicy = queueFullPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Creates a dispatcher which holds up to {@link #DEFAULT_CAPACITY} events,
+     * and blocks when it is full.
+     * @param logger A logger instance.
+     * @param name   The name of the sender thread.
+     */
+    public SessionEventDispatcher(Logger logger, String name) {
+        this(logger, name, DEFAULT_CAPACITY, QueueFullPolicy.BLOCK);
+    }
+
+    /**
+     * Queues an event to be sent.
+     * @param event The event sending.
+     * @return Whether the event was queued (rather than dropped).
+     */
+    public boolean dispatch(Runnable event) {
+        ArgumentGuard.notNull(event, "event");
+        if (isClosed) {
+            logger.verbose("Dispatcher closed, dropping event.");
+            return false;
+        }
+
+        synchronized (progressLock) {
+            ++dispatchedCount;
+        }
+        boolean isQueued;
+        try {
+            if (queueFullPolicy == QueueFullPolicy.BLOCK) {
+                queue.put(event);
+                isQueued = true;
+            } else {
+                isQueued = queue.offer(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isQueued = false;
+        }
+
+        if (isQueued) {
+            ensureSender();
+        } else {
+            logger.verbose("Event queue is full, dropping event.");
+            synchronized (progressLock) {
+                ++droppedCount;
+                ++processedCount;
+                progressLock.notifyAll();
+            }
+        }
+        return isQueued;
+    }
+
+    /**
+     * Waits until all the events dispatched so far are sent.
+     * @param timeout The maximal time to wait (ms).
+     * @return Whether all the events were sent within the timeout.
+     */
+    public boolean flush(int timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (progressLock) {
+            long target = dispatchedCount;
+            while (processedCount < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logger.log("Flushing events timed out, %d events were not sent.",
+                            target - processedCount);
+                    return false;
+                }
+                try {
+                    progressLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting events, sends the waiting events and stops the sender
+     * thread.
+     * @param timeout The maximal time to wait for the waiting events (ms).
+     * @return Whether all the events were sent within the timeout.
+     */
+    public boolean close(int timeout) {
+        isClosed = true;
+        boolean isFlushed = flush(timeout);
+        synchronized (senderLock) {
+            if (sender != null) {
+                sender.interrupt();
+            }
+        }
+        return isFlushed;
+    }
+
+    /**
+     * @return Whether the dispatcher was closed.
+     */
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * @return The number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        synchronized (progressLock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * @return Whether the sender thread is running.
+     */
+    boolean isSending() {
+        synchronized (senderLock) {
+            return sender != null;
+        }
+    }
+
+    /**
+     * Starts the sender thread, unless it's already running. Called after
+     * queueing an event.
+     */
+    private void ensureSender() {
+        synchronized (senderLock) {
+            if (sender != null) {
+                return;
+            }
+            sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    sendEvents();
+                }
+            }, name);
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /**
+     * Ends the sender thread if there are no waiting events. Since events
+     * are queued before {@link #ensureSender()} is called, an event queued
+     * after this check starts a new sender.
+     * @return Whether the sender thread should end.
+     */
+    private boolean stopIfIdle() {
+        synchronized (senderLock) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+            sender = null;
+            return true;
+        }
+    }
+
+    private void sendEvents() {
+        List<Runnable> events = new ArrayList<>(MAX_DRAIN_SIZE);
+        while (true) {
+            Runnable event;
+            try {
+                event = queue.poll(idleTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Interrupted by close().
+                if (isClosed && stopIfIdle()) {
+                    return;
+                }
+                continue;
+            }
+            if (event == null) {
+                if (stopIfIdle()) {
+                    return;
+                }
+                continue;
+            }
+
+            // Take whatever else is waiting, so a burst of events is sent
+            // back to back over the same connection.
+            events.add(event);
+            queue.drainTo(events, MAX_DRAIN_SIZE - 1);
+
+            for (Runnable waitingEvent : events) {
+                try {
+                    waitingEvent.run();
+                } catch (Throwable e) {
+                    logger.log("Sending event failed: " + e.getMessage());
+                }
+            }
+
+            synchronized (progressLock) {
+                processedCount += events.size();
+                progressLock.notifyAll();
+            }
+            events.clear();
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class SessionEventHandlers implements ISessionEventHandler {
     @Override
     public void testEnded(String autSessionId, TestResults testResults) {
         for (ISessionEventHandler currentHandler : eventHandlers) currentHandler.testEnded(autSessionId, testResults);
+        flush();
     }
 
     @Override
@@ -63,4 +64,26 @@ public class SessionEventHandlers implements ISessionEventHandler {
         for (ISessionEventHandler currentHandler : eventHandlers) currentHandler.validationEnded(autSessionId, validationId, validationResult);
     }
 
+    /**
+     * Flushes all the handlers, even if some of them fail. Called when a
+     * test ends.
+     * @throws RuntimeException The first failure of a handler.
+     */
+    @Override
+    public void flush() {
+        RuntimeException failure = null;
+        for (ISessionEventHandler currentHandler : eventHandlers) {
+            try {
+                currentHandler.flush();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
 }
@@ -2,6 +2,7 @@ package com.applitools.utils;
 
 import com.applitools.eyes.EyesException;
 import com.applitools.eyes.Logger;
+import com.applitools.eyes.UploadSpool;
 
 import java.io.*;
 import java.net.URI;
@@ -31,6 +32,8 @@ public class GeneralUtils {
     private static final String DATE_FORMAT_RFC1123 =
             "E, dd MMM yyyy HH:mm:ss 'GMT'";
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private static Logger logger;
 
     private GeneralUtils() {}
@@ -249,12 +252,55 @@ public class GeneralUtils {
         ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
 
         try {
-            GZIPOutputStream gzip = new GZIPOutputStream(resultStream);
-            gzip.write(domJson.getBytes());
-            gzip.close();
+            writeGzipped(domJson, resultStream);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return resultStream.toByteArray();
     }
+
+    /**
+     * Gzips a string (encoded as UTF-8) into a stream, a chunk at a time, so
+     * the whole UTF-8 encoded string is never held in memory.
+     * @param text   The string to gzip.
+     * @param output The stream to write to. It is not closed.
+     * @throws IOException If writing failed.
+     */
+    public static void writeGzipped(String text, OutputStream output) throws IOException {
+        writeGzipped(getUtf8Payload(text), output);
+    }
+
+    /**
+     * Gzips a payload into a stream, as the payload writes it. The gzipped
+     * bytes are only as short-lived as the given stream keeps them (e.g.,
+     * the REST clients buffer the whole request entity, since the server
+     * doesn't accept chunked requests).
+     * @param payload The payload to gzip. It must not close the stream it
+     *                writes to.
+     * @param output  The stream to write to. It is not closed.
+     * @throws IOException If writing failed.
+     */
+    public static void writeGzipped(UploadSpool.Payload payload, OutputStream output) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+        payload.writeTo(gzip);
+        gzip.finish();
+    }
+
+    /**
+     * @param text The payload content.
+     * @return A payload which writes the string encoded as UTF-8, a chunk at
+     * a time.
+     */
+    public static UploadSpool.Payload getUtf8Payload(final String text) {
+        return new UploadSpool.Payload() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                Writer writer = new OutputStreamWriter(output, "UTF-8");
+                for (int start = 0; start < text.length(); start += GZIP_BUFFER_SIZE) {
+                    writer.write(text, start, Math.min(GZIP_BUFFER_SIZE, text.length() - start));
+                }
+                writer.flush();
+            }
+        };
+    }
 }
@@ -3,11 +3,15 @@
  */
 package com.applitools.utils;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -18,6 +22,14 @@ public class ImageDeltaCompressor {
 
     private static final byte[] PREAMBLE;
     private static final byte COMPRESS_BY_RAW_BLOCKS_FORMAT = 3;
+    private static final int CHANNELS_COUNT = 3;
+
+    public static final int DEFAULT_BLOCK_SIZE = 10;
+
+    // The minimal number of block rows handled by a single parallel task.
+    // Smaller bands cost more in deflate restarts than they gain in
+    // parallelism.
+    private static final int MIN_BAND_BLOCK_ROWS = 16;
 
     // Init the preamble (needs to be in a static init block since we must
     // handle encoding exception).
@@ -35,115 +47,175 @@ public class ImageDeltaCompressor {
     }
 
     /**
-     * Encapsulates a result for the CompareAndCopyBlockChannelData function.
+     * Compares blocks of the source and target images and copies changed
+     * block channels into a scratch buffer. An instance is owned by a single
+     * thread and reuses its buffer for every block, so comparing blocks does
+     * not allocate.
      */
-    private static class CompareAndCopyBlockChannelDataResult {
-        private boolean isIdentical;
-        private byte[] buffer;
+    private static class BlockComparer {
+        private final byte[] sourcePixels;
+        private final byte[] targetPixels;
+        private final int imageWidth;
+        private final int imageHeight;
+        private final int pixelLength;
+        private final int blockSize;
+        private final int stride;
+        // The scratch buffer holding a single channel of a single block.
+        private final byte[] channelBytes;
 
         /**
-         *
-         * @param isIdentical Whether or not the target block was identical to
-         *                    the source block.
-         * @param buffer The target block's pixel values for a specific channel.
+         * @param sourcePixels The pixels of the source image.
+         * @param targetPixels The pixels of the target image.
+         * @param imageWidth The image width in pixels.
+         * @param imageHeight The image height in pixels.
+         * @param pixelLength Bytes per pixel. Since pixel might include alpha.
+         * @param blockSize The block size in pixels.
          */
-        public CompareAndCopyBlockChannelDataResult(boolean isIdentical,
-                byte[] buffer) {
-            this.isIdentical = isIdentical;
-            this.buffer = buffer;
+        public BlockComparer(byte[] sourcePixels, byte[] targetPixels,
+                int imageWidth, int imageHeight, int pixelLength,
+                int blockSize) {
+            this.sourcePixels = sourcePixels;
+            this.targetPixels = targetPixels;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.pixelLength = pixelLength;
+            this.blockSize = blockSize;
+            this.stride = imageWidth * pixelLength;
+            this.channelBytes = new byte[blockSize * blockSize];
         }
 
         /**
-         * @return Whether or not the target block was identical to the
-         * source block.
+         * @return The scratch buffer filled by {@link #copyChannel}.
          */
-        public boolean getIsIdentical() {
-            return isIdentical;
+        public byte[] getChannelBytes() {
+            return channelBytes;
+        }
+
+        private int getActualBlockWidth(int blockColumn) {
+            return Math.min(imageWidth - (blockColumn * blockSize), blockSize);
+        }
+
+        private int getActualBlockHeight(int blockRow) {
+            return Math.min(imageHeight - (blockRow * blockSize), blockSize);
         }
 
         /**
-         * @return The target block's pixel values for a specific channel.
+         * @param offset The offset of the first byte to compare.
+         * @param length The number of bytes to compare.
+         * @return Whether the source and target bytes are identical.
          */
-        public byte[] getBuffer() {
-            return buffer;
+        private boolean rangeEquals(int offset, int length) {
+            int end = offset + length;
+            for (; offset < end; ++offset) {
+                if (sourcePixels[offset] != targetPixels[offset]) {
+                    return false;
+                }
+            }
+            return true;
         }
-    }
 
-    /**
-     * Computes the width and height of the image data contained in the block
-     * at the input column and row.
-     * @param imageSize The image size in pixels.
-     * @param blockSize The block size for which we would like to compute the
-     *                  image data width and height.
-     * @param blockColumn The block column index
-     * @param blockRow The block row index
-     * @return The width and height of the image data contained in the block.
-     */
-    private static Dimension getActualBlockSize(Dimension imageSize,
-            int blockSize, int blockColumn, int blockRow) {
-        int actualWidth = Math.min(imageSize.width - (blockColumn * blockSize),
-                blockSize);
-        int actualHeight = Math.min(imageSize.height - (blockRow * blockSize),
-                                blockSize);
-
-        return new Dimension(actualWidth, actualHeight);
-    }
+        /**
+         * Compares a block of pixels between the source and target images.
+         * Identical block rows are skipped by comparing whole rows first, and
+         * only differing rows are inspected channel by channel.
+         * @param blockColumn The column index of the block to compare.
+         * @param blockRow The row index of the block to compare.
+         * @return A bit mask of the (RGB) channels in which the block differs,
+         * where bit {@code i} stands for channel {@code i}.
+         */
+        public int getChangedChannels(int blockColumn, int blockRow) {
+            final int allChannels = (1 << CHANNELS_COUNT) - 1;
+            // The image is RGB, so all that's left is to skip the Alpha
+            // channel if there is one.
+            int firstChannelIndex = (pixelLength == 4) ? 1 : 0;
+
+            int actualBlockWidth = getActualBlockWidth(blockColumn);
+            int actualBlockHeight = getActualBlockHeight(blockRow);
+            int rowLength = actualBlockWidth * pixelLength;
+
+            int changedChannels = 0;
+            for (int h = 0; h < actualBlockHeight; ++h) {
+                int rowOffset = (((blockSize * blockRow) + h) * stride) +
+                        (blockSize * blockColumn * pixelLength);
+                if (rangeEquals(rowOffset, rowLength)) {
+                    continue;
+                }
 
-    /**
-     * Compares a block of pixels between the source and target images.
-     * @param sourcePixels The pixels of the source block.
-     * @param targetPixels The pixels of the target block
-     * @param imageSize The image size in pixels.
-     * @param pixelLength Bytes per pixel. Since pixel might include alpha.
-     * @param blockSize The block size in pixels.
-     * @param blockColumn The column index of the block to compare.
-     * @param blockRow The row index of the block to compare.
-     * @param channel The channel for which we compare the blocks
-     * @return Whether the source and target blocks are identical,
-     * and a copy of the target block's channel bytes.
-     */
-    @SuppressWarnings("SpellCheckingInspection")
-    private static CompareAndCopyBlockChannelDataResult
-            CompareAndCopyBlockChannelData(
-                byte[] sourcePixels, byte[] targetPixels,
-                Dimension imageSize, int pixelLength, int blockSize,
-            int blockColumn, int blockRow, int channel) {
-
-        boolean isIdentical = true; // initial default
-
-        // Getting the actual amount of data in the block we wish to copy
-        Dimension actualBlockSize =
-                getActualBlockSize(imageSize, blockSize, blockColumn, blockRow);
-
-        int actualBlockHeight = actualBlockSize.height;
-        int actualBlockWidth = actualBlockSize.width;
-
-        int stride = imageSize.width * pixelLength;
-
-        // The number of bytes actually contained in the block for the
-        // current channel (might be less than blockSize*blockSize)
-        byte[] channelBytes = new byte[actualBlockHeight*actualBlockWidth];
-        int channelBytesOffset = 0;
-
-        // Actually comparing and copying the pixels
-        byte sourceByte, targetByte;
-        for (int h = 0; h < actualBlockHeight; ++h) {
-            int offset = (((blockSize * blockRow) + h) * stride) +
-                    (blockSize * blockColumn * pixelLength) + channel;
-            for (int w = 0; w < actualBlockWidth; ++w) {
-                sourceByte = sourcePixels[offset];
-                targetByte = targetPixels[offset];
-                if (sourceByte != targetByte) {
-                    isIdentical = false;
+                int rowEnd = rowOffset + rowLength;
+                for (int offset = rowOffset; offset < rowEnd;
+                        offset += pixelLength) {
+                    for (int channel = 0; channel < CHANNELS_COUNT;
+                            ++channel) {
+                        int channelOffset = offset + firstChannelIndex
+                                + channel;
+                        if (sourcePixels[channelOffset]
+                                != targetPixels[channelOffset]) {
+                            changedChannels |= 1 << channel;
+                        }
+                    }
+
+                    if (changedChannels == allChannels) {
+                        return changedChannels;
+                    }
                 }
+            }
+
+            return changedChannels;
+        }
+
+        /**
+         * Copies the target block's bytes of a single channel into the
+         * scratch buffer (see {@link #getChannelBytes()}).
+         * @param blockColumn The column index of the block to copy.
+         * @param blockRow The row index of the block to copy.
+         * @param channel The channel to copy (0-2).
+         * @return The number of bytes copied (might be less than
+         * blockSize*blockSize).
+         */
+        public int copyChannel(int blockColumn, int blockRow, int channel) {
+            int actualChannelIndex = (pixelLength == 4) ? channel + 1 : channel;
 
-                channelBytes[channelBytesOffset++] = targetByte;
-                offset += pixelLength;
+            int actualBlockWidth = getActualBlockWidth(blockColumn);
+            int actualBlockHeight = getActualBlockHeight(blockRow);
+
+            int channelBytesOffset = 0;
+            for (int h = 0; h < actualBlockHeight; ++h) {
+                int offset = (((blockSize * blockRow) + h) * stride) +
+                        (blockSize * blockColumn * pixelLength)
+                        + actualChannelIndex;
+                for (int w = 0; w < actualBlockWidth; ++w) {
+                    channelBytes[channelBytesOffset++] = targetPixels[offset];
+                    offset += pixelLength;
+                }
             }
+
+            return channelBytesOffset;
         }
+    }
 
-        return new CompareAndCopyBlockChannelDataResult(isIdentical,
-                channelBytes);
+    /**
+     * Compares the blocks in a range of block rows.
+     * @param comparer The comparer to use.
+     * @param blockColumnsCount The number of block columns in the image.
+     * @param firstBlockRow The first block row (inclusive).
+     * @param lastBlockRow The last block row (exclusive).
+     * @return For each block in the range, a bit mask of the channels in
+     * which the block differs (see {@link BlockComparer#getChangedChannels}).
+     */
+    private static byte[] getChangedChannels(BlockComparer comparer,
+            int blockColumnsCount, int firstBlockRow, int lastBlockRow) {
+        byte[] changedChannels =
+                new byte[(lastBlockRow - firstBlockRow) * blockColumnsCount];
+        int blockIndex = 0;
+        for (int blockRow = firstBlockRow; blockRow < lastBlockRow;
+                ++blockRow) {
+            for (int blockColumn = 0; blockColumn < blockColumnsCount;
+                    ++blockColumn) {
+                changedChannels[blockIndex++] = (byte)
+                        comparer.getChangedChannels(blockColumn, blockRow);
+            }
+        }
+        return changedChannels;
     }
 
     /**
@@ -181,8 +253,8 @@ public class ImageDeltaCompressor {
         // The number of bytes comprising a pixel (depends if there's an
         // Alpha channel).
         int pixelLength = (target.getAlphaRaster() != null) ? 4 : 3;
-        Dimension imageSize = new Dimension(target.getWidth(),
-                                            target.getHeight());
+        BlockComparer comparer = new BlockComparer(sourcePixels, targetPixels,
+                target.getWidth(), target.getHeight(), pixelLength, blockSize);
 
         // Calculating how many block columns and rows we've got.
         int blockColumnsCount = (target.getWidth() / blockSize)
@@ -213,28 +285,25 @@ public class ImageDeltaCompressor {
         // Writing the block size (Big endian)
         resultDataOutputStream.writeShort(blockSize);
 
-        CompareAndCopyBlockChannelDataResult compareResult;
-        for (int channel = 0; channel < 3; ++channel) {
+        // Comparing all channels of a block at once, so each block is only
+        // read once rather than once per channel.
+        byte[] changedChannels = getChangedChannels(comparer,
+                blockColumnsCount, 0, blockRowsCount);
 
-            // The image is RGB, so all that's left is to skip the Alpha
-            // channel if there is one.
-            int actualChannelIndex = (pixelLength == 4) ? channel + 1 : channel;
+        for (int channel = 0; channel < CHANNELS_COUNT; ++channel) {
 
             int blockNumber = 0;
             for (int blockRow = 0; blockRow < blockRowsCount; ++blockRow) {
                 for (int blockColumn = 0; blockColumn < blockColumnsCount;
                         ++blockColumn) {
 
-                    compareResult = CompareAndCopyBlockChannelData
-                            (sourcePixels, targetPixels, imageSize,
-                                    pixelLength, blockSize, blockColumn,
-                                    blockRow, actualChannelIndex);
-
-                    if (!compareResult.getIsIdentical()) {
+                    if ((changedChannels[blockNumber] & (1 << channel)) != 0) {
                         compressed.write(channel);
                         compressedDos.writeInt(blockNumber); // Big endian
-                        byte[] channelBytes = compareResult.getBuffer();
-                        compressed.write(channelBytes, 0, channelBytes.length);
+                        int length = comparer.copyChannel(blockColumn,
+                                blockRow, channel);
+                        compressed.write(comparer.getChannelBytes(), 0,
+                                length);
 
                         // If the number of bytes already written is greater
                         // then the number of bytes for the uncompressed
@@ -260,6 +329,208 @@ public class ImageDeltaCompressor {
         return resultStream.toByteArray();
     }
 
+    /**
+     * Writes the compression header (preamble, format, source ID and block
+     * size) to the given stream.
+     * @param stream The stream to write the header to.
+     * @param blockSize The block size in pixels.
+     * @throws IOException If there was a problem writing to the stream.
+     */
+    private static void writeHeader(DataOutputStream stream, int blockSize)
+            throws IOException {
+        stream.write(PREAMBLE, 0, PREAMBLE.length);
+        stream.write(COMPRESS_BY_RAW_BLOCKS_FORMAT);
+        // since we don't have a source ID, we write 0 length (Big endian).
+        stream.writeShort(0);
+
+        // Writing the block size (Big endian)
+        stream.writeShort(blockSize);
+    }
+
+    /**
+     * Compares and compresses the blocks in a band of block rows. The result
+     * holds a raw deflate segment per channel. Each segment ends on a byte
+     * boundary (sync flush) and has no final block, so that segments of
+     * consecutive bands can be concatenated into a single deflate stream.
+     * @param comparer The comparer to use, owned by the calling thread.
+     * @param blockColumnsCount The number of block columns in the image.
+     * @param firstBlockRow The first block row of the band (inclusive).
+     * @param lastBlockRow The last block row of the band (exclusive).
+     * @return The compressed deflate segments of the band, by channel.
+     * @throws IOException If there was a problem writing to the streams.
+     */
+    private static byte[][] compressBand(BlockComparer comparer,
+            int blockColumnsCount, int firstBlockRow, int lastBlockRow)
+                throws IOException {
+
+        byte[] changedChannels = getChangedChannels(comparer,
+                blockColumnsCount, firstBlockRow, lastBlockRow);
+
+        byte[][] segments = new byte[CHANNELS_COUNT][];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            for (int channel = 0; channel < CHANNELS_COUNT; ++channel) {
+                deflater.reset();
+                ByteArrayOutputStream bandStream = new ByteArrayOutputStream();
+                DeflaterOutputStream compressed =
+                        new DeflaterOutputStream(bandStream, deflater, true);
+                DataOutputStream compressedDos =
+                        new DataOutputStream(compressed);
+
+                int blockIndex = 0;
+                for (int blockRow = firstBlockRow; blockRow < lastBlockRow;
+                        ++blockRow) {
+                    int blockNumber = blockRow * blockColumnsCount;
+                    for (int blockColumn = 0; blockColumn < blockColumnsCount;
+                            ++blockColumn) {
+
+                        if ((changedChannels[blockIndex] & (1 << channel))
+                                != 0) {
+                            compressed.write(channel);
+                            compressedDos.writeInt(blockNumber); // Big endian
+                            int length = comparer.copyChannel(blockColumn,
+                                    blockRow, channel);
+                            compressed.write(comparer.getChannelBytes(), 0,
+                                    length);
+                        }
+
+                        ++blockIndex;
+                        ++blockNumber;
+                    }
+                }
+                // Sync flush, so the segment ends on a byte boundary.
+                compressedDos.flush();
+                segments[channel] = bandStream.toByteArray();
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return segments;
+    }
+
+    /**
+     * Compresses a target image based on a difference from a source image,
+     * comparing and deflating horizontal bands of the image in parallel.
+     * The output is identical in format to
+     * {@link #compressByRawBlocks(BufferedImage, byte[], BufferedImage, int)},
+     * and decodes to the same blocks.
+     *
+     * @param target The image we want to compress. (type is TYPE_4BYTE_ABGR)
+     * @param targetEncoded The image we want to compress in its png bytes
+     *                      representation.
+     * @param source The baseline image by which a compression will be
+     *               performed. (type is TYPE_4BYTE_ABGR)
+     * @param blockSize How many pixels per block.
+     * @param pool The pool on which to run the band compression, or
+     *             {@code null} to compress on the calling thread.
+     * @return The compression result, or the {@code targetEncoded} if the
+     * compressed bytes count is greater than the uncompressed bytes count.
+     * @throws java.io.IOException If there was a problem reading/writing
+     * from/to the streams which are created during the process.
+     */
+    public static byte[] compressByRawBlocks(final BufferedImage target,
+            byte[] targetEncoded, BufferedImage source, final int blockSize,
+            ForkJoinPool pool) throws IOException {
+
+        if (pool == null || pool.getParallelism() < 2) {
+            return compressByRawBlocks(target, targetEncoded, source,
+                    blockSize);
+        }
+
+        // If there's no image to compare to, or the images are in different
+        // sizes, we simply return the encoded target.
+        if (source == null
+                || (source.getWidth() != target.getWidth())
+                || (source.getHeight() != target.getHeight())) {
+            return targetEncoded;
+        }
+
+        // IMPORTANT: Notice that the pixel bytes are (A)BGR!
+        final byte[] targetPixels =
+                ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        final byte[] sourcePixels =
+                ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+
+        final int pixelLength = (target.getAlphaRaster() != null) ? 4 : 3;
+
+        final int blockColumnsCount = (target.getWidth() / blockSize)
+                + ((target.getWidth() % blockSize) == 0 ? 0 : 1);
+        int blockRowsCount = (target.getHeight() / blockSize)
+                + ((target.getHeight() % blockSize) == 0 ? 0 : 1);
+
+        // Splitting the block rows into bands, so that every worker gets a
+        // few bands.
+        int bandBlockRows = Math.max(MIN_BAND_BLOCK_ROWS,
+                blockRowsCount / (pool.getParallelism() * 4) + 1);
+
+        List<ForkJoinTask<byte[][]>> tasks = new ArrayList<>();
+        for (int firstRow = 0; firstRow < blockRowsCount;
+                firstRow += bandBlockRows) {
+            final int firstBlockRow = firstRow;
+            final int lastBlockRow =
+                    Math.min(firstRow + bandBlockRows, blockRowsCount);
+            tasks.add(pool.submit(new Callable<byte[][]>() {
+                @Override
+                public byte[][] call() throws IOException {
+                    BlockComparer comparer = new BlockComparer(sourcePixels,
+                            targetPixels, target.getWidth(),
+                            target.getHeight(), pixelLength, blockSize);
+                    return compressBand(comparer, blockColumnsCount,
+                            firstBlockRow, lastBlockRow);
+                }
+            }));
+        }
+
+        List<byte[][]> bands = new ArrayList<>(tasks.size());
+        try {
+            for (ForkJoinTask<byte[][]> task : tasks) {
+                bands.add(task.join());
+            }
+        } catch (RuntimeException e) {
+            for (ForkJoinTask<byte[][]> task : tasks) {
+                task.cancel(true);
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+
+        ByteArrayOutputStream resultStream = new ByteArrayOutputStream();
+        DataOutputStream resultDataOutputStream =
+                new DataOutputStream(resultStream);
+        writeHeader(resultDataOutputStream, blockSize);
+
+        // The segments are written by channel and then by band, which is the
+        // order in which the blocks are written by the serial compression.
+        for (int channel = 0; channel < CHANNELS_COUNT; ++channel) {
+            for (byte[][] band : bands) {
+                resultStream.write(band[channel], 0, band[channel].length);
+            }
+        }
+
+        // Terminating the concatenated segments with an empty final block.
+        Deflater finalBlockDeflater =
+                new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            finalBlockDeflater.finish();
+            byte[] finalBlock = new byte[16];
+            while (!finalBlockDeflater.finished()) {
+                int length = finalBlockDeflater.deflate(finalBlock);
+                resultStream.write(finalBlock, 0, length);
+            }
+        } finally {
+            finalBlockDeflater.end();
+        }
+
+        if (resultStream.size() > targetEncoded.length) {
+            return targetEncoded;
+        }
+
+        return resultStream.toByteArray();
+    }
+
     /**
      * Compresses a target image based on a difference from a source image.
      * {@code blockSize} defaults to 10.
@@ -274,6 +545,7 @@ public class ImageDeltaCompressor {
      */
     public static byte[] compressByRawBlocks(BufferedImage target,
             byte[] targetEncoded, BufferedImage source) throws IOException {
-        return compressByRawBlocks(target, targetEncoded, source, 10);
+        return compressByRawBlocks(target, targetEncoded, source,
+                DEFAULT_BLOCK_SIZE);
     }
 }
@@ -0,0 +1,23 @@
+package com.applitools.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes images as PNG.
+ *
+ * @see ImageUtils#setImageEncoder(ImageEncoder)
+ */
+public interface ImageEncoder {
+
+    /**
+     * Writes the PNG encoding of an image to a stream.
+     *
+     * @param image  The image to encode.
+     * @param stream The stream to write the PNG bytes to. The stream is not
+     *               closed.
+     * @throws IOException If writing to the stream failed.
+     */
+    void encode(BufferedImage image, OutputStream stream) throws IOException;
+}
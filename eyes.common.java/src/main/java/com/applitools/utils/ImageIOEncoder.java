@@ -0,0 +1,22 @@
+package com.applitools.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link ImageEncoder} which uses the PNG writer of {@code ImageIO}.
+ */
+public class ImageIOEncoder implements ImageEncoder {
+
+    @Override
+    public void encode(BufferedImage image, OutputStream stream) throws IOException {
+        ArgumentGuard.notNull(image, "image");
+        ArgumentGuard.notNull(stream, "stream");
+
+        if (!ImageIO.write(image, "png", stream)) {
+            throw new IOException("No PNG writer available for image type " + image.getType());
+        }
+    }
+}
@@ -10,20 +10,31 @@ import org.imgscalr.Scalr;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 
 public class ImageUtils {
 
     @SuppressWarnings("WeakerAccess")
     public static final int REQUIRED_IMAGE_TYPE = BufferedImage.TYPE_4BYTE_ABGR;
+
+    // The 64 bit FNV-1a parameters, used by getImageHash.
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private static Logger logger = new Logger();
+    private static ImageEncoder imageEncoder = new PngEncoder();
 
     public static void setLogHandler(LogHandler logHandler){
         ArgumentGuard.notNull(logHandler, "logHandler");
@@ -42,6 +53,20 @@ public class ImageUtils {
         return ImageUtils.copyImageWithType(image, REQUIRED_IMAGE_TYPE);
     }
 
+    /**
+     * Sets the encoder used for encoding and saving images as PNG.
+     *
+     * @param imageEncoder The encoder to use.
+     */
+    public static void setImageEncoder(ImageEncoder imageEncoder) {
+        ArgumentGuard.notNull(imageEncoder, "imageEncoder");
+        ImageUtils.imageEncoder = imageEncoder;
+    }
+
+    public static ImageEncoder getImageEncoder() {
+        return imageEncoder;
+    }
+
     /**
      * Encodes a given image as PNG.
      *
@@ -49,15 +74,28 @@ public class ImageUtils {
      * @return The PNG bytes representation of the image.
      */
     public static byte[] encodeAsPng(BufferedImage image) {
+        return encodeAsPng(image, imageEncoder);
+    }
+
+    /**
+     * Encodes a given image as PNG.
+     *
+     * @param image The image to encode.
+     * @param imageEncoder The encoder to use.
+     * @return The PNG bytes representation of the image.
+     */
+    public static byte[] encodeAsPng(BufferedImage image,
+                                     ImageEncoder imageEncoder) {
 
         ArgumentGuard.notNull(image, "image");
+        ArgumentGuard.notNull(imageEncoder, "imageEncoder");
 
         byte[] encodedImage; // PNG representation.
         ByteArrayOutputStream pngBytesStream = new ByteArrayOutputStream();
 
         try {
             // Get the clipped image in PNG encoding.
-            ImageIO.write(image, "png", pngBytesStream);
+            imageEncoder.encode(image, pngBytesStream);
             pngBytesStream.flush();
             encodedImage = pngBytesStream.toByteArray();
         } catch (IOException e) {
@@ -187,15 +225,152 @@ public class ImageUtils {
                                              Region region) {
         ArgumentGuard.notNull(image, "image");
 
-        // Get the clipped region as a BufferedImage.
-        BufferedImage imagePart = image.getSubimage(
-                region.getLeft(), region.getTop(), region.getWidth(),
-                region.getHeight());
-        // IMPORTANT We copy the image this way because just using getSubImage
-        // created a later problem (maybe an actual Java bug): the pixels
-        // weren't what they were supposed to be.
-        byte[] imagePartBytes = encodeAsPng(imagePart);
-        return imageFromBytes(imagePartBytes);
+        BufferedImage imagePart = getImagePartView(image, region);
+
+        // IMPORTANT We copy the image because the sub-image returned by
+        // getSubimage shares the data buffer of the original image. Code
+        // which reads the data buffer directly (e.g., the delta compression
+        // and bicubic scaling) would then see the pixels of the entire
+        // original image rather than those of the part.
+        if (!hasAbgrRaster(imagePart)) {
+            return copyImageWithType(imagePart, REQUIRED_IMAGE_TYPE);
+        }
+
+        return copyRasterRows(imagePart);
+    }
+
+    /**
+     * @param image The image to check.
+     * @return Whether the image is {@code TYPE_4BYTE_ABGR} with the standard
+     * raster layout (four interleaved bytes per pixel), so its pixel rows
+     * can be read directly from its data buffer.
+     */
+    static boolean hasAbgrRaster(BufferedImage image) {
+        return image.getType() == REQUIRED_IMAGE_TYPE
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte
+                && image.getSampleModel() instanceof ComponentSampleModel
+                && ((ComponentSampleModel) image.getSampleModel()).getPixelStride() == 4;
+    }
+
+    /**
+     * Computes a hash of the size and all the pixels of the image, for
+     * detecting whether an image has changed. This is not a cryptographic
+     * hash, but any change of a pixel changes it with high probability.
+     *
+     * @param image The image to hash.
+     * @return A 64 bit hash of the image.
+     */
+    public static long getImageHash(BufferedImage image) {
+        return getImageHash(image, 1);
+    }
+
+    /**
+     * Computes a hash of the size of the image and a sample of its pixels:
+     * every {@code sampleStep}-th pixel of every {@code sampleStep}-th row,
+     * starting at the top left pixel. Cheaper than hashing all the pixels,
+     * but a change of an unsampled pixel isn't detected.
+     *
+     * @param image      The image to hash.
+     * @param sampleStep The distance between sampled pixels (1 hashes all
+     *                   the pixels).
+     * @return A 64 bit hash of the image.
+     */
+    public static long getImageHash(BufferedImage image, int sampleStep) {
+        ArgumentGuard.notNull(image, "image");
+        ArgumentGuard.greaterThanZero(sampleStep, "sampleStep");
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // FNV-1a, on whole pixels instead of bytes.
+        long hash = FNV_OFFSET_BASIS;
+        hash = (hash ^ width) * FNV_PRIME;
+        hash = (hash ^ height) * FNV_PRIME;
+
+        if (hasAbgrRaster(image)) {
+            WritableRaster raster = image.getRaster();
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            byte[] data = buffer.getData();
+            int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+            int offset = buffer.getOffset()
+                    - (raster.getSampleModelTranslateY() * stride)
+                    - (raster.getSampleModelTranslateX() * 4);
+            int pixelStep = sampleStep * 4;
+            for (int y = 0; y < height; y += sampleStep) {
+                int rowEnd = offset + (y * stride) + (width * 4);
+                for (int i = offset + (y * stride); i < rowEnd; i += pixelStep) {
+                    // The same ARGB value getRGB returns.
+                    int pixel = ((data[i] & 0xFF) << 24) | ((data[i + 3] & 0xFF) << 16)
+                            | ((data[i + 2] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+                    hash = (hash ^ pixel) * FNV_PRIME;
+                }
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y += sampleStep) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x += sampleStep) {
+                    hash = (hash ^ row[x]) * FNV_PRIME;
+                }
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Get a view of the part of the image given by region. The view shares
+     * the pixels of {@code image} and must be treated as read-only. Since its
+     * data buffer is that of the entire {@code image}, the view must not be
+     * passed to code which reads the data buffer directly (use
+     * {@link #getImagePart(BufferedImage, Region)} for such cases).
+     *
+     * @param image The image from which to get the part.
+     * @param region The region of the image to view.
+     * @return A view of the part of the image.
+     */
+    public static BufferedImage getImagePartView(BufferedImage image,
+                                                 Region region) {
+        ArgumentGuard.notNull(image, "image");
+        ArgumentGuard.notNull(region, "region");
+
+        return image.getSubimage(region.getLeft(), region.getTop(),
+                region.getWidth(), region.getHeight());
+    }
+
+    /**
+     * Copies the pixel rows of a {@code TYPE_4BYTE_ABGR} image (which might
+     * be a sub-image sharing its parent's data buffer) into a new image
+     * which owns its data buffer.
+     *
+     * @param image The image to copy.
+     * @return A copy of the image.
+     */
+    private static BufferedImage copyRasterRows(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        ComponentSampleModel sampleModel =
+                (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte sourceBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] sourceData = sourceBuffer.getData();
+        int sourceStride = sampleModel.getScanlineStride();
+        // The location of the image's top left pixel in the (parent's) data.
+        int sourceOffset = sourceBuffer.getOffset()
+                - (raster.getSampleModelTranslateY() * sourceStride)
+                - (raster.getSampleModelTranslateX() * 4);
+
+        BufferedImage result =
+                new BufferedImage(width, height, REQUIRED_IMAGE_TYPE);
+        byte[] resultData = ((DataBufferByte) result.getRaster()
+                .getDataBuffer()).getData();
+        int resultStride = width * 4;
+
+        for (int y = 0; y < height; ++y) {
+            System.arraycopy(sourceData, sourceOffset + (y * sourceStride),
+                    resultData, y * resultStride, resultStride);
+        }
+
+        return result;
     }
 
     /**
@@ -536,10 +711,22 @@ public class ImageUtils {
      * @param filename The path to save image
      */
     public static void saveImage(BufferedImage image, String filename) {
-        try {
-            logger.verbose("Saving file: " + filename);
-            File file = new File(filename);
-            ImageIO.write(image, "png", file);
+        saveImage(image, filename, imageEncoder);
+    }
+
+    /**
+     * Save image to local file system
+     * @param image The image to save.
+     * @param filename The path to save image
+     * @param imageEncoder The encoder to use.
+     */
+    public static void saveImage(BufferedImage image, String filename,
+                                 ImageEncoder imageEncoder) {
+        ArgumentGuard.notNull(imageEncoder, "imageEncoder");
+        logger.verbose("Saving file: " + filename);
+        try (OutputStream stream = new BufferedOutputStream(
+                new FileOutputStream(filename))) {
+            imageEncoder.encode(image, stream);
         } catch (IOException e) {
             throw new EyesException("Failed to save image", e);
         }
@@ -0,0 +1,428 @@
+package com.applitools.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder which filters and deflates stripes of rows in parallel.
+ * <p>
+ * Every stripe is deflated independently and ends on a byte boundary (a
+ * sync flush), so the stripes are simply concatenated into a single zlib
+ * stream, whose checksum is combined from the checksums of the stripes.
+ * {@code TYPE_4BYTE_ABGR} images are read directly from their data buffer;
+ * images of other types are converted first.
+ */
+public class PngEncoder implements ImageEncoder {
+
+    public static final int BEST_SPEED = Deflater.BEST_SPEED;
+    public static final int BEST_COMPRESSION = Deflater.BEST_COMPRESSION;
+    public static final int DEFAULT_LEVEL = 6;
+
+    private static final byte[] SIGNATURE =
+            {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final byte[] IHDR = chunkType("IHDR");
+    private static final byte[] IDAT = chunkType("IDAT");
+    private static final byte[] IEND = chunkType("IEND");
+
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+    private static final int FILTERS_COUNT = 5;
+
+    // Stripes smaller than this (unfiltered) would noticeably hurt the
+    // compression ratio, since every stripe starts with an empty window.
+    private static final int MIN_STRIPE_BYTES = 256 * 1024;
+
+    private static final int ADLER_BASE = 65521;
+
+    private final int level;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an encoder with the default compression level, which runs on
+     * the common pool.
+     */
+    public PngEncoder() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level The compression level, from 0 (no compression) through
+     *              {@link #BEST_SPEED} to {@link #BEST_COMPRESSION}.
+     */
+    public PngEncoder(int level) {
+        this(level, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param level The compression level, from 0 (no compression) through
+     *              {@link #BEST_SPEED} to {@link #BEST_COMPRESSION}.
+     * @param pool  The pool on which to encode the stripes, or {@code null}
+     *              to encode on the calling thread.
+     */
+    public PngEncoder(int level, ForkJoinPool pool) {
+        ArgumentGuard.greaterThanOrEqualToZero(level, "level");
+        if (level > BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be at most "
+                    + BEST_COMPRESSION + " (got " + level + ")");
+        }
+        this.level = level;
+        this.pool = pool;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public void encode(BufferedImage image, OutputStream stream) throws IOException {
+        ArgumentGuard.notNull(image, "image");
+        ArgumentGuard.notNull(stream, "stream");
+
+        if (!ImageUtils.hasAbgrRaster(image)) {
+            image = ImageUtils.copyImageWithType(image,
+                    ImageUtils.REQUIRED_IMAGE_TYPE);
+        }
+
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        final int stride = ((ComponentSampleModel) raster.getSampleModel())
+                .getScanlineStride();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        final byte[] pixels = dataBuffer.getData();
+        // The location of the image's top left pixel in the data (which might
+        // be that of a parent image).
+        final int offset = dataBuffer.getOffset()
+                - (raster.getSampleModelTranslateY() * stride)
+                - (raster.getSampleModelTranslateX() * BYTES_PER_PIXEL);
+
+        int rowBytes = width * BYTES_PER_PIXEL;
+        int parallelism = (pool == null) ? 1 : pool.getParallelism();
+        int stripeRows = Math.max(MIN_STRIPE_BYTES / rowBytes + 1,
+                height / (parallelism * 4) + 1);
+
+        List<Stripe> stripes = new ArrayList<>();
+        if (parallelism < 2 || stripeRows >= height) {
+            for (int firstRow = 0; firstRow < height; firstRow += stripeRows) {
+                stripes.add(encodeStripe(pixels, offset, stride, width,
+                        firstRow, Math.min(firstRow + stripeRows, height),
+                        height));
+            }
+        } else {
+            List<ForkJoinTask<Stripe>> tasks = new ArrayList<>();
+            for (int row = 0; row < height; row += stripeRows) {
+                final int firstRow = row;
+                final int lastRow = Math.min(row + stripeRows, height);
+                tasks.add(pool.submit(new Callable<Stripe>() {
+                    @Override
+                    public Stripe call() {
+                        return encodeStripe(pixels, offset, stride, width,
+                                firstRow, lastRow, height);
+                    }
+                }));
+            }
+            try {
+                for (ForkJoinTask<Stripe> task : tasks) {
+                    stripes.add(task.join());
+                }
+            } catch (RuntimeException e) {
+                for (ForkJoinTask<Stripe> task : tasks) {
+                    task.cancel(true);
+                }
+                throw e;
+            }
+        }
+
+        DataOutputStream dos = new DataOutputStream(stream);
+        dos.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_RGBA;
+        // Compression, filter and interlace methods are all 0.
+        writeChunk(dos, IHDR, header);
+
+        long adler = 1;
+        for (int i = 0; i < stripes.size(); ++i) {
+            Stripe stripe = stripes.get(i);
+            adler = combineAdler32(adler, stripe.adler, stripe.filteredLength);
+            byte[] zlibHeader = (i == 0) ? getZlibHeader() : new byte[0];
+            byte[] zlibTrailer = new byte[0];
+            if (i == stripes.size() - 1) {
+                zlibTrailer = new byte[4];
+                writeInt(zlibTrailer, 0, (int) adler);
+            }
+            writeChunk(dos, IDAT, zlibHeader, stripe.data, zlibTrailer);
+        }
+
+        writeChunk(dos, IEND);
+        dos.flush();
+    }
+
+    /**
+     * The filtered and deflated rows of a stripe.
+     */
+    private static class Stripe {
+        private final byte[] data;
+        private final long adler;
+        private final long filteredLength;
+
+        Stripe(byte[] data, long adler, long filteredLength) {
+            this.data = data;
+            this.adler = adler;
+            this.filteredLength = filteredLength;
+        }
+    }
+
+    private Stripe encodeStripe(byte[] pixels, int offset, int stride,
+                                int width, int firstRow, int lastRow,
+                                int height) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        byte[] filtered = new byte[(rowBytes + 1) * (lastRow - firstRow)];
+        byte[] prior = new byte[rowBytes];
+        byte[] row = new byte[rowBytes];
+        byte[][] candidates = new byte[FILTERS_COUNT][rowBytes];
+
+        // The filters of the first row use the row above it, which belongs
+        // to the previous stripe.
+        if (firstRow > 0) {
+            readRow(pixels, offset + ((firstRow - 1) * stride), width, prior);
+        }
+
+        int filteredOffset = 0;
+        for (int y = firstRow; y < lastRow; ++y) {
+            readRow(pixels, offset + (y * stride), width, row);
+            int filter = filterRow(row, prior, candidates);
+            filtered[filteredOffset++] = (byte) filter;
+            System.arraycopy(candidates[filter], 0, filtered, filteredOffset,
+                    rowBytes);
+            filteredOffset += rowBytes;
+
+            byte[] temp = prior;
+            prior = row;
+            row = temp;
+        }
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered, 0, filtered.length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(filtered);
+            byte[] buffer = new byte[Math.max(filtered.length / 4, 1024)];
+            int length = 0;
+            if (lastRow == height) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    length += deflater.deflate(buffer, length,
+                            buffer.length - length);
+                }
+            } else {
+                // A sync flush ends the stripe on a byte boundary, without
+                // marking it as the last block of the stream.
+                do {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    length += deflater.deflate(buffer, length,
+                            buffer.length - length, Deflater.SYNC_FLUSH);
+                } while (length == buffer.length);
+            }
+            return new Stripe(Arrays.copyOf(buffer, length), adler.getValue(),
+                    filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads a row of ABGR pixels as RGBA.
+     */
+    private static void readRow(byte[] pixels, int rowOffset, int width,
+                                byte[] row) {
+        for (int x = 0, i = rowOffset, j = 0; x < width; ++x, i += 4, j += 4) {
+            row[j] = pixels[i + 3];
+            row[j + 1] = pixels[i + 2];
+            row[j + 2] = pixels[i + 1];
+            row[j + 3] = pixels[i];
+        }
+    }
+
+    /**
+     * Applies the filters to a row and chooses the filter whose output has
+     * the smallest sum of absolute (signed) values, as recommended by the
+     * PNG specification. Without compression, no filter is applied.
+     *
+     * @return The chosen filter, whose output is in {@code candidates}.
+     */
+    private int filterRow(byte[] row, byte[] prior, byte[][] candidates) {
+        if (level == 0) {
+            System.arraycopy(row, 0, candidates[FILTER_NONE], 0, row.length);
+            return FILTER_NONE;
+        }
+
+        byte[] none = candidates[FILTER_NONE];
+        byte[] sub = candidates[FILTER_SUB];
+        byte[] up = candidates[FILTER_UP];
+        byte[] average = candidates[FILTER_AVERAGE];
+        byte[] paeth = candidates[FILTER_PAETH];
+
+        // The first pixel has no pixel to its left.
+        for (int i = 0; i < BYTES_PER_PIXEL; ++i) {
+            int raw = row[i] & 0xFF;
+            int above = prior[i] & 0xFF;
+            none[i] = (byte) raw;
+            sub[i] = (byte) raw;
+            up[i] = (byte) (raw - above);
+            average[i] = (byte) (raw - (above >>> 1));
+            paeth[i] = (byte) (raw - above);
+        }
+        for (int i = BYTES_PER_PIXEL; i < row.length; ++i) {
+            int raw = row[i] & 0xFF;
+            int left = row[i - BYTES_PER_PIXEL] & 0xFF;
+            int above = prior[i] & 0xFF;
+            int aboveLeft = prior[i - BYTES_PER_PIXEL] & 0xFF;
+
+            none[i] = (byte) raw;
+            sub[i] = (byte) (raw - left);
+            up[i] = (byte) (raw - above);
+            average[i] = (byte) (raw - ((left + above) >>> 1));
+            paeth[i] = (byte) (raw - paethPredictor(left, above, aboveLeft));
+        }
+
+        int bestFilter = FILTER_NONE;
+        long bestSum = Long.MAX_VALUE;
+        for (int filter = 0; filter < FILTERS_COUNT; ++filter) {
+            byte[] candidate = candidates[filter];
+            long sum = 0;
+            for (int i = 0; i < candidate.length && sum < bestSum; ++i) {
+                sum += Math.abs(candidate[i]);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                bestFilter = filter;
+            }
+        }
+        return bestFilter;
+    }
+
+    private static int paethPredictor(int left, int above, int aboveLeft) {
+        int estimate = left + above - aboveLeft;
+        int leftDistance = Math.abs(estimate - left);
+        int aboveDistance = Math.abs(estimate - above);
+        int aboveLeftDistance = Math.abs(estimate - aboveLeft);
+        if (leftDistance <= aboveDistance && leftDistance <= aboveLeftDistance) {
+            return left;
+        }
+        return (aboveDistance <= aboveLeftDistance) ? above : aboveLeft;
+    }
+
+    /**
+     * @return The zlib stream header (deflate with a 32K window, and the
+     * compression level hint).
+     */
+    private byte[] getZlibHeader() {
+        int levelHint;
+        if (level <= BEST_SPEED) {
+            levelHint = 0;
+        } else if (level < DEFAULT_LEVEL) {
+            levelHint = 1;
+        } else if (level == DEFAULT_LEVEL) {
+            levelHint = 2;
+        } else {
+            levelHint = 3;
+        }
+        int header = (0x78 << 8) | (levelHint << 6);
+        header += 31 - (header % 31);
+        return new byte[]{(byte) (header >>> 8), (byte) header};
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive blocks of data (as
+     * zlib's {@code adler32_combine}).
+     *
+     * @param adler1  The checksum of the first block.
+     * @param adler2  The checksum of the second block.
+     * @param length2 The length of the second block.
+     * @return The checksum of the concatenated blocks.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF)
+                + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (ADLER_BASE << 1)) {
+            sum2 -= (ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return (sum2 << 16) | sum1;
+    }
+
+    private static void writeChunk(DataOutputStream dos, byte[] type,
+                                   byte[]... parts) throws IOException {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        for (byte[] part : parts) {
+            crc.update(part);
+        }
+
+        dos.writeInt(length);
+        dos.write(type);
+        for (byte[] part : parts) {
+            dos.write(part);
+        }
+        dos.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static byte[] chunkType(String type) {
+        return type.getBytes(Charset.forName("US-ASCII"));
+    }
+}
@@ -20,8 +20,8 @@ public class ReadOnlyPropertyHandler<T> implements PropertyHandler<T> {
      * @return Always returns false.
      */
     public boolean set(T obj) {
-        logger.verbose(String.format("Ignored. (%s)",
-                getClass().getSimpleName()));
+        logger.verbose("Ignored. (%s)",
+                getClass().getSimpleName());
         return false;
     }
 
@@ -0,0 +1,118 @@
+package com.applitools.eyes;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestFileLogger {
+
+    private File directory;
+
+    @BeforeMethod
+    public void Init() throws IOException {
+        directory = Files.createTempDirectory("eyes-log").toFile();
+    }
+
+    @AfterMethod
+    public void TearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.deleteOnExit();
+            }
+        }
+        directory.deleteOnExit();
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void TestClose_WritesAllMessages() throws Exception {
+        File file = new File(directory, "eyes.log");
+        final FileLogger fileLogger = new FileLogger(file.getPath(), false, true, 16,
+                FileLogger.BufferFullPolicy.BLOCK, 0, 0);
+        fileLogger.open();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            final int threadIndex = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; ++i) {
+                        fileLogger.onMessage(true, "message " + threadIndex + "-" + i);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        fileLogger.close();
+        fileLogger.onMessage(false, "after close");
+
+        List<String> lines = readLines(file);
+        Assert.assertEquals(lines.size(), 4000);
+        Set<String> messages = new HashSet<>();
+        for (String line : lines) {
+            Assert.assertTrue(line.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3} Eyes: message \\d-\\d+"),
+                    line);
+            messages.add(line.substring(line.indexOf("message")));
+        }
+        Assert.assertEquals(messages.size(), 4000);
+        Assert.assertEquals(fileLogger.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void TestOnMessage_IgnoresVerbose() throws Exception {
+        File file = new File(directory, "eyes.log");
+        FileLogger fileLogger = new FileLogger(file.getPath(), false, false);
+        fileLogger.open();
+        fileLogger.onMessage(true, "verbose");
+        fileLogger.onMessage(false, "log");
+        fileLogger.close();
+
+        List<String> lines = readLines(file);
+        Assert.assertEquals(lines.size(), 1);
+        Assert.assertTrue(lines.get(0).endsWith(" Eyes: log"));
+    }
+
+    @Test
+    public void TestOnMessage_RollsBySize() throws Exception {
+        File file = new File(directory, "eyes.log");
+        FileLogger fileLogger = new FileLogger(file.getPath(), false, true, 100,
+                FileLogger.BufferFullPolicy.BLOCK, 1000, 2);
+        fileLogger.open();
+        for (int i = 0; i < 100; ++i) {
+            fileLogger.onMessage(false, String.format("message %03d", i));
+        }
+        fileLogger.close();
+
+        File first = new File(directory, "eyes.log.1");
+        File second = new File(directory, "eyes.log.2");
+        Assert.assertTrue(first.exists());
+        Assert.assertTrue(second.exists());
+        Assert.assertFalse(new File(directory, "eyes.log.3").exists());
+        Assert.assertTrue(first.length() >= 1000);
+        List<String> lines = readLines(file);
+        Assert.assertTrue(lines.get(lines.size() - 1).endsWith("message 099"));
+        List<String> olderLines = readLines(first);
+        int firstIndex = Integer.parseInt(lines.get(0).substring(lines.get(0).length() - 3));
+        Assert.assertTrue(olderLines.get(olderLines.size() - 1).endsWith(String.format("message %03d", firstIndex - 1)),
+                "the rolled file doesn't end where the current file starts");
+    }
+}
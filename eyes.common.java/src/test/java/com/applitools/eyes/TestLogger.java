@@ -0,0 +1,104 @@
+package com.applitools.eyes;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class TestLogger {
+
+    private final List<String> messages = new ArrayList<>();
+
+    private class ListLogHandler implements LevelAwareLogHandler {
+        private final boolean isVerbose;
+
+        ListLogHandler(boolean isVerbose) {
+            this.isVerbose = isVerbose;
+        }
+
+        @Override
+        public boolean isVerbose() {
+            return isVerbose;
+        }
+
+        @Override
+        public void open() {}
+
+        @Override
+        public void onMessage(boolean verbose, String logString) {
+            messages.add(logString);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Fails the test if the message is formatted.
+     */
+    private static class Unformattable {
+        @Override
+        public String toString() {
+            throw new AssertionError("the message was formatted");
+        }
+    }
+
+    @BeforeMethod
+    public void Init() {
+        messages.clear();
+    }
+
+    @Test
+    public void TestVerbose_NotFormattedWhenIgnored() {
+        Logger logger = new Logger();
+        logger.setLogHandler(new ListLogHandler(false));
+        Assert.assertFalse(logger.isVerboseEnabled());
+        Assert.assertTrue(logger.isLogEnabled());
+
+        logger.verbose("Part: %s", new Unformattable());
+        logger.verbose(new Supplier<String>() {
+            @Override
+            public String get() {
+                throw new AssertionError("the message was created");
+            }
+        });
+        logger.log("Part %d of %d", 1, 2);
+
+        Assert.assertEquals(messages.size(), 1);
+        Assert.assertEquals(messages.get(0),
+                "[LOG    ] {} com.applitools.eyes.TestLogger.TestVerbose_NotFormattedWhenIgnored(): Part 1 of 2");
+    }
+
+    @Test
+    public void TestLog_CallerInfo() {
+        Logger logger = new Logger();
+        logger.setLogHandler(new ListLogHandler(true));
+        logger.setSessionId("session");
+
+        logger.verbose("plain");
+        logger.verbose(new Supplier<String>() {
+            @Override
+            public String get() {
+                return "supplied";
+            }
+        });
+        logger.setCallerInfoEnabled(false);
+        logger.verbose("without caller");
+
+        String prefix = "[VERBOSE] {session} com.applitools.eyes.TestLogger.TestLog_CallerInfo(): ";
+        Assert.assertEquals(messages.get(0), prefix + "plain");
+        Assert.assertEquals(messages.get(1), prefix + "supplied");
+        Assert.assertEquals(messages.get(2), "[VERBOSE] {session} without caller");
+    }
+
+    @Test
+    public void TestNullLogHandler_Disabled() {
+        Logger logger = new Logger();
+        Assert.assertFalse(logger.isLogEnabled());
+        Assert.assertFalse(logger.isVerboseEnabled());
+        logger.log("Part: %s", new Unformattable());
+    }
+}
@@ -0,0 +1,145 @@
+package com.applitools.eyes;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLongRequestPoller {
+
+    /**
+     * A request which is processed by the server after the given number of
+     * calls.
+     */
+    private static class FakeRequest implements LongRequestPoller.Request<Integer> {
+        private final int callsToFinish;
+        private final String retryAfter;
+        private final AtomicInteger callsCount = new AtomicInteger();
+        private final AtomicInteger releasedCount = new AtomicInteger();
+
+        FakeRequest(int callsToFinish, String retryAfter) {
+            this.callsToFinish = callsToFinish;
+            this.retryAfter = retryAfter;
+        }
+
+        @Override
+        public Integer call() {
+            return callsCount.incrementAndGet() < callsToFinish ? 202 : 200;
+        }
+
+        @Override
+        public boolean isRunning(Integer response) {
+            return response == 202;
+        }
+
+        @Override
+        public String getRetryAfter(Integer response) {
+            return retryAfter;
+        }
+
+        @Override
+        public void release(Integer response) {
+            releasedCount.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void TestPoll_RetryAfter() {
+        // The server asks to retry immediately, instead of the long default delay.
+        LongRequestPoller poller = new LongRequestPoller(new Logger(), 60000, 60000, 0);
+        FakeRequest request = new FakeRequest(5, "0");
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<Integer> response = poller.poll("test", request);
+
+        Assert.assertEquals(LongRequestPoller.join(response).intValue(), 200);
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        Assert.assertEquals(request.callsCount.get(), 5);
+        Assert.assertEquals(request.releasedCount.get(), 4);
+    }
+
+    @Test
+    public void TestPoll_Deadline() {
+        LongRequestPoller poller = new LongRequestPoller(new Logger(), 50, 100, 500);
+        FakeRequest request = new FakeRequest(Integer.MAX_VALUE, null);
+
+        try {
+            LongRequestPoller.join(poller.poll("test", request));
+            Assert.fail("expected the request to time out");
+        } catch (EyesException e) {
+            Assert.assertTrue(e.getMessage().startsWith("test:"), e.getMessage());
+        }
+        Assert.assertTrue(request.callsCount.get() > 2);
+    }
+
+    @Test
+    public void TestPoll_BlockedRequestsDontDelayOthers() throws InterruptedException {
+        LongRequestPoller poller = new LongRequestPoller(new Logger(), 50, 100, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger blockedCount = new AtomicInteger();
+        LongRequestPoller.Request<Integer> blockedRequest = new FakeRequest(1, null) {
+            @Override
+            public Integer call() {
+                blockedCount.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.call();
+            }
+        };
+
+        // More blocked requests than any fixed pool of threads would have.
+        int blockedRequests = Runtime.getRuntime().availableProcessors() * 4 + 4;
+        List<CompletableFuture<Integer>> blockedResponses = new ArrayList<>();
+        try {
+            for (int i = 0; i < blockedRequests; ++i) {
+                blockedResponses.add(poller.poll("blocked", blockedRequest));
+            }
+
+            FakeRequest request = new FakeRequest(3, null);
+            CompletableFuture<Integer> response = poller.poll("test", request);
+            Assert.assertEquals(response.get(10, TimeUnit.SECONDS).intValue(), 200);
+            Assert.assertEquals(request.callsCount.get(), 3);
+        } catch (ExecutionException | TimeoutException e) {
+            Assert.fail("The request was delayed by the blocked requests", e);
+        } finally {
+            release.countDown();
+        }
+        for (CompletableFuture<Integer> blockedResponse : blockedResponses) {
+            LongRequestPoller.join(blockedResponse);
+        }
+        Assert.assertEquals(blockedCount.get(), blockedRequests);
+    }
+
+    @Test
+    public void TestGetRetryAfterDelay() {
+        Assert.assertEquals(LongRequestPoller.getRetryAfterDelay(null), -1);
+        Assert.assertEquals(LongRequestPoller.getRetryAfterDelay("soon"), -1);
+        Assert.assertEquals(LongRequestPoller.getRetryAfterDelay(" 3 "), 3000);
+
+        String date = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30)
+                .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        long delay = LongRequestPoller.getRetryAfterDelay(date);
+        Assert.assertTrue(delay > 28000 && delay <= 30000, String.valueOf(delay));
+    }
+
+    @Test
+    public void TestGetJitteredDelay() {
+        for (int i = 0; i < 100; ++i) {
+            long delay = LongRequestPoller.getJitteredDelay(2000);
+            Assert.assertTrue(delay >= 1000 && delay <= 2000, String.valueOf(delay));
+        }
+    }
+}
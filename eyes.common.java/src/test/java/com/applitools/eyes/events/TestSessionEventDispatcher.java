@@ -0,0 +1,121 @@
+package com.applitools.eyes.events;
+
+import com.applitools.eyes.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class TestSessionEventDispatcher {
+
+    /**
+     * An event which records its sending.
+     */
+    private static class RecordingEvent implements Runnable {
+        private final List<String> sent;
+        private final String name;
+
+        RecordingEvent(List<String> sent, String name) {
+            this.sent = sent;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            sent.add(name);
+        }
+    }
+
+    @Test
+    public void TestDispatch_PreservesOrder() {
+        SessionEventDispatcher dispatcher = new SessionEventDispatcher(new Logger(), "test-events");
+        List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            String name = "session" + (i % 3) + " event" + i;
+            expected.add(name);
+            Assert.assertTrue(dispatcher.dispatch(new RecordingEvent(sent, name)));
+        }
+
+        Assert.assertTrue(dispatcher.close(10000));
+        Assert.assertEquals(sent, expected);
+        Assert.assertFalse(dispatcher.dispatch(new RecordingEvent(sent, "late")));
+    }
+
+    @Test
+    public void TestDispatch_DropWhenFull() throws InterruptedException {
+        SessionEventDispatcher dispatcher = new SessionEventDispatcher(new Logger(), "test-events", 2,
+                SessionEventDispatcher.QueueFullPolicy.DROP);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+
+        // Holds the sender thread, so the next events stay in the queue.
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        started.await();
+
+        Assert.assertTrue(dispatcher.dispatch(new RecordingEvent(sent, "first")));
+        Assert.assertTrue(dispatcher.dispatch(new RecordingEvent(sent, "second")));
+        Assert.assertFalse(dispatcher.dispatch(new RecordingEvent(sent, "dropped")));
+        Assert.assertFalse(dispatcher.flush(100));
+
+        release.countDown();
+        Assert.assertTrue(dispatcher.flush(10000));
+        Assert.assertEquals(sent, Arrays.asList("first", "second"));
+        Assert.assertEquals(dispatcher.getDroppedCount(), 1);
+        dispatcher.close(0);
+    }
+
+    @Test
+    public void TestDispatch_FailedEventDoesNotStopSending() {
+        SessionEventDispatcher dispatcher = new SessionEventDispatcher(new Logger(), "test-events");
+        List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("server down");
+            }
+        });
+        dispatcher.dispatch(new RecordingEvent(sent, "next"));
+
+        Assert.assertTrue(dispatcher.flush(10000));
+        Assert.assertEquals(sent, Collections.singletonList("next"));
+        dispatcher.close(0);
+    }
+
+    @Test
+    public void TestDispatch_SenderEndsWhenIdle() throws InterruptedException {
+        SessionEventDispatcher dispatcher = new SessionEventDispatcher(new Logger(), "test-events", 10,
+                SessionEventDispatcher.QueueFullPolicy.BLOCK, 50);
+        List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        Assert.assertFalse(dispatcher.isSending());
+
+        dispatcher.dispatch(new RecordingEvent(sent, "first"));
+        Assert.assertTrue(dispatcher.flush(10000));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (dispatcher.isSending() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(dispatcher.isSending());
+
+        // A new event starts a new sender.
+        dispatcher.dispatch(new RecordingEvent(sent, "second"));
+        Assert.assertTrue(dispatcher.flush(10000));
+        Assert.assertEquals(sent, Arrays.asList("first", "second"));
+        dispatcher.close(0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.applitools.eyes.events;
+
+import com.applitools.eyes.RectangleSize;
+import com.applitools.eyes.TestResults;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestSessionEventHandlers {
+
+    /**
+     * A handler which records the events it got, and optionally fails to
+     * flush.
+     */
+    private static class RecordingHandler implements ISessionEventHandler {
+        private final List<String> events = new ArrayList<>();
+        private final RuntimeException flushFailure;
+
+        RecordingHandler(RuntimeException flushFailure) {
+            this.flushFailure = flushFailure;
+        }
+
+        @Override
+        public void initStarted() {
+            events.add("initStarted");
+        }
+
+        @Override
+        public void initEnded() {
+            events.add("initEnded");
+        }
+
+        @Override
+        public void setSizeWillStart(RectangleSize sizeToSet) {
+            events.add("setSizeWillStart");
+        }
+
+        @Override
+        public void setSizeEnded() {
+            events.add("setSizeEnded");
+        }
+
+        @Override
+        public void testStarted(String autSessionId) {
+            events.add("testStarted");
+        }
+
+        @Override
+        public void testEnded(String autSessionId, TestResults testResults) {
+            events.add("testEnded");
+        }
+
+        @Override
+        public void validationWillStart(String autSessionId, ValidationInfo validationInfo) {
+            events.add("validationWillStart");
+        }
+
+        @Override
+        public void validationEnded(String autSessionId, String validationId, ValidationResult validationResult) {
+            events.add("validationEnded");
+        }
+
+        @Override
+        public void flush() {
+            events.add("flush");
+            if (flushFailure != null) {
+                throw flushFailure;
+            }
+        }
+    }
+
+    @Test
+    public void TestTestEnded_FlushesHandlers() {
+        SessionEventHandlers handlers = new SessionEventHandlers();
+        RecordingHandler handler = new RecordingHandler(null);
+        handlers.addEventHandler(handler);
+
+        handlers.testStarted("session");
+        handlers.testEnded("session", new TestResults());
+
+        Assert.assertEquals(handler.events, Arrays.asList("testStarted", "testEnded", "flush"));
+    }
+
+    @Test
+    public void TestFlush_FlushesAllHandlersBeforeThrowing() {
+        SessionEventHandlers handlers = new SessionEventHandlers();
+        RuntimeException failure = new IllegalStateException("first");
+        RecordingHandler failing1 = new RecordingHandler(failure);
+        RecordingHandler failing2 = new RecordingHandler(new IllegalStateException("second"));
+        RecordingHandler handler = new RecordingHandler(null);
+        handlers.addEventHandler(failing1);
+        handlers.addEventHandler(failing2);
+        handlers.addEventHandler(handler);
+
+        try {
+            handlers.testEnded("session", new TestResults());
+            Assert.fail("The flush failure wasn't thrown.");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(e, failure);
+        }
+        Assert.assertEquals(failing2.events, Arrays.asList("testEnded", "flush"));
+        Assert.assertEquals(handler.events, Arrays.asList("testEnded", "flush"));
+    }
+}
@@ -3,17 +3,16 @@ package com.applitools.eyes;
 import com.applitools.utils.ArgumentGuard;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.protocol.BasicHttpContext;
-import org.apache.http.protocol.HttpContext;
-import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
-import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.WebTarget;
@@ -21,10 +20,12 @@ import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Provides common rest client functionality.
+ * Provides common rest client functionality. The client is thread-safe: its
+ * configuration is replaced as a whole when changed, so concurrent requests
+ * always see a consistent client and end point.
  */
 public class RestClient {
 
@@ -39,13 +40,15 @@ public class RestClient {
         Response call();
     }
 
-    private AbstractProxySettings abstractProxySettings;
-    private int timeout; // seconds
+    private volatile AbstractProxySettings abstractProxySettings;
+    private volatile int timeout; // seconds
+    private volatile int longRequestTimeout = LongRequestPoller.DEFAULT_TIMEOUT;
+    private final String endPointPath;
 
-    protected Logger logger;
-    protected Client restClient;
-    protected URI serverUrl;
-    protected WebTarget endPoint;
+    protected volatile Logger logger;
+    protected volatile Client restClient;
+    protected volatile URI serverUrl;
+    protected volatile WebTarget endPoint;
 
     // Used for JSON serialization/de-serialization.
     protected ObjectMapper jsonMapper;
@@ -57,58 +60,58 @@ public class RestClient {
      */
     private static Client buildRestClient(int timeout,
                                       AbstractProxySettings abstractProxySettings) {
-        ResteasyClientBuilder builder = new ResteasyClientBuilder();
-
-        builder = builder.establishConnectionTimeout(timeout, TimeUnit.MILLISECONDS)
-                .socketTimeout(timeout, TimeUnit.MILLISECONDS);
-
-        if (abstractProxySettings == null) {
-            return builder.build();
-        }
-
-        // Setting the proxy configuration
-        String uri = abstractProxySettings.getUri();
-        String[] uriParts = uri.split(":",3);
-
-        // There must be at least http':'//...
-        if (uriParts.length < 2) {
-            throw new EyesException("Invalid proxy URI: " + uri);
-        }
-        String scheme = uriParts[0];
-        String hostName = uriParts[1].substring(2); // remove "//" part of the hostname.;
+        RequestConfig.Builder requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setSocketTimeout(timeout);
+
+        // Connections are pooled across all the clients in the process.
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                .setConnectionManager(ConnectionPool.getConnectionManager())
+                .setConnectionManagerShared(true);
+
+        if (abstractProxySettings != null) {
+            // Setting the proxy configuration
+            String uri = abstractProxySettings.getUri();
+            String[] uriParts = uri.split(":",3);
+
+            // There must be at least http':'//...
+            if (uriParts.length < 2) {
+                throw new EyesException("Invalid proxy URI: " + uri);
+            }
+            String scheme = uriParts[0];
+            String hostName = uriParts[1].substring(2); // remove "//" part of the hostname.;
 
-        int port = scheme.equalsIgnoreCase("https") ? DEFAULT_HTTPS_PROXY_PORT : DEFAULT_HTTP_PROXY_PORT;
+            int port = scheme.equalsIgnoreCase("https") ? DEFAULT_HTTPS_PROXY_PORT : DEFAULT_HTTP_PROXY_PORT;
 
-        // If a port is specified
-        if (uriParts.length > 2) {
-            String leftOverUri = uriParts[2];
-            String[] leftOverParts = leftOverUri.split("/", 2);
+            // If a port is specified
+            if (uriParts.length > 2) {
+                String leftOverUri = uriParts[2];
+                String[] leftOverParts = leftOverUri.split("/", 2);
 
-            port = Integer.valueOf(leftOverParts[0]);
+                port = Integer.valueOf(leftOverParts[0]);
 
-            // If there's a "path" part following the port
-            if (leftOverParts.length == 2) {
-                hostName += "/" + leftOverParts[1];
+                // If there's a "path" part following the port
+                if (leftOverParts.length == 2) {
+                    hostName += "/" + leftOverParts[1];
+                }
             }
-        }
-
-        ResteasyClient client = builder.defaultProxy(hostName, port, scheme).build();
 
-        if (abstractProxySettings.getUsername() != null) {
-            Credentials credentials = new UsernamePasswordCredentials(abstractProxySettings.getUsername(),
-                    abstractProxySettings.getPassword());
+            httpClientBuilder.setProxy(new HttpHost(hostName, port, scheme));
 
-            ApacheHttpClient4Engine engine = (ApacheHttpClient4Engine) client.httpEngine();
-            HttpContext context = new BasicHttpContext();
-            engine.setHttpContext(context);
+            if (abstractProxySettings.getUsername() != null) {
+                Credentials credentials = new UsernamePasswordCredentials(abstractProxySettings.getUsername(),
+                        abstractProxySettings.getPassword());
 
-            CredentialsProvider credsProvider = new BasicCredentialsProvider();
-            context.setAttribute(HttpClientContext.CREDS_PROVIDER, credsProvider);
-            AuthScope authScope = new AuthScope(hostName, port, null, null);
-            credsProvider.setCredentials(authScope, credentials);
+                CredentialsProvider credsProvider = new BasicCredentialsProvider();
+                AuthScope authScope = new AuthScope(hostName, port, null, null);
+                credsProvider.setCredentials(authScope, credentials);
+                httpClientBuilder.setDefaultCredentialsProvider(credsProvider);
+            }
         }
 
-        return client;
+        httpClientBuilder.setDefaultRequestConfig(requestConfig.build());
+        ApacheHttpClient43Engine engine = new ApacheHttpClient43Engine(httpClientBuilder.build(), true);
+        return new ResteasyClientBuilder().httpEngine(engine).build();
     }
 
     /***
@@ -117,6 +120,17 @@ public class RestClient {
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
     public RestClient(Logger logger, URI serverUrl, int timeout) {
+        this(logger, serverUrl, timeout, null);
+    }
+
+    /***
+     * @param logger    Logger instance.
+     * @param serverUrl The URI of the rest server.
+     * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param endPointPath (optional) The path of the end point, relative to
+     *                     the server URI.
+     */
+    protected RestClient(Logger logger, URI serverUrl, int timeout, String endPointPath) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
 
@@ -126,9 +140,20 @@ public class RestClient {
                 false);
         this.timeout = timeout;
         this.serverUrl = serverUrl;
+        this.endPointPath = endPointPath;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
+    }
+
+    /**
+     * @param restClient The client to use.
+     * @param serverUrl The URI of the rest server.
+     * @return The end point of the client on the given server.
+     */
+    private WebTarget buildEndPoint(Client restClient, URI serverUrl) {
+        WebTarget endPoint = restClient.target(serverUrl);
+        return endPointPath == null ? endPoint : endPoint.path(endPointPath);
     }
 
     public void setLogger(Logger logger){
@@ -157,11 +182,11 @@ public class RestClient {
      * If {@code null} then no proxy is set.
      */
     @SuppressWarnings("UnusedDeclaration")
-    public void setProxyBase(AbstractProxySettings abstractProxySettings) {
+    public synchronized void setProxyBase(AbstractProxySettings abstractProxySettings) {
         this.abstractProxySettings = abstractProxySettings;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -179,12 +204,12 @@ public class RestClient {
      *
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
-    public void setTimeout(int timeout) {
+    public synchronized void setTimeout(int timeout) {
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
         this.timeout = timeout;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -195,17 +220,35 @@ public class RestClient {
         return timeout;
     }
 
+    /**
+     * Sets the total time to wait for the server to process a long request
+     * (such as ending a session).
+     *
+     * @param longRequestTimeout The timeout in milliseconds. 0 equals infinity.
+     */
+    public void setLongRequestTimeout(int longRequestTimeout) {
+        ArgumentGuard.greaterThanOrEqualToZero(longRequestTimeout, "longRequestTimeout");
+        this.longRequestTimeout = longRequestTimeout;
+    }
+
+    /**
+     * @return The total time to wait for a long request (in milliseconds).
+     */
+    public int getLongRequestTimeout() {
+        return longRequestTimeout;
+    }
+
 
     /**
      * Sets the current server URL used by the rest client.
      * @param serverUrl The URI of the rest server.
      */
     @SuppressWarnings("UnusedDeclaration")
-    protected void setServerUrlBase(URI serverUrl) {
+    protected synchronized void setServerUrlBase(URI serverUrl) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         this.serverUrl = serverUrl;
 
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -216,36 +259,39 @@ public class RestClient {
         return serverUrl;
     }
 
-    protected Response sendLongRequest(HttpMethodCall method, String name)
-            throws EyesException {
+    /**
+     * Sends a request, and repeats it while the server is still processing
+     * it (responds with 202). The polling doesn't hold a thread between
+     * retries, and honors the "Retry-After" header if the server sends it.
+     *
+     * @param method The request to send.
+     * @param name The request name (for logging).
+     * @return A future of the final response.
+     */
+    protected CompletableFuture<Response> sendLongRequestAsync(final HttpMethodCall method, String name) {
+        LongRequestPoller poller = new LongRequestPoller(logger, longRequestTimeout);
+        return poller.poll(name, new LongRequestPoller.Request<Response>() {
+            public Response call() {
+                return method.call();
+            }
 
-        // Adding the long request headers
-        int maxDelay = 10000;
-        int delay = 2000;  // milliseconds
-        Response response;
-        while (true) {
-            response = method.call();
-            if (response.getStatus() != 202) {
-                return response;
+            public boolean isRunning(Response response) {
+                return response.getStatus() == 202;
             }
 
-            // Since we haven't read the entity, We must release the response
-            // or the connection stays open (meaning it'll get stuck after two
-            // requests).
-            response.close();
-
-            // Waiting a delay
-            logger.verbose(String.format(
-                    "%s: Still running... Retrying in %d ms", name, delay));
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                throw new EyesException("Long request interrupted!", e);
+            public String getRetryAfter(Response response) {
+                return response.getHeaderString("Retry-After");
             }
 
-            // increasing the delay
-            delay = Math.min(maxDelay, (int) Math.floor(delay * 1.5));
-        }
+            public void release(Response response) {
+                response.close();
+            }
+        });
+    }
+
+    protected Response sendLongRequest(HttpMethodCall method, String name)
+            throws EyesException {
+        return LongRequestPoller.join(sendLongRequestAsync(method, name));
     }
 
 
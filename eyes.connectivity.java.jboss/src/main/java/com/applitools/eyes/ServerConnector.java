@@ -6,44 +6,46 @@ package com.applitools.eyes;
 import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import org.apache.commons.codec.binary.Base64;
 
 import javax.ws.rs.client.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.ByteArrayOutputStream;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
- * Provides an API for communication with the Applitools agent
+ * Provides an API for communication with the Applitools agent. A single
+ * connector can be shared by many Eyes instances running concurrently.
  */
 public class ServerConnector extends RestClient
         implements IServerConnector {
 
     private static final int TIMEOUT = 1000 * 60 * 5; // 5 Minutes
     private static final String API_PATH = "/api/sessions/running";
-    private static final String DEFAULT_CHARSET_NAME = "UTF-8";
-    private static final int THREAD_SLEEP_MILLIS = 3;
-    private static final int NUM_OF_RETRIES = 100;
+    private static final int THREAD_SLEEP_MILLIS = 100;
+    private static final int NUM_OF_RETRIES = 3;
+    private static final int MAX_RETRY_DELAY = 1000; // milliseconds
 
-    private String apiKey = null;
+    private volatile String apiKey = null;
+    private volatile UploadSpool uploadSpool = null;
 
     /***
      * @param logger A logger instance.
      * @param serverUrl The URI of the Eyes server.
      */
     public ServerConnector(Logger logger, URI serverUrl) {
-        super(logger, serverUrl, TIMEOUT);
-
-        endPoint = endPoint.path(API_PATH);
+        super(logger, serverUrl, TIMEOUT, API_PATH);
     }
 
     /***
@@ -89,9 +91,6 @@ public class ServerConnector extends RestClient
     @SuppressWarnings("UnusedDeclaration")
     public void setProxy(AbstractProxySettings abstractProxySettings) {
         setProxyBase(abstractProxySettings);
-        // After the server is updated we must make sure the endpoint refers
-        // to the correct path.
-        endPoint = endPoint.path(API_PATH);
     }
 
     /**
@@ -111,9 +110,6 @@ public class ServerConnector extends RestClient
     @SuppressWarnings("UnusedDeclaration")
     public void setServerUrl(URI serverUrl) {
         setServerUrlBase(serverUrl);
-        // After the server is updated we must make sure the endpoint refers
-        // to the correct path.
-        endPoint = endPoint.path(API_PATH);
     }
 
     /**
@@ -124,6 +120,26 @@ public class ServerConnector extends RestClient
         return getServerUrlBase();
     }
 
+    /**
+     * Sets a spool to upload the match data and DOM snapshots through. The
+     * payloads are written to the spool directory, and uploaded from there
+     * with retries.
+     *
+     * @param uploadSpool The upload spool, or {@code null} to upload the
+     *                    payloads directly from memory.
+     */
+    public void setUploadSpool(UploadSpool uploadSpool) {
+        this.uploadSpool = uploadSpool;
+    }
+
+    /**
+     * @return The upload spool, or {@code null} if the payloads are uploaded
+     * directly from memory.
+     */
+    public UploadSpool getUploadSpool() {
+        return uploadSpool;
+    }
+
     /**
      * Starts a new running session in the agent. Based on the given parameters,
      * this running session will either be linked to an existing session, or to
@@ -151,12 +167,12 @@ public class ServerConnector extends RestClient
 
         try {
 
-            // since the web API requires a root property for this message
-            jsonMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, true);
-            postData = jsonMapper.writeValueAsString(sessionStartInfo);
-
-            // returning the root property addition back to false (default)
-            jsonMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, false);
+            // since the web API requires a root property for this message.
+            // The mapper itself isn't reconfigured, since it's shared by
+            // concurrent requests.
+            postData = jsonMapper.writer()
+                    .with(SerializationFeature.WRAP_ROOT_VALUE)
+                    .writeValueAsString(sessionStartInfo);
         } catch (IOException e) {
             throw new EyesException("Failed to convert " +
                     "sessionStartInfo into Json string!", e);
@@ -165,7 +181,7 @@ public class ServerConnector extends RestClient
         try {
             Invocation.Builder request = endPoint.queryParam("apiKey", getApiKey()).
                     request(MediaType.APPLICATION_JSON);
-            response = postWithRetry(request, Entity.json(postData), null);
+            response = postWithRetry(request, Entity.json(postData));
         } catch (RuntimeException e) {
             logger.log("Server request failed: " + e.getMessage());
             throw e;
@@ -198,13 +214,22 @@ public class ServerConnector extends RestClient
     public TestResults stopSession(final RunningSession runningSession,
                                    final boolean isAborted, final boolean save)
             throws EyesException {
+        return LongRequestPoller.join(stopSessionAsync(runningSession, isAborted, save));
+    }
+
+    /**
+     * Stops the running session, without waiting for the server to finish
+     * processing it.
+     *
+     * @param runningSession The running session to be stopped.
+     * @return A future of the TestResults object for the stopped running session
+     */
+    public CompletableFuture<TestResults> stopSessionAsync(final RunningSession runningSession,
+                                                           final boolean isAborted, final boolean save) {
 
         ArgumentGuard.notNull(runningSession, "runningSession");
 
         final String sessionId = runningSession.getId();
-        Response response;
-        List<Integer> validStatusCodes;
-        TestResults result;
 
         HttpMethodCall delete = new HttpMethodCall() {
             public Response call() {
@@ -226,15 +251,20 @@ public class ServerConnector extends RestClient
             }
         };
 
-        response = sendLongRequest(delete, "stopSession");
-
-        // Ok, let's create the running session from the response
-        validStatusCodes = new ArrayList<>();
-        validStatusCodes.add(Response.Status.OK.getStatusCode());
-
-        result = parseResponseWithJsonData(response, validStatusCodes,
-                TestResults.class);
-        return result;
+        return sendLongRequestAsync(delete, "stopSession").thenApply(
+                new Function<Response, TestResults>() {
+                    @Override
+                    public TestResults apply(Response response) {
+                        // Ok, let's create the test results from the response
+                        List<Integer> validStatusCodes = new ArrayList<>();
+                        validStatusCodes.add(Response.Status.OK.getStatusCode());
+
+                        TestResults result = parseResponseWithJsonData(response, validStatusCodes,
+                                TestResults.class);
+                        ConnectionPool.logStats(logger);
+                        return result;
+                    }
+                });
     }
 
     @Override
@@ -273,7 +303,6 @@ public class ServerConnector extends RestClient
         Response response;
         List<Integer> validStatusCodes;
         MatchResult result;
-        String jsonData;
 
         // since we rather not add an empty "tag" param
         WebTarget runningSessionsEndpoint =
@@ -282,55 +311,46 @@ public class ServerConnector extends RestClient
         // Serializing data into JSON (we'll treat it as binary later).
         // IMPORTANT This serializes everything EXCEPT for the screenshot (which
         // we'll add later).
+        final byte[] jsonBytes;
         try {
-            jsonData = jsonMapper.writeValueAsString(matchData);
+            jsonBytes = jsonMapper.writeValueAsBytes(matchData);
         } catch (IOException e) {
             throw new EyesException("Failed to serialize data for matchWindow!",
-                                    e);
-        }
-
-        // Convert the JSON to binary.
-        byte[] jsonBytes;
-        ByteArrayOutputStream jsonToBytesConverter = new ByteArrayOutputStream();
-        try {
-            jsonToBytesConverter.write(
-                    jsonData.getBytes(DEFAULT_CHARSET_NAME));
-            jsonToBytesConverter.flush();
-            jsonBytes = jsonToBytesConverter.toByteArray();
-        } catch (IOException e) {
-            throw new EyesException("Failed create binary data from JSON!", e);
+                    e);
         }
 
         // Getting the screenshot's bytes (notice this can be either
         // compressed/uncompressed form).
-        byte[] screenshot = Base64.decodeBase64(
-                matchData.getAppOutput().getScreenshot64());
-
-        // Ok, let's create the request data
-        ByteArrayOutputStream requestOutputStream = new ByteArrayOutputStream();
-        DataOutputStream requestDos = new DataOutputStream(requestOutputStream);
-        byte[] requestData;
-        try {
-            requestDos.writeInt(jsonBytes.length);
-            requestDos.flush();
-            requestOutputStream.write(jsonBytes);
-            requestOutputStream.write(screenshot);
-            requestOutputStream.flush();
-
-            // Ok, get the data bytes
-            requestData = requestOutputStream.toByteArray();
-
-            // Release the streams
-            requestDos.close();
-        } catch (IOException e) {
-            throw new EyesException("Failed send check window request!", e);
-        }
+        final byte[] screenshot = matchData.getAppOutput().getScreenshot();
+
+        // The request data (JSON length, JSON and screenshot) is written
+        // directly to the request's stream, instead of being copied into a
+        // single array first.
+        final UploadSpool.Payload payload = new UploadSpool.Payload() {
+            public void writeTo(OutputStream output) throws IOException {
+                DataOutputStream requestDos = new DataOutputStream(output);
+                requestDos.writeInt(jsonBytes.length);
+                requestDos.write(jsonBytes);
+                requestDos.write(screenshot);
+                requestDos.flush();
+            }
+        };
+        StreamingOutput requestData = new StreamingOutput() {
+            public void write(OutputStream output) throws IOException {
+                payload.writeTo(output);
+            }
+        };
 
         // Sending the request
         Invocation.Builder request = runningSessionsEndpoint.queryParam("apiKey", getApiKey()).
                 request(MediaType.APPLICATION_JSON);
-        response = postWithRetry(request, Entity.entity(requestData,
-                MediaType.APPLICATION_OCTET_STREAM), null);
+        UploadSpool spool = uploadSpool;
+        if (spool != null) {
+            response = postSpooled(spool, "matchWindow", request, payload);
+        } else {
+            response = postWithRetry(request, Entity.entity(requestData,
+                    MediaType.APPLICATION_OCTET_STREAM));
+        }
 
         // Ok, let's create the running session from the response
         validStatusCodes = new ArrayList<>(1);
@@ -346,9 +366,8 @@ public class ServerConnector extends RestClient
     @Override
     public void downloadString(final URL uri, final boolean isSecondRetry, final IDownloadListener listener) {
 
-        Client client = ClientBuilder.newBuilder().build();
-
-        WebTarget target = client.target(uri.toString());
+        // The download shares the pooled connections of the rest client.
+        WebTarget target = restClient.target(uri.toString());
 
         Invocation.Builder request = target.request(MediaType.WILDCARD);
 
@@ -376,52 +395,112 @@ public class ServerConnector extends RestClient
     }
 
     @Override
-    public String postDomSnapshot(String domJson) {
+    public void downloadString(URL uri, String eTag, String lastModified,
+                               final IConditionalDownloadListener listener) {
 
-        WebTarget target = restClient.target(serverUrl).path(("api/sessions/running/data")).queryParam("apiKey", getApiKey());
-
-        byte[] resultStream = GeneralUtils.getGzipByteArrayOutputStream(domJson);
-
-        Invocation.Builder request = target.request(MediaType.APPLICATION_JSON);
-
-        Response response = postWithRetry(request, Entity.entity(resultStream,
-                MediaType.APPLICATION_OCTET_STREAM), null);
+        Invocation.Builder request = restClient.target(uri.toString()).request(MediaType.WILDCARD);
+        if (eTag != null) {
+            request = request.header("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            request = request.header("If-Modified-Since", lastModified);
+        }
 
-        String entity = response.getHeaderString("Location");
+        request.async().get(new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                try {
+                    int status = response.getStatus();
+                    if (status == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                        listener.onDownloadComplete(DownloadResult.notModified());
+                    } else if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                        listener.onDownloadComplete(DownloadResult.downloaded(response.readEntity(String.class),
+                                response.getHeaderString("ETag"), response.getHeaderString("Last-Modified")));
+                    } else {
+                        logger.verbose("Got response status code - " + status);
+                        listener.onDownloadFailed();
+                    }
+                } catch (RuntimeException e) {
+                    GeneralUtils.logExceptionStackTrace(logger, e);
+                    listener.onDownloadFailed();
+                } finally {
+                    response.close();
+                }
+            }
 
-        return entity;
+            @Override
+            public void failed(Throwable throwable) {
+                logger.verbose("Async GET failed: " + throwable.getMessage());
+                listener.onDownloadFailed();
+            }
+        });
     }
 
-    private Response postWithRetry(Invocation.Builder request, Entity entity, AtomicInteger retiresCounter) {
+    @Override
+    public String postDomSnapshot(String domJson) {
+        return postDomSnapshot(GeneralUtils.getUtf8Payload(domJson));
+    }
 
-        if (retiresCounter == null) {
+    @Override
+    public String postDomSnapshot(final UploadSpool.Payload domJson) {
 
-            retiresCounter = new AtomicInteger(0);
+        WebTarget target = restClient.target(serverUrl).path(("api/sessions/running/data")).queryParam("apiKey", getApiKey());
+        Invocation.Builder request = target.request(MediaType.APPLICATION_JSON);
 
+        Response response;
+        UploadSpool spool = uploadSpool;
+        if (spool != null) {
+            response = postSpooled(spool, "postDomSnapshot", request, new UploadSpool.Payload() {
+                public void writeTo(OutputStream output) throws IOException {
+                    GeneralUtils.writeGzipped(domJson, output);
+                }
+            });
+        } else {
+            // The DOM is gzipped as the entity is written, without first
+            // serializing it into a string. The client still buffers the
+            // gzipped entity.
+            StreamingOutput requestData = new StreamingOutput() {
+                public void write(OutputStream output) throws IOException {
+                    GeneralUtils.writeGzipped(domJson, output);
+                }
+            };
+            response = postWithRetry(request, Entity.entity(requestData,
+                    MediaType.APPLICATION_OCTET_STREAM));
         }
-        try {
-            return request.
-                    post(entity);
-        } catch (Exception e) {
+        String entity = response.getHeaderString("Location");
+        return entity;
+    }
 
-            GeneralUtils.logExceptionStackTrace(e);
+    /**
+     * Posts the entity, retrying with exponential backoff if sending failed.
+     */
+    private Response postWithRetry(Invocation.Builder request, Entity entity) {
+        int delay = THREAD_SLEEP_MILLIS;
+        for (int attempt = 1; ; ++attempt) {
             try {
-
-                Thread.sleep(THREAD_SLEEP_MILLIS);
-
-            } catch (InterruptedException e1) {
-                GeneralUtils.logExceptionStackTrace(e);
-            }
-
-            if(retiresCounter.incrementAndGet() < NUM_OF_RETRIES){
-
-                return postWithRetry(request, entity, retiresCounter);
-            }
-            else{
-                throw e;
+                return request.post(entity);
+            } catch (RuntimeException e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+                if (attempt >= NUM_OF_RETRIES) {
+                    throw e;
+                }
+                logger.verbose("Request failed (attempt %d), retrying in %d ms", attempt, delay);
+                GeneralUtils.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
             }
         }
+    }
 
+    /**
+     * Writes the payload to the upload spool, and posts it from there.
+     */
+    private Response postSpooled(UploadSpool spool, String name, final Invocation.Builder request,
+                                 UploadSpool.Payload payload) {
+        return LongRequestPoller.join(spool.submit(name, payload, new UploadSpool.Upload<Response>() {
+            public Response send(File file) {
+                return request.post(Entity.entity(file, MediaType.APPLICATION_OCTET_STREAM));
+            }
+        }));
     }
 
 }
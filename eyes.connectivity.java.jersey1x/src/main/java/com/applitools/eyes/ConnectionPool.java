@@ -0,0 +1,140 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The HTTP connection pool shared by all the rest clients in the process, so
+ * connections to the Eyes server are reused instead of being opened (and
+ * TLS handshaked) by every client.
+ */
+public final class ConnectionPool {
+
+    private static ConnectionPoolSettings settings = new ConnectionPoolSettings();
+    private static ThreadSafeClientConnManager connectionManager;
+
+    private static final AtomicLong requestsCount = new AtomicLong();
+    private static final AtomicLong openedCount = new AtomicLong();
+
+    /**
+     * The pooling connection manager, which is never shut down by the
+     * clients using it.
+     */
+    private static class SharedConnectionManager extends ThreadSafeClientConnManager {
+        SharedConnectionManager() {
+            super(SchemeRegistryFactory.createDefault());
+        }
+
+        @Override
+        protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schreg) {
+            return new DefaultClientConnectionOperator(schreg) {
+                @Override
+                public OperatedClientConnection createConnection() {
+                    openedCount.incrementAndGet();
+                    return super.createConnection();
+                }
+            };
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            requestsCount.incrementAndGet();
+            return super.requestConnection(route, state);
+        }
+
+        @Override
+        public void shutdown() {
+            // The connections are shared with other clients.
+        }
+    }
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Sets the settings of the connection pool. The settings apply to the
+     * connections which are already open as well.
+     * @param settings The connection pool settings.
+     */
+    public static synchronized void setSettings(ConnectionPoolSettings settings) {
+        ArgumentGuard.notNull(settings, "settings");
+        ConnectionPool.settings = new ConnectionPoolSettings(settings);
+        if (connectionManager != null) {
+            connectionManager.setMaxTotal(settings.getMaxTotal());
+            connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+        }
+    }
+
+    /**
+     * @return A copy of the current connection pool settings.
+     */
+    public static synchronized ConnectionPoolSettings getSettings() {
+        return new ConnectionPoolSettings(settings);
+    }
+
+    /**
+     * @return The shared connection manager, which is created on first use.
+     */
+    static synchronized ClientConnectionManager getConnectionManager() {
+        if (connectionManager == null) {
+            connectionManager = new SharedConnectionManager();
+            connectionManager.setMaxTotal(settings.getMaxTotal());
+            connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+
+            Thread evictor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    evictConnections();
+                }
+            }, "eyes-connection-evictor");
+            evictor.setDaemon(true);
+            evictor.start();
+        }
+        return connectionManager;
+    }
+
+    private static void evictConnections() {
+        while (true) {
+            ConnectionPoolSettings currentSettings = getSettings();
+            try {
+                Thread.sleep(currentSettings.getEvictionInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(currentSettings.getKeepAlive(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return A description of the connection pool state, including the
+     * number of requests and of connections opened for them.
+     */
+    public static synchronized String getStats() {
+        if (connectionManager == null) {
+            return "not started";
+        }
+        return String.format("requests: %d; opened: %d; open: %d; max: %d",
+                requestsCount.get(), openedCount.get(), connectionManager.getConnectionsInPool(),
+                connectionManager.getMaxTotal());
+    }
+
+    /**
+     * Logs the connection pool state.
+     * @param logger The logger to use.
+     */
+    public static void logStats(Logger logger) {
+        logger.verbose("Connection pool - " + getStats());
+    }
+}
@@ -1,6 +1,7 @@
 package com.applitools.eyes;
 
 import com.applitools.eyes.events.ISessionEventHandler;
+import com.applitools.eyes.events.SessionEventDispatcher;
 import com.applitools.eyes.events.ValidationInfo;
 import com.applitools.eyes.events.ValidationResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -11,20 +12,44 @@ import com.sun.jersey.api.client.WebResource;
 import javax.ws.rs.core.MediaType;
 import java.net.URI;
 
+/**
+ * Sends the session events to a remote event server, in the background. The
+ * server has no batch endpoint and each event is a different request, so
+ * events are sent one by one (see {@link SessionEventDispatcher}).
+ */
 public class RemoteSessionEventHandler extends RestClient implements ISessionEventHandler {
 
     private String autSessionId;
 
     private static final String SERVER_SUFFIX = "/applitools/sessions";
     private final String accessKey;
-    private WebResource defaultEndPoint;
-    private boolean throwExceptions = true;
+    private volatile WebResource defaultEndPoint;
+    private volatile boolean throwExceptions = true;
+    private final SessionEventDispatcher dispatcher;
+    private volatile RuntimeException failure;
 
+    /**
+     * @param logger          A logger instance.
+     * @param serverUrl       The URL of the event server.
+     * @param accessKey       The access key of the event server.
+     * @param timeout         The timeout of each request (ms).
+     * @param queueCapacity   The maximal number of events waiting to be sent.
+     * @param queueFullPolicy What to do with events sent while there are
+     *                        already {@code queueCapacity} events waiting.
+     */
     @SuppressWarnings("WeakerAccess")
-    public RemoteSessionEventHandler(Logger logger, URI serverUrl, String accessKey, int timeout) {
+    public RemoteSessionEventHandler(Logger logger, URI serverUrl, String accessKey, int timeout,
+                                     int queueCapacity, SessionEventDispatcher.QueueFullPolicy queueFullPolicy) {
         super(logger, serverUrl, timeout);
         this.accessKey = accessKey;
         this.defaultEndPoint = endPoint.queryParam("accessKey", accessKey).path(SERVER_SUFFIX);
+        this.dispatcher = new SessionEventDispatcher(logger, "eyes-session-events", queueCapacity, queueFullPolicy);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public RemoteSessionEventHandler(Logger logger, URI serverUrl, String accessKey, int timeout) {
+        this(logger, serverUrl, accessKey, timeout,
+                SessionEventDispatcher.DEFAULT_CAPACITY, SessionEventDispatcher.QueueFullPolicy.BLOCK);
     }
 
     public RemoteSessionEventHandler(Logger logger, URI serverUrl, String accessKey) {
@@ -44,37 +69,42 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
         this.defaultEndPoint = endPoint.queryParam("accessKey", accessKey).path(SERVER_SUFFIX);
     }
 
-    private void sendMessage(HttpMethodCall method) {
-        StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-        String methodName = "";
-        // getStackTrace()<-sendMessage()<-"actual caller"
-        if (stackTraceElements.length >= 3) {
-            methodName = stackTraceElements[2].getMethodName();
-        }
-
-        ClientResponse response = null;
-        try {
-            response = method.call();
-            if (response.getStatus() != 200) {
-                logger.verbose("'" + methodName + "' notification handler returned an error: " + response.getStatusInfo());
-            } else {
-                logger.verbose("'" + methodName + "' succeeded: " + response);
-            }
-        } catch (RuntimeException e) {
-            logger.log("'" + methodName + "' Server request failed: " + e.getMessage());
-            if (this.throwExceptions) {
-                throw e;
-            }
-        } finally {
-            if (response != null) {
-                response.close();
+    /**
+     * Queues a message to the event server. The messages are sent in the
+     * background, in the order they were queued.
+     * @param methodName The name of the event (for logging).
+     * @param method     The request sending the message.
+     */
+    private void sendMessage(final String methodName, final HttpMethodCall method) {
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                ClientResponse response = null;
+                try {
+                    response = method.call();
+                    if (response.getStatus() != 200) {
+                        logger.verbose("'" + methodName + "' notification handler returned an error: " + response.getStatusInfo());
+                    } else {
+                        logger.verbose("'" + methodName + "' succeeded: " + response);
+                    }
+                } catch (RuntimeException e) {
+                    logger.log("'" + methodName + "' Server request failed: " + e.getMessage());
+                    if (throwExceptions && failure == null) {
+                        failure = e;
+                    }
+                } finally {
+                    if (response != null) {
+                        response.close();
+                    }
+                }
             }
-        }
+        });
     }
 
     @Override
     public void initStarted() {
-        sendMessage(new HttpMethodCall() {
+        final String autSessionId = this.autSessionId;
+        sendMessage("initStarted", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionId)
                         .accept(MediaType.APPLICATION_JSON);
@@ -86,7 +116,8 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
 
     @Override
     public void initEnded() {
-        sendMessage(new HttpMethodCall() {
+        final String autSessionId = this.autSessionId;
+        sendMessage("initEnded", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionId)
                         .accept(MediaType.APPLICATION_JSON);
@@ -99,7 +130,8 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
     @Override
     public void setSizeWillStart(RectangleSize sizeToSet) {
         final RectangleSize size = sizeToSet;
-        sendMessage(new HttpMethodCall() {
+        final String autSessionId = this.autSessionId;
+        sendMessage("setSizeWillStart", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionId)
                         .type(MediaType.APPLICATION_JSON);
@@ -111,7 +143,8 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
 
     @Override
     public void setSizeEnded() {
-        sendMessage(new HttpMethodCall() {
+        final String autSessionId = this.autSessionId;
+        sendMessage("setSizeEnded", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionId)
                         .accept(MediaType.APPLICATION_JSON);
@@ -124,7 +157,7 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
     @Override
     public void testStarted(String autSessionId) {
         final String autSessionIdFinal = autSessionId;
-        sendMessage(new HttpMethodCall() {
+        sendMessage("testStarted", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint
                         .accept(MediaType.APPLICATION_JSON);
@@ -138,7 +171,7 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
     @Override
     public void testEnded(String autSessionId, final TestResults testResults) {
         final String autSessionIdFinal = autSessionId;
-        sendMessage(new HttpMethodCall() {
+        sendMessage("testEnded", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionIdFinal)
                         .accept(MediaType.APPLICATION_JSON);
@@ -160,7 +193,7 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
     @Override
     public void validationWillStart(String autSessionId, final ValidationInfo validationInfo) {
         final String autSessionIdFinal = autSessionId;
-        sendMessage(new HttpMethodCall() {
+        sendMessage("validationWillStart", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint.path(autSessionIdFinal).path("validations")
                         .accept(MediaType.APPLICATION_JSON);
@@ -173,7 +206,7 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
     @Override
     public void validationEnded(String autSessionId, final String validationId, final ValidationResult validationResult) {
         final String autSessionIdFinal = autSessionId;
-        sendMessage(new HttpMethodCall() {
+        sendMessage("validationEnded", new HttpMethodCall() {
             public ClientResponse call() {
                 WebResource.Builder invocationBuilder = defaultEndPoint
                         .path(autSessionIdFinal).path("validations").path(validationId)
@@ -184,10 +217,62 @@ public class RemoteSessionEventHandler extends RestClient implements ISessionEve
         });
     }
 
+    /**
+     * Waits until all the events so far are sent.
+     * @param timeout The maximal time to wait (ms).
+     * @return Whether all the events were sent within the timeout.
+     * @throws RuntimeException The first failure of sending an event, if
+     *                          {@link #getThrowExceptions()} is true.
+     */
+    public boolean flush(int timeout) {
+        boolean isFlushed = dispatcher.flush(timeout);
+        throwFailure();
+        return isFlushed;
+    }
+
+    /**
+     * Waits up to {@link SessionEventDispatcher#DEFAULT_CLOSE_TIMEOUT} until
+     * all the events so far are sent. Called when a test ends.
+     * @throws RuntimeException The first failure of sending an event, if
+     *                          {@link #getThrowExceptions()} is true.
+     */
+    @Override
+    public void flush() {
+        flush(SessionEventDispatcher.DEFAULT_CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Sends all the waiting events and stops sending events.
+     * @throws RuntimeException The first failure of sending an event, if
+     *                          {@link #getThrowExceptions()} is true.
+     */
+    public void close() {
+        dispatcher.close(SessionEventDispatcher.DEFAULT_CLOSE_TIMEOUT);
+        throwFailure();
+    }
+
+    private void throwFailure() {
+        RuntimeException e = failure;
+        if (e != null) {
+            failure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether failures of sending events are thrown.
+     */
     public boolean getThrowExceptions() {
         return throwExceptions;
     }
 
+    /**
+     * Sets whether failures of sending events are thrown. Events are sent in
+     * the background, so a failure isn't thrown from the event which failed.
+     * The first failure is thrown when the test ends (from {@link #flush()},
+     * which is called after {@code testEnded}), or from {@link #close()}.
+     * @param throwExceptions Whether to throw failures (default true).
+     */
     public void setThrowExceptions(boolean throwExceptions) {
         this.throwExceptions = throwExceptions;
     }
@@ -14,9 +14,12 @@ import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Provides common rest client functionality.
+ * Provides common rest client functionality. The client is thread-safe: its
+ * configuration is replaced as a whole when changed, so concurrent requests
+ * always see a consistent client and end point.
  */
 public class RestClient {
 
@@ -28,13 +31,15 @@ public class RestClient {
         ClientResponse call();
     }
 
-    private AbstractProxySettings abstractProxySettings;
-    private int timeout; // seconds
+    private volatile AbstractProxySettings abstractProxySettings;
+    private volatile int timeout; // seconds
+    private volatile int longRequestTimeout = LongRequestPoller.DEFAULT_TIMEOUT;
+    private final String endPointPath;
 
-    protected Logger logger;
-    protected Client restClient;
-    protected URI serverUrl;
-    protected WebResource endPoint;
+    protected volatile Logger logger;
+    protected volatile Client restClient;
+    protected volatile URI serverUrl;
+    protected volatile WebResource endPoint;
 
     // Used for JSON serialization/de-serialization.
     protected ObjectMapper jsonMapper;
@@ -49,7 +54,9 @@ public class RestClient {
         ApacheHttpClient4Config cc = new DefaultApacheHttpClient4Config() ;
         cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECT_TIMEOUT, timeout);
         cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_READ_TIMEOUT, timeout);
-
+        // Connections are pooled across all the clients in the process.
+        cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER,
+                ConnectionPool.getConnectionManager());
 
         if (abstractProxySettings != null) {
             URI uri = URI.create(abstractProxySettings.getUri());
@@ -71,13 +78,11 @@ public class RestClient {
             cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_PROXY_URI, uri);
             cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_PROXY_USERNAME, abstractProxySettings.getUsername());
             cc.getProperties().put(ApacheHttpClient4Config.PROPERTY_PROXY_PASSWORD, abstractProxySettings.getPassword());
-
-            ApacheHttpClient4 client = ApacheHttpClient4.create(cc);
-            return client;
-        } else {
-            // We ignore the proxy settings
-            return Client.create(cc);
         }
+
+        // The Apache client is used with or without a proxy, since the
+        // default (URLConnection) client can't share the connection pool.
+        return ApacheHttpClient4.create(cc);
     }
 
     /***
@@ -86,6 +91,17 @@ public class RestClient {
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
     public RestClient(Logger logger, URI serverUrl, int timeout) {
+        this(logger, serverUrl, timeout, null);
+    }
+
+    /***
+     * @param logger    Logger instance.
+     * @param serverUrl The URI of the rest server.
+     * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param endPointPath (optional) The path of the end point, relative to
+     *                     the server URI.
+     */
+    protected RestClient(Logger logger, URI serverUrl, int timeout, String endPointPath) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
 
@@ -95,9 +111,20 @@ public class RestClient {
                 false);
         this.timeout = timeout;
         this.serverUrl = serverUrl;
+        this.endPointPath = endPointPath;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.resource(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
+    }
+
+    /**
+     * @param restClient The client to use.
+     * @param serverUrl The URI of the rest server.
+     * @return The end point of the client on the given server.
+     */
+    private WebResource buildEndPoint(Client restClient, URI serverUrl) {
+        WebResource endPoint = restClient.resource(serverUrl);
+        return endPointPath == null ? endPoint : endPoint.path(endPointPath);
     }
 
     public void setLogger(Logger logger) {
@@ -128,11 +155,11 @@ public class RestClient {
      *                      If {@code null} then no proxy is set.
      */
     @SuppressWarnings("UnusedDeclaration")
-    public void setProxyBase(AbstractProxySettings abstractProxySettings) {
-
+    public synchronized void setProxyBase(AbstractProxySettings abstractProxySettings) {
         this.abstractProxySettings = abstractProxySettings;
+
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.resource(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -149,12 +176,12 @@ public class RestClient {
      *
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
-    public void setTimeout(int timeout) {
+    public synchronized void setTimeout(int timeout) {
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
         this.timeout = timeout;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.resource(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -164,6 +191,24 @@ public class RestClient {
         return timeout;
     }
 
+    /**
+     * Sets the total time to wait for the server to process a long request
+     * (such as ending a session).
+     *
+     * @param longRequestTimeout The timeout in milliseconds. 0 equals infinity.
+     */
+    public void setLongRequestTimeout(int longRequestTimeout) {
+        ArgumentGuard.greaterThanOrEqualToZero(longRequestTimeout, "longRequestTimeout");
+        this.longRequestTimeout = longRequestTimeout;
+    }
+
+    /**
+     * @return The total time to wait for a long request (in milliseconds).
+     */
+    public int getLongRequestTimeout() {
+        return longRequestTimeout;
+    }
+
 
     /**
      * Sets the current server URL used by the rest client.
@@ -171,11 +216,11 @@ public class RestClient {
      * @param serverUrl The URI of the rest server.
      */
     @SuppressWarnings("UnusedDeclaration")
-    protected void setServerUrlBase(URI serverUrl) {
+    protected synchronized void setServerUrlBase(URI serverUrl) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         this.serverUrl = serverUrl;
 
-        endPoint = restClient.resource(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -185,36 +230,39 @@ public class RestClient {
         return serverUrl;
     }
 
-    protected ClientResponse sendLongRequest(HttpMethodCall method, String name)
-            throws EyesException {
+    /**
+     * Sends a request, and repeats it while the server is still processing
+     * it (responds with 202). The polling doesn't hold a thread between
+     * retries, and honors the "Retry-After" header if the server sends it.
+     *
+     * @param method The request to send.
+     * @param name The request name (for logging).
+     * @return A future of the final response.
+     */
+    protected CompletableFuture<ClientResponse> sendLongRequestAsync(final HttpMethodCall method, String name) {
+        LongRequestPoller poller = new LongRequestPoller(logger, longRequestTimeout);
+        return poller.poll(name, new LongRequestPoller.Request<ClientResponse>() {
+            public ClientResponse call() {
+                return method.call();
+            }
 
-        // Adding the long request headers
-        int maxDelay = 10000;
-        int delay = 2000;  // milliseconds
-        ClientResponse response;
-        while (true) {
-            response = method.call();
-            if (response.getStatus() != 202) {
-                return response;
+            public boolean isRunning(ClientResponse response) {
+                return response.getStatus() == 202;
             }
 
-            // Since we haven't read the entity, We must release the response
-            // or the connection stays open (meaning it'll get stuck after two
-            // requests).
-            response.close();
-
-            // Waiting a delay
-            logger.verbose(String.format(
-                    "%s: Still running... Retrying in %d ms", name, delay));
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                throw new EyesException("Long request interrupted!", e);
+            public String getRetryAfter(ClientResponse response) {
+                return response.getHeaders().getFirst("Retry-After");
             }
 
-            // increasing the delay
-            delay = Math.min(maxDelay, (int) Math.floor(delay * 1.5));
-        }
+            public void release(ClientResponse response) {
+                response.close();
+            }
+        });
+    }
+
+    protected ClientResponse sendLongRequest(HttpMethodCall method, String name)
+            throws EyesException {
+        return LongRequestPoller.join(sendLongRequestAsync(method, name));
     }
 
 
@@ -7,7 +7,6 @@ import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sun.jersey.api.client.AsyncWebResource;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.async.TypeListener;
@@ -15,7 +14,7 @@ import org.apache.commons.io.IOUtils;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
-import javax.xml.bind.DatatypeConverter;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
@@ -23,27 +22,29 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
- * Provides an API for communication with the Applitools agent
+ * Provides an API for communication with the Applitools agent. A single
+ * connector can be shared by many Eyes instances running concurrently.
  */
 public class ServerConnector extends RestClient
         implements IServerConnector {
 
     private static final int TIMEOUT = 1000 * 60 * 5; // 5 Minutes
     private static final String API_PATH = "/api/sessions/running";
-    private static final String DEFAULT_CHARSET_NAME = "UTF-8";
 
-    private String apiKey = null;
+    private volatile String apiKey = null;
+    private volatile UploadSpool uploadSpool = null;
 
     /***
      * @param logger A logger instance.
      * @param serverUrl The URI of the Eyes server.
      */
     public ServerConnector(Logger logger, URI serverUrl) {
-        super(logger, serverUrl, TIMEOUT);
-        endPoint = endPoint.path(API_PATH);
+        super(logger, serverUrl, TIMEOUT, API_PATH);
     }
 
     /***
@@ -91,9 +92,6 @@ public class ServerConnector extends RestClient
     @SuppressWarnings("UnusedDeclaration")
     public void setProxy(AbstractProxySettings abstractProxySettings) {
         setProxyBase(abstractProxySettings);
-        // After the server is updated we must make sure the endpoint refers
-        // to the correct path.
-        endPoint = endPoint.path(API_PATH);
     }
 
     /**
@@ -113,9 +111,6 @@ public class ServerConnector extends RestClient
     @SuppressWarnings("UnusedDeclaration")
     public void setServerUrl(URI serverUrl) {
         setServerUrlBase(serverUrl);
-        // After the server is updated we must make sure the endpoint refers
-        // to the correct path.
-        endPoint = endPoint.path(API_PATH);
     }
 
     /**
@@ -126,6 +121,26 @@ public class ServerConnector extends RestClient
         return getServerUrlBase();
     }
 
+    /**
+     * Sets a spool to upload the match data and DOM snapshots through. The
+     * payloads are written to the spool directory, and uploaded from there
+     * with retries.
+     *
+     * @param uploadSpool The upload spool, or {@code null} to upload the
+     *                    payloads directly from memory.
+     */
+    public void setUploadSpool(UploadSpool uploadSpool) {
+        this.uploadSpool = uploadSpool;
+    }
+
+    /**
+     * @return The upload spool, or {@code null} if the payloads are uploaded
+     * directly from memory.
+     */
+    public UploadSpool getUploadSpool() {
+        return uploadSpool;
+    }
+
     /**
      * Starts a new running session in the agent. Based on the given parameters,
      * this running session will either be linked to an existing session, or to
@@ -153,12 +168,12 @@ public class ServerConnector extends RestClient
 
         try {
 
-            // since the web API requires a root property for this message
-            jsonMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, true);
-            postData = jsonMapper.writeValueAsString(sessionStartInfo);
-
-            // returning the root property addition back to false (default)
-            jsonMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, false);
+            // since the web API requires a root property for this message.
+            // The mapper itself isn't reconfigured, since it's shared by
+            // concurrent requests.
+            postData = jsonMapper.writer()
+                    .with(SerializationFeature.WRAP_ROOT_VALUE)
+                    .writeValueAsString(sessionStartInfo);
         } catch (IOException e) {
             throw new EyesException("Failed to convert " +
                     "sessionStartInfo into Json string!", e);
@@ -201,13 +216,22 @@ public class ServerConnector extends RestClient
     public TestResults stopSession(final RunningSession runningSession,
                                    final boolean isAborted, final boolean save)
             throws EyesException {
+        return LongRequestPoller.join(stopSessionAsync(runningSession, isAborted, save));
+    }
+
+    /**
+     * Stops the running session, without waiting for the server to finish
+     * processing it.
+     *
+     * @param runningSession The running session to be stopped.
+     * @return A future of the TestResults object for the stopped running session
+     */
+    public CompletableFuture<TestResults> stopSessionAsync(final RunningSession runningSession,
+                                                           final boolean isAborted, final boolean save) {
 
         ArgumentGuard.notNull(runningSession, "runningSession");
 
         final String sessionId = runningSession.getId();
-        ClientResponse response;
-        List<Integer> validStatusCodes;
-        TestResults result;
 
         HttpMethodCall delete = new HttpMethodCall() {
             public ClientResponse call() {
@@ -229,15 +253,20 @@ public class ServerConnector extends RestClient
             }
         };
 
-        response = sendLongRequest(delete, "stopSession");
-
-        // Ok, let's create the running session from the response
-        validStatusCodes = new ArrayList<>();
-        validStatusCodes.add(ClientResponse.Status.OK.getStatusCode());
-
-        result = parseResponseWithJsonData(response, validStatusCodes,
-                TestResults.class);
-        return result;
+        return sendLongRequestAsync(delete, "stopSession").thenApply(
+                new Function<ClientResponse, TestResults>() {
+                    @Override
+                    public TestResults apply(ClientResponse response) {
+                        // Ok, let's create the test results from the response
+                        List<Integer> validStatusCodes = new ArrayList<>();
+                        validStatusCodes.add(ClientResponse.Status.OK.getStatusCode());
+
+                        TestResults result = parseResponseWithJsonData(response, validStatusCodes,
+                                TestResults.class);
+                        ConnectionPool.logStats(logger);
+                        return result;
+                    }
+                });
     }
 
     @Override
@@ -277,7 +306,6 @@ public class ServerConnector extends RestClient
         ClientResponse response;
         List<Integer> validStatusCodes;
         MatchResult result;
-        String jsonData;
 
         // since we rather not add an empty "tag" param
         WebResource runningSessionsEndpoint =
@@ -286,55 +314,46 @@ public class ServerConnector extends RestClient
         // Serializing data into JSON (we'll treat it as binary later).
         // IMPORTANT This serializes everything EXCEPT for the screenshot (which
         // we'll add later).
+        final byte[] jsonBytes;
         try {
-            jsonData = jsonMapper.writeValueAsString(matchData);
+            jsonBytes = jsonMapper.writeValueAsBytes(matchData);
         } catch (IOException e) {
             throw new EyesException("Failed to serialize data for matchWindow!",
                     e);
         }
 
-        // Convert the JSON to binary.
-        byte[] jsonBytes;
-        ByteArrayOutputStream jsonToBytesConverter = new ByteArrayOutputStream();
-        try {
-            jsonToBytesConverter.write(
-                    jsonData.getBytes(DEFAULT_CHARSET_NAME));
-            jsonToBytesConverter.flush();
-            jsonBytes = jsonToBytesConverter.toByteArray();
-        } catch (IOException e) {
-            throw new EyesException("Failed create binary data from JSON!", e);
-        }
-
         // Getting the screenshot's bytes (notice this can be either
         // compressed/uncompressed form).
-        byte[] screenshot = DatatypeConverter.parseBase64Binary(
-                matchData.getAppOutput().getScreenshot64());
-
-        // Ok, let's create the request data
-        ByteArrayOutputStream requestOutputStream = new ByteArrayOutputStream();
-        DataOutputStream requestDos = new DataOutputStream(requestOutputStream);
-        byte[] requestData;
-        try {
-            requestDos.writeInt(jsonBytes.length);
-            requestDos.flush();
-            requestOutputStream.write(jsonBytes);
-            requestOutputStream.write(screenshot);
-            requestOutputStream.flush();
-
-            // Ok, get the data bytes
-            requestData = requestOutputStream.toByteArray();
-
-            // Release the streams
-            requestDos.close();
-        } catch (IOException e) {
-            throw new EyesException("Failed send check window request!", e);
-        }
+        final byte[] screenshot = matchData.getAppOutput().getScreenshot();
+
+        // The request data (JSON length, JSON and screenshot) is written
+        // directly to the request's stream, instead of being copied into a
+        // single array first.
+        final UploadSpool.Payload payload = new UploadSpool.Payload() {
+            public void writeTo(OutputStream output) throws IOException {
+                DataOutputStream requestDos = new DataOutputStream(output);
+                requestDos.writeInt(jsonBytes.length);
+                requestDos.write(jsonBytes);
+                requestDos.write(screenshot);
+                requestDos.flush();
+            }
+        };
+        StreamingOutput requestData = new StreamingOutput() {
+            public void write(OutputStream output) throws IOException {
+                payload.writeTo(output);
+            }
+        };
 
         // Sending the request
-        response = runningSessionsEndpoint.queryParam("apiKey", getApiKey()).
-                accept(MediaType.APPLICATION_JSON).
-                entity(requestData, MediaType.APPLICATION_OCTET_STREAM_TYPE).
-                post(ClientResponse.class);
+        WebResource.Builder request = runningSessionsEndpoint.queryParam("apiKey", getApiKey()).
+                accept(MediaType.APPLICATION_JSON);
+        UploadSpool spool = uploadSpool;
+        if (spool != null) {
+            response = postSpooled(spool, "matchWindow", request, payload);
+        } else {
+            response = request.entity(requestData, MediaType.APPLICATION_OCTET_STREAM_TYPE).
+                    post(ClientResponse.class);
+        }
 
         // Ok, let's create the running session from the response
         validStatusCodes = new ArrayList<>(1);
@@ -350,7 +369,8 @@ public class ServerConnector extends RestClient
     @Override
     public void downloadString(URL uri, boolean isSecondRetry, final IDownloadListener listener) {
 
-        AsyncWebResource target = Client.create().asyncResource(uri.toString());
+        // The download shares the pooled connections of the rest client.
+        AsyncWebResource target = restClient.asyncResource(uri.toString());
 
         AsyncWebResource.Builder request = target.accept(MediaType.WILDCARD);
 
@@ -390,25 +410,99 @@ public class ServerConnector extends RestClient
     }
 
 
-        @Override
-        public String postDomSnapshot (String domJson){
+    @Override
+    public void downloadString(URL uri, String eTag, String lastModified,
+                               final IConditionalDownloadListener listener) {
+
+        AsyncWebResource.Builder request = restClient.asyncResource(uri.toString()).accept(MediaType.WILDCARD);
+        if (eTag != null) {
+            request = request.header("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            request = request.header("If-Modified-Since", lastModified);
+        }
+
+        request.get(new TypeListener<ClientResponse>(ClientResponse.class) {
+
+            public void onComplete(Future<ClientResponse> f) {
+                ClientResponse clientResponse = null;
+                try {
+                    clientResponse = f.get();
+                    int status = clientResponse.getStatus();
+                    if (status == ClientResponse.Status.NOT_MODIFIED.getStatusCode()) {
+                        listener.onDownloadComplete(DownloadResult.notModified());
+                    } else if (status >= 200 && status < 300) {
+                        MultivaluedMap<String, String> headers = clientResponse.getHeaders();
+                        listener.onDownloadComplete(DownloadResult.downloaded(clientResponse.getEntity(String.class),
+                                headers.getFirst("ETag"), headers.getFirst("Last-Modified")));
+                    } else {
+                        logger.verbose("Got response status code - " + status);
+                        listener.onDownloadFailed();
+                    }
+                } catch (Exception e) {
+                    GeneralUtils.logExceptionStackTrace(logger, e);
+                    listener.onDownloadFailed();
+                } finally {
+                    if (clientResponse != null) {
+                        clientResponse.close();
+                    }
+                }
+            }
+        });
+    }
 
-            WebResource target = restClient.resource(serverUrl).path(("api/sessions/running/data")).queryParam("apiKey", getApiKey());
+    @Override
+    public String postDomSnapshot(String domJson) {
+        return postDomSnapshot(GeneralUtils.getUtf8Payload(domJson));
+    }
 
-            byte[] resultStream = GeneralUtils.getGzipByteArrayOutputStream(domJson);
+    @Override
+    public String postDomSnapshot(final UploadSpool.Payload domJson) {
 
-            WebResource.Builder request = target.accept(MediaType.APPLICATION_JSON).entity(resultStream, MediaType.APPLICATION_OCTET_STREAM_TYPE);
+        WebResource target = restClient.resource(serverUrl).path(("api/sessions/running/data")).queryParam("apiKey", getApiKey());
 
-            ClientResponse response = request.post(ClientResponse.class);
+        WebResource.Builder request = target.accept(MediaType.APPLICATION_JSON);
 
-            MultivaluedMap<String, String> headers = response.getHeaders();
+        ClientResponse response;
+        UploadSpool spool = uploadSpool;
+        if (spool != null) {
+            response = postSpooled(spool, "postDomSnapshot", request, new UploadSpool.Payload() {
+                public void writeTo(OutputStream output) throws IOException {
+                    GeneralUtils.writeGzipped(domJson, output);
+                }
+            });
+        } else {
+            // The DOM is gzipped as the entity is written, without first
+            // serializing it into a string. The client still buffers the
+            // gzipped entity.
+            StreamingOutput requestData = new StreamingOutput() {
+                public void write(OutputStream output) throws IOException {
+                    GeneralUtils.writeGzipped(domJson, output);
+                }
+            };
+            response = request.entity(requestData, MediaType.APPLICATION_OCTET_STREAM_TYPE).post(ClientResponse.class);
+        }
 
-            List<String> location = headers.get("Location");
-            String entity = null;
-            if (!location.isEmpty()) {
-                entity = location.get(0);
-            }
+        MultivaluedMap<String, String> headers = response.getHeaders();
 
-            return entity;
+        List<String> location = headers.get("Location");
+        String entity = null;
+        if (location != null && !location.isEmpty()) {
+            entity = location.get(0);
         }
+
+        return entity;
+    }
+
+    /**
+     * Writes the payload to the upload spool, and posts it from there.
+     */
+    private ClientResponse postSpooled(UploadSpool spool, String name, final WebResource.Builder request,
+                                       UploadSpool.Payload payload) {
+        return LongRequestPoller.join(spool.submit(name, payload, new UploadSpool.Upload<ClientResponse>() {
+            public ClientResponse send(File file) {
+                return request.entity(file, MediaType.APPLICATION_OCTET_STREAM_TYPE).post(ClientResponse.class);
+            }
+        }));
     }
+}
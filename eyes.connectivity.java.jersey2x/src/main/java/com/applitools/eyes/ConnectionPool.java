@@ -0,0 +1,135 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The HTTP connection pool shared by all the rest clients in the process, so
+ * connections to the Eyes server are reused instead of being opened (and
+ * TLS handshaked) by every client.
+ */
+public final class ConnectionPool {
+
+    private static ConnectionPoolSettings settings = new ConnectionPoolSettings();
+    private static PoolingHttpClientConnectionManager connectionManager;
+
+    private static final AtomicLong requestsCount = new AtomicLong();
+    private static final AtomicLong openedCount = new AtomicLong();
+
+    /**
+     * The pooling connection manager, which is never shut down by the
+     * clients using it.
+     */
+    private static class SharedConnectionManager extends PoolingHttpClientConnectionManager {
+        SharedConnectionManager() {
+            super(new ManagedHttpClientConnectionFactory() {
+                @Override
+                public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+                    openedCount.incrementAndGet();
+                    return super.create(route, config);
+                }
+            });
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            requestsCount.incrementAndGet();
+            return super.requestConnection(route, state);
+        }
+
+        @Override
+        public void shutdown() {
+            // The connections are shared with other clients.
+        }
+    }
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Sets the settings of the connection pool. The settings apply to the
+     * connections which are already open as well.
+     * @param settings The connection pool settings.
+     */
+    public static synchronized void setSettings(ConnectionPoolSettings settings) {
+        ArgumentGuard.notNull(settings, "settings");
+        ConnectionPool.settings = new ConnectionPoolSettings(settings);
+        if (connectionManager != null) {
+            connectionManager.setMaxTotal(settings.getMaxTotal());
+            connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+        }
+    }
+
+    /**
+     * @return A copy of the current connection pool settings.
+     */
+    public static synchronized ConnectionPoolSettings getSettings() {
+        return new ConnectionPoolSettings(settings);
+    }
+
+    /**
+     * @return The shared connection manager, which is created on first use.
+     */
+    static synchronized HttpClientConnectionManager getConnectionManager() {
+        if (connectionManager == null) {
+            connectionManager = new SharedConnectionManager();
+            connectionManager.setMaxTotal(settings.getMaxTotal());
+            connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+
+            Thread evictor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    evictConnections();
+                }
+            }, "eyes-connection-evictor");
+            evictor.setDaemon(true);
+            evictor.start();
+        }
+        return connectionManager;
+    }
+
+    private static void evictConnections() {
+        while (true) {
+            ConnectionPoolSettings currentSettings = getSettings();
+            try {
+                Thread.sleep(currentSettings.getEvictionInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(currentSettings.getKeepAlive(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return A description of the connection pool state, including the
+     * number of requests and of connections opened for them.
+     */
+    public static synchronized String getStats() {
+        if (connectionManager == null) {
+            return "not started";
+        }
+        PoolStats stats = connectionManager.getTotalStats();
+        return String.format("requests: %d; opened: %d; leased: %d; available: %d; pending: %d; max: %d",
+                requestsCount.get(), openedCount.get(), stats.getLeased(), stats.getAvailable(),
+                stats.getPending(), stats.getMax());
+    }
+
+    /**
+     * Logs the connection pool state.
+     * @param logger The logger to use.
+     */
+    public static void logStats(Logger logger) {
+        logger.verbose("Connection pool - " + getStats());
+    }
+}
@@ -3,10 +3,12 @@ package com.applitools.eyes;
 import com.applitools.utils.ArgumentGuard;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.message.GZipEncoder;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -15,9 +17,12 @@ import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Provides common rest client functionality.
+ * Provides common rest client functionality. The client is thread-safe: its
+ * configuration is replaced as a whole when changed, so concurrent requests
+ * always see a consistent client and end point.
  */
 public class RestClient {
 
@@ -29,13 +34,15 @@ public class RestClient {
         Response call();
     }
 
-    private AbstractProxySettings abstractProxySettings;
-    private int timeout; // seconds
+    private volatile AbstractProxySettings abstractProxySettings;
+    private volatile int timeout; // seconds
+    private volatile int longRequestTimeout = LongRequestPoller.DEFAULT_TIMEOUT;
+    private final String endPointPath;
 
-    protected Logger logger;
-    protected Client restClient;
-    protected URI serverUrl;
-    protected WebTarget endPoint;
+    protected volatile Logger logger;
+    protected volatile Client restClient;
+    protected volatile URI serverUrl;
+    protected volatile WebTarget endPoint;
 
     // Used for JSON serialization/de-serialization.
     protected ObjectMapper jsonMapper;
@@ -73,6 +80,12 @@ public class RestClient {
         // We must use the Apache connector, since Jersey's default connector
         // does not support proxy settings.
         cc.connectorProvider(new ApacheConnectorProvider());
+        // Registered once here, since the client is shared by concurrent
+        // requests.
+        cc.register(GZipEncoder.class);
+        // Connections are pooled across all the clients in the process.
+        cc.property(ApacheClientProperties.CONNECTION_MANAGER,
+                ConnectionPool.getConnectionManager());
 
         return ClientBuilder.newBuilder().withConfig(cc).build();
     }
@@ -83,6 +96,17 @@ public class RestClient {
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
     public RestClient(Logger logger, URI serverUrl, int timeout) {
+        this(logger, serverUrl, timeout, null);
+    }
+
+    /***
+     * @param logger    Logger instance.
+     * @param serverUrl The URI of the rest server.
+     * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
+     * @param endPointPath (optional) The path of the end point, relative to
+     *                     the server URI.
+     */
+    protected RestClient(Logger logger, URI serverUrl, int timeout, String endPointPath) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
 
@@ -92,9 +116,20 @@ public class RestClient {
                 false);
         this.timeout = timeout;
         this.serverUrl = serverUrl;
+        this.endPointPath = endPointPath;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
+    }
+
+    /**
+     * @param restClient The client to use.
+     * @param serverUrl The URI of the rest server.
+     * @return The end point of the client on the given server.
+     */
+    private WebTarget buildEndPoint(Client restClient, URI serverUrl) {
+        WebTarget endPoint = restClient.target(serverUrl);
+        return endPointPath == null ? endPoint : endPoint.path(endPointPath);
     }
 
     public void setLogger(Logger logger){
@@ -123,11 +158,11 @@ public class RestClient {
      * If {@code null} then no proxy is set.
      */
     @SuppressWarnings("UnusedDeclaration")
-    public void setProxyBase(AbstractProxySettings abstractProxySettings) {
+    public synchronized void setProxyBase(AbstractProxySettings abstractProxySettings) {
         this.abstractProxySettings = abstractProxySettings;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -145,12 +180,12 @@ public class RestClient {
      *
      * @param timeout Connect/Read timeout in milliseconds. 0 equals infinity.
      */
-    public void setTimeout(int timeout) {
+    public synchronized void setTimeout(int timeout) {
         ArgumentGuard.greaterThanOrEqualToZero(timeout, "timeout");
         this.timeout = timeout;
 
         restClient = buildRestClient(timeout, abstractProxySettings);
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -161,17 +196,35 @@ public class RestClient {
         return timeout;
     }
 
+    /**
+     * Sets the total time to wait for the server to process a long request
+     * (such as ending a session).
+     *
+     * @param longRequestTimeout The timeout in milliseconds. 0 equals infinity.
+     */
+    public void setLongRequestTimeout(int longRequestTimeout) {
+        ArgumentGuard.greaterThanOrEqualToZero(longRequestTimeout, "longRequestTimeout");
+        this.longRequestTimeout = longRequestTimeout;
+    }
+
+    /**
+     * @return The total time to wait for a long request (in milliseconds).
+     */
+    public int getLongRequestTimeout() {
+        return longRequestTimeout;
+    }
+
 
     /**
      * Sets the current server URL used by the rest client.
      * @param serverUrl The URI of the rest server.
      */
     @SuppressWarnings("UnusedDeclaration")
-    protected void setServerUrlBase(URI serverUrl) {
+    protected synchronized void setServerUrlBase(URI serverUrl) {
         ArgumentGuard.notNull(serverUrl, "serverUrl");
         this.serverUrl = serverUrl;
 
-        endPoint = restClient.target(serverUrl);
+        endPoint = buildEndPoint(restClient, serverUrl);
     }
 
     /**
@@ -182,36 +235,39 @@ public class RestClient {
         return serverUrl;
     }
 
-    protected Response sendLongRequest(HttpMethodCall method, String name)
-            throws EyesException {
+    /**
+     * Sends a request, and repeats it while the server is still processing
+     * it (responds with 202). The polling doesn't hold a thread between
+     * retries, and honors the "Retry-After" header if the server sends it.
+     *
+     * @param method The request to send.
+     * @param name The request name (for logging).
+     * @return A future of the final response.
+     */
+    protected CompletableFuture<Response> sendLongRequestAsync(final HttpMethodCall method, String name) {
+        LongRequestPoller poller = new LongRequestPoller(logger, longRequestTimeout);
+        return poller.poll(name, new LongRequestPoller.Request<Response>() {
+            public Response call() {
+                return method.call();
+            }
 
-        // Adding the long request headers
-        int maxDelay = 10000;
-        int delay = 2000;  // milliseconds
-        Response response;
-        while (true) {
-            response = method.call();
-            if (response.getStatus() != 202) {
-                return response;
+            public boolean isRunning(Response response) {
+                return response.getStatus() == 202;
             }
 
-            // Since we haven't read the entity, We must release the response
-            // or the connection stays open (meaning it'll get stuck after two
-            // requests).
-            response.close();
-
-            // Waiting a delay
-            logger.verbose(String.format(
-                    "%s: Still running... Retrying in %d ms", name, delay));
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                throw new EyesException("Long request interrupted!", e);
+            public String getRetryAfter(Response response) {
+                return response.getHeaderString("Retry-After");
             }
 
-            // increasing the delay
-            delay = Math.min(maxDelay, (int) Math.floor(delay * 1.5));
-        }
+            public void release(Response response) {
+                response.close();
+            }
+        });
+    }
+
+    protected Response sendLongRequest(HttpMethodCall method, String name)
+            throws EyesException {
+        return LongRequestPoller.join(sendLongRequestAsync(method, name));
     }
 
 
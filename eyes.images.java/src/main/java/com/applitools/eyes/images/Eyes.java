@@ -127,12 +127,12 @@ public class Eyes extends EyesBase {
     public boolean checkImage(BufferedImage image, String tag,
                               boolean ignoreMismatch) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("CheckImage(Image, '%s', %b): Ignored", tag, ignoreMismatch));
+            logger.verbose("CheckImage(Image, '%s', %b): Ignored", tag, ignoreMismatch);
             return false;
         }
         ArgumentGuard.notNull(image, "image cannot be null!");
 
-        logger.verbose(String.format("CheckImage(Image, '%s', %b)", tag, ignoreMismatch));
+        logger.verbose("CheckImage(Image, '%s', %b)", tag, ignoreMismatch);
 
         if (viewportSizeHandler.get() == null) {
             setViewportSize(new RectangleSize(image.getWidth(), image.getHeight()));
@@ -216,15 +216,15 @@ public class Eyes extends EyesBase {
      */
     public boolean checkRegion(BufferedImage image, final Region region, String tag, boolean ignoreMismatch) {
         if (getIsDisabled()) {
-            logger.verbose(String.format(
+            logger.verbose(
                     "CheckRegion(Image, [%s], '%s', %b): Ignored",
-                    region, tag, ignoreMismatch));
+                    region, tag, ignoreMismatch);
             return false;
         }
         ArgumentGuard.notNull(image, "image cannot be null!");
         ArgumentGuard.notNull(region, "region cannot be null!");
 
-        logger.verbose(String.format("CheckRegion(Image, [%s], '%s', %b)", region, tag, ignoreMismatch));
+        logger.verbose("CheckRegion(Image, [%s], '%s', %b)", region, tag, ignoreMismatch);
 
         if (viewportSizeHandler.get() == null) {
             setViewportSize(new RectangleSize(image.getWidth(), image.getHeight()));
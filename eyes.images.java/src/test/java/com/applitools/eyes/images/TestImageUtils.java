@@ -7,7 +7,9 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.util.ArrayList;
+import java.util.Random;
 
 public class TestImageUtils {
 
@@ -60,4 +62,138 @@ public class TestImageUtils {
         Assert.assertEquals(cropped.getHeight(), 500, "heights differ");
         Assert.assertTrue(testLogHandler.contains("[LOG    ] {} com.applitools.utils.ImageUtils.cropImage(): WARNING - requested cropped area results in zero-size image! Cropped not performed. Returning original image."));
     }
+
+    /**
+     * The way {@code getImagePart} used to copy the part: through a PNG round trip.
+     */
+    private static BufferedImage getImagePartByPng(BufferedImage image, Region region) {
+        BufferedImage imagePart = image.getSubimage(region.getLeft(), region.getTop(),
+                region.getWidth(), region.getHeight());
+        return ImageUtils.imageFromBytes(ImageUtils.encodeAsPng(imagePart));
+    }
+
+    private static byte[] getImageData(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static BufferedImage createTranslucentImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Random random = new Random(7);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void TestGetImagePart_OddOffsets() {
+        BufferedImage image = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        Region[] regions = {
+                new Region(0, 0, 800, 500),
+                new Region(1, 1, 1, 1),
+                new Region(3, 7, 311, 153),
+                new Region(799, 0, 1, 500),
+                new Region(101, 499, 699, 1),
+                new Region(377, 251, 423, 249)
+        };
+        for (Region region : regions) {
+            BufferedImage expected = getImagePartByPng(image, region);
+            BufferedImage imagePart = ImageUtils.getImagePart(image, region);
+            Assert.assertEquals(imagePart.getType(), ImageUtils.REQUIRED_IMAGE_TYPE, "type differs for " + region);
+            Assert.assertEquals(imagePart.getWidth(), region.getWidth(), "widths differ for " + region);
+            Assert.assertEquals(imagePart.getHeight(), region.getHeight(), "heights differ for " + region);
+            Assert.assertEquals(getImageData(imagePart), getImageData(expected), "pixels differ for " + region);
+        }
+    }
+
+    @Test
+    public void TestGetImagePart_Translucent() {
+        BufferedImage image = createTranslucentImage(97, 61);
+        Region region = new Region(13, 5, 71, 43);
+        Assert.assertEquals(getImageData(ImageUtils.getImagePart(image, region)),
+                getImageData(getImagePartByPng(image, region)), "pixels differ");
+    }
+
+    @Test
+    public void TestGetImagePart_OwnsDataBuffer() {
+        // A sub-image returned by getSubimage shares the data buffer of the
+        // original image, so reading its data buffer returns the pixels of
+        // the entire original image.
+        BufferedImage image = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        Region region = new Region(101, 33, 257, 129);
+        BufferedImage imagePart = ImageUtils.getImagePart(image, region);
+
+        byte[] data = getImageData(imagePart);
+        Assert.assertEquals(data.length, region.getWidth() * region.getHeight() * 4, "data buffer size differs");
+        Assert.assertEquals(data, getImageData(getImagePartByPng(image, region)), "data buffer pixels differ");
+
+        // A part of a view (which has a non-zero data buffer position).
+        BufferedImage view = ImageUtils.getImagePartView(image, new Region(50, 20, 600, 400));
+        Region nestedRegion = new Region(51, 13, 199, 101);
+        Assert.assertEquals(getImageData(ImageUtils.getImagePart(view, nestedRegion)),
+                getImageData(getImagePartByPng(view, nestedRegion)), "nested part pixels differ");
+
+        // Changing the part must not change the original image.
+        int originalPixel = image.getRGB(region.getLeft(), region.getTop());
+        imagePart.setRGB(0, 0, ~originalPixel);
+        Assert.assertEquals(image.getRGB(region.getLeft(), region.getTop()), originalPixel, "original image changed");
+    }
+
+    @Test
+    public void TestGetImagePartView() {
+        BufferedImage image = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        Region region = new Region(3, 7, 311, 153);
+        BufferedImage view = ImageUtils.getImagePartView(image, region);
+        Assert.assertSame(getImageData(view), getImageData(image), "view does not share the data buffer");
+        for (int y = 0; y < region.getHeight(); ++y) {
+            for (int x = 0; x < region.getWidth(); ++x) {
+                Assert.assertEquals(view.getRGB(x, y), image.getRGB(region.getLeft() + x, region.getTop() + y),
+                        "view pixels differ");
+            }
+        }
+    }
+
+    @Test
+    public void TestGetImageHash() {
+        BufferedImage image = createTranslucentImage(301, 207);
+        long hash = ImageUtils.getImageHash(image);
+
+        Assert.assertEquals(ImageUtils.getImageHash(ImageUtils.getImagePart(image, new Region(0, 0, 301, 207))), hash,
+                "copy hash differs");
+        // Opaque, since drawing may change the color of transparent pixels.
+        BufferedImage opaque = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        Assert.assertEquals(ImageUtils.getImageHash(ImageUtils.copyImageWithType(opaque, BufferedImage.TYPE_INT_ARGB)),
+                ImageUtils.getImageHash(opaque), "hash depends on the image type");
+
+        Region region = new Region(5, 9, 101, 77);
+        Assert.assertEquals(ImageUtils.getImageHash(ImageUtils.getImagePartView(image, region)),
+                ImageUtils.getImageHash(ImageUtils.getImagePart(image, region)), "view hash differs");
+
+        BufferedImage changed = ImageUtils.getImagePart(image, new Region(0, 0, 301, 207));
+        changed.setRGB(150, 100, changed.getRGB(150, 100) ^ 1);
+        Assert.assertNotEquals(ImageUtils.getImageHash(changed), hash, "changed pixel not detected");
+    }
+
+    @Test
+    public void TestGetImageHash_Sampled() {
+        BufferedImage image = createTranslucentImage(301, 207);
+        long hash = ImageUtils.getImageHash(image, 4);
+
+        Assert.assertEquals(ImageUtils.getImageHash(image, 1), ImageUtils.getImageHash(image));
+        BufferedImage opaque = ImageUtils.imageFromFile("resources/minions-800x500.jpg");
+        Assert.assertEquals(ImageUtils.getImageHash(ImageUtils.copyImageWithType(opaque, BufferedImage.TYPE_INT_ARGB), 4),
+                ImageUtils.getImageHash(opaque, 4), "sampled hash depends on the image type");
+
+        Region region = new Region(5, 9, 101, 77);
+        Assert.assertEquals(ImageUtils.getImageHash(ImageUtils.getImagePartView(image, region), 4),
+                ImageUtils.getImageHash(ImageUtils.getImagePart(image, region), 4), "sampled view hash differs");
+
+        BufferedImage changed = ImageUtils.getImagePart(image, new Region(0, 0, 301, 207));
+        changed.setRGB(150, 101, changed.getRGB(150, 101) ^ 1);
+        Assert.assertEquals(ImageUtils.getImageHash(changed, 4), hash, "unsampled pixel changed the hash");
+        changed.setRGB(148, 100, changed.getRGB(148, 100) ^ 1);
+        Assert.assertNotEquals(ImageUtils.getImageHash(changed, 4), hash, "changed sampled pixel not detected");
+    }
 }
@@ -0,0 +1,143 @@
+package com.applitools.eyes.images;
+
+import com.applitools.utils.ImageUtils;
+import com.applitools.utils.PngEncoder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class TestPngEncoder {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void InitOnce() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void TearDownOnce() {
+        pool.shutdown();
+    }
+
+    /**
+     * A page-like image: a flat background with noisy areas.
+     */
+    private static BufferedImage createImage(int width, int height, boolean translucent) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Random random = new Random(width * 31 + height);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                boolean noisy = ((x / 50) + (y / 70)) % 3 == 0;
+                int argb = noisy ? random.nextInt() : 0xFFF5F5F5 - (y % 7);
+                image.setRGB(x, y, translucent ? argb : argb | 0xFF000000);
+            }
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth(), "widths differ");
+        Assert.assertEquals(actual.getHeight(), expected.getHeight(), "heights differ");
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        Assert.assertEquals(actual.getRGB(0, 0, width, height, null, 0, width),
+                expected.getRGB(0, 0, width, height, null, 0, width), "pixels differ");
+    }
+
+    /**
+     * Decodes the image with ImageIO, and inflates the concatenated IDAT
+     * data, which fails if the zlib stream or its checksum is invalid.
+     */
+    private static BufferedImage decode(byte[] png) throws IOException, DataFormatException {
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(png));
+        stream.skipBytes(8);
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        while (stream.available() > 0) {
+            int length = stream.readInt();
+            byte[] type = new byte[4];
+            stream.readFully(type);
+            byte[] data = new byte[length];
+            stream.readFully(data);
+            stream.readInt();
+            if ("IDAT".equals(new String(type, "US-ASCII"))) {
+                idat.write(data);
+            }
+        }
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(idat.toByteArray());
+        byte[] buffer = new byte[64 * 1024];
+        while (!inflater.finished()) {
+            int length = inflater.inflate(buffer);
+            Assert.assertFalse(length == 0 && inflater.needsInput(), "truncated zlib stream");
+        }
+        Assert.assertEquals(inflater.getRemaining(), 0, "trailing bytes after zlib stream");
+        inflater.end();
+
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    private static void assertRoundTrip(BufferedImage image, PngEncoder encoder)
+            throws IOException, DataFormatException {
+        assertSamePixels(decode(ImageUtils.encodeAsPng(image, encoder)), image);
+    }
+
+    @Test
+    public void TestEncode_ManyStripes() throws IOException, DataFormatException {
+        // Odd width, and tall enough for several stripes.
+        assertRoundTrip(createImage(641, 1601, false), new PngEncoder(PngEncoder.DEFAULT_LEVEL, pool));
+    }
+
+    @Test
+    public void TestEncode_Levels() throws IOException, DataFormatException {
+        BufferedImage image = createImage(403, 907, false);
+        for (int level = 0; level <= PngEncoder.BEST_COMPRESSION; ++level) {
+            assertRoundTrip(image, new PngEncoder(level, pool));
+        }
+    }
+
+    @Test
+    public void TestEncode_Serial() throws IOException, DataFormatException {
+        assertRoundTrip(createImage(641, 1601, false), new PngEncoder(PngEncoder.DEFAULT_LEVEL, null));
+    }
+
+    @Test
+    public void TestEncode_Translucent() throws IOException, DataFormatException {
+        assertRoundTrip(createImage(300, 1000, true), new PngEncoder(PngEncoder.DEFAULT_LEVEL, pool));
+    }
+
+    @Test
+    public void TestEncode_SubImage() throws IOException, DataFormatException {
+        BufferedImage image = createImage(500, 1500, false);
+        BufferedImage view = image.getSubimage(17, 33, 401, 1201);
+        assertRoundTrip(view, new PngEncoder(PngEncoder.DEFAULT_LEVEL, pool));
+    }
+
+    @Test
+    public void TestEncode_OtherImageType() throws IOException, DataFormatException {
+        BufferedImage image = ImageUtils.copyImageWithType(createImage(200, 100, false),
+                BufferedImage.TYPE_INT_RGB);
+        assertRoundTrip(image, new PngEncoder());
+    }
+
+    @Test
+    public void TestEncode_SmallerThanStored() {
+        BufferedImage image = createImage(800, 1200, false);
+        byte[] stored = ImageUtils.encodeAsPng(image, new PngEncoder(0, pool));
+        byte[] compressed = ImageUtils.encodeAsPng(image, new PngEncoder(PngEncoder.BEST_SPEED, pool));
+        Assert.assertTrue(compressed.length < stored.length / 2, "expected the image to compress");
+    }
+}
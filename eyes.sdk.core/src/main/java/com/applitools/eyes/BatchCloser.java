@@ -0,0 +1,122 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ArgumentGuard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Closes many Eyes tests together, so the time spent waiting for the server
+ * to end the sessions is that of the slowest session rather than the sum of
+ * all of them.
+ */
+public class BatchCloser {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final Logger logger;
+    private final int parallelism;
+
+    /**
+     * @param logger      A logger instance.
+     * @param parallelism The maximal number of sessions to end at the same
+     *                    time.
+     */
+    public BatchCloser(Logger logger, int parallelism) {
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.greaterThanZero(parallelism, "parallelism");
+        this.logger = logger;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Creates a closer which ends up to {@link #DEFAULT_PARALLELISM} sessions
+     * at the same time.
+     * @param logger A logger instance.
+     */
+    public BatchCloser(Logger logger) {
+        this(logger, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @return The maximal number of sessions ended at the same time.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Closes the given tests, without throwing for failed/new tests. The
+     * tests are closed in the calling thread (so drivers aren't accessed
+     * concurrently), and their sessions are ended in parallel.
+     * @param eyesInstances The open Eyes instances to close.
+     * @return A summary of the results, in the order of the given instances.
+     */
+    public TestResultsSummary closeAll(Collection<? extends EyesBase> eyesInstances) {
+        ArgumentGuard.notNull(eyesInstances, "eyesInstances");
+        logger.verbose("Closing %d tests (parallelism: %d)...", eyesInstances.size(), parallelism);
+
+        final Semaphore permits = new Semaphore(parallelism);
+        final List<CompletableFuture<TestResultContainer>> closes = new ArrayList<>(eyesInstances.size());
+        long start = System.nanoTime();
+        try {
+            for (EyesBase eyes : eyesInstances) {
+                permits.acquire();
+                closes.add(close(eyes, permits));
+            }
+        } catch (InterruptedException e) {
+            throw new EyesException("Interrupted while closing tests!", e);
+        }
+
+        List<TestResultContainer> results = new ArrayList<>(closes.size());
+        for (CompletableFuture<TestResultContainer> close : closes) {
+            results.add(close.join());
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < results.size(); ++i) {
+            logger.verbose("Test #%d: %s", i + 1, results.get(i));
+        }
+        TestResultsSummary summary = new TestResultsSummary(results, duration);
+        logger.log(summary.toString());
+        return summary;
+    }
+
+    /**
+     * Closes a single test, releasing the given permit when its session is
+     * ended.
+     * @param eyes    The Eyes instance to close.
+     * @param permits The permits of the ended sessions.
+     * @return A future of the closing outcome, which never fails.
+     */
+    private CompletableFuture<TestResultContainer> close(EyesBase eyes, final Semaphore permits) {
+        final long start = System.nanoTime();
+        final CompletableFuture<TestResultContainer> result = new CompletableFuture<>();
+        CompletableFuture<TestResults> close;
+        try {
+            close = eyes.closeAsync(false);
+        } catch (Throwable e) {
+            close = new CompletableFuture<>();
+            close.completeExceptionally(e);
+        }
+        close.whenComplete(new BiConsumer<TestResults, Throwable>() {
+            @Override
+            public void accept(TestResults testResults, Throwable e) {
+                permits.release();
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause != null) {
+                    logger.log("Failed closing test: " + cause.getMessage());
+                }
+                result.complete(new TestResultContainer(testResults, cause, duration));
+            }
+        });
+        return result;
+    }
+}
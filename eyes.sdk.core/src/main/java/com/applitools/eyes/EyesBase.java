@@ -3,6 +3,7 @@ package com.applitools.eyes;
 import com.applitools.IDomCaptureListener;
 import com.applitools.eyes.capture.AppOutputProvider;
 import com.applitools.eyes.capture.AppOutputWithScreenshot;
+import com.applitools.eyes.capture.ScreenshotAppOutputProvider;
 import com.applitools.eyes.config.Configuration;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
 import com.applitools.eyes.debug.FileDebugScreenshotsProvider;
@@ -15,6 +16,10 @@ import com.applitools.eyes.exceptions.DiffsFoundException;
 import com.applitools.eyes.exceptions.NewTestException;
 import com.applitools.eyes.exceptions.TestFailedException;
 import com.applitools.eyes.fluent.*;
+import com.applitools.eyes.metrics.CheckpointTimings;
+import com.applitools.eyes.metrics.MetricsListener;
+import com.applitools.eyes.metrics.Phase;
+import com.applitools.eyes.metrics.TraceRecorder;
 import com.applitools.eyes.positioning.*;
 import com.applitools.eyes.scaling.FixedScaleProvider;
 import com.applitools.eyes.scaling.NullScaleProvider;
@@ -22,16 +27,33 @@ import com.applitools.eyes.triggers.MouseAction;
 import com.applitools.eyes.triggers.MouseTrigger;
 import com.applitools.eyes.triggers.TextTrigger;
 import com.applitools.utils.*;
-import org.apache.commons.codec.binary.Base64;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Applitools Eyes Base for Java API .
@@ -40,8 +62,14 @@ public abstract class EyesBase {
 
     private static final int DEFAULT_MATCH_TIMEOUT = 2000; // Milliseconds
     protected static final int USE_DEFAULT_TIMEOUT = -1;
+    public static final int DEFAULT_ASYNC_CHECK_PARALLELISM = 2;
+    public static final int DEFAULT_MAX_PENDING_CHECKS = 8;
+    // Idle check threads end after this, so an Eyes object which is no
+    // longer used doesn't hold them.
+    private static final int ASYNC_CHECK_THREAD_KEEP_ALIVE = 30; // Seconds
 
-    private boolean shouldMatchWindowRunOnceOnTimeout;
+    // Also set by asynchronous checks.
+    private volatile boolean shouldMatchWindowRunOnceOnTimeout;
 
     private MatchWindowTask matchWindowTask;
 
@@ -59,6 +87,9 @@ public abstract class EyesBase {
     private boolean isDisabled;
 
     protected Logger logger;
+    // The number of tests which opened the log handler and didn't close it yet.
+    private final Object logHandlerLock = new Object();
+    private int logHandlerOpenCount;
     private boolean isOpen;
     private String agentId;
 
@@ -79,6 +110,20 @@ public abstract class EyesBase {
     protected DebugScreenshotsProvider debugScreenshotsProvider;
     private boolean isViewportSizeSet;
     private int stitchingOverlap = 50;
+    private ForkJoinPool compressionPool;
+
+    // Asynchronous checks.
+    private ExecutorService asyncCheckExecutor;
+    private int asyncCheckParallelism = DEFAULT_ASYNC_CHECK_PARALLELISM;
+    private int maxPendingChecks = DEFAULT_MAX_PENDING_CHECKS;
+    private Semaphore pendingChecksPermits = new Semaphore(DEFAULT_MAX_PENDING_CHECKS);
+    private final List<CompletableFuture<MatchResult>> pendingChecks = new ArrayList<>();
+    private CompletableFuture<MatchResult> lastPendingMatch;
+    private boolean isCheckAsync;
+    private MetricsListener metricsListener;
+    private TraceRecorder traceRecorder;
+    private CheckpointTimings checkpointTimings;
+    private CompletableFuture<MatchResult> asyncCheckResult;
 
     private final SessionEventHandlers sessionEventHandlers = new SessionEventHandlers();
     private int validationId;
@@ -190,6 +235,8 @@ public abstract class EyesBase {
 
     /**
      * Sets the server connector to use. MUST BE SET IN ORDER FOR THE EYES OBJECT TO WORK!
+     * The connector may be shared by Eyes instances running in parallel. Note
+     * that the server URL, API key and proxy are then shared as well.
      * @param serverConnector The server connector object to use.
      */
     public void setServerConnector(IServerConnector serverConnector) {
@@ -726,6 +773,113 @@ public abstract class EyesBase {
         this.stitchingOverlap = pixels;
     }
 
+    /**
+     * Sets the number of threads used for compressing screenshots before
+     * they are sent to the server.
+     * @param parallelism The number of compression threads. A value of 1 or
+     *                    less compresses on the calling thread (the default).
+     */
+    public void setCompressionParallelism(int parallelism) {
+        if (compressionPool != null) {
+            compressionPool.shutdown();
+        }
+        compressionPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * @return The number of threads used for compressing screenshots.
+     */
+    public int getCompressionParallelism() {
+        return compressionPool != null ? compressionPool.getParallelism() : 1;
+    }
+
+    /**
+     * Sets the number of threads which compress, upload and match the
+     * screenshots of asynchronous checks. Waits for the pending checks.
+     * @param parallelism The number of threads.
+     */
+    public void setAsyncCheckParallelism(int parallelism) {
+        ArgumentGuard.greaterThanZero(parallelism, "parallelism");
+        waitForPendingChecks();
+        if (asyncCheckExecutor != null) {
+            asyncCheckExecutor.shutdown();
+            asyncCheckExecutor = null;
+        }
+        asyncCheckParallelism = parallelism;
+    }
+
+    /**
+     * @return The number of threads used by asynchronous checks.
+     */
+    public int getAsyncCheckParallelism() {
+        return asyncCheckParallelism;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous checks which may be pending.
+     * Starting another check blocks until one of them is done, which bounds
+     * the memory held by their screenshots. Waits for the pending checks.
+     * @param maxPendingChecks The maximum number of pending checks.
+     */
+    public void setMaxPendingChecks(int maxPendingChecks) {
+        ArgumentGuard.greaterThanZero(maxPendingChecks, "maxPendingChecks");
+        waitForPendingChecks();
+        this.maxPendingChecks = maxPendingChecks;
+        pendingChecksPermits = new Semaphore(maxPendingChecks);
+    }
+
+    /**
+     * @return The maximum number of pending asynchronous checks.
+     */
+    public int getMaxPendingChecks() {
+        return maxPendingChecks;
+    }
+
+    private ExecutorService getAsyncCheckExecutor() {
+        if (asyncCheckExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(asyncCheckParallelism, asyncCheckParallelism,
+                    ASYNC_CHECK_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger threadsCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "eyes-check-" + threadsCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            asyncCheckExecutor = executor;
+        }
+        return asyncCheckExecutor;
+    }
+
+    /**
+     * Waits for all the pending asynchronous checks to complete. Their
+     * failures are only logged, since they are reported by their futures.
+     */
+    public void waitForPendingChecks() {
+        List<CompletableFuture<MatchResult>> checks;
+        synchronized (pendingChecks) {
+            checks = new ArrayList<>(pendingChecks);
+        }
+        if (checks.isEmpty()) {
+            return;
+        }
+
+        logger.verbose("Waiting for %d pending checks...", checks.size());
+        for (CompletableFuture<MatchResult> check : checks) {
+            try {
+                check.join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.log("Asynchronous check failed: " + cause.getMessage());
+            }
+        }
+        logger.verbose("Done!");
+    }
+
     /**
      * See {@link #close(boolean)}.
      * {@code throwEx} defaults to {@code true}.
@@ -744,14 +898,36 @@ public abstract class EyesBase {
      *                             is true.
      */
     public TestResults close(boolean throwEx) {
+        return LongRequestPoller.join(closeAsync(throwEx));
+    }
+
+    /**
+     * Ends the test without waiting for the server to process its results, so
+     * many tests can be closed together and awaited in bulk. The Eyes object
+     * may be opened again as soon as this method returns.
+     * @param throwEx If true, the returned future fails for failed/new tests.
+     * @return A future of the test results, which fails with
+     * {@link TestFailedException} or {@link NewTestException} for failed/new
+     * tests if throwEx is true.
+     */
+    public CompletableFuture<TestResults> closeAsync(final boolean throwEx) {
+        final Logger logger = this.logger;
+        final LogHandler logHandler = logger.getLogHandler();
+        final RunningSession runningSession;
+        final SessionStartInfo sessionStartInfo;
+        final String autSessionId;
+        final boolean save;
+        final CompletableFuture<Void> pendingChecksDone;
         try {
             if (isDisabled) {
                 logger.verbose("Ignored");
-                return null;
+                return CompletableFuture.completedFuture(null);
             }
-            logger.verbose(String.format("close(%b)", throwEx));
+            logger.verbose("close(%b)", throwEx);
             ArgumentGuard.isValidState(isOpen, "Eyes not open");
 
+            pendingChecksDone = getPendingChecksDone();
+
             isOpen = false;
 
             lastScreenshot = null;
@@ -759,59 +935,143 @@ public abstract class EyesBase {
 
             initProviders(true);
 
+            runningSession = this.runningSession;
+            sessionStartInfo = this.sessionStartInfo;
+            // The session is reset right away, so the Eyes object can be
+            // reused while the session is ended.
+            this.runningSession = null;
+
             if (runningSession == null) {
                 logger.log("Server session was not started --- Empty test ended.");
-                return new TestResults();
+                closeLogHandler(logHandler);
+                return CompletableFuture.completedFuture(new TestResults());
             }
 
+            autSessionId = getAUTSessionId();
             boolean isNewSession = runningSession.getIsNewSession();
-            String sessionResultsUrl = runningSession.getUrl();
-
-            logger.verbose("Ending server session...");
-            boolean save = (isNewSession && saveNewTests)
+            save = (isNewSession && saveNewTests)
                     || (!isNewSession && saveFailedTests);
-            logger.verbose("Automatically save test? " + String.valueOf(save));
-            TestResults results = serverConnector.stopSession(runningSession, false, save);
-
-            results.setNew(isNewSession);
-            results.setUrl(sessionResultsUrl);
-            logger.verbose(results.toString());
+        } catch (RuntimeException e) {
+            this.runningSession = null;
+            closeLogHandler(logHandler);
+            throw e;
+        }
 
-            TestResultsStatus status = results.getStatus();
+        final IServerConnector serverConnector = this.serverConnector;
+        final MetricsListener metricsListener = this.metricsListener;
+        final TraceRecorder traceRecorder = this.traceRecorder;
+        return pendingChecksDone.thenCompose(new Function<Void, CompletionStage<TestResults>>() {
+            @Override
+            public CompletionStage<TestResults> apply(Void v) {
+                logger.verbose("Ending server session...");
+                logger.verbose("Automatically save test? " + String.valueOf(save));
+                final long start = System.nanoTime();
+                CompletableFuture<TestResults> results = serverConnector.stopSessionAsync(runningSession, false, save);
+                if (traceRecorder == null) {
+                    return results;
+                }
+                return results.whenComplete(new BiConsumer<TestResults, Throwable>() {
+                    @Override
+                    public void accept(TestResults results, Throwable e) {
+                        traceRecorder.addAsyncSpan("stopSession", null, start, System.nanoTime(), null, 0);
+                    }
+                });
+            }
+        }).thenApply(new Function<TestResults, TestResults>() {
+            @Override
+            public TestResults apply(TestResults results) {
+                return processCloseResults(results, runningSession, sessionStartInfo, autSessionId, throwEx);
+            }
+        }).whenComplete(new BiConsumer<TestResults, Throwable>() {
+            @Override
+            public void accept(TestResults results, Throwable e) {
+                if (metricsListener != null) {
+                    metricsListener.onClose(logger);
+                }
+                writeTrace(traceRecorder, logger);
+                // The Eyes object may have been reopened by now.
+                closeLogHandler(logHandler);
+            }
+        });
+    }
 
-            sessionEventHandlers.testEnded(getAUTSessionId(), results);
+    /**
+     * @return A future which completes when all the pending asynchronous
+     * checks are done, whether they failed or not.
+     */
+    private CompletableFuture<Void> getPendingChecksDone() {
+        List<CompletableFuture<MatchResult>> checks;
+        synchronized (pendingChecks) {
+            checks = new ArrayList<>(pendingChecks);
+        }
+        if (checks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-            if (status == TestResultsStatus.Unresolved) {
-                if (results.isNew()) {
-                    logger.log("--- New test ended. Please approve the new baseline at " + sessionResultsUrl);
-                    if (throwEx) {
-                        throw new NewTestException(results, sessionStartInfo);
-                    }
-                } else {
-                    logger.log("--- Failed test ended. See details at " + sessionResultsUrl);
-                    if (throwEx) {
-                        throw new DiffsFoundException(results, sessionStartInfo);
+        logger.verbose("Ending the session after %d pending checks...", checks.size());
+        CompletableFuture<?>[] checksDone = new CompletableFuture<?>[checks.size()];
+        for (int i = 0; i < checksDone.length; ++i) {
+            checksDone[i] = checks.get(i).handle(new BiFunction<MatchResult, Throwable, Void>() {
+                @Override
+                public Void apply(MatchResult matchResult, Throwable e) {
+                    if (e != null) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        logger.log("Asynchronous check failed: " + cause.getMessage());
                     }
+                    return null;
                 }
-            } else if (status == TestResultsStatus.Failed) {
-                logger.log("--- Failed test ended. See details at " + sessionResultsUrl);
+            });
+        }
+        return CompletableFuture.allOf(checksDone);
+    }
+
+    /**
+     * Logs the results of an ended session, and reports them to the session
+     * event handlers.
+     * @return The test results.
+     * @throws TestFailedException if a mismatch was found and throwEx is true.
+     * @throws NewTestException    if this is a new test was found and throwEx
+     *                             is true.
+     */
+    private TestResults processCloseResults(TestResults results, RunningSession runningSession,
+                                            SessionStartInfo sessionStartInfo, String autSessionId,
+                                            boolean throwEx) {
+        boolean isNewSession = runningSession.getIsNewSession();
+        String sessionResultsUrl = runningSession.getUrl();
+
+        results.setNew(isNewSession);
+        results.setUrl(sessionResultsUrl);
+        logger.verbose(results.toString());
+
+        TestResultsStatus status = results.getStatus();
+
+        sessionEventHandlers.testEnded(autSessionId, results);
+
+        if (status == TestResultsStatus.Unresolved) {
+            if (results.isNew()) {
+                logger.log("--- New test ended. Please approve the new baseline at " + sessionResultsUrl);
                 if (throwEx) {
-                    throw new TestFailedException(results, sessionStartInfo);
+                    throw new NewTestException(results, sessionStartInfo);
                 }
             } else {
-                // Test passed
-                logger.log("--- Test passed. See details at " + sessionResultsUrl);
+                logger.log("--- Failed test ended. See details at " + sessionResultsUrl);
+                if (throwEx) {
+                    throw new DiffsFoundException(results, sessionStartInfo);
+                }
+            }
+        } else if (status == TestResultsStatus.Failed) {
+            logger.log("--- Failed test ended. See details at " + sessionResultsUrl);
+            if (throwEx) {
+                throw new TestFailedException(results, sessionStartInfo);
             }
+        } else {
+            // Test passed
+            logger.log("--- Test passed. See details at " + sessionResultsUrl);
+        }
 
-            results.setServerConnector(this.serverConnector);
+        results.setServerConnector(this.serverConnector);
 
-            return results;
-        } finally {
-            // Making sure that we reset the running session even if an
-            // exception was thrown during close.
-            runningSession = null;
-            logger.getLogHandler().close();
-        }
+        return results;
     }
 
     /**
@@ -827,8 +1087,8 @@ public abstract class EyesBase {
                 logger.verbose("Ignored");
             }
 
-            logger.verbose(String.format("closeResponseTime(%b)",
-                    isDeadlineExceeded));
+            logger.verbose("closeResponseTime(%b)",
+                    isDeadlineExceeded);
             ArgumentGuard.isValidState(isOpen, "Eyes not open");
 
             isOpen = false;
@@ -889,7 +1149,7 @@ public abstract class EyesBase {
             // Making sure that we reset the running session even if an
             // exception was thrown during close.
             runningSession = null;
-            logger.getLogHandler().close();
+            closeLogHandler(logger.getLogHandler());
         }
     }
 
@@ -903,6 +1163,9 @@ public abstract class EyesBase {
                 return;
             }
 
+            // Not aborting the session while its checks are still sent.
+            waitForPendingChecks();
+
             isOpen = false;
 
             lastScreenshot = null;
@@ -916,15 +1179,65 @@ public abstract class EyesBase {
             logger.verbose("Aborting server session...");
             try {
                 // When aborting we do not save the test.
+                long start = System.nanoTime();
                 serverConnector.stopSession(runningSession, true, false);
+                if (traceRecorder != null) {
+                    traceRecorder.addSpan("stopSession", start, System.nanoTime());
+                }
                 logger.log("--- Test aborted.");
             } catch (EyesException ex) {
                 logger.log(
                         "Failed to abort server session: " + ex.getMessage());
             }
+
+            // An aborted test doesn't end, so its events are flushed here.
+            try {
+                sessionEventHandlers.flush();
+            } catch (RuntimeException ex) {
+                logger.log("Failed to send session events: " + ex.getMessage());
+            }
         } finally {
             runningSession = null;
-            logger.getLogHandler().close();
+            writeTrace(traceRecorder, logger);
+            closeLogHandler(logger.getLogHandler());
+        }
+    }
+
+    private void openLogHandler() {
+        synchronized (logHandlerLock) {
+            ++logHandlerOpenCount;
+            logger.getLogHandler().open();
+        }
+    }
+
+    /**
+     * Closes the log handler of a test, unless the Eyes object was opened
+     * again with the same handler (e.g., while the previous test is still
+     * being closed in the background). The handler is then closed with the
+     * next test.
+     */
+    private void closeLogHandler(LogHandler logHandler) {
+        synchronized (logHandlerLock) {
+            logHandlerOpenCount = Math.max(0, logHandlerOpenCount - 1);
+            if (logHandlerOpenCount > 0 && logHandler == logger.getLogHandler()) {
+                return;
+            }
+            logHandler.close();
+        }
+    }
+
+    /**
+     * Writes the trace file, if tracing is enabled.
+     */
+    private static void writeTrace(TraceRecorder traceRecorder, Logger logger) {
+        if (traceRecorder == null) {
+            return;
+        }
+        try {
+            traceRecorder.write();
+            logger.verbose("Trace written to %s", traceRecorder.getFilename());
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(logger, e);
         }
     }
 
@@ -1136,16 +1449,34 @@ public abstract class EyesBase {
             tag = "";
         }
 
+        if (isCheckAsync) {
+            asyncCheckResult = checkWindowBaseAsync(regionProvider, tag, ignoreMismatch, checkSettings);
+            // The actual result is only known when the future completes.
+            result = new MatchResult();
+            result.setAsExpected(true);
+            return result;
+        }
+
         ArgumentGuard.isValidState(getIsOpen(), "Eyes not open");
         ArgumentGuard.notNull(regionProvider, "regionProvider");
 
-        ensureRunningSession();
+        // The matches must reach the server in the order of the checks, since
+        // each screenshot is compressed against the previous one.
+        waitForPendingChecks();
 
-        beforeMatchWindow();
+        CheckpointTimings timings = startCheckpoint(tag);
+        try {
+            ensureRunningSession();
 
-        result = matchWindow(regionProvider, tag, ignoreMismatch, checkSettings);
+            beforeMatchWindow();
 
-        afterMatchWindow();
+            result = matchWindow(regionProvider, tag, ignoreMismatch, checkSettings);
+
+            afterMatchWindow();
+        } finally {
+            checkpointTimings = null;
+            finishCheckpoint(timings);
+        }
 
         logger.verbose("MatchWindow Done!");
 
@@ -1154,14 +1485,275 @@ public abstract class EyesBase {
             lastScreenshot = result.getScreenshot();
         }
 
-        validateResult(tag, result);
+        validateResult(tag, result, runningSession, sessionStartInfo);
 
         logger.verbose("Done!");
         return result;
     }
 
+    /**
+     * Runs a check, such that the {@code checkWindowBase} call it makes is
+     * asynchronous (see {@link #checkWindowBaseAsync}).
+     * @param check Runs the check.
+     * @return The result of the check, which is already completed if the
+     * check didn't match a window (e.g., if Eyes is disabled).
+     */
+    protected CompletableFuture<MatchResult> checkAsyncBase(Runnable check) {
+        asyncCheckResult = null;
+        isCheckAsync = true;
+        try {
+            check.run();
+        } finally {
+            isCheckAsync = false;
+        }
+
+        CompletableFuture<MatchResult> result = getAsyncCheckResult();
+        asyncCheckResult = null;
+        if (result == null) {
+            MatchResult matchResult = new MatchResult();
+            matchResult.setAsExpected(true);
+            result = CompletableFuture.completedFuture(matchResult);
+        }
+        return result;
+    }
+
+    /**
+     * @return The result of the last asynchronous {@code checkWindowBase} call
+     * in the current {@link #checkAsyncBase} call, or {@code null}.
+     */
+    protected CompletableFuture<MatchResult> getAsyncCheckResult() {
+        return asyncCheckResult;
+    }
+
+    /**
+     * Takes a snapshot of the application under test and matches it with the
+     * expected output, without waiting for the match. The screenshot, the DOM
+     * and the regions are captured on the calling thread, since they need the
+     * application. Compressing the screenshot, posting the DOM and matching
+     * are done by background threads, and matches are sent in the order of
+     * the checks. There are no match retries, as with a zero match timeout.
+     * @param regionProvider Returns the region to check or the empty rectangle to check the entire window.
+     * @param tag            An optional tag to be associated with the snapshot.
+     * @param ignoreMismatch Whether to ignore this check if a mismatch is found.
+     * @param checkSettings  The settings to use.
+     * @return The result of matching the output with the expected output. It
+     * completes exceptionally with {@link TestFailedException} if a mismatch
+     * is detected and immediate failure reports are enabled.
+     */
+    protected CompletableFuture<MatchResult> checkWindowBaseAsync(RegionProvider regionProvider, String tag,
+                                                                  final boolean ignoreMismatch,
+                                                                  ICheckSettings checkSettings) {
+        if (getIsDisabled()) {
+            logger.verbose("Ignored");
+            MatchResult result = new MatchResult();
+            result.setAsExpected(true);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        final String checkTag = tag == null ? "" : tag;
+
+        ArgumentGuard.isValidState(getIsOpen(), "Eyes not open");
+        ArgumentGuard.notNull(regionProvider, "regionProvider");
+
+        final CheckpointTimings timings = startCheckpoint(checkTag);
+        final EyesScreenshot screenshot;
+        final String title;
+        final UploadSpool.Payload domJson;
+        final ImageMatchSettings imageMatchSettings;
+        final Trigger[] userInputs;
+        final EyesScreenshot lastScreenshot;
+        final MatchWindowTask matchWindowTask;
+        final String agentSetup;
+        final RunningSession runningSession;
+        final SessionStartInfo sessionStartInfo;
+        try {
+            ensureRunningSession();
+            // The check is validated in the background, possibly after the
+            // session is closed.
+            runningSession = this.runningSession;
+            sessionStartInfo = this.sessionStartInfo;
+
+            beforeMatchWindow();
+
+            ICheckSettingsInternal checkSettingsInternal = applyDefaultMatchSettings(checkSettings);
+            Region region = regionProvider.getRegion();
+            logger.verbose("params: ([" + region + "], " + checkTag + ")");
+
+            screenshot = captureScreenshot(region, checkSettingsInternal);
+            title = getTitle();
+            domJson = tryCaptureDomJson(timings);
+            imageMatchSettings = this.matchWindowTask.createImageMatchSettings(checkSettingsInternal, screenshot);
+            userInputs = getUserInputs();
+            matchWindowTask = this.matchWindowTask;
+            // The server decodes the screenshot against the last one it got,
+            // so the base must be updated here, in the order of the checks.
+            lastScreenshot = matchWindowTask.getLastScreenshot();
+            if (!ignoreMismatch) {
+                matchWindowTask.setLastScreenshot(screenshot, region);
+                this.lastScreenshot = screenshot;
+            }
+            agentSetup = matchWindowTask.getAgentSetupString();
+
+            afterMatchWindow();
+        } catch (RuntimeException e) {
+            finishCheckpoint(timings);
+            throw e;
+        } finally {
+            // The rest of the checkpoint is timed by the background threads.
+            checkpointTimings = null;
+        }
+
+        if (!ignoreMismatch) {
+            clearUserInputs();
+        }
+
+        final Semaphore permits = pendingChecksPermits;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EyesException("Interrupted while waiting for pending checks", e);
+        }
+
+        ExecutorService executor = getAsyncCheckExecutor();
+        CompletableFuture<AppOutputWithScreenshot> appOutput = CompletableFuture.supplyAsync(
+                new Supplier<AppOutputWithScreenshot>() {
+                    @Override
+                    public AppOutputWithScreenshot get() {
+                        byte[] compressResult = compressScreenshot(screenshot, lastScreenshot, timings);
+                        String domJsonUrl = tryPostDomJson(domJson, timings);
+                        return new AppOutputWithScreenshot(new AppOutput(title, compressResult, domJsonUrl),
+                                screenshot);
+                    }
+                }, executor);
+
+        // The server expects the matches of a session in the order of the
+        // checks, whether or not the previous ones succeeded.
+        CompletableFuture<MatchResult> previousMatch = lastPendingMatch == null ?
+                CompletableFuture.<MatchResult>completedFuture(null) :
+                lastPendingMatch.exceptionally(new Function<Throwable, MatchResult>() {
+                    @Override
+                    public MatchResult apply(Throwable throwable) {
+                        return null;
+                    }
+                });
+
+        CompletableFuture<MatchResult> match = appOutput.thenCombineAsync(previousMatch,
+                new BiFunction<AppOutputWithScreenshot, MatchResult, MatchResult>() {
+                    @Override
+                    public MatchResult apply(AppOutputWithScreenshot appOutput, MatchResult previousResult) {
+                        long start = System.nanoTime();
+                        MatchResult matchResult = matchWindowTask.performMatch(userInputs, appOutput, checkTag,
+                                ignoreMismatch, imageMatchSettings, agentSetup);
+                        timings.addSince(Phase.MATCH, start);
+                        logger.verbose("MatchWindow Done! (" + checkTag + ")");
+                        validateResult(checkTag, matchResult, runningSession, sessionStartInfo);
+                        return matchResult;
+                    }
+                }, executor);
+        // The result completes only after the checkpoint is reported, so
+        // whoever waits for the check (e.g., close) sees its timings.
+        final CompletableFuture<MatchResult> result = match.whenComplete(new BiConsumer<MatchResult, Throwable>() {
+            @Override
+            public void accept(MatchResult matchResult, Throwable throwable) {
+                finishCheckpoint(timings);
+                permits.release();
+            }
+        });
+        lastPendingMatch = result;
+
+        synchronized (pendingChecks) {
+            pendingChecks.add(result);
+        }
+        result.whenComplete(new BiConsumer<MatchResult, Throwable>() {
+            @Override
+            public void accept(MatchResult matchResult, Throwable throwable) {
+                synchronized (pendingChecks) {
+                    pendingChecks.remove(result);
+                }
+            }
+        });
+
+        return result;
+    }
+
     public abstract String tryCaptureDom();
 
+    /**
+     * Captures the DOM, to be written when it's posted. The default
+     * implementation writes the string returned by {@link #tryCaptureDom()}.
+     * @return The DOM, or {@code null} if there's no DOM to send.
+     */
+    protected UploadSpool.Payload tryCaptureDomPayload() {
+        String domJson = tryCaptureDom();
+        return domJson != null ? GeneralUtils.getUtf8Payload(domJson) : null;
+    }
+
+    /**
+     * @param metricsListener Receives the timings of each checkpoint, and is
+     *                        notified when the test is closed, or
+     *                        {@code null} to stop reporting timings.
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @return The listener which receives the timings of the checkpoints, or
+     * {@code null}.
+     */
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * @param traceRecorder Records the activity of the SDK, and writes it to
+     *                      its trace file whenever a test is closed or
+     *                      aborted, or {@code null} to disable tracing (the
+     *                      default). Share a recorder between Eyes instances
+     *                      to trace a whole batch into a single file.
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * @return The recorder of the SDK's activity, or {@code null} if tracing
+     * is disabled.
+     */
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * @return The timings of the checkpoint being captured, or {@code null}
+     * if no checkpoint is being captured.
+     */
+    protected CheckpointTimings getCheckpointTimings() {
+        return checkpointTimings;
+    }
+
+    private CheckpointTimings startCheckpoint(String tag) {
+        checkpointTimings = new CheckpointTimings(tag, traceRecorder);
+        return checkpointTimings;
+    }
+
+    /**
+     * Stops timing a checkpoint, and reports its timings.
+     */
+    private void finishCheckpoint(CheckpointTimings timings) {
+        timings.finish();
+        logger.verbose("%s", timings);
+        MetricsListener metricsListener = this.metricsListener;
+        if (metricsListener != null) {
+            try {
+                metricsListener.onCheckpoint(timings);
+            } catch (Exception e) {
+                GeneralUtils.logExceptionStackTrace(logger, e);
+            }
+        }
+    }
+
     protected ValidationInfo fireValidationWillStartEvent(String tag) {
         String autSessionId = getAUTSessionId();
 
@@ -1177,7 +1769,7 @@ public abstract class EyesBase {
     private MatchResult matchWindow(RegionProvider regionProvider, String tag, boolean ignoreMismatch,
                                     ICheckSettings checkSettings) {
         MatchResult result;
-        ICheckSettingsInternal checkSettingsInternal = (checkSettings instanceof ICheckSettingsInternal) ? (ICheckSettingsInternal) checkSettings : null;
+        ICheckSettingsInternal checkSettingsInternal = applyDefaultMatchSettings(checkSettings);
 
         // Update retry timeout if it wasn't specified.
         int retryTimeout = -1;
@@ -1185,6 +1777,25 @@ public abstract class EyesBase {
             retryTimeout = checkSettingsInternal.getTimeout();
         }
 
+        Region region = regionProvider.getRegion();
+        logger.verbose("params: ([" + region + "], " + tag + ", " + retryTimeout + ")");
+
+        result = matchWindowTask.matchWindow(
+                getUserInputs(), region, tag, shouldMatchWindowRunOnceOnTimeout, ignoreMismatch,
+                checkSettingsInternal, retryTimeout);
+
+        return result;
+    }
+
+    /**
+     * @param checkSettings The settings of a check.
+     * @return The settings, with the default match level and ignore caret
+     * set if they weren't specified, or {@code null} if they aren't
+     * {@link ICheckSettingsInternal}.
+     */
+    private ICheckSettingsInternal applyDefaultMatchSettings(ICheckSettings checkSettings) {
+        ICheckSettingsInternal checkSettingsInternal = (checkSettings instanceof ICheckSettingsInternal) ? (ICheckSettingsInternal) checkSettings : null;
+
         ImageMatchSettings defaultMatchSettings = getDefaultMatchSettings();
 
         // Set defaults if necessary
@@ -1200,24 +1811,23 @@ public abstract class EyesBase {
             checkSettingsInternal = (ICheckSettingsInternal) checkSettings;
         }
 
-        Region region = regionProvider.getRegion();
-        logger.verbose("params: ([" + region + "], " + tag + ", " + retryTimeout + ")");
-
-        result = matchWindowTask.matchWindow(
-                getUserInputs(), region, tag, shouldMatchWindowRunOnceOnTimeout, ignoreMismatch,
-                checkSettingsInternal, retryTimeout);
-
-        return result;
+        return checkSettingsInternal;
     }
 
-    private String tryPostDomSnapshot(String domJson) {
+    private String tryPostDomSnapshot(UploadSpool.Payload domJson) {
         if (domJson != null) {
             return serverConnector.postDomSnapshot(domJson);
         }
         return null;
     }
 
-    private void validateResult(String tag, MatchResult result) {
+    /**
+     * Handles a mismatch. May be called from the background threads of
+     * asynchronous checks, so the session is passed in rather than read from
+     * the (mutable) fields.
+     */
+    private void validateResult(String tag, MatchResult result, RunningSession runningSession,
+                                SessionStartInfo sessionStartInfo) {
         if (result.getAsExpected()) {
             return;
         }
@@ -1225,7 +1835,7 @@ public abstract class EyesBase {
         shouldMatchWindowRunOnceOnTimeout = true;
 
         if (!runningSession.getIsNewSession()) {
-            logger.log(String.format("Mismatch! (%s)", tag));
+            logger.log("Mismatch! (%s)", tag);
         }
 
         if (getFailureReports() == FailureReports.IMMEDIATE) {
@@ -1260,8 +1870,8 @@ public abstract class EyesBase {
         ArgumentGuard.greaterThanZero(timeout, "timeout");
         ArgumentGuard.greaterThanZero(matchInterval, "matchInterval");
 
-        logger.verbose(String.format("testResponseTimeBase(regionProvider, %d, %d, %d)",
-                deadline, timeout, matchInterval));
+        logger.verbose("testResponseTimeBase(regionProvider, %d, %d, %d)",
+                deadline, timeout, matchInterval);
 
         if (runningSession == null) {
             logger.verbose("No running session, calling start session..");
@@ -1355,8 +1965,8 @@ public abstract class EyesBase {
         this.config.setTestName(testName);
 
         logger.log("Agent = " + getFullAgentId());
-        logger.verbose(String.format("openBase('%s', '%s', '%s')", appName,
-                testName, viewportSize));
+        logger.verbose("openBase('%s', '%s', '%s')", appName,
+                testName, viewportSize);
 
         config.setSessionType(sessionType != null ? sessionType : SessionType.SEQUENTIAL);
         config.setViewportSize(viewportSize);
@@ -1365,7 +1975,7 @@ public abstract class EyesBase {
     }
 
     protected void openBase() {
-        logger.getLogHandler().open();
+        openLogHandler();
 
         try {
             if (isDisabled) {
@@ -1400,7 +2010,7 @@ public abstract class EyesBase {
 
         } catch (EyesException e) {
             logger.log(e.getMessage());
-            logger.getLogHandler().close();
+            closeLogHandler(logger.getLogHandler());
             throw e;
         }
     }
@@ -1423,12 +2033,24 @@ public abstract class EyesBase {
                 matchTimeout,
                 this,
                 // A callback which will call getAppOutput
-                new AppOutputProvider() {
+                new ScreenshotAppOutputProvider() {
                     @Override
                     public AppOutputWithScreenshot getAppOutput(Region region, EyesScreenshot lastScreenshot,
                                                                 ICheckSettingsInternal checkSettingsInternal) {
                         return getAppOutputWithScreenshot(region, lastScreenshot, checkSettingsInternal);
                     }
+
+                    @Override
+                    public EyesScreenshot captureScreenshot(Region region,
+                                                            ICheckSettingsInternal checkSettingsInternal) {
+                        return EyesBase.this.captureScreenshot(region, checkSettingsInternal);
+                    }
+
+                    @Override
+                    public AppOutputWithScreenshot getAppOutput(EyesScreenshot screenshot,
+                                                                EyesScreenshot lastScreenshot) {
+                        return getAppOutputWithScreenshot(screenshot, lastScreenshot);
+                    }
                 }
         );
     }
@@ -1443,11 +2065,11 @@ public abstract class EyesBase {
     }
 
     private void logOpenBase() {
-        logger.log(String.format("Eyes server URL is '%s'", serverConnector.getServerUrl()));
-        logger.verbose(String.format("Timeout = '%d'", serverConnector.getTimeout()));
-        logger.log(String.format("matchTimeout = '%d' ", matchTimeout));
-        logger.log(String.format("Default match settings = '%s' ", defaultMatchSettings));
-        logger.log(String.format("FailureReports = '%s' ", failureReports));
+        logger.log("Eyes server URL is '%s'", serverConnector.getServerUrl());
+        logger.verbose("Timeout = '%d'", serverConnector.getTimeout());
+        logger.log("matchTimeout = '%d' ", matchTimeout);
+        logger.log("Default match settings = '%s' ", defaultMatchSettings);
+        logger.log("FailureReports = '%s' ", failureReports);
     }
 
     private void validateSessionOpen() {
@@ -1531,7 +2153,7 @@ public abstract class EyesBase {
      */
     protected void addTextTriggerBase(Region control, String text) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring '%s' (disabled)", text));
+            logger.verbose("Ignoring '%s' (disabled)", text);
             return;
         }
 
@@ -1542,23 +2164,23 @@ public abstract class EyesBase {
         control = new Region(control);
 
         if (lastScreenshot == null) {
-            logger.verbose(String.format("Ignoring '%s' (no screenshot)",
-                    text));
+            logger.verbose("Ignoring '%s' (no screenshot)",
+                    text);
             return;
         }
 
         control = lastScreenshot.getIntersectedRegion(control, CoordinatesType.SCREENSHOT_AS_IS);
 
         if (control.isSizeEmpty()) {
-            logger.verbose(String.format("Ignoring '%s' (out of bounds)",
-                    text));
+            logger.verbose("Ignoring '%s' (out of bounds)",
+                    text);
             return;
         }
 
         Trigger trigger = new TextTrigger(control, text);
         addUserInput(trigger);
 
-        logger.verbose(String.format("Added %s", trigger));
+        logger.verbose("Added %s", trigger);
     }
 
     /**
@@ -1571,7 +2193,7 @@ public abstract class EyesBase {
     protected void addMouseTriggerBase(MouseAction action, Region control,
                                        Location cursor) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring %s (disabled)", action));
+            logger.verbose("Ignoring %s (disabled)", action);
             return;
         }
 
@@ -1581,8 +2203,8 @@ public abstract class EyesBase {
 
         // Triggers are actually performed on the previous window.
         if (lastScreenshot == null) {
-            logger.verbose(String.format("Ignoring %s (no screenshot)",
-                    action));
+            logger.verbose("Ignoring %s (no screenshot)",
+                    action);
             return;
         }
 
@@ -1595,8 +2217,8 @@ public abstract class EyesBase {
             cursorInScreenshot = lastScreenshot.getLocationInScreenshot(
                     cursorInScreenshot, CoordinatesType.CONTEXT_RELATIVE);
         } catch (OutOfBoundsException e) {
-            logger.verbose(String.format("Ignoring %s (out of bounds)",
-                    action));
+            logger.verbose("Ignoring %s (out of bounds)",
+                    action);
             return;
         }
 
@@ -1613,7 +2235,7 @@ public abstract class EyesBase {
         Trigger trigger = new MouseTrigger(action, controlScreenshotIntersect, cursorInScreenshot);
         addUserInput(trigger);
 
-        logger.verbose(String.format("Added %s", trigger));
+        logger.verbose("Added %s", trigger);
     }
 
     // FIXME add getScreenshot (Wrapper) ?? (Check EyesBase in .NET)
@@ -1649,7 +2271,12 @@ public abstract class EyesBase {
         if (serverConnector == null) {
             throw new EyesException("server connector not set.");
         }
+        CheckpointTimings timings = checkpointTimings;
+        long start = System.nanoTime();
         ensureViewportSize();
+        if (timings != null) {
+            timings.addSince(Phase.VIEWPORT_SETUP, start);
+        }
 
         BatchInfo testBatch = config.getBatch();
         if (testBatch == null) {
@@ -1670,7 +2297,11 @@ public abstract class EyesBase {
                 appEnv, defaultMatchSettings, properties);
 
         logger.verbose("Starting server session...");
+        start = System.nanoTime();
         runningSession = serverConnector.startSession(sessionStartInfo);
+        if (traceRecorder != null) {
+            traceRecorder.addSpan("startSession", start, System.nanoTime());
+        }
 
         logger.verbose("Server session ID is " + runningSession.getId());
 
@@ -1723,7 +2354,35 @@ public abstract class EyesBase {
      */
     private AppOutputWithScreenshot getAppOutputWithScreenshot(
             Region region, EyesScreenshot lastScreenshot, ICheckSettingsInternal checkSettingsInternal) {
+        return getAppOutputWithScreenshot(captureScreenshot(region, checkSettingsInternal), lastScreenshot);
+    }
+
+    /**
+     * Creates the application output of a captured screenshot: compresses
+     * the screenshot, and captures and posts the DOM.
+     */
+    private AppOutputWithScreenshot getAppOutputWithScreenshot(EyesScreenshot screenshot,
+                                                               EyesScreenshot lastScreenshot) {
+        CheckpointTimings timings = checkpointTimings;
+
+        logger.verbose("Compressing screenshot...");
+        byte[] compressResult = compressScreenshot(screenshot, lastScreenshot, timings);
+        logger.verbose("Done! Getting title...");
+        String title = getTitle();
+        logger.verbose("Done!");
 
+        //DOM SNAPSHOT
+        String domJsonUrl = tryPostDomJson(tryCaptureDomJson(timings), timings);
+        AppOutputWithScreenshot result = new AppOutputWithScreenshot(new AppOutput(title, compressResult, domJsonUrl), screenshot);
+        logger.verbose("Done!");
+        return result;
+    }
+
+    /**
+     * @param region The region of the screenshot to capture, or the empty region for the entire screenshot.
+     * @return The screenshot.
+     */
+    private EyesScreenshot captureScreenshot(Region region, ICheckSettingsInternal checkSettingsInternal) {
         logger.verbose("getting screenshot...");
         // Getting the screenshot (abstract function implemented by each SDK).
         EyesScreenshot screenshot = getScreenshot();
@@ -1734,48 +2393,80 @@ public abstract class EyesBase {
             screenshot = getSubScreenshot(screenshot, region, checkSettingsInternal);
             debugScreenshotsProvider.save(screenshot.getImage(), "SUB_SCREENSHOT");
         }
+        return screenshot;
+    }
 
-        logger.verbose("Compressing screenshot...");
-        String compressResult = compressScreenshot64(screenshot, lastScreenshot);
-        logger.verbose("Done! Getting title...");
-        String title = getTitle();
-        logger.verbose("Done!");
-
-        //DOM SNAPSHOT
-        String domJson = null;
-        String domJsonUrl = null;
+    /**
+     * @param timings The timings of the checkpoint, or {@code null}.
+     * @return The DOM of the application, or {@code null} if it isn't sent or
+     * capturing it failed.
+     */
+    private UploadSpool.Payload tryCaptureDomJson(CheckpointTimings timings) {
         try {
             if (isSendDom()) {
-                domJson = tryCaptureDom();
-
-                if (domJson != null) {
-                    long start = System.currentTimeMillis();
-                    domJsonUrl = tryPostDomSnapshot(domJson);
-                    logger.verbose("Send JSON to SERVER in "+(System.currentTimeMillis() - start)/ 1000);
+                long start = System.nanoTime();
+                UploadSpool.Payload domJson = tryCaptureDomPayload();
+                if (timings != null) {
+                    timings.addSince(Phase.DOM_CAPTURE, start);
                 }
-
+                return domJson;
             }
         } catch (Exception e) {
             GeneralUtils.logExceptionStackTrace(e);
         }
-        AppOutputWithScreenshot result = new AppOutputWithScreenshot(new AppOutput(title, compressResult, domJsonUrl), screenshot);
-        logger.verbose("Done!");
-        return result;
+        return null;
+    }
+
+    /**
+     * @param domJson The DOM to post, or {@code null}.
+     * @param timings The timings of the checkpoint, or {@code null}.
+     * @return The URL of the posted DOM, or {@code null} if there was no DOM
+     * or posting it failed.
+     */
+    private String tryPostDomJson(final UploadSpool.Payload domJson, CheckpointTimings timings) {
+        if (domJson == null) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            final AtomicLong domSize = new AtomicLong();
+            String domJsonUrl = tryPostDomSnapshot(new UploadSpool.Payload() {
+                @Override
+                public void writeTo(OutputStream output) throws IOException {
+                    CountingOutputStream countingOutput = new CountingOutputStream(output);
+                    domJson.writeTo(countingOutput);
+                    domSize.set(countingOutput.getBytesCount());
+                }
+            });
+            long end = timings != null ?
+                    timings.addSince(Phase.DOM_UPLOAD, start, "bytes", domSize.get()) : System.nanoTime();
+            logger.verbose("Send JSON to SERVER in %.3f seconds", (end - start) / 1e9);
+            return domJsonUrl;
+        } catch (Exception e) {
+            GeneralUtils.logExceptionStackTrace(e);
+            return null;
+        }
     }
 
     /**
      * Compresses a given screenshot.
      * @param screenshot     The screenshot to compress.
      * @param lastScreenshot The previous screenshot, or null.
-     * @return A base64 encoded compressed screenshot.
+     * @param timings        The timings of the checkpoint, or {@code null}.
+     * @return The compressed screenshot.
      */
-    private String compressScreenshot64(EyesScreenshot screenshot,
-                                        EyesScreenshot lastScreenshot) {
+    private byte[] compressScreenshot(EyesScreenshot screenshot,
+                                      EyesScreenshot lastScreenshot,
+                                      CheckpointTimings timings) {
 
         ArgumentGuard.notNull(screenshot, "screenshot");
 
+        long start = System.nanoTime();
         BufferedImage screenshotImage = screenshot.getImage();
         byte[] uncompressed = ImageUtils.encodeAsPng(screenshotImage);
+        if (timings != null) {
+            start = timings.addSince(Phase.PNG_ENCODE, start, "bytes", uncompressed.length);
+        }
 
         BufferedImage source = (lastScreenshot != null) ?
                 lastScreenshot.getImage() : null;
@@ -1784,12 +2475,16 @@ public abstract class EyesBase {
         byte[] compressedScreenshot;
         try {
             compressedScreenshot = ImageDeltaCompressor.compressByRawBlocks(
-                    screenshotImage, uncompressed, source);
+                    screenshotImage, uncompressed, source,
+                    ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, compressionPool);
         } catch (IOException e) {
             throw new EyesException("Failed to compress screenshot!", e);
         }
+        if (timings != null) {
+            timings.addSince(Phase.DELTA_COMPRESSION, start, "bytes", compressedScreenshot.length);
+        }
 
-        return Base64.encodeBase64String(compressedScreenshot);
+        return compressedScreenshot;
     }
 
     public void log(String message) {
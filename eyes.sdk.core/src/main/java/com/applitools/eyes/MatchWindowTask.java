@@ -5,11 +5,15 @@ package com.applitools.eyes;
 
 import com.applitools.eyes.capture.AppOutputProvider;
 import com.applitools.eyes.capture.AppOutputWithScreenshot;
+import com.applitools.eyes.capture.ScreenshotAppOutputProvider;
 import com.applitools.eyes.fluent.GetFloatingRegion;
 import com.applitools.eyes.fluent.GetRegion;
 import com.applitools.eyes.fluent.ICheckSettingsInternal;
+import com.applitools.eyes.metrics.CheckpointTimings;
+import com.applitools.eyes.metrics.Phase;
 import com.applitools.utils.ArgumentGuard;
 import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -20,6 +24,10 @@ import java.util.List;
 public class MatchWindowTask {
 
     private static final int MATCH_INTERVAL = 500; // Milliseconds
+    // The interval between retries while the screen is changing, and the
+    // longest interval when it doesn't change.
+    private static final int MIN_MATCH_INTERVAL = 250; // Milliseconds
+    private static final int MAX_MATCH_INTERVAL = 2000; // Milliseconds
 
     private final Logger logger;
     private final IServerConnector serverConnector;
@@ -89,7 +97,15 @@ public class MatchWindowTask {
                                      AppOutputWithScreenshot appOutput,
                                      String tag, boolean ignoreMismatch,
                                      ImageMatchSettings imageMatchSettings) {
+        return performMatch(userInputs, appOutput, tag, ignoreMismatch, imageMatchSettings,
+                getAgentSetupString());
+    }
 
+    /**
+     * @return The agent setup of the Eyes object, serialized as JSON, or an
+     * empty string if it isn't available.
+     */
+    public String getAgentSetupString() {
         String agentSetupStr = "";
         if (eyes != null) {
             Object agentSetup = eyes.getAgentSetup();
@@ -100,7 +116,26 @@ public class MatchWindowTask {
                 GeneralUtils.logExceptionStackTrace(logger, e);
             }
         }
+        return agentSetupStr;
+    }
 
+    /**
+     * Creates the match data and calls the server connector matchWindow method.
+     * Unlike the other overload, doesn't use the Eyes object, so it can be
+     * called on a background thread.
+     * @param userInputs         The user inputs related to the current appOutput.
+     * @param appOutput          The application output to be matched.
+     * @param tag                Optional tag to be associated with the match (can be {@code null}).
+     * @param ignoreMismatch     Whether to instruct the server to ignore the match attempt in case of a mismatch.
+     * @param imageMatchSettings The settings to use.
+     * @param agentSetupStr      The result of {@link #getAgentSetupString()}.
+     * @return The match result.
+     */
+    public MatchResult performMatch(Trigger[] userInputs,
+                                    AppOutputWithScreenshot appOutput,
+                                    String tag, boolean ignoreMismatch,
+                                    ImageMatchSettings imageMatchSettings,
+                                    String agentSetupStr) {
         // Prepare match data.
         MatchWindowData data = new MatchWindowData(
                 userInputs,
@@ -140,7 +175,7 @@ public class MatchWindowTask {
             retryTimeout = defaultRetryTimeout;
         }
 
-        logger.verbose(String.format("retryTimeout = %d", retryTimeout));
+        logger.verbose("retryTimeout = %d", retryTimeout);
 
         EyesScreenshot screenshot = takeScreenshot(userInputs, region, tag,
                 shouldRunOnceOnTimeout, ignoreMismatch, checkSettingsInternal, retryTimeout);
@@ -223,7 +258,7 @@ public class MatchWindowTask {
                                           boolean shouldMatchWindowRunOnceOnTimeout,
                                           boolean ignoreMismatch, ICheckSettingsInternal checkSettingsInternal,
                                           int retryTimeout) {
-        long elapsedTimeStart = System.currentTimeMillis();
+        long elapsedTimeStart = System.nanoTime();
         EyesScreenshot screenshot;
 
         // If the wait to load time is 0, or "run once" is true,
@@ -239,8 +274,8 @@ public class MatchWindowTask {
                     retryTimeout);
         }
 
-        double elapsedTime = (System.currentTimeMillis() - elapsedTimeStart) / 1000;
-        logger.verbose(String.format("Completed in %.2f seconds", elapsedTime));
+        double elapsedTime = (System.nanoTime() - elapsedTimeStart) / 1e9;
+        logger.verbose("Completed in %.2f seconds", elapsedTime);
         //matchResult.setScreenshot(screenshot);
         return screenshot;
     }
@@ -251,6 +286,11 @@ public class MatchWindowTask {
         long start = System.currentTimeMillis();
 
         EyesScreenshot screenshot = null;
+        // The hashes of the last screenshot, and of the last one which didn't match.
+        Long lastHash = null;
+        Long lastMismatchHash = null;
+        int matchInterval = MATCH_INTERVAL;
+        int skippedCount = 0;
 
         long retry = System.currentTimeMillis() - start;
 
@@ -258,17 +298,59 @@ public class MatchWindowTask {
         while (retry < retryTimeout) {
 
             // Wait before trying again.
-            GeneralUtils.sleep(MATCH_INTERVAL);
+            CheckpointTimings timings = getCheckpointTimings();
+            long waitStart = System.nanoTime();
+            GeneralUtils.sleep((int) Math.min(matchInterval, retryTimeout - retry));
+            if (timings != null) {
+                timings.addRetry();
+                timings.addSince(Phase.RETRY_WAIT, waitStart, "retry", timings.getRetries());
+            }
 
-            screenshot = tryTakeScreenshot(userInputs, region, tag, true, checkSettingsInternal);
+            // The output of the screenshot (its compression and the DOM) is
+            // only created if the screenshot is matched, when possible.
+            AppOutputWithScreenshot appOutput = null;
+            if (appOutputProvider instanceof ScreenshotAppOutputProvider) {
+                screenshot = ((ScreenshotAppOutputProvider) appOutputProvider)
+                        .captureScreenshot(region, checkSettingsInternal);
+            } else {
+                appOutput = appOutputProvider.getAppOutput(region, lastScreenshot, checkSettingsInternal);
+                screenshot = appOutput.getScreenshot();
+            }
+            Long hash = getScreenshotHash(screenshot);
 
-            if (matchResult.getAsExpected()) {
-                break;
+            // Poll quickly while the screen is changing, and back off while it isn't.
+            if (hash != null && hash.equals(lastHash)) {
+                matchInterval = Math.min(matchInterval * 2, MAX_MATCH_INTERVAL);
+            } else {
+                matchInterval = MIN_MATCH_INTERVAL;
+            }
+            lastHash = hash;
+
+            if (hash != null && hash.equals(lastMismatchHash)) {
+                // The server already rejected this exact screenshot.
+                ++skippedCount;
+                logger.verbose("Screenshot unchanged since the last mismatch, skipping match " +
+                        "(next retry in %d ms)", matchInterval);
+            } else {
+                if (appOutput == null) {
+                    appOutput = ((ScreenshotAppOutputProvider) appOutputProvider)
+                            .getAppOutput(screenshot, lastScreenshot);
+                }
+                matchScreenshot(userInputs, appOutput, tag, true, checkSettingsInternal);
+
+                if (matchResult.getAsExpected()) {
+                    break;
+                }
+                lastMismatchHash = hash;
             }
 
             retry = System.currentTimeMillis() - start;
         }
 
+        if (skippedCount > 0) {
+            logger.verbose("Skipped %d matches of unchanged screenshots", skippedCount);
+        }
+
         // if we're here because we haven't found a match yet, try once more
         if (!matchResult.getAsExpected()) {
             screenshot = tryTakeScreenshot(userInputs, region, tag, ignoreMismatch, checkSettingsInternal);
@@ -276,13 +358,59 @@ public class MatchWindowTask {
         return screenshot;
     }
 
+    /**
+     * @return The hash of the screenshot's image, or {@code null} if there is
+     * no image.
+     */
+    private static Long getScreenshotHash(EyesScreenshot screenshot) {
+        if (screenshot == null || screenshot.getImage() == null) {
+            return null;
+        }
+        return ImageUtils.getImageHash(screenshot.getImage());
+    }
+
     private EyesScreenshot tryTakeScreenshot(Trigger[] userInputs, Region region, String tag,
                                              boolean ignoreMismatch, ICheckSettingsInternal checkSettingsInternal) {
         AppOutputWithScreenshot appOutput = appOutputProvider.getAppOutput(region, lastScreenshot, checkSettingsInternal);
-        EyesScreenshot screenshot = appOutput.getScreenshot();
-        ImageMatchSettings matchSettings = createImageMatchSettings(checkSettingsInternal, screenshot);
+        matchScreenshot(userInputs, appOutput, tag, ignoreMismatch, checkSettingsInternal);
+        return appOutput.getScreenshot();
+    }
+
+    private void matchScreenshot(Trigger[] userInputs, AppOutputWithScreenshot appOutput, String tag,
+                                 boolean ignoreMismatch, ICheckSettingsInternal checkSettingsInternal) {
+        ImageMatchSettings matchSettings = createImageMatchSettings(checkSettingsInternal, appOutput.getScreenshot());
+        CheckpointTimings timings = getCheckpointTimings();
+        long start = System.nanoTime();
         matchResult = performMatch(userInputs, appOutput, tag, ignoreMismatch, matchSettings);
-        return screenshot;
+        if (timings != null) {
+            timings.addSince(Phase.MATCH, start);
+        }
+    }
+
+    /**
+     * @return The timings of the checkpoint being matched, or {@code null}.
+     */
+    private CheckpointTimings getCheckpointTimings() {
+        return eyes != null ? eyes.getCheckpointTimings() : null;
+    }
+
+    /**
+     * @return The last screenshot sent to the server without ignoring
+     * mismatches, which the next screenshot is compressed against.
+     */
+    EyesScreenshot getLastScreenshot() {
+        return lastScreenshot;
+    }
+
+    /**
+     * Records a screenshot sent to the server by an asynchronous check, so
+     * the next screenshots are compressed against it.
+     * @param screenshot The screenshot.
+     * @param region     The region the screenshot was captured for.
+     */
+    void setLastScreenshot(EyesScreenshot screenshot, Region region) {
+        updateLastScreenshot(screenshot);
+        updateBounds(region);
     }
 
     private void updateLastScreenshot(EyesScreenshot screenshot) {
@@ -0,0 +1,51 @@
+package com.applitools.eyes;
+
+/**
+ * The outcome of closing a single test: either its results or the exception
+ * which prevented getting them.
+ */
+public class TestResultContainer {
+
+    private final TestResults testResults;
+    private final Throwable exception;
+    private final long closeDuration;
+
+    /**
+     * @param testResults   The test results, or {@code null} if closing failed.
+     * @param exception     The exception closing the test failed with, or
+     *                      {@code null}.
+     * @param closeDuration The time it took to close the test (ms).
+     */
+    public TestResultContainer(TestResults testResults, Throwable exception, long closeDuration) {
+        this.testResults = testResults;
+        this.exception = exception;
+        this.closeDuration = closeDuration;
+    }
+
+    /**
+     * @return The test results, or {@code null} if closing the test failed.
+     */
+    public TestResults getTestResults() {
+        return testResults;
+    }
+
+    /**
+     * @return The exception closing the test failed with, or {@code null}.
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    /**
+     * @return The time it took to close the test (ms).
+     */
+    public long getCloseDuration() {
+        return closeDuration;
+    }
+
+    @Override
+    public String toString() {
+        String outcome = exception != null ? "exception: " + exception.getMessage() : String.valueOf(testResults);
+        return outcome + " (closed in " + closeDuration + " ms)";
+    }
+}
@@ -0,0 +1,126 @@
+package com.applitools.eyes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Aggregates the results of closing many tests together.
+ */
+public class TestResultsSummary implements Iterable<TestResultContainer> {
+
+    private final List<TestResultContainer> results;
+    private final long duration;
+
+    private int passed;
+    private int unresolved;
+    private int failed;
+    private int exceptions;
+    private int mismatches;
+    private int missing;
+    private int matches;
+    private long longestCloseDuration;
+
+    /**
+     * @param results  The results of the closed tests.
+     * @param duration The time it took to close all the tests (ms).
+     */
+    public TestResultsSummary(List<TestResultContainer> results, long duration) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.duration = duration;
+
+        for (TestResultContainer container : results) {
+            longestCloseDuration = Math.max(longestCloseDuration, container.getCloseDuration());
+            if (container.getException() != null) {
+                ++exceptions;
+            }
+
+            TestResults testResults = container.getTestResults();
+            if (testResults == null) {
+                continue;
+            }
+            TestResultsStatus status = testResults.getStatus();
+            if (status == TestResultsStatus.Failed) {
+                ++failed;
+            } else if (status == TestResultsStatus.Unresolved) {
+                ++unresolved;
+            } else if (status == TestResultsStatus.Passed) {
+                ++passed;
+            }
+            mismatches += testResults.getMismatches();
+            missing += testResults.getMissing();
+            matches += testResults.getMatches();
+        }
+    }
+
+    /**
+     * @return The results of the closed tests, in the order they were given.
+     */
+    public List<TestResultContainer> getAllResults() {
+        return results;
+    }
+
+    @Override
+    public Iterator<TestResultContainer> iterator() {
+        return results.iterator();
+    }
+
+    /**
+     * @return The time it took to close all the tests (ms).
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return The time it took to close the slowest test (ms).
+     */
+    public long getLongestCloseDuration() {
+        return longestCloseDuration;
+    }
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public int getUnresolved() {
+        return unresolved;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getExceptions() {
+        return exceptions;
+    }
+
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    public int getMissing() {
+        return missing;
+    }
+
+    public int getMatches() {
+        return matches;
+    }
+
+    @Override
+    public String toString() {
+        return "TestResultsSummary{" +
+                "tests=" + results.size() +
+                ", passed=" + passed +
+                ", unresolved=" + unresolved +
+                ", failed=" + failed +
+                ", exceptions=" + exceptions +
+                ", mismatches=" + mismatches +
+                ", missing=" + missing +
+                ", matches=" + matches +
+                ", duration=" + duration +
+                ", longestCloseDuration=" + longestCloseDuration +
+                '}';
+    }
+}
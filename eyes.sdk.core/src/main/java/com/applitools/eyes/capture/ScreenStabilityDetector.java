@@ -0,0 +1,86 @@
+package com.applitools.eyes.capture;
+
+import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
+import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Captures images until the screen is stable, i.e., until two consecutive
+ * captures are identical, instead of waiting a fixed time before capturing.
+ */
+public class ScreenStabilityDetector {
+
+    public static final int DEFAULT_POLL_INTERVAL = 50;
+
+    // Only every SAMPLE_STEP-th pixel of every SAMPLE_STEP-th row is
+    // fingerprinted, which still covers thin elements such as scrollbars and
+    // carets (which are at least a few pixels wide).
+    private static final int SAMPLE_STEP = 4;
+
+    private final Logger logger;
+    private final ImageProvider imageProvider;
+    private final int pollInterval;
+
+    public ScreenStabilityDetector(Logger logger, ImageProvider imageProvider) {
+        this(logger, imageProvider, DEFAULT_POLL_INTERVAL);
+    }
+
+    /**
+     * @param logger        The logger to use.
+     * @param imageProvider The provider of the images to compare.
+     * @param pollInterval  The time to wait between captures (Milliseconds).
+     */
+    public ScreenStabilityDetector(Logger logger, ImageProvider imageProvider, int pollInterval) {
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.notNull(imageProvider, "imageProvider");
+        ArgumentGuard.greaterThanOrEqualToZero(pollInterval, "pollInterval");
+
+        this.logger = logger;
+        this.imageProvider = imageProvider;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Captures images until two consecutive images are identical, or until
+     * {@code maxWait} has passed.
+     *
+     * @param maxWait     The maximum time to wait for the screen to be stable
+     *                    (Milliseconds).
+     * @param description A description of what is captured, for the log.
+     * @return The last captured image.
+     */
+    public BufferedImage getStableImage(int maxWait, String description) {
+        long start = System.currentTimeMillis();
+        BufferedImage image = imageProvider.getImage();
+        long fingerprint = ImageUtils.getImageHash(image, SAMPLE_STEP);
+        int capturesCount = 1;
+
+        while (true) {
+            long elapsed = System.currentTimeMillis() - start;
+            if (elapsed >= maxWait) {
+                logger.verbose(
+                        "%s: screen not stable after %d ms (%d captures, max wait %d ms)",
+                        description, elapsed, capturesCount, maxWait);
+                return image;
+            }
+
+            GeneralUtils.sleep(Math.min(pollInterval, maxWait - elapsed));
+            BufferedImage nextImage = imageProvider.getImage();
+            long nextFingerprint = ImageUtils.getImageHash(nextImage, SAMPLE_STEP);
+            ++capturesCount;
+
+            if (nextFingerprint == fingerprint) {
+                logger.verbose(
+                        "%s: screen stable after %d ms (%d captures, max wait %d ms)",
+                        description, System.currentTimeMillis() - start, capturesCount, maxWait);
+                return nextImage;
+            }
+
+            image = nextImage;
+            fingerprint = nextFingerprint;
+        }
+    }
+}
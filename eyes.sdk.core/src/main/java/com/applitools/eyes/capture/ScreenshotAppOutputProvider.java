@@ -0,0 +1,28 @@
+package com.applitools.eyes.capture;
+
+import com.applitools.eyes.EyesScreenshot;
+import com.applitools.eyes.Region;
+import com.applitools.eyes.fluent.ICheckSettingsInternal;
+
+/**
+ * An {@link AppOutputProvider} which can capture the screenshot before
+ * creating the rest of the application output (compressing the screenshot,
+ * capturing and posting the DOM). This lets the caller skip creating the
+ * output of a screenshot it won't match.
+ */
+public interface ScreenshotAppOutputProvider extends AppOutputProvider {
+
+    /**
+     * @param region                The region to capture.
+     * @param checkSettingsInternal The settings of the check.
+     * @return The screenshot of the region.
+     */
+    EyesScreenshot captureScreenshot(Region region, ICheckSettingsInternal checkSettingsInternal);
+
+    /**
+     * @param screenshot     A screenshot returned by {@link #captureScreenshot}.
+     * @param lastScreenshot The screenshot to compress against, or {@code null}.
+     * @return The application output of the screenshot.
+     */
+    AppOutputWithScreenshot getAppOutput(EyesScreenshot screenshot, EyesScreenshot lastScreenshot);
+}
@@ -1,6 +1,9 @@
 package com.applitools.eyes.debug;
 
+import com.applitools.utils.ArgumentGuard;
+import com.applitools.utils.ImageEncoder;
 import com.applitools.utils.ImageUtils;
+import com.applitools.utils.PngEncoder;
 
 import java.awt.image.BufferedImage;
 import java.text.SimpleDateFormat;
@@ -13,13 +16,26 @@ public class FileDebugScreenshotsProvider extends DebugScreenshotsProvider {
 
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss_SSS");
 
+    // Debug screenshots favor encoding speed over file size.
+    private ImageEncoder imageEncoder = new PngEncoder(PngEncoder.BEST_SPEED);
+
+    public ImageEncoder getImageEncoder() {
+        return imageEncoder;
+    }
+
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        ArgumentGuard.notNull(imageEncoder, "imageEncoder");
+        this.imageEncoder = imageEncoder;
+    }
+
     @Override
     public void save(BufferedImage image, String suffix) {
         String filename = getPath() + getPrefix() + getFormattedTimeStamp() + "_" + suffix + ".png";
-        ImageUtils.saveImage(image, filename);
+        ImageUtils.saveImage(image, filename, imageEncoder);
     }
 
-    private String getFormattedTimeStamp(){
+    // Parts of a full page screenshot may be saved from several threads.
+    private synchronized String getFormattedTimeStamp(){
         return dateFormat.format(Calendar.getInstance().getTime());
     }
 }
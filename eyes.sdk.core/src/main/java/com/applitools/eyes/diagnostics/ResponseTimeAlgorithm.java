@@ -61,7 +61,7 @@ public class ResponseTimeAlgorithm {
 
         TimedAppOutput updatedAppOutput = new TimedAppOutput(
                 currentAppOutput.getTitle(),
-                currentAppOutput.getScreenshot64(),
+                currentAppOutput.getScreenshot(),
                 currentAppOutput.getElapsed(),
                 updatePrimary);
         MatchWindowData updatedMwd = new MatchWindowData(
@@ -114,7 +114,7 @@ public class ResponseTimeAlgorithm {
         AppOutput appOutput = appOutputWithScreenshot.getAppOutput();
         TimedAppOutput timedAppOutput = new TimedAppOutput(
                 appOutput.getTitle(),
-                appOutput.getScreenshot64(),
+                appOutput.getScreenshot(),
                 elapsedTime,
                 true
         );
@@ -258,7 +258,7 @@ public class ResponseTimeAlgorithm {
             AppOutput appOutput = appOutputWithScreenshot.getAppOutput();
             TimedAppOutput timedAppOutput = new TimedAppOutput(
                     appOutput.getTitle(),
-                    appOutput.getScreenshot64(),
+                    appOutput.getScreenshot(),
                     elapsedTime,
                     isPrimary
             );
@@ -373,8 +373,8 @@ public class ResponseTimeAlgorithm {
             List<MatchWindowDataWithScreenshot> dataToSearch, int fromIndex,
             int toIndex, int earliestMatchIndex) {
 
-        logger.verbose(String.format("Indices: From %d, to %s ", fromIndex,
-                toIndex));
+        logger.verbose("Indices: From %d, to %s ", fromIndex,
+                toIndex);
 
         // Just in case.
         if (fromIndex > toIndex) {
@@ -407,9 +407,9 @@ public class ResponseTimeAlgorithm {
         if (fromIndex == toIndex ||
             (toIndex == currentMatchIndex && !matchResult.getAsExpected())) {
 
-            logger.verbose(String.format(
+            logger.verbose(
                     "Finished matching! Current index: %d, earliest match: %d",
-                    currentMatchIndex, earliestMatchIndex));
+                    currentMatchIndex, earliestMatchIndex);
             return earliestMatchIndex;
         }
 
@@ -464,9 +464,9 @@ public class ResponseTimeAlgorithm {
         int lastNonMatchIndex = lastNonMatch != null ?
                 collectedData.indexOf(lastNonMatch) : 0;
 
-        logger.verbose(String.format(
+        logger.verbose(
                 "Performing binary search for earliest match: From %d to %d",
-                lastNonMatchIndex, theMatchIndex - 1));
+                lastNonMatchIndex, theMatchIndex - 1);
 
         theMatchIndex = binarySearchEarliestMatch(logger,
                 serverConnector, runningSession, collectedData,
@@ -535,9 +535,9 @@ public class ResponseTimeAlgorithm {
                 }
             }
 
-            logger.verbose(String.format(
+            logger.verbose(
                     "Marking the earliest match as primary (at index %d).",
-                    theMatchIndex));
+                    theMatchIndex);
             theMatch = ResponseTimeAlgorithm.cloneTimedMWDWSWithPrimary(
                     theMatch, true);
             collectedData.set(theMatchIndex, theMatch);
@@ -580,9 +580,9 @@ public class ResponseTimeAlgorithm {
                     collectedData.get(i+1).getMatchWindowData().getAppOutput())
                     .getElapsed();
             if (currentElapsed == nextElapsed) {
-                logger.verbose(String.format(
+                logger.verbose(
                     "Skipping image at index %d (same elapsed as next image)..."
-                        , i));
+                        , i);
                 if (((TimedAppOutput)
                         currentMwd.getAppOutput()).getIsPrimary()){
                     logger.verbose("Skipped image is primary..");
@@ -11,8 +11,8 @@ public class TimedAppOutput extends AppOutput {
 
     /**
      * @param title        The title of the window.
-     * @param screenshot64 Base64 encoding of the screenshot's bytes (the
-     *                     byte can be in either in compressed or
+     * @param screenshot   The screenshot's bytes (either in compressed or
+     *                     uncompressed form).
      * @param elapsed      The elapsed time from the first captured window
      *                     until this window was captured.
      * @param isPrimary    Whether this window is considered a "primary"
@@ -20,9 +20,9 @@ public class TimedAppOutput extends AppOutput {
      *                     window there should already have been a match in
      *                     a timing test).
      */
-    public TimedAppOutput(String title, String screenshot64, long elapsed,
+    public TimedAppOutput(String title, byte[] screenshot, long elapsed,
                           boolean isPrimary) {
-        super(title, screenshot64, null);
+        super(title, screenshot, null);
         this.elapsed = elapsed;
         this.isPrimary = isPrimary;
     }
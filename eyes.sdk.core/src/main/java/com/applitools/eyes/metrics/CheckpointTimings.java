@@ -0,0 +1,174 @@
+package com.applitools.eyes.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The time spent in each phase of a single checkpoint. Phases may be timed by
+ * several threads (e.g., when stitching or matching in the background), and
+ * a phase may be timed more than once (e.g., once per screenshot part).
+ * Durations are measured with {@link System#nanoTime()}. If a
+ * {@link TraceRecorder} is given, the timed phases are recorded as spans too.
+ */
+public class CheckpointTimings {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String tag;
+    private final TraceRecorder traceRecorder;
+    private final long startTime;
+    private final AtomicLongArray durations = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES.length);
+    private final AtomicInteger retries = new AtomicInteger();
+    private volatile long duration = -1;
+
+    /**
+     * Starts timing a checkpoint.
+     * @param tag           The checkpoint tag.
+     * @param traceRecorder Records the phases as spans, or {@code null}.
+     */
+    public CheckpointTimings(String tag, TraceRecorder traceRecorder) {
+        this.tag = tag == null ? "" : tag;
+        this.traceRecorder = traceRecorder;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Starts timing a checkpoint, without tracing it.
+     * @param tag The checkpoint tag.
+     */
+    public CheckpointTimings(String tag) {
+        this(tag, null);
+    }
+
+    /**
+     * Adds time spent in a phase. The time isn't traced, since its start is
+     * unknown.
+     * @param phase    The phase.
+     * @param duration The time spent (ns).
+     */
+    public void add(Phase phase, long duration) {
+        durations.addAndGet(phase.ordinal(), duration);
+        counts.incrementAndGet(phase.ordinal());
+    }
+
+    /**
+     * Adds the time since {@code start} to a phase.
+     * @param phase The phase.
+     * @param start The {@link System#nanoTime()} the phase started at.
+     * @return The current {@link System#nanoTime()}, so consecutive phases
+     * can be timed with a single clock read between them.
+     */
+    public long addSince(Phase phase, long start) {
+        return addSince(phase, start, null, 0, null, 0);
+    }
+
+    /**
+     * Adds the time since {@code start} to a phase, tracing it with a numeric
+     * argument (e.g., a byte count).
+     */
+    public long addSince(Phase phase, long start, String argName, long argValue) {
+        return addSince(phase, start, argName, argValue, null, 0);
+    }
+
+    /**
+     * Adds the time since {@code start} to a phase, tracing it with two
+     * numeric arguments (e.g., image dimensions).
+     */
+    public long addSince(Phase phase, long start, String argName1, long argValue1,
+                         String argName2, long argValue2) {
+        long now = System.nanoTime();
+        add(phase, now - start);
+        if (traceRecorder != null) {
+            traceRecorder.addSpan(phase.name(), start, now, argName1, argValue1, argName2, argValue2);
+        }
+        return now;
+    }
+
+    /**
+     * Counts a match retry.
+     */
+    public void addRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Stops timing the checkpoint. Only the first call has an effect.
+     */
+    public void finish() {
+        if (duration < 0) {
+            long now = System.nanoTime();
+            duration = now - startTime;
+            if (traceRecorder != null) {
+                traceRecorder.addAsyncSpan("checkpoint", tag, startTime, now, "retries", retries.get());
+            }
+        }
+    }
+
+    /**
+     * @return The checkpoint tag.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @param phase The phase.
+     * @return The total time spent in the phase (ns).
+     */
+    public long getDuration(Phase phase) {
+        return durations.get(phase.ordinal());
+    }
+
+    /**
+     * @param phase The phase.
+     * @return The number of times the phase was timed.
+     */
+    public long getCount(Phase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * @return The number of match retries.
+     */
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return The time from the start of the checkpoint until it finished, or
+     * until now if it hasn't finished (ns).
+     */
+    public long getTotalDuration() {
+        long duration = this.duration;
+        return duration >= 0 ? duration : System.nanoTime() - startTime;
+    }
+
+    /**
+     * @return Whether the checkpoint finished.
+     */
+    public boolean isFinished() {
+        return duration >= 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CheckpointTimings{tag='").append(tag).append("', total=")
+                .append(toMillisString(getTotalDuration()));
+        for (Phase phase : PHASES) {
+            long count = getCount(phase);
+            if (count > 0) {
+                sb.append(", ").append(phase).append('=').append(toMillisString(getDuration(phase)));
+                if (count > 1) {
+                    sb.append(" x").append(count);
+                }
+            }
+        }
+        return sb.append(", retries=").append(getRetries()).append('}').toString();
+    }
+
+    static String toMillisString(long nanos) {
+        return String.format("%.2f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.applitools.eyes.metrics;
+
+import com.applitools.eyes.Logger;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Aggregates the timings of checkpoints in memory, with a histogram per
+ * phase, and logs a summary whenever a test is closed. A single listener can
+ * be shared by several Eyes instances.
+ */
+public class HistogramMetricsListener implements MetricsListener {
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final LatencyHistogram totals = new LatencyHistogram();
+    private long retries;
+
+    public HistogramMetricsListener() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records the checkpoint. Each phase is recorded once per checkpoint, with
+     * the total time spent in it.
+     */
+    @Override
+    public synchronized void onCheckpoint(CheckpointTimings timings) {
+        totals.record(timings.getTotalDuration());
+        retries += timings.getRetries();
+        for (Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet()) {
+            if (timings.getCount(entry.getKey()) > 0) {
+                entry.getValue().record(timings.getDuration(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Logs the summary of all the checkpoints recorded so far.
+     */
+    @Override
+    public void onClose(Logger logger) {
+        logger.log(getSummary());
+    }
+
+    /**
+     * @param phase The phase.
+     * @return A copy of the histogram of the time spent in the phase per
+     * checkpoint.
+     */
+    public synchronized LatencyHistogram getHistogram(Phase phase) {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(phases.get(phase));
+        return copy;
+    }
+
+    /**
+     * @return A copy of the histogram of the checkpoints' total durations.
+     */
+    public synchronized LatencyHistogram getTotalHistogram() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(totals);
+        return copy;
+    }
+
+    /**
+     * @return The number of recorded checkpoints.
+     */
+    public synchronized long getCheckpointCount() {
+        return totals.getCount();
+    }
+
+    /**
+     * @return The total number of match retries of the recorded checkpoints.
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Removes all the recorded checkpoints.
+     */
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : phases.values()) {
+            histogram.reset();
+        }
+        totals.reset();
+        retries = 0;
+    }
+
+    /**
+     * @return A table of the count, mean, percentiles and maximum of each
+     * phase (ms).
+     */
+    public synchronized String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Checkpoint timings: %d checkpoints, %d match retries%n",
+                totals.getCount(), retries));
+        sb.append(String.format("%-18s %7s %10s %10s %10s %10s %10s%n",
+                "phase (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                appendRow(sb, entry.getKey().toString(), entry.getValue());
+            }
+        }
+        appendRow(sb, "TOTAL", totals);
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(String.format("%-18s %7d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getCount(),
+                histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0,
+                histogram.getPercentile(90) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                histogram.getMax() / 1000.0));
+    }
+}
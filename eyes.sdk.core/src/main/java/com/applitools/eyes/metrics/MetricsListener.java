@@ -0,0 +1,23 @@
+package com.applitools.eyes.metrics;
+
+import com.applitools.eyes.Logger;
+
+/**
+ * Receives the timings of checkpoints. Checkpoints which are matched in the
+ * background are reported from background threads, so implementations must
+ * be thread safe.
+ */
+public interface MetricsListener {
+
+    /**
+     * Called when a checkpoint finished, whether it succeeded or not.
+     * @param timings The timings of the checkpoint.
+     */
+    void onCheckpoint(CheckpointTimings timings);
+
+    /**
+     * Called when the test is closed, after its last checkpoint.
+     * @param logger The logger of the closed test.
+     */
+    void onClose(Logger logger);
+}
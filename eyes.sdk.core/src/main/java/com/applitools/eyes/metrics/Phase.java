@@ -0,0 +1,52 @@
+package com.applitools.eyes.metrics;
+
+/**
+ * The phases of a checkpoint timed by {@link CheckpointTimings}.
+ */
+public enum Phase {
+    /**
+     * Setting the viewport size, if done by the checkpoint.
+     */
+    VIEWPORT_SETUP,
+    /**
+     * Scrolling to each part of a full page screenshot.
+     */
+    SCROLL,
+    /**
+     * Capturing a screenshot part, including waiting for the screen to be
+     * stable.
+     */
+    CAPTURE_PART,
+    /**
+     * Cutting, cropping and scaling screenshot parts.
+     */
+    CUT_CROP_SCALE,
+    /**
+     * Copying screenshot parts into the full page image.
+     */
+    STITCH,
+    /**
+     * Encoding the screenshot as PNG.
+     */
+    PNG_ENCODE,
+    /**
+     * Compressing the screenshot relative to the previous one.
+     */
+    DELTA_COMPRESSION,
+    /**
+     * Capturing the DOM, including downloading its style sheets.
+     */
+    DOM_CAPTURE,
+    /**
+     * Uploading the DOM.
+     */
+    DOM_UPLOAD,
+    /**
+     * Uploading the match data and waiting for the server to match it.
+     */
+    MATCH,
+    /**
+     * Waiting between match retries.
+     */
+    RETRY_WAIT
+}
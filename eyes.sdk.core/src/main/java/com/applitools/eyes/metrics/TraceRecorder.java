@@ -0,0 +1,311 @@
+package com.applitools.eyes.metrics;
+
+import com.applitools.eyes.EyesException;
+import com.applitools.utils.ArgumentGuard;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records spans of SDK activity, and writes them in the Chrome trace event
+ * format, which can be opened in chrome://tracing or Perfetto. Each thread
+ * gets its own track, so parallel tests and background workers appear side
+ * by side. Operations which start and end on different threads (e.g., a
+ * whole checkpoint) are recorded as async spans, which get tracks of their
+ * own.
+ * <p>
+ * Spans are kept in preallocated arrays, so recording a span doesn't
+ * allocate, besides a new chunk every {@link #CHUNK_SIZE} spans. Span names
+ * and argument names should be constants. A single recorder can be shared by
+ * several Eyes instances, to trace a whole batch into a single file.
+ */
+public class TraceRecorder {
+
+    public static final int DEFAULT_MAX_EVENTS = 1000 * 1000;
+    public static final int CHUNK_SIZE = 4096;
+
+    private static final String CATEGORY = "eyes";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final long PROCESS_ID = getProcessId();
+
+    /**
+     * A block of recorded spans. Only the last chunk is still filled, and
+     * the spans below {@code size} never change.
+     */
+    private static class Chunk {
+        final String[] names = new String[CHUNK_SIZE];
+        final String[] labels = new String[CHUNK_SIZE];
+        final long[] starts = new long[CHUNK_SIZE];
+        final long[] ends = new long[CHUNK_SIZE];
+        final long[] asyncIds = new long[CHUNK_SIZE];
+        final long[] threadIds = new long[CHUNK_SIZE];
+        final String[] threadNames = new String[CHUNK_SIZE];
+        final String[] argNames = new String[CHUNK_SIZE * 2];
+        final long[] argValues = new long[CHUNK_SIZE * 2];
+        int size;
+    }
+
+    private final String filename;
+    private final int maxEvents;
+    private final long origin = System.nanoTime();
+    private final AtomicLong lastAsyncId = new AtomicLong();
+
+    // Guarded by this.
+    private List<Chunk> chunks = new ArrayList<>();
+    private Chunk current;
+    private int eventCount;
+    private long droppedCount;
+
+    /**
+     * @param filename  The file the trace is written to.
+     * @param maxEvents The maximal number of spans to keep. Later spans are
+     *                  dropped.
+     */
+    public TraceRecorder(String filename, int maxEvents) {
+        ArgumentGuard.notNullOrEmpty(filename, "filename");
+        ArgumentGuard.greaterThanZero(maxEvents, "maxEvents");
+        this.filename = filename;
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * See {@link #TraceRecorder(String, int)}.
+     * {@code maxEvents} defaults to {@link #DEFAULT_MAX_EVENTS}.
+     */
+    public TraceRecorder(String filename) {
+        this(filename, DEFAULT_MAX_EVENTS);
+    }
+
+    /**
+     * @return The file the trace is written to.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Records a span of the current thread.
+     * @param name  The span name.
+     * @param start The {@link System#nanoTime()} the span started at.
+     * @param end   The {@link System#nanoTime()} the span ended at.
+     */
+    public void addSpan(String name, long start, long end) {
+        add(name, null, 0, start, end, null, 0, null, 0);
+    }
+
+    /**
+     * Records a span of the current thread, with a numeric argument.
+     */
+    public void addSpan(String name, long start, long end, String argName, long argValue) {
+        add(name, null, 0, start, end, argName, argValue, null, 0);
+    }
+
+    /**
+     * Records a span of the current thread, with two numeric arguments (e.g.,
+     * the width and height of an image).
+     */
+    public void addSpan(String name, long start, long end, String argName1, long argValue1,
+                        String argName2, long argValue2) {
+        add(name, null, 0, start, end, argName1, argValue1, argName2, argValue2);
+    }
+
+    /**
+     * Records a span which may have started on another thread.
+     * @param name     The span name.
+     * @param label    A description of the span (e.g., the checkpoint tag),
+     *                 or {@code null}.
+     * @param start    The {@link System#nanoTime()} the span started at.
+     * @param end      The {@link System#nanoTime()} the span ended at.
+     * @param argName  The name of a numeric argument, or {@code null}.
+     * @param argValue The value of the argument.
+     */
+    public void addAsyncSpan(String name, String label, long start, long end, String argName, long argValue) {
+        add(name, label, lastAsyncId.incrementAndGet(), start, end, argName, argValue, null, 0);
+    }
+
+    private void add(String name, String label, long asyncId, long start, long end,
+                     String argName1, long argValue1, String argName2, long argValue2) {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            if (eventCount >= maxEvents) {
+                ++droppedCount;
+                return;
+            }
+            Chunk chunk = current;
+            if (chunk == null || chunk.size == CHUNK_SIZE) {
+                chunk = new Chunk();
+                chunks.add(chunk);
+                current = chunk;
+            }
+            int i = chunk.size;
+            chunk.names[i] = name;
+            chunk.labels[i] = label;
+            chunk.starts[i] = start;
+            chunk.ends[i] = end;
+            chunk.asyncIds[i] = asyncId;
+            chunk.threadIds[i] = thread.getId();
+            chunk.threadNames[i] = thread.getName();
+            chunk.argNames[i * 2] = argName1;
+            chunk.argValues[i * 2] = argValue1;
+            chunk.argNames[i * 2 + 1] = argName2;
+            chunk.argValues[i * 2 + 1] = argValue2;
+            chunk.size = i + 1;
+            ++eventCount;
+        }
+    }
+
+    /**
+     * @return The number of recorded spans.
+     */
+    public synchronized int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return The number of spans dropped because there were already
+     * {@code maxEvents} spans.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Removes all the recorded spans.
+     */
+    public synchronized void clear() {
+        chunks = new ArrayList<>();
+        current = null;
+        eventCount = 0;
+        droppedCount = 0;
+    }
+
+    /**
+     * Writes all the spans recorded so far to the trace file, replacing its
+     * contents. Spans may be recorded while the file is written.
+     */
+    public void write() {
+        File file = new File(filename);
+        File path = file.getParentFile();
+        if (path != null && !path.exists() && !path.mkdirs()) {
+            throw new EyesException("Failed to create folder " + path);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8))) {
+            writeTo(writer);
+        } catch (IOException e) {
+            throw new EyesException("Failed to write trace file " + filename, e);
+        }
+    }
+
+    /**
+     * Writes all the spans recorded so far as a trace event JSON object.
+     * @param writer The writer to write to. Not closed.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        List<Chunk> chunks;
+        int lastSize;
+        synchronized (this) {
+            chunks = new ArrayList<>(this.chunks);
+            lastSize = current == null ? 0 : current.size;
+        }
+
+        JsonGenerator json = jsonFactory.createGenerator(writer);
+        json.writeStartObject();
+        json.writeArrayFieldStart("traceEvents");
+
+        Map<Long, String> threads = new LinkedHashMap<>();
+        for (int c = 0; c < chunks.size(); ++c) {
+            Chunk chunk = chunks.get(c);
+            int size = c == chunks.size() - 1 ? lastSize : CHUNK_SIZE;
+            for (int i = 0; i < size; ++i) {
+                threads.put(chunk.threadIds[i], chunk.threadNames[i]);
+                writeEvent(json, chunk, i);
+            }
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("name", "thread_name");
+            json.writeStringField("ph", "M");
+            json.writeNumberField("pid", PROCESS_ID);
+            json.writeNumberField("tid", thread.getKey());
+            json.writeObjectFieldStart("args");
+            json.writeStringField("name", thread.getValue());
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+
+        json.writeEndArray();
+        json.writeStringField("displayTimeUnit", "ms");
+        json.writeEndObject();
+        json.flush();
+    }
+
+    private void writeEvent(JsonGenerator json, Chunk chunk, int i) throws IOException {
+        long asyncId = chunk.asyncIds[i];
+        if (asyncId == 0) {
+            writeEventStart(json, chunk, i, "X", chunk.starts[i]);
+            json.writeNumberField("dur", (chunk.ends[i] - chunk.starts[i]) / 1000.0);
+            writeArgs(json, chunk, i);
+            json.writeEndObject();
+            return;
+        }
+
+        // An async span is a pair of begin and end events with the same ID.
+        writeEventStart(json, chunk, i, "b", chunk.starts[i]);
+        json.writeNumberField("id", asyncId);
+        writeArgs(json, chunk, i);
+        json.writeEndObject();
+        writeEventStart(json, chunk, i, "e", chunk.ends[i]);
+        json.writeNumberField("id", asyncId);
+        json.writeEndObject();
+    }
+
+    private void writeEventStart(JsonGenerator json, Chunk chunk, int i, String phase, long time)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("name", chunk.names[i]);
+        json.writeStringField("cat", CATEGORY);
+        json.writeStringField("ph", phase);
+        json.writeNumberField("ts", (time - origin) / 1000.0); // microseconds
+        json.writeNumberField("pid", PROCESS_ID);
+        json.writeNumberField("tid", chunk.threadIds[i]);
+    }
+
+    private static void writeArgs(JsonGenerator json, Chunk chunk, int i) throws IOException {
+        String label = chunk.labels[i];
+        String argName1 = chunk.argNames[i * 2];
+        String argName2 = chunk.argNames[i * 2 + 1];
+        if (label == null && argName1 == null && argName2 == null) {
+            return;
+        }
+        json.writeObjectFieldStart("args");
+        if (label != null) {
+            json.writeStringField("label", label);
+        }
+        if (argName1 != null) {
+            json.writeNumberField(argName1, chunk.argValues[i * 2]);
+        }
+        if (argName2 != null) {
+            json.writeNumberField(argName2, chunk.argValues[i * 2 + 1]);
+        }
+        json.writeEndObject();
+    }
+
+    private static long getProcessId() {
+        // The runtime's name is "pid@host" on the common JVMs.
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        try {
+            return Long.parseLong(name.substring(0, name.indexOf('@')));
+        } catch (RuntimeException e) {
+            return 1;
+        }
+    }
+}
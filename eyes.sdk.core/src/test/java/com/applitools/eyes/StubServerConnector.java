@@ -0,0 +1,65 @@
+package com.applitools.eyes;
+
+import java.net.URI;
+import java.net.URL;
+
+/**
+ * A server connector which doesn't connect to anything. Tests override the
+ * requests they need.
+ */
+class StubServerConnector implements IServerConnector {
+    // Opening Eyes requires an API key.
+    private String apiKey = "apiKey";
+    private URI serverUrl;
+    private Logger logger;
+    private AbstractProxySettings proxySettings;
+
+    @Override
+    public void setApiKey(String apiKey) { this.apiKey = apiKey; }
+
+    @Override
+    public String getApiKey() { return apiKey; }
+
+    @Override
+    public void setServerUrl(URI serverUrl) { this.serverUrl = serverUrl; }
+
+    @Override
+    public URI getServerUrl() { return serverUrl; }
+
+    @Override
+    public void setLogger(Logger logger) { this.logger = logger; }
+
+    @Override
+    public Logger getLogger() { return logger; }
+
+    @Override
+    public void setProxy(AbstractProxySettings abstractProxySettings) { this.proxySettings = abstractProxySettings; }
+
+    @Override
+    public AbstractProxySettings getProxy() { return proxySettings; }
+
+    @Override
+    public int getTimeout() { return 0; }
+
+    @Override
+    public RunningSession startSession(SessionStartInfo sessionStartInfo) { return null; }
+
+    @Override
+    public TestResults stopSession(RunningSession runningSession, boolean isAborted, boolean save) {
+        return null;
+    }
+
+    @Override
+    public void deleteSession(TestResults testResults) {}
+
+    @Override
+    public MatchResult matchWindow(RunningSession runningSession, MatchWindowData matchData) { return null; }
+
+    @Override
+    public void downloadString(URL uri, boolean isSecondRetry, IDownloadListener listener) {
+        listener.onDownloadFailed();
+    }
+
+    @Override
+    public String postDomSnapshot(String domJson) { return null; }
+}
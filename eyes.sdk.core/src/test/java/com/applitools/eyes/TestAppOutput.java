@@ -0,0 +1,31 @@
+package com.applitools.eyes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestAppOutput {
+
+    private static final byte[] SCREENSHOT = {1, 2, 3, (byte) 0xFF, 0, 42};
+
+    @Test
+    public void testScreenshot_FromBytes() {
+        AppOutput appOutput = new AppOutput("title", SCREENSHOT, null);
+        Assert.assertSame(appOutput.getScreenshot(), SCREENSHOT);
+        Assert.assertEquals(appOutput.getScreenshot64(), Base64.encodeBase64String(SCREENSHOT));
+    }
+
+    @Test
+    public void testScreenshot_FromBase64() {
+        AppOutput appOutput = new AppOutput("title", Base64.encodeBase64String(SCREENSHOT), null);
+        Assert.assertEquals(appOutput.getScreenshot(), SCREENSHOT);
+    }
+
+    @Test
+    public void testSerialization_ExcludesScreenshot() throws Exception {
+        AppOutput appOutput = new AppOutput("title", SCREENSHOT, "http://dom.url");
+        String json = new ObjectMapper().writeValueAsString(appOutput);
+        Assert.assertEquals(json, "{\"title\":\"title\",\"domUrl\":\"http://dom.url\"}");
+    }
+}
@@ -0,0 +1,97 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.GeneralUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class TestBatchCloser {
+
+    /**
+     * A server which takes a while to end sessions, leaving every other
+     * session unresolved, and records how many sessions it ends at the same
+     * time.
+     */
+    private static class SlowServerConnector extends StubServerConnector {
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicInteger sessionsCount = new AtomicInteger();
+        private final AtomicInteger stopping = new AtomicInteger();
+        private final AtomicInteger maxStopping = new AtomicInteger();
+
+        @Override
+        public RunningSession startSession(SessionStartInfo sessionStartInfo) {
+            RunningSession runningSession = new RunningSession();
+            runningSession.setId(String.valueOf(sessionsCount.incrementAndGet()));
+            runningSession.setSessionId("sessionId");
+            runningSession.setUrl("url");
+            return runningSession;
+        }
+
+        @Override
+        public TestResults stopSession(RunningSession runningSession, boolean isAborted, boolean save) {
+            return stopSessionAsync(runningSession, isAborted, save).join();
+        }
+
+        @Override
+        public CompletableFuture<TestResults> stopSessionAsync(final RunningSession runningSession,
+                                                               boolean isAborted, boolean save) {
+            return CompletableFuture.supplyAsync(new Supplier<TestResults>() {
+                @Override
+                public TestResults get() {
+                    int current = stopping.incrementAndGet();
+                    synchronized (maxStopping) {
+                        maxStopping.set(Math.max(maxStopping.get(), current));
+                    }
+                    GeneralUtils.sleep(300);
+                    stopping.decrementAndGet();
+
+                    boolean passed = Integer.parseInt(runningSession.getId()) % 2 == 0;
+                    TestResults results = new TestResults();
+                    results.setStatus(passed ? TestResultsStatus.Passed : TestResultsStatus.Unresolved);
+                    return results;
+                }
+            }, executor);
+        }
+
+        @Override
+        public MatchResult matchWindow(RunningSession runningSession, MatchWindowData matchData) {
+            MatchResult result = new MatchResult();
+            result.setAsExpected(true);
+            return result;
+        }
+    }
+
+    @Test
+    public void TestCloseAll_BoundedParallelism() {
+        SlowServerConnector serverConnector = new SlowServerConnector();
+        List<TestEyesBaseAsyncCheck.FakeEyes> eyesInstances = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            TestEyesBaseAsyncCheck.FakeEyes eyes = new TestEyesBaseAsyncCheck.FakeEyes(serverConnector);
+            eyes.open();
+            eyes.checkAsync("check");
+            eyesInstances.add(eyes);
+        }
+        // Closing a test which isn't open is reported, not thrown.
+        eyesInstances.add(new TestEyesBaseAsyncCheck.FakeEyes(serverConnector));
+
+        TestResultsSummary summary = new BatchCloser(new Logger(), 3).closeAll(eyesInstances);
+
+        Assert.assertEquals(serverConnector.maxStopping.get(), 3);
+        Assert.assertTrue(summary.getDuration() < 6 * 300, String.valueOf(summary.getDuration()));
+        Assert.assertEquals(summary.getAllResults().size(), 7);
+        Assert.assertEquals(summary.getPassed(), 3);
+        Assert.assertEquals(summary.getUnresolved(), 3);
+        Assert.assertEquals(summary.getExceptions(), 1);
+        Assert.assertTrue(summary.getAllResults().get(6).getException() instanceof IllegalStateException);
+        for (TestResultContainer container : summary.getAllResults().subList(0, 6)) {
+            Assert.assertTrue(container.getCloseDuration() >= 300, container.toString());
+        }
+    }
+}
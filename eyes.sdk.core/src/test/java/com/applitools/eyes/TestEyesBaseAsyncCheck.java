@@ -0,0 +1,322 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.exceptions.TestFailedException;
+import com.applitools.eyes.fluent.CheckSettings;
+import com.applitools.eyes.metrics.HistogramMetricsListener;
+import com.applitools.eyes.metrics.LatencyHistogram;
+import com.applitools.eyes.metrics.Phase;
+import com.applitools.eyes.positioning.NullRegionProvider;
+import com.applitools.utils.GeneralUtils;
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class TestEyesBaseAsyncCheck {
+
+    /**
+     * A slow server which records the calls it gets.
+     */
+    private static class RecordingServerConnector extends StubServerConnector {
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        private final List<byte[]> screenshots = Collections.synchronizedList(new ArrayList<byte[]>());
+        private final boolean asExpected;
+
+        RecordingServerConnector(boolean asExpected) {
+            this.asExpected = asExpected;
+        }
+
+        @Override
+        public RunningSession startSession(SessionStartInfo sessionStartInfo) {
+            calls.add("start");
+            RunningSession runningSession = new RunningSession();
+            runningSession.setId("id");
+            runningSession.setSessionId("sessionId");
+            runningSession.setUrl("url");
+            return runningSession;
+        }
+
+        @Override
+        public TestResults stopSession(RunningSession runningSession, boolean isAborted, boolean save) {
+            calls.add("stop");
+            TestResults results = new TestResults();
+            results.setStatus(TestResultsStatus.Passed);
+            return results;
+        }
+
+        @Override
+        public MatchResult matchWindow(RunningSession runningSession, MatchWindowData matchData) {
+            GeneralUtils.sleep(100);
+            calls.add("match " + matchData.getTag());
+            screenshots.add(matchData.getAppOutput().getScreenshot());
+            MatchResult result = new MatchResult();
+            result.setAsExpected(asExpected);
+            return result;
+        }
+    }
+
+    static class FakeScreenshot extends EyesScreenshot {
+        FakeScreenshot(BufferedImage image) {
+            super(new Logger(), image);
+        }
+
+        @Override
+        public EyesScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
+            return this;
+        }
+
+        @Override
+        public Location convertLocation(Location location, CoordinatesType from, CoordinatesType to) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, Location originalLocation,
+                                                CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Region getIntersectedRegion(Region region, CoordinatesType coordinatesType) {
+            return region;
+        }
+    }
+
+    static class FakeEyes extends EyesBase {
+        private BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR);
+
+        FakeEyes(IServerConnector serverConnector) {
+            setServerConnector(serverConnector);
+        }
+
+        void open() {
+            openBase("app", "test", new RectangleSize(20, 10), null);
+        }
+
+        void setImage(BufferedImage image) {
+            this.image = image;
+        }
+
+        MatchResult check(String tag) {
+            return checkWindowBase(NullRegionProvider.INSTANCE, tag, false, new CheckSettings(0));
+        }
+
+        CompletableFuture<MatchResult> checkAsync(String tag) {
+            return checkWindowBaseAsync(NullRegionProvider.INSTANCE, tag, false, new CheckSettings(0));
+        }
+
+        @Override
+        protected String getBaseAgentId() {
+            return "eyes.test";
+        }
+
+        @Override
+        public String tryCaptureDom() {
+            return null;
+        }
+
+        @Override
+        protected RectangleSize getViewportSize() {
+            return new RectangleSize(20, 10);
+        }
+
+        @Override
+        protected void setViewportSize(RectangleSize size) {
+        }
+
+        @Override
+        protected String getInferredEnvironment() {
+            return null;
+        }
+
+        @Override
+        protected EyesScreenshot getScreenshot() {
+            return new FakeScreenshot(image);
+        }
+
+        @Override
+        protected String getTitle() {
+            return "title";
+        }
+
+        @Override
+        protected String getAUTSessionId() {
+            return null;
+        }
+    }
+
+    @Test
+    public void TestCheckAsync_CloseWaits() {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(true);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        eyes.setAsyncCheckParallelism(3);
+        eyes.open();
+
+        List<CompletableFuture<MatchResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            results.add(eyes.checkAsync("check " + i));
+        }
+        Assert.assertFalse(results.get(4).isDone(), "check did not return before the match");
+
+        eyes.close();
+
+        for (CompletableFuture<MatchResult> result : results) {
+            Assert.assertTrue(result.isDone(), "close did not wait for the check");
+            Assert.assertTrue(result.join().getAsExpected());
+        }
+        // The matches are sent in the order of the checks, before the session is stopped.
+        Assert.assertEquals(serverConnector.calls, Arrays.asList("start",
+                "match check 0", "match check 1", "match check 2", "match check 3", "match check 4", "stop"));
+    }
+
+    @Test
+    public void TestCheckAsync_ImmediateFailure() {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(false);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        eyes.setFailureReports(FailureReports.IMMEDIATE);
+        eyes.setMaxPendingChecks(1);
+        eyes.open();
+
+        CompletableFuture<MatchResult> first = eyes.checkAsync("first");
+        CompletableFuture<MatchResult> second = eyes.checkAsync("second");
+        try {
+            first.join();
+            Assert.fail("expected the check to fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof TestFailedException);
+        }
+
+        // A failed check doesn't prevent the next ones.
+        eyes.close(false);
+        Assert.assertTrue(second.isCompletedExceptionally());
+        Assert.assertTrue(serverConnector.calls.contains("match second"));
+    }
+
+    @Test
+    public void TestCheckAsync_MismatchAfterClose() {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(false);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        eyes.open();
+
+        CompletableFuture<MatchResult> result = eyes.checkAsync("check");
+        // The session is closed before the (slow) match is validated.
+        CompletableFuture<TestResults> results = eyes.closeAsync(false);
+
+        Assert.assertFalse(result.join().getAsExpected());
+        Assert.assertNotNull(results.join());
+    }
+
+    /**
+     * Records whether the log handler is open.
+     */
+    private static class RecordingLogHandler implements LogHandler {
+        volatile boolean isOpen;
+
+        @Override
+        public void open() {
+            isOpen = true;
+        }
+
+        @Override
+        public void onMessage(boolean verbose, String logString) {}
+
+        @Override
+        public void close() {
+            isOpen = false;
+        }
+    }
+
+    @Test
+    public void TestCloseAsync_ReopenKeepsLogOpen() {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(true);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        RecordingLogHandler logHandler = new RecordingLogHandler();
+        eyes.setLogHandler(logHandler);
+        eyes.open();
+
+        eyes.checkAsync("first test");
+        CompletableFuture<TestResults> firstResults = eyes.closeAsync(false);
+        // Reopened while the first test is still closed in the background.
+        eyes.open();
+        firstResults.join();
+        Assert.assertTrue(logHandler.isOpen, "closing the first test closed the log of the second");
+
+        eyes.close(false);
+        Assert.assertFalse(logHandler.isOpen);
+    }
+
+    @Test
+    public void TestCheckAsync_ReportsTimings() {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(true);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        HistogramMetricsListener metricsListener = new HistogramMetricsListener();
+        eyes.setMetricsListener(metricsListener);
+        eyes.open();
+
+        for (int i = 0; i < 3; ++i) {
+            eyes.checkAsync("check " + i);
+        }
+        eyes.close();
+
+        Assert.assertEquals(metricsListener.getCheckpointCount(), 3);
+        LatencyHistogram match = metricsListener.getHistogram(Phase.MATCH);
+        Assert.assertEquals(match.getCount(), 3);
+        // The fake server takes 100 ms per match.
+        Assert.assertTrue(match.getMin() >= 100 * 1000, "match time: " + match.getMin());
+        Assert.assertEquals(metricsListener.getHistogram(Phase.PNG_ENCODE).getCount(), 3);
+        Assert.assertTrue(metricsListener.getTotalHistogram().getMin() >= match.getMin());
+        Assert.assertTrue(metricsListener.getSummary().contains("MATCH"));
+    }
+
+    @Test
+    public void TestCheckAsync_CompressesAgainstPreviousCheck() throws IOException {
+        RecordingServerConnector serverConnector = new RecordingServerConnector(true);
+        FakeEyes eyes = new FakeEyes(serverConnector);
+        eyes.open();
+
+        // Each check captures a slightly different image.
+        BufferedImage[] images = new BufferedImage[4];
+        Random random = new Random(42);
+        for (int i = 0; i < images.length; ++i) {
+            images[i] = new BufferedImage(40, 40, BufferedImage.TYPE_4BYTE_ABGR);
+            for (int y = 0; y < 40; ++y) {
+                for (int x = 0; x < 40; ++x) {
+                    images[i].setRGB(x, y, x < 10 * (i + 1) ? 0xFF102030 : random.nextInt() | 0xFF000000);
+                }
+            }
+        }
+
+        eyes.setImage(images[0]);
+        eyes.check("sync 0");
+        eyes.setImage(images[1]);
+        eyes.checkAsync("async 1");
+        eyes.setImage(images[2]);
+        eyes.checkAsync("async 2");
+        eyes.setImage(images[3]);
+        eyes.check("sync 3");
+        eyes.close();
+
+        Assert.assertEquals(serverConnector.screenshots.size(), images.length);
+        Assert.assertEquals(serverConnector.screenshots.get(0), ImageUtils.encodeAsPng(images[0]));
+        for (int i = 1; i < images.length; ++i) {
+            byte[] expected = ImageDeltaCompressor.compressByRawBlocks(images[i],
+                    ImageUtils.encodeAsPng(images[i]), images[i - 1]);
+            Assert.assertEquals(serverConnector.screenshots.get(i), expected, "check " + i);
+        }
+    }
+}
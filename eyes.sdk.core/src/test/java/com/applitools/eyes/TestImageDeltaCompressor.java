@@ -0,0 +1,128 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.ImageDeltaCompressor;
+import com.applitools.utils.ImageUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class TestImageDeltaCompressor {
+
+    // Preamble ("applitools"), format, source ID length and block size.
+    private static final int HEADER_LENGTH = 15;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void InitOnce() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void TearDownOnce() {
+        pool.shutdown();
+    }
+
+    /**
+     * Inflates the blocks data following the compression header.
+     */
+    private static byte[] decode(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!inflater.finished()) {
+            int length = inflater.inflate(buffer);
+            Assert.assertFalse(length == 0 && inflater.needsInput(), "truncated deflate stream");
+            decoded.write(buffer, 0, length);
+        }
+        Assert.assertEquals(inflater.getRemaining(), 0, "trailing bytes after deflate stream");
+        inflater.end();
+        return decoded.toByteArray();
+    }
+
+    private static BufferedImage createNoiseImage(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static void assertParallelDecodesAsSerial(BufferedImage target, BufferedImage source)
+            throws IOException, DataFormatException {
+        byte[] targetEncoded = ImageUtils.encodeAsPng(target);
+
+        byte[] serial = ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, source);
+        byte[] parallel = ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, source,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, pool);
+
+        Assert.assertNotSame(serial, targetEncoded, "expected delta compression to be used");
+        Assert.assertEquals(Arrays.copyOf(parallel, HEADER_LENGTH), Arrays.copyOf(serial, HEADER_LENGTH),
+                "headers differ");
+        Assert.assertEquals(decode(parallel), decode(serial), "decoded blocks differ");
+    }
+
+    @Test
+    public void testCompressByRawBlocks_Fixture() throws IOException {
+        BufferedImage source = ImageUtils.imageFromResource("compression-source.png");
+        BufferedImage target = ImageUtils.imageFromResource("compression-target.png");
+        byte[] expected;
+        try (InputStream stream = getClass().getClassLoader()
+                .getResourceAsStream("compression-block-size-10-result.bin")) {
+            expected = IOUtils.toByteArray(stream);
+        }
+
+        byte[] result = ImageDeltaCompressor.compressByRawBlocks(target, ImageUtils.encodeAsPng(target), source);
+        Assert.assertEquals(result, expected, "compression result differs");
+    }
+
+    @Test
+    public void testCompressByRawBlocks_Parallel_Fixture() throws IOException, DataFormatException {
+        BufferedImage source = ImageUtils.imageFromResource("compression-source.png");
+        BufferedImage target = ImageUtils.imageFromResource("compression-target.png");
+        assertParallelDecodesAsSerial(target, source);
+    }
+
+    @Test
+    public void testCompressByRawBlocks_Parallel_ManyBands() throws IOException, DataFormatException {
+        // Odd dimensions, so the last block row and column are partial.
+        BufferedImage source = createNoiseImage(403, 1207, 1);
+        BufferedImage target = ImageUtils.copyImageWithType(source, ImageUtils.REQUIRED_IMAGE_TYPE);
+        // Changing a few scattered areas, including the image edges.
+        BufferedImage noise = createNoiseImage(403, 1207, 2);
+        int[][] changedAreas = {{0, 0, 7, 3}, {395, 600, 8, 25}, {100, 1200, 50, 7}, {200, 333, 1, 1}};
+        for (int[] area : changedAreas) {
+            for (int y = area[1]; y < area[1] + area[3]; ++y) {
+                for (int x = area[0]; x < area[0] + area[2]; ++x) {
+                    target.setRGB(x, y, noise.getRGB(x, y));
+                }
+            }
+        }
+        assertParallelDecodesAsSerial(target, source);
+    }
+
+    @Test
+    public void testCompressByRawBlocks_Parallel_NoSource() throws IOException {
+        BufferedImage target = ImageUtils.imageFromResource("compression-target.png");
+        byte[] targetEncoded = ImageUtils.encodeAsPng(target);
+        byte[] result = ImageDeltaCompressor.compressByRawBlocks(target, targetEncoded, null,
+                ImageDeltaCompressor.DEFAULT_BLOCK_SIZE, pool);
+        Assert.assertSame(result, targetEncoded);
+    }
+}
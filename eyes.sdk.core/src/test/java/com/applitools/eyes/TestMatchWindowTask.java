@@ -0,0 +1,142 @@
+package com.applitools.eyes;
+
+import com.applitools.eyes.capture.AppOutputProvider;
+import com.applitools.eyes.capture.AppOutputWithScreenshot;
+import com.applitools.eyes.capture.ScreenshotAppOutputProvider;
+import com.applitools.eyes.fluent.ICheckSettingsInternal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+
+public class TestMatchWindowTask {
+
+    /**
+     * A server which never finds a match, and counts the matches.
+     */
+    private static class MismatchServerConnector extends StubServerConnector {
+        private int matchCount;
+
+        @Override
+        public MatchResult matchWindow(RunningSession runningSession, MatchWindowData matchData) {
+            ++matchCount;
+            MatchResult result = new MatchResult();
+            result.setAsExpected(false);
+            return result;
+        }
+    }
+
+    private static class FakeScreenshot extends EyesScreenshot {
+        FakeScreenshot(BufferedImage image) {
+            super(new Logger(), image);
+        }
+
+        @Override
+        public EyesScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
+            return this;
+        }
+
+        @Override
+        public Location convertLocation(Location location, CoordinatesType from, CoordinatesType to) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, Location originalLocation,
+                                                CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Region getIntersectedRegion(Region region, CoordinatesType coordinatesType) {
+            return region;
+        }
+    }
+
+    /**
+     * Provides a new screenshot for every capture, which changes only if
+     * {@code changing} is set, and counts the outputs it creates.
+     */
+    private static class FakeAppOutputProvider implements ScreenshotAppOutputProvider {
+        private final boolean changing;
+        private int capturesCount;
+        private int outputsCount;
+
+        FakeAppOutputProvider(boolean changing) {
+            this.changing = changing;
+        }
+
+        @Override
+        public AppOutputWithScreenshot getAppOutput(Region region, EyesScreenshot lastScreenshot,
+                                                    ICheckSettingsInternal checkSettingsInternal) {
+            return getAppOutput(captureScreenshot(region, checkSettingsInternal), lastScreenshot);
+        }
+
+        @Override
+        public EyesScreenshot captureScreenshot(Region region, ICheckSettingsInternal checkSettingsInternal) {
+            ++capturesCount;
+            BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR);
+            image.setRGB(5, 5, changing ? 0xFF000000 | capturesCount : 0xFF0000FF);
+            return new FakeScreenshot(image);
+        }
+
+        @Override
+        public AppOutputWithScreenshot getAppOutput(EyesScreenshot screenshot, EyesScreenshot lastScreenshot) {
+            ++outputsCount;
+            return new AppOutputWithScreenshot(new AppOutput("title", new byte[0], null), screenshot);
+        }
+    }
+
+    private static MismatchServerConnector matchWindow(AppOutputProvider appOutputProvider) {
+        MismatchServerConnector serverConnector = new MismatchServerConnector();
+        MatchWindowTask task = new MatchWindowTask(new Logger(), serverConnector, new RunningSession(), 1500,
+                null, appOutputProvider);
+        MatchResult result = task.matchWindow(new Trigger[0], Region.EMPTY, "tag", false, false, null, -1);
+        Assert.assertFalse(result.getAsExpected());
+        return serverConnector;
+    }
+
+    @Test
+    public void TestMatchWindow_UnchangedScreenshotsNotMatched() {
+        FakeAppOutputProvider appOutputProvider = new FakeAppOutputProvider(false);
+        MismatchServerConnector serverConnector = matchWindow(appOutputProvider);
+
+        // The first retry, and the final attempt (which is always matched).
+        Assert.assertTrue(appOutputProvider.capturesCount > 2, "expected several retries");
+        Assert.assertEquals(serverConnector.matchCount, 2);
+        // Skipped screenshots aren't compressed, and their DOM isn't sent.
+        Assert.assertEquals(appOutputProvider.outputsCount, 2);
+    }
+
+    @Test
+    public void TestMatchWindow_UnchangedScreenshotsNotMatched_PlainProvider() {
+        final FakeAppOutputProvider fakeProvider = new FakeAppOutputProvider(false);
+        AppOutputProvider appOutputProvider = new AppOutputProvider() {
+            @Override
+            public AppOutputWithScreenshot getAppOutput(Region region, EyesScreenshot lastScreenshot,
+                                                        ICheckSettingsInternal checkSettingsInternal) {
+                return fakeProvider.getAppOutput(region, lastScreenshot, checkSettingsInternal);
+            }
+        };
+        MismatchServerConnector serverConnector = matchWindow(appOutputProvider);
+
+        Assert.assertTrue(fakeProvider.capturesCount > 2, "expected several retries");
+        Assert.assertEquals(serverConnector.matchCount, 2);
+        Assert.assertEquals(fakeProvider.outputsCount, fakeProvider.capturesCount);
+    }
+
+    @Test
+    public void TestMatchWindow_ChangedScreenshotsMatched() {
+        FakeAppOutputProvider appOutputProvider = new FakeAppOutputProvider(true);
+        MismatchServerConnector serverConnector = matchWindow(appOutputProvider);
+
+        Assert.assertTrue(appOutputProvider.capturesCount > 2, "expected several retries");
+        Assert.assertEquals(serverConnector.matchCount, appOutputProvider.capturesCount);
+        Assert.assertEquals(appOutputProvider.outputsCount, appOutputProvider.capturesCount);
+    }
+}
@@ -0,0 +1,177 @@
+package com.applitools.eyes;
+
+import com.applitools.utils.GeneralUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestServerConnectorConcurrency {
+
+    private static final int SESSIONS_COUNT = 300;
+    private static final int THREADS_COUNT = 100;
+
+    private HttpServer server;
+    private URI serverUrl;
+    private final AtomicInteger sessionsCount = new AtomicInteger();
+    private final AtomicInteger matchesCount = new AtomicInteger();
+    private final AtomicInteger stopsCount = new AtomicInteger();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * A stub of the running sessions API, which verifies each request belongs
+     * to the session in its path.
+     */
+    private class RunningSessionsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                String method = exchange.getRequestMethod();
+                String query = exchange.getRequestURI().getQuery();
+                if (query == null || !query.contains("apiKey=apiKey")) {
+                    errors.add("Missing api key: " + method + " " + exchange.getRequestURI());
+                }
+
+                byte[] body = readAll(exchange.getRequestBody());
+                if (path.equals("/api/sessions/running") && method.equals("POST")) {
+                    String startInfo = new String(body, "UTF-8");
+                    if (!startInfo.startsWith("{\"startInfo\":")) {
+                        errors.add("Start info isn't wrapped: " + startInfo);
+                    }
+                    String id = "session" + sessionsCount.incrementAndGet();
+                    respond(exchange, 201, "{\"id\":\"" + id + "\",\"url\":\"url\"}");
+                } else if (path.startsWith("/api/sessions/running/session") && method.equals("POST")) {
+                    String id = path.substring(path.lastIndexOf('/') + 1);
+                    DataInputStream data = new DataInputStream(new ByteArrayInputStream(body));
+                    byte[] json = new byte[data.readInt()];
+                    data.readFully(json);
+                    if (!new String(json, "UTF-8").contains("\"tag\":\"" + id + "\"")) {
+                        errors.add("Match data of another session sent to " + id);
+                    }
+                    matchesCount.incrementAndGet();
+                    respond(exchange, 200, "{\"asExpected\":true}");
+                } else if (path.startsWith("/api/sessions/running/session") && method.equals("DELETE")) {
+                    stopsCount.incrementAndGet();
+                    respond(exchange, 200, "{\"steps\":1,\"matches\":1}");
+                } else {
+                    errors.add("Unexpected request: " + method + " " + path);
+                    respond(exchange, 404, "");
+                }
+            } catch (IOException | RuntimeException e) {
+                errors.add(e.toString());
+                respond(exchange, 500, "");
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    @BeforeClass
+    public void InitOnce() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), THREADS_COUNT);
+        server.createContext("/api/sessions/running", new RunningSessionsHandler());
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.start();
+        serverUrl = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterClass
+    public void TearDownOnce() {
+        server.stop(0);
+    }
+
+    @Test
+    public void TestSharedServerConnector() throws Exception {
+        final ServerConnector serverConnector = new ServerConnector(new Logger(), serverUrl);
+        serverConnector.setApiKey("apiKey");
+
+        // The configuration is changed while the sessions are running.
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread reconfigure = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    serverConnector.setServerUrl(serverUrl);
+                    serverConnector.setTimeout(60 * 1000);
+                    GeneralUtils.sleep(5);
+                }
+            }
+        });
+        reconfigure.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        List<Future<TestResults>> results = new ArrayList<>();
+        for (int i = 0; i < SESSIONS_COUNT; ++i) {
+            results.add(executor.submit(new Callable<TestResults>() {
+                @Override
+                public TestResults call() {
+                    BatchInfo batchInfo = new BatchInfo("batch");
+                    SessionStartInfo startInfo = new SessionStartInfo("agent", SessionType.SEQUENTIAL,
+                            "app", null, "test", batchInfo, null, null, new AppEnvironment(),
+                            new ImageMatchSettings(), null, null, null, null, null);
+                    RunningSession runningSession = serverConnector.startSession(startInfo);
+
+                    AppOutput appOutput = new AppOutput("title", new byte[100], null);
+                    MatchWindowData matchData = new MatchWindowData(new Trigger[0], appOutput,
+                            runningSession.getId(), false, null, null);
+                    MatchResult matchResult = serverConnector.matchWindow(runningSession, matchData);
+                    Assert.assertTrue(matchResult.getAsExpected());
+
+                    return serverConnector.stopSession(runningSession, false, false);
+                }
+            }));
+        }
+
+        for (Future<TestResults> result : results) {
+            Assert.assertEquals(result.get(2, TimeUnit.MINUTES).getSteps(), 1);
+        }
+        running.set(false);
+        reconfigure.join();
+        executor.shutdown();
+
+        Assert.assertEquals(errors, Collections.emptyList());
+        Assert.assertEquals(sessionsCount.get(), SESSIONS_COUNT);
+        Assert.assertEquals(matchesCount.get(), SESSIONS_COUNT);
+        Assert.assertEquals(stopsCount.get(), SESSIONS_COUNT);
+    }
+}
@@ -0,0 +1,216 @@
+package com.applitools.eyes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class TestUploadSpool {
+
+    private static final int DROPPED_REQUESTS = 2;
+    private static final String DOM = "{\"tagName\":\"HTML\",\"childNodes\":[]}";
+
+    private HttpServer server;
+    private URI serverUrl;
+    private File spoolDirectory;
+    private volatile String expectedDom = DOM;
+    private final AtomicInteger domRequestsCount = new AtomicInteger();
+    private final AtomicInteger matchRequestsCount = new AtomicInteger();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * A stub of the running sessions API, which drops the connection of the
+     * first requests of each kind without responding.
+     */
+    private class FlakyHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readAll(exchange.getRequestBody());
+            if (path.equals("/api/sessions/running/data")) {
+                if (domRequestsCount.incrementAndGet() <= DROPPED_REQUESTS) {
+                    exchange.close();
+                    return;
+                }
+                String dom = new String(readAll(new GZIPInputStream(new ByteArrayInputStream(body))), "UTF-8");
+                if (!dom.equals(expectedDom)) {
+                    errors.add("Unexpected DOM of length " + dom.length());
+                }
+                exchange.getResponseHeaders().add("Location", "http://dom/location");
+                exchange.sendResponseHeaders(201, -1);
+                exchange.close();
+            } else if (path.equals("/api/sessions/running/session")) {
+                if (matchRequestsCount.incrementAndGet() <= DROPPED_REQUESTS) {
+                    exchange.close();
+                    return;
+                }
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(body));
+                byte[] json = new byte[data.readInt()];
+                data.readFully(json);
+                if (body.length - 4 - json.length != 100) {
+                    errors.add("Unexpected screenshot length: " + (body.length - 4 - json.length));
+                }
+                byte[] response = "{\"asExpected\":true}".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            } else {
+                errors.add("Unexpected request: " + path);
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    @BeforeClass
+    public void InitOnce() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10);
+        server.createContext("/api/sessions/running", new FlakyHandler());
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        serverUrl = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        spoolDirectory = Files.createTempDirectory("eyes-spool").toFile();
+    }
+
+    @AfterClass
+    public void TearDownOnce() {
+        server.stop(0);
+        if (!spoolDirectory.delete()) {
+            spoolDirectory.deleteOnExit();
+        }
+    }
+
+    @BeforeMethod
+    public void Init() {
+        domRequestsCount.set(0);
+        matchRequestsCount.set(0);
+        errors.clear();
+        expectedDom = DOM;
+    }
+
+    @Test
+    public void TestUploadSpool_RetriesDroppedConnections() {
+        UploadSpool spool = new UploadSpool(new Logger(), spoolDirectory, 2, DROPPED_REQUESTS + 1, 50, 200);
+        ServerConnector serverConnector = new ServerConnector(new Logger(), serverUrl);
+        serverConnector.setApiKey("apiKey");
+        serverConnector.setUploadSpool(spool);
+
+        Assert.assertEquals(serverConnector.postDomSnapshot(DOM), "http://dom/location");
+
+        RunningSession runningSession = new RunningSession();
+        runningSession.setId("session");
+        AppOutput appOutput = new AppOutput("title", new byte[100], null);
+        MatchWindowData matchData = new MatchWindowData(new Trigger[0], appOutput, "tag", false, null, null);
+        Assert.assertTrue(serverConnector.matchWindow(runningSession, matchData).getAsExpected());
+
+        Assert.assertEquals(errors, Collections.emptyList());
+        Assert.assertEquals(domRequestsCount.get(), DROPPED_REQUESTS + 1);
+        Assert.assertEquals(matchRequestsCount.get(), DROPPED_REQUESTS + 1);
+        Assert.assertEquals(spool.getPendingCount(), 0);
+        String[] spooledFiles = spoolDirectory.list();
+        Assert.assertNotNull(spooledFiles);
+        Assert.assertEquals(spooledFiles.length, 0, "payloads were not deleted");
+        spool.close();
+    }
+
+    @Test
+    public void TestPostDomSnapshot_Streamed() {
+        // A large DOM, with characters which aren't ASCII, is gzipped into
+        // the request in chunks.
+        StringBuilder dom = new StringBuilder("{\"text\":\"");
+        while (dom.length() < 1024 * 1024) {
+            dom.append("\u05e9\u05dc\u05d5\u05dd \u00e9t\u00e9 ");
+        }
+        expectedDom = dom.append("\"}").toString();
+
+        ServerConnector serverConnector = new ServerConnector(new Logger(), serverUrl);
+        serverConnector.setApiKey("apiKey");
+
+        Assert.assertEquals(serverConnector.postDomSnapshot(expectedDom), "http://dom/location");
+        Assert.assertEquals(errors, Collections.emptyList());
+        Assert.assertEquals(domRequestsCount.get(), DROPPED_REQUESTS + 1);
+    }
+
+    @Test
+    public void TestPostDomSnapshot_Payload() {
+        // The DOM is written into the request in parts, and written again
+        // for each retry.
+        final AtomicInteger writesCount = new AtomicInteger();
+        UploadSpool.Payload dom = new UploadSpool.Payload() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                writesCount.incrementAndGet();
+                output.write("{\"tagName\":\"HTML\",".getBytes("UTF-8"));
+                output.write("\"childNodes\":[]}".getBytes("UTF-8"));
+            }
+        };
+
+        ServerConnector serverConnector = new ServerConnector(new Logger(), serverUrl);
+        serverConnector.setApiKey("apiKey");
+
+        Assert.assertEquals(serverConnector.postDomSnapshot(dom), "http://dom/location");
+        Assert.assertEquals(errors, Collections.emptyList());
+        Assert.assertEquals(writesCount.get(), DROPPED_REQUESTS + 1);
+    }
+
+    @Test
+    public void TestSubmit_ClosedWhileWriting() throws IOException {
+        File directory = Files.createTempDirectory("eyes-spool").toFile();
+        final UploadSpool spool = new UploadSpool(new Logger(), directory);
+
+        // Closing the spool while the payload is written races the check
+        // for a closed spool.
+        CompletableFuture<String> result = spool.submit("closed", new UploadSpool.Payload() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                output.write(1);
+                spool.close();
+            }
+        }, new UploadSpool.Upload<String>() {
+            @Override
+            public String send(File payload) {
+                return "sent";
+            }
+        });
+
+        Assert.assertTrue(result.isCompletedExceptionally());
+        Assert.assertEquals(spool.getPendingCount(), 0);
+        String[] spooledFiles = directory.list();
+        Assert.assertNotNull(spooledFiles);
+        Assert.assertEquals(spooledFiles.length, 0, "the payload was not deleted");
+        Assert.assertTrue(directory.delete());
+    }
+}
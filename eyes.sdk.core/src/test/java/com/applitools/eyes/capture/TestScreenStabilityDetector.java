@@ -0,0 +1,80 @@
+package com.applitools.eyes.capture;
+
+import com.applitools.eyes.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+
+public class TestScreenStabilityDetector {
+
+    /**
+     * Provides the given frames in order, repeating the last one.
+     */
+    private static class FramesProvider implements ImageProvider {
+        private final BufferedImage[] frames;
+        private int capturesCount;
+
+        FramesProvider(BufferedImage... frames) {
+            this.frames = frames;
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            return frames[Math.min(capturesCount++, frames.length - 1)];
+        }
+    }
+
+    private static BufferedImage createFrame(int color) {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); ++y) {
+            for (int x = 0; x < image.getWidth(); ++x) {
+                image.setRGB(x, y, color);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void TestGetStableImage_Settles() {
+        BufferedImage frameA = createFrame(0xFF000000);
+        BufferedImage frameB1 = createFrame(0xFFFFFFFF);
+        BufferedImage frameB2 = createFrame(0xFFFFFFFF);
+        FramesProvider provider = new FramesProvider(frameA, frameB1, frameB2);
+
+        BufferedImage image = new ScreenStabilityDetector(new Logger(), provider, 0)
+                .getStableImage(10000, "test");
+
+        Assert.assertSame(image, frameB2);
+        Assert.assertEquals(provider.capturesCount, 3);
+    }
+
+    @Test
+    public void TestGetStableImage_NeverStable() {
+        ImageProvider provider = new ImageProvider() {
+            private int color;
+
+            @Override
+            public BufferedImage getImage() {
+                return createFrame(0xFF000000 | ++color);
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        BufferedImage image = new ScreenStabilityDetector(new Logger(), provider, 10)
+                .getStableImage(200, "test");
+
+        Assert.assertNotNull(image);
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue(elapsed >= 200 && elapsed < 5000, "unexpected wait: " + elapsed);
+    }
+
+    @Test
+    public void TestGetStableImage_NoWait() {
+        BufferedImage frameA = createFrame(0xFF000000);
+        FramesProvider provider = new FramesProvider(frameA, createFrame(0xFFFFFFFF));
+
+        Assert.assertSame(new ScreenStabilityDetector(new Logger(), provider).getStableImage(0, "test"), frameA);
+        Assert.assertEquals(provider.capturesCount, 1);
+    }
+}
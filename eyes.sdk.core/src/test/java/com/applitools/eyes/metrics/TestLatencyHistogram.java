@@ -0,0 +1,73 @@
+package com.applitools.eyes.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void TestPercentiles_WithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; ++micros) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        Assert.assertEquals(histogram.getCount(), 100000);
+        Assert.assertEquals(histogram.getMin(), 1);
+        Assert.assertEquals(histogram.getMax(), 100000);
+        Assert.assertEquals(histogram.getMean(), 50000.5, 0.001);
+        assertClose(histogram.getPercentile(50), 50000);
+        assertClose(histogram.getPercentile(90), 90000);
+        assertClose(histogram.getPercentile(99), 99000);
+        Assert.assertEquals(histogram.getPercentile(100), 100000);
+    }
+
+    @Test
+    public void TestIndex_CoversAllValues() {
+        long[] values = {0, 1, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.getIndex(value);
+            Assert.assertTrue(LatencyHistogram.getHighestValue(index) >= value, "value " + value);
+            Assert.assertTrue(index == 0 || LatencyHistogram.getHighestValue(index - 1) < value, "value " + value);
+        }
+    }
+
+    @Test
+    public void TestAdd_MergesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(TimeUnit.MILLISECONDS.toNanos(10));
+        second.record(TimeUnit.MILLISECONDS.toNanos(30));
+        first.add(second);
+
+        Assert.assertEquals(first.getCount(), 2);
+        Assert.assertEquals(first.getMin(), 10000);
+        Assert.assertEquals(first.getMax(), 30000);
+
+        first.reset();
+        Assert.assertEquals(first.getCount(), 0);
+        Assert.assertEquals(first.getPercentile(50), 0);
+    }
+
+    @Test
+    public void TestCheckpointTimings_AccumulatesPhases() {
+        CheckpointTimings timings = new CheckpointTimings("tag");
+        timings.add(Phase.SCROLL, 1000);
+        timings.add(Phase.SCROLL, 2000);
+        timings.addRetry();
+        timings.finish();
+
+        Assert.assertEquals(timings.getDuration(Phase.SCROLL), 3000);
+        Assert.assertEquals(timings.getCount(Phase.SCROLL), 2);
+        Assert.assertEquals(timings.getCount(Phase.MATCH), 0);
+        Assert.assertEquals(timings.getRetries(), 1);
+        Assert.assertTrue(timings.isFinished());
+    }
+
+    private static void assertClose(long actual, long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected * 0.04,
+                String.format("expected about %d but was %d", expected, actual));
+    }
+}
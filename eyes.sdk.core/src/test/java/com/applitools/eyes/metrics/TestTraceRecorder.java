@@ -0,0 +1,98 @@
+package com.applitools.eyes.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestTraceRecorder {
+
+    private static JsonNode writeTrace(TraceRecorder recorder) throws IOException {
+        StringWriter writer = new StringWriter();
+        recorder.writeTo(writer);
+        return new ObjectMapper().readTree(writer.toString()).get("traceEvents");
+    }
+
+    @Test
+    public void TestWrite_SpansPerThread() throws Exception {
+        final TraceRecorder recorder = new TraceRecorder("trace.json");
+        recorder.addSpan("SCROLL", 1000, 3000, "width", 800, "height", 600);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recorder.addSpan("PNG_ENCODE", 2000, 5000, "bytes", 1234);
+            }
+        }, "worker");
+        worker.start();
+        worker.join();
+
+        JsonNode events = writeTrace(recorder);
+        Assert.assertEquals(events.size(), 4);
+
+        JsonNode scroll = events.get(0);
+        Assert.assertEquals(scroll.get("name").asText(), "SCROLL");
+        Assert.assertEquals(scroll.get("ph").asText(), "X");
+        Assert.assertEquals(scroll.get("dur").asDouble(), 2.0, 0.001);
+        Assert.assertEquals(scroll.get("args").get("width").asLong(), 800);
+        Assert.assertEquals(scroll.get("args").get("height").asLong(), 600);
+
+        JsonNode encode = events.get(1);
+        Assert.assertEquals(encode.get("ts").asDouble() - scroll.get("ts").asDouble(), 1.0, 0.001);
+        Assert.assertEquals(encode.get("args").get("bytes").asLong(), 1234);
+        Assert.assertNotEquals(encode.get("tid").asLong(), scroll.get("tid").asLong());
+
+        Set<String> threadNames = new HashSet<>();
+        for (int i = 2; i < 4; ++i) {
+            Assert.assertEquals(events.get(i).get("ph").asText(), "M");
+            threadNames.add(events.get(i).get("args").get("name").asText());
+        }
+        Assert.assertTrue(threadNames.contains("worker"));
+        Assert.assertTrue(threadNames.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void TestWrite_AsyncSpan() throws Exception {
+        TraceRecorder recorder = new TraceRecorder("trace.json");
+        CheckpointTimings timings = new CheckpointTimings("tag \"1\"", recorder);
+        timings.addRetry();
+        timings.finish();
+
+        JsonNode events = writeTrace(recorder);
+        JsonNode begin = events.get(0);
+        JsonNode end = events.get(1);
+        Assert.assertEquals(begin.get("ph").asText(), "b");
+        Assert.assertEquals(end.get("ph").asText(), "e");
+        Assert.assertEquals(begin.get("id").asLong(), end.get("id").asLong());
+        Assert.assertEquals(begin.get("args").get("label").asText(), "tag \"1\"");
+        Assert.assertEquals(begin.get("args").get("retries").asInt(), 1);
+    }
+
+    @Test
+    public void TestAdd_DropsBeyondMaxEvents() throws Exception {
+        File file = File.createTempFile("trace", ".json");
+        try {
+            TraceRecorder recorder = new TraceRecorder(file.getPath(), TraceRecorder.CHUNK_SIZE + 10);
+            for (int i = 0; i < TraceRecorder.CHUNK_SIZE + 20; ++i) {
+                recorder.addSpan("STITCH", i, i + 1);
+            }
+            Assert.assertEquals(recorder.getEventCount(), TraceRecorder.CHUNK_SIZE + 10);
+            Assert.assertEquals(recorder.getDroppedCount(), 10);
+
+            recorder.write();
+            JsonNode events = new ObjectMapper().readTree(file).get("traceEvents");
+            // The spans, and the name of the single thread.
+            Assert.assertEquals(events.size(), TraceRecorder.CHUNK_SIZE + 11);
+
+            recorder.clear();
+            Assert.assertEquals(writeTrace(recorder).size(), 0);
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+}
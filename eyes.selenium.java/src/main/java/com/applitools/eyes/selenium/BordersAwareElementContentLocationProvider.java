@@ -27,19 +27,44 @@ public class BordersAwareElementContentLocationProvider {
         ArgumentGuard.notNull(element, "element");
         ArgumentGuard.notNull(location, "location");
 
-        logger.verbose(String.format(
+        logger.verbose(
                 "BordersAdditionFrameLocationProvider(logger, element, %s)",
-                location));
+                location);
 
         // Frame borders also have effect on the frame's location.
-        int leftBorderWidth = getPropertyValue(logger, element, "border-left-width");
-        int topBorderWidth = getPropertyValue(logger, element, "border-top-width");
+        int leftBorderWidth;
+        int topBorderWidth;
+        Borders borders = getBorders(logger, element);
+        if (borders != null) {
+            leftBorderWidth = borders.getLeft();
+            topBorderWidth = borders.getTop();
+        } else {
+            leftBorderWidth = getPropertyValue(logger, element, "border-left-width");
+            topBorderWidth = getPropertyValue(logger, element, "border-top-width");
+        }
 
         Location contentLocation = new Location(location).offset(leftBorderWidth, topBorderWidth);
         logger.verbose("Done!");
         return contentLocation;
     }
 
+    /**
+     * @return The borders of the element from its geometry snapshot, or
+     * {@code null} if the element is not an EyesRemoteWebElement or the
+     * snapshot could not be read.
+     */
+    protected static Borders getBorders(Logger logger, WebElement element) {
+        if (!(element instanceof EyesRemoteWebElement)) {
+            return null;
+        }
+        try {
+            return ((EyesRemoteWebElement) element).getGeometrySnapshot().getBorders();
+        } catch (WebDriverException e) {
+            logger.verbose("Getting the element's geometry failed: " + e.getMessage());
+            return null;
+        }
+    }
+
     protected static int getPropertyValue(Logger logger, WebElement element, String propName) {
         int propNumericValue;
         String propValue;
@@ -58,9 +83,9 @@ public class BordersAwareElementContentLocationProvider {
             } else {
                 // OK, this is weird, we got an element which is not
                 // EyesWebElement?? Log it and try to move on.
-                logger.verbose(String.format(
+                logger.verbose(
                         "Element is not an EyesWebElement! (when trying to get %s) Element's class: %s",
-                        propName, element.getClass().getName()));
+                        propName, element.getClass().getName());
 
                 logger.verbose("Using getCssValue...");
                 propValue = element.getCssValue(propName);
@@ -72,9 +97,9 @@ public class BordersAwareElementContentLocationProvider {
             ));
             logger.verbose(propName + ": " + propNumericValue);
         } catch (WebDriverException e) {
-            logger.verbose(String.format(
+            logger.verbose(
                     "Couldn't get the element's %s: %s. Falling back to default",
-                    propName, e.getMessage()));
+                    propName, e.getMessage());
             propNumericValue = 0;
         }
         return propNumericValue;
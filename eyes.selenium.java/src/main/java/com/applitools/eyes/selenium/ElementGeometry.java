@@ -0,0 +1,180 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.RectangleSize;
+import com.applitools.utils.ArgumentGuard;
+
+import java.util.Map;
+
+/**
+ * A snapshot of the scroll, client, border and overflow data of an element,
+ * as read by a single script call.
+ */
+public class ElementGeometry {
+
+    /**
+     * Returns all the values of the snapshot in a single object. Expects the
+     * element as its first argument.
+     */
+    public static final String JS_GET_GEOMETRY =
+            "var elem = arguments[0]; " +
+                    "var style = window.getComputedStyle ? window.getComputedStyle(elem, null) : null; " +
+                    "var getStyle = function(prop) { " +
+                    "if (style) { return style.getPropertyValue(prop); } " +
+                    "if (elem.currentStyle) { return elem.currentStyle[prop]; } " +
+                    "return null; " +
+                    "}; " +
+                    "return {" +
+                    "scrollLeft: elem.scrollLeft, scrollTop: elem.scrollTop, " +
+                    "scrollWidth: elem.scrollWidth, scrollHeight: elem.scrollHeight, " +
+                    "clientWidth: elem.clientWidth, clientHeight: elem.clientHeight, " +
+                    "borderLeftWidth: getStyle('border-left-width'), " +
+                    "borderTopWidth: getStyle('border-top-width'), " +
+                    "borderRightWidth: getStyle('border-right-width'), " +
+                    "borderBottomWidth: getStyle('border-bottom-width'), " +
+                    "overflow: elem.style.overflow, display: getStyle('display')" +
+                    "};";
+
+    private final int scrollLeft;
+    private final int scrollTop;
+    private final int scrollWidth;
+    private final int scrollHeight;
+    private final RectangleSize clientSize;
+    private final Borders borders;
+    private final String overflow;
+    private final String display;
+
+    public ElementGeometry(int scrollLeft, int scrollTop, int scrollWidth, int scrollHeight,
+                           RectangleSize clientSize, Borders borders, String overflow, String display) {
+        ArgumentGuard.notNull(clientSize, "clientSize");
+        ArgumentGuard.notNull(borders, "borders");
+
+        this.scrollLeft = scrollLeft;
+        this.scrollTop = scrollTop;
+        this.scrollWidth = scrollWidth;
+        this.scrollHeight = scrollHeight;
+        this.clientSize = clientSize;
+        this.borders = borders;
+        this.overflow = overflow;
+        this.display = display;
+    }
+
+    /**
+     * @param result The result of executing {@link #JS_GET_GEOMETRY}.
+     * @return The snapshot the result describes.
+     */
+    public static ElementGeometry fromScriptResult(Map<String, Object> result) {
+        ArgumentGuard.notNull(result, "result");
+
+        RectangleSize clientSize = new RectangleSize(
+                getCeiling(result, "clientWidth"), getCeiling(result, "clientHeight"));
+        Borders borders = new Borders(
+                getPixels(result, "borderLeftWidth"), getPixels(result, "borderTopWidth"),
+                getPixels(result, "borderRightWidth"), getPixels(result, "borderBottomWidth"));
+        Object overflow = result.get("overflow");
+        Object display = result.get("display");
+
+        return new ElementGeometry(
+                getCeiling(result, "scrollLeft"), getCeiling(result, "scrollTop"),
+                getCeiling(result, "scrollWidth"), getCeiling(result, "scrollHeight"),
+                clientSize, borders,
+                overflow == null ? "" : overflow.toString(),
+                display == null ? "" : display.toString());
+    }
+
+    private static double getNumber(Map<String, Object> result, String key) {
+        Object value = result.get(key);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    private static int getCeiling(Map<String, Object> result, String key) {
+        return (int) Math.ceil(getNumber(result, key));
+    }
+
+    /**
+     * @return The rounded value of a style property in the format "2px", or
+     * 0 if the property has no numeric value.
+     */
+    private static int getPixels(Map<String, Object> result, String key) {
+        Object value = result.get(key);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.round(Float.valueOf(value.toString().trim().replace("px", "")));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return The value of the scrollLeft property of the element.
+     */
+    public int getScrollLeft() {
+        return scrollLeft;
+    }
+
+    /**
+     * @return The value of the scrollTop property of the element.
+     */
+    public int getScrollTop() {
+        return scrollTop;
+    }
+
+    /**
+     * @return The value of the scrollWidth property of the element.
+     */
+    public int getScrollWidth() {
+        return scrollWidth;
+    }
+
+    /**
+     * @return The value of the scrollHeight property of the element.
+     */
+    public int getScrollHeight() {
+        return scrollHeight;
+    }
+
+    /**
+     * @return The clientWidth and clientHeight of the element.
+     */
+    public RectangleSize getClientSize() {
+        return clientSize;
+    }
+
+    /**
+     * @return The computed border widths of the element.
+     */
+    public Borders getBorders() {
+        return borders;
+    }
+
+    /**
+     * @return The value of the overflow style of the element (not the
+     * computed one, so it can be restored).
+     */
+    public String getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return The computed display style of the element.
+     */
+    public String getDisplay() {
+        return display;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("scroll: (%d, %d) of %dx%d, client: %s, borders: (%d, %d, %d, %d), " +
+                        "overflow: '%s', display: '%s'",
+                scrollLeft, scrollTop, scrollWidth, scrollHeight, clientSize,
+                borders.getLeft(), borders.getTop(), borders.getRight(), borders.getBottom(),
+                overflow, display);
+    }
+}
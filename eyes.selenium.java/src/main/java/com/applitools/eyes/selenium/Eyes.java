@@ -7,6 +7,7 @@ import com.applitools.eyes.*;
 import com.applitools.eyes.capture.AppOutputWithScreenshot;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.capture.ScreenStabilityDetector;
 import com.applitools.eyes.diagnostics.TimedAppOutput;
 import com.applitools.eyes.events.ValidationInfo;
 import com.applitools.eyes.events.ValidationResult;
@@ -15,6 +16,8 @@ import com.applitools.eyes.fluent.GetRegion;
 import com.applitools.eyes.fluent.ICheckSettings;
 import com.applitools.eyes.fluent.ICheckSettingsInternal;
 import com.applitools.eyes.fluent.IgnoreRegionByRectangle;
+import com.applitools.eyes.metrics.CheckpointTimings;
+import com.applitools.eyes.metrics.Phase;
 import com.applitools.eyes.positioning.*;
 import com.applitools.eyes.scaling.FixedScaleProviderFactory;
 import com.applitools.eyes.scaling.NullScaleProvider;
@@ -39,7 +42,12 @@ import org.openqa.selenium.Point;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
 /**
  * The main API gateway for the SDK.
@@ -55,6 +63,16 @@ public class Eyes extends EyesBase {
         return currentFramePositionProvider;
     }
 
+    private SelectorRegionResolver selectorRegionResolver;
+
+    /**
+     * @return The resolver of the selector based regions of the current
+     * check, or {@code null} if not in a check.
+     */
+    public SelectorRegionResolver getSelectorRegionResolver() {
+        return selectorRegionResolver;
+    }
+
     @SuppressWarnings("UnusedDeclaration")
     public interface WebDriverAction {
         void drive(WebDriver driver);
@@ -107,6 +125,8 @@ public class Eyes extends EyesBase {
 
     private boolean stitchContent = false;
 
+    private ForkJoinPool stitchingPool;
+
     protected void ensureConfiguration() {
         config = new Configuration();
     }
@@ -206,6 +226,24 @@ public class Eyes extends EyesBase {
         return getConfig().getWaitBeforeScreenshots();
     }
 
+    /**
+     * Sets whether the parts of a full page screenshot are captured once the
+     * screen is stable (two consecutive captures are identical), instead of
+     * after waiting a fixed time. When set, the time set by
+     * {@link #setWaitBeforeScreenshots(int)} is the maximum time to wait.
+     * @param detectScreenStability Whether to detect screen stability.
+     */
+    public void setDetectScreenStability(boolean detectScreenStability) {
+        getConfig().setDetectScreenStability(detectScreenStability);
+    }
+
+    /**
+     * @return Whether parts are captured once the screen is stable.
+     */
+    public boolean getDetectScreenStability() {
+        return getConfig().getDetectScreenStability();
+    }
+
     /**
      * Turns on/off the automatic scrolling to a region being checked by
      * {@code checkRegion}.
@@ -248,6 +286,44 @@ public class Eyes extends EyesBase {
         return getConfig().getStitchMode();
     }
 
+    /**
+     * Sets the number of threads which cut, crop, scale and stitch the parts
+     * of a full page screenshot, while the next parts are being captured.
+     * @param parallelism The number of stitching threads. A value of 0 or
+     *                    less processes every part before capturing the next
+     *                    one (the default).
+     */
+    public void setStitchingParallelism(int parallelism) {
+        if (stitchingPool != null) {
+            stitchingPool.shutdown();
+        }
+        stitchingPool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * @return The number of stitching threads, or 0 if parts are processed
+     * as they are captured.
+     */
+    public int getStitchingParallelism() {
+        return stitchingPool != null ? stitchingPool.getParallelism() : 0;
+    }
+
+    /**
+     * Sets the maximum number of bytes of captured screenshot parts which
+     * may be waiting to be stitched (when stitching in parallel).
+     * @param bytes The memory budget. At least one part is always allowed.
+     */
+    public void setStitchingMemoryBudget(long bytes) {
+        getConfig().setStitchingMemoryBudget(bytes);
+    }
+
+    /**
+     * @return The memory budget for captured parts waiting to be stitched.
+     */
+    public long getStitchingMemoryBudget() {
+        return getConfig().getStitchingMemoryBudget();
+    }
+
     /**
      * Hide the scrollbars when taking screenshots.
      * @param shouldHide Whether to hide the scrollbars or not.
@@ -537,9 +613,9 @@ public class Eyes extends EyesBase {
                     (TimedAppOutput) result.getMatchWindowData().getAppOutput();
             long resultElapsed = tao.getElapsed();
             long deadlineMs = deadline * 1000;
-            logger.verbose(String.format(
+            logger.verbose(
                     "Deadline: %d, Elapsed time for match: %d",
-                    deadlineMs, resultElapsed));
+                    deadlineMs, resultElapsed);
             deadlineExceeded = resultElapsed > deadlineMs;
         }
         logger.verbose("Deadline exceeded? " + deadlineExceeded);
@@ -684,7 +760,7 @@ public class Eyes extends EyesBase {
      */
     public void check(ICheckSettings... checkSettings) {
         if (getIsDisabled()) {
-            logger.log(String.format("check(ICheckSettings[%d]): Ignored", checkSettings.length));
+            logger.log("check(ICheckSettings[%d]): Ignored", checkSettings.length);
             return;
         }
 
@@ -789,7 +865,7 @@ public class Eyes extends EyesBase {
             debugScreenshotsProvider.save(subScreenshot.getImage(), String.format("subscreenshot_%s", name));
 
             ImageMatchSettings ims = mwt.createImageMatchSettings(checkSettingsInternal, subScreenshot);
-            AppOutput appOutput = new AppOutput(name, ImageUtils.base64FromImage(subScreenshot.getImage()), null);
+            AppOutput appOutput = new AppOutput(name, ImageUtils.encodeAsPng(subScreenshot.getImage()), null);
             AppOutputWithScreenshot appOutputWithScreenshot = new AppOutputWithScreenshot(appOutput, subScreenshot);
             MatchResult matchResult = mwt.performMatch(
                     new Trigger[0], appOutputWithScreenshot, name, false, ims);
@@ -867,7 +943,7 @@ public class Eyes extends EyesBase {
 
     public void check(String name, ICheckSettings checkSettings) {
         if (getIsDisabled()) {
-            logger.log(String.format("check('%s', %s): Ignored", name, checkSettings));
+            logger.log("check('%s', %s): Ignored", name, checkSettings);
             return;
         }
 
@@ -876,6 +952,36 @@ public class Eyes extends EyesBase {
         this.check(checkSettings);
     }
 
+    /**
+     * See {@link #checkAsync(ICheckSettings)}.
+     * @param name          The name of the checkpoint.
+     * @param checkSettings The settings of the check.
+     * @return The result of the check.
+     */
+    public CompletableFuture<MatchResult> checkAsync(String name, ICheckSettings checkSettings) {
+        ArgumentGuard.notNull(checkSettings, "checkSettings");
+        return checkAsync(checkSettings.withName(name));
+    }
+
+    /**
+     * Like {@link #check(ICheckSettings)}, but returns as soon as the
+     * screenshot is captured. Compressing and uploading the screenshot and
+     * matching it are done in the background, so the test can continue
+     * meanwhile. There are no match retries, so the application should be
+     * stable when this is called. {@link #close()} waits for all the pending
+     * checks.
+     * @param checkSettings The settings of the check.
+     * @return The result of the check.
+     */
+    public CompletableFuture<MatchResult> checkAsync(final ICheckSettings checkSettings) {
+        return checkAsyncBase(new Runnable() {
+            @Override
+            public void run() {
+                check(checkSettings);
+            }
+        });
+    }
+
     @Override
     public String tryCaptureDom() {
         ElementPositionProvider positionProvider = new ElementPositionProvider(logger, getEyesDriver(), scrollRootElement);
@@ -887,10 +993,28 @@ public class Eyes extends EyesBase {
         return fullWindowDom;
     }
 
+    @Override
+    protected UploadSpool.Payload tryCaptureDomPayload() {
+        if (this.domCaptureListener != null) {
+            // The listener gets the DOM as a string anyway.
+            return super.tryCaptureDomPayload();
+        }
+        ElementPositionProvider positionProvider = new ElementPositionProvider(logger, getEyesDriver(), scrollRootElement);
+        DomCapture domCapture = new DomCapture(this);
+        final Map<String, Object> dom = domCapture.getFullWindowDomTree(getEyesDriver(), positionProvider);
+        // The DOM is serialized straight into the request when it's posted.
+        return new UploadSpool.Payload() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                DomCapture.writeDom(dom, output);
+            }
+        };
+    }
+
 
     public void check(ICheckSettings checkSettings) {
         if (getIsDisabled()) {
-            logger.log(String.format("check(%s): Ignored", checkSettings));
+            logger.log("check(%s): Ignored", checkSettings);
             return;
         }
 
@@ -901,11 +1025,15 @@ public class Eyes extends EyesBase {
         String name = checkSettingsInternal.getName();
 
         this.scrollRootElement = this.getScrollRootElement(seleniumCheckTarget);
+        if (this.scrollRootElement instanceof EyesRemoteWebElement) {
+            // The page might have changed since the previous check.
+            ((EyesRemoteWebElement) this.scrollRootElement).invalidateGeometrySnapshot();
+        }
 
         currentFramePositionProvider = null;
         positionProviderHandler.set(createPositionProvider());
 
-        logger.verbose(String.format("check(\"%s\", checkSettings) - begin", name));
+        logger.verbose("check(\"%s\", checkSettings) - begin", name);
 
         ValidationInfo validationInfo = this.fireValidationWillStartEvent(name);
 
@@ -914,6 +1042,7 @@ public class Eyes extends EyesBase {
         }
 
         this.stitchContent = checkSettingsInternal.getStitchContent();
+        this.selectorRegionResolver = new SelectorRegionResolver(logger, getEyesDriver(), checkSettingsInternal);
 
         final Region targetRegion = checkSettingsInternal.getTargetRegion();
 
@@ -996,10 +1125,27 @@ public class Eyes extends EyesBase {
         }
 
         this.stitchContent = false;
-
-        ValidationResult validationResult = new ValidationResult();
-        validationResult.setAsExpected(result.getAsExpected());
-        getSessionEventHandlers().validationEnded(getAUTSessionId(), validationInfo.getValidationId(), validationResult);
+        this.selectorRegionResolver = null;
+
+        CompletableFuture<MatchResult> asyncResult = getAsyncCheckResult();
+        if (asyncResult != null) {
+            final String autSessionId = getAUTSessionId();
+            final String validationId = validationInfo.getValidationId();
+            // A failed check (e.g., a mismatch when failing on mismatches)
+            // also ends the validation.
+            asyncResult.whenComplete(new BiConsumer<MatchResult, Throwable>() {
+                @Override
+                public void accept(MatchResult matchResult, Throwable failure) {
+                    ValidationResult validationResult = new ValidationResult();
+                    validationResult.setAsExpected(failure == null && matchResult.getAsExpected());
+                    getSessionEventHandlers().validationEnded(autSessionId, validationId, validationResult);
+                }
+            });
+        } else {
+            ValidationResult validationResult = new ValidationResult();
+            validationResult.setAsExpected(result.getAsExpected());
+            getSessionEventHandlers().validationEnded(getAUTSessionId(), validationInfo.getValidationId(), validationResult);
+        }
 
         logger.verbose("check - done!");
     }
@@ -1250,13 +1396,13 @@ public class Eyes extends EyesBase {
     public void checkRegion(final Region region, int matchTimeout, String tag) {
 
         if (getIsDisabled()) {
-            logger.log(String.format("checkRegion([%s], %d, '%s'): Ignored", region, matchTimeout, tag));
+            logger.log("checkRegion([%s], %d, '%s'): Ignored", region, matchTimeout, tag);
             return;
         }
 
         ArgumentGuard.notNull(region, "region");
 
-        logger.verbose(String.format("checkRegion([%s], %d, '%s')", region, matchTimeout, tag));
+        logger.verbose("checkRegion([%s], %d, '%s')", region, matchTimeout, tag);
 
         super.checkWindowBase(
                 new RegionProvider() {
@@ -1698,7 +1844,7 @@ public class Eyes extends EyesBase {
                     "Failed to extract device pixel ratio! Using default.");
             devicePixelRatio = DEFAULT_DEVICE_PIXEL_RATIO;
         }
-        logger.verbose(String.format("Device pixel ratio: %f", devicePixelRatio));
+        logger.verbose("Device pixel ratio: %f", devicePixelRatio);
     }
 
     /**
@@ -1742,7 +1888,7 @@ public class Eyes extends EyesBase {
      */
     protected void checkCurrentFrame(int matchTimeout, String tag) {
         try {
-            logger.verbose(String.format("CheckCurrentFrame(%d, '%s')", matchTimeout, tag));
+            logger.verbose("CheckCurrentFrame(%d, '%s')", matchTimeout, tag);
 
             checkFrameOrElement = true;
 
@@ -1825,13 +1971,13 @@ public class Eyes extends EyesBase {
      */
     public void checkFrame(int frameIndex, int matchTimeout, String tag) {
         if (getIsDisabled()) {
-            logger.log(String.format("CheckFrame(%d, %d, '%s'): Ignored", frameIndex, matchTimeout, tag));
+            logger.log("CheckFrame(%d, %d, '%s'): Ignored", frameIndex, matchTimeout, tag);
             return;
         }
 
         ArgumentGuard.greaterThanOrEqualToZero(frameIndex, "frameIndex");
 
-        logger.log(String.format("CheckFrame(%d, %d, '%s')", frameIndex, matchTimeout, tag));
+        logger.log("CheckFrame(%d, %d, '%s')", frameIndex, matchTimeout, tag);
 
         check(tag, Target.frame(frameIndex).timeout(matchTimeout).fully());
     }
@@ -1973,6 +2119,8 @@ public class Eyes extends EyesBase {
         // Since the element might already have been found using EyesWebDriver.
         final EyesRemoteWebElement eyesElement = (element instanceof EyesRemoteWebElement) ?
                 (EyesRemoteWebElement) element : new EyesRemoteWebElement(logger, getEyesDriver(), element);
+        // The element might have changed since it was last checked.
+        eyesElement.invalidateGeometrySnapshot();
 
         this.regionToCheck = null;
         PositionMemento originalPositionMemento = positionProviderHandler.get().getState();
@@ -1989,15 +2137,18 @@ public class Eyes extends EyesBase {
         try {
             checkFrameOrElement = true;
 
-            String displayStyle = eyesElement.getComputedStyle("display");
+            ElementGeometry geometry = eyesElement.getGeometrySnapshot();
+            String displayStyle = geometry.getDisplay();
 
             if (getConfig().getHideScrollbars()) {
-                originalOverflow = eyesElement.getOverflow();
+                originalOverflow = geometry.getOverflow();
                 eyesElement.setOverflow("hidden");
+                // Hiding the scrollbars changes the client size.
+                geometry = eyesElement.getGeometrySnapshot();
             }
 
-            int elementWidth = eyesElement.getClientWidth();
-            int elementHeight = eyesElement.getClientHeight();
+            int elementWidth = geometry.getClientSize().getWidth();
+            int elementHeight = geometry.getClientSize().getHeight();
 
             if (!displayStyle.equals("inline") &&
                     elementHeight <= effectiveViewport.getHeight() &&
@@ -2007,8 +2158,8 @@ public class Eyes extends EyesBase {
                 elementPositionProvider = null;
             }
 
-            int borderLeftWidth = eyesElement.getComputedStyleInteger("border-left-width");
-            int borderTopWidth = eyesElement.getComputedStyleInteger("border-top-width");
+            int borderLeftWidth = geometry.getBorders().getLeft();
+            int borderTopWidth = geometry.getBorders().getTop();
 
             final Region elementRegion = new Region(
                     pl.getX() + borderLeftWidth, pl.getY() + borderTopWidth,
@@ -2089,19 +2240,19 @@ public class Eyes extends EyesBase {
      */
     public void addMouseTrigger(MouseAction action, Region control, Location cursor) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring %s (disabled)", action));
+            logger.verbose("Ignoring %s (disabled)", action);
             return;
         }
 
         // Triggers are actually performed on the previous window.
         if (lastScreenshot == null) {
-            logger.verbose(String.format("Ignoring %s (no screenshot)", action));
+            logger.verbose("Ignoring %s (no screenshot)", action);
             return;
         }
 
         if (!FrameChain.isSameFrameChain(getEyesDriver().getFrameChain(),
                 ((EyesWebDriverScreenshot) lastScreenshot).getFrameChain())) {
-            logger.verbose(String.format("Ignoring %s (different frame)", action));
+            logger.verbose("Ignoring %s (different frame)", action);
             return;
         }
 
@@ -2115,7 +2266,7 @@ public class Eyes extends EyesBase {
      */
     public void addMouseTrigger(MouseAction action, WebElement element) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring %s (disabled)", action));
+            logger.verbose("Ignoring %s (disabled)", action);
             return;
         }
 
@@ -2129,13 +2280,13 @@ public class Eyes extends EyesBase {
 
         // Triggers are actually performed on the previous window.
         if (lastScreenshot == null) {
-            logger.verbose(String.format("Ignoring %s (no screenshot)", action));
+            logger.verbose("Ignoring %s (no screenshot)", action);
             return;
         }
 
         if (!FrameChain.isSameFrameChain(getEyesDriver().getFrameChain(),
                 ((EyesWebDriverScreenshot) lastScreenshot).getFrameChain())) {
-            logger.verbose(String.format("Ignoring %s (different frame)", action));
+            logger.verbose("Ignoring %s (different frame)", action);
             return;
         }
 
@@ -2155,18 +2306,18 @@ public class Eyes extends EyesBase {
      */
     public void addTextTrigger(Region control, String text) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring '%s' (disabled)", text));
+            logger.verbose("Ignoring '%s' (disabled)", text);
             return;
         }
 
         if (lastScreenshot == null) {
-            logger.verbose(String.format("Ignoring '%s' (no screenshot)", text));
+            logger.verbose("Ignoring '%s' (no screenshot)", text);
             return;
         }
 
         if (!FrameChain.isSameFrameChain(getEyesDriver().getFrameChain(),
                 ((EyesWebDriverScreenshot) lastScreenshot).getFrameChain())) {
-            logger.verbose(String.format("Ignoring '%s' (different frame)", text));
+            logger.verbose("Ignoring '%s' (different frame)", text);
             return;
         }
 
@@ -2180,7 +2331,7 @@ public class Eyes extends EyesBase {
      */
     public void addTextTrigger(WebElement element, String text) {
         if (getIsDisabled()) {
-            logger.verbose(String.format("Ignoring '%s' (disabled)", text));
+            logger.verbose("Ignoring '%s' (disabled)", text);
             return;
         }
 
@@ -2475,7 +2626,13 @@ public class Eyes extends EyesBase {
         ensureElementVisible(this.targetElement);
 
         logger.verbose("Screenshot requested...");
+        CheckpointTimings timings = getCheckpointTimings();
+        long start = System.nanoTime();
         BufferedImage screenshotImage = imageProvider.getImage();
+        if (timings != null) {
+            start = timings.addSince(Phase.CAPTURE_PART, start,
+                    "width", screenshotImage.getWidth(), "height", screenshotImage.getHeight());
+        }
         debugScreenshotsProvider.save(screenshotImage, "original");
 
         ScaleProvider scaleProvider = scaleProviderFactory.getScaleProvider(screenshotImage.getWidth());
@@ -2491,6 +2648,9 @@ public class Eyes extends EyesBase {
             screenshotImage = cutProvider.cut(screenshotImage);
             debugScreenshotsProvider.save(screenshotImage, "cut");
         }
+        if (timings != null) {
+            timings.addSince(Phase.CUT_CROP_SCALE, start);
+        }
 
         logger.verbose("Creating screenshot object...");
         result = new EyesWebDriverScreenshot(logger, getEyesDriver(), screenshotImage);
@@ -2529,13 +2689,18 @@ public class Eyes extends EyesBase {
 
 
     private FullPageCaptureAlgorithm createFullPageCaptureAlgorithm(ScaleProviderFactory scaleProviderFactory) {
-        return new FullPageCaptureAlgorithm(logger, regionPositionCompensation,
+        FullPageCaptureAlgorithm algo = new FullPageCaptureAlgorithm(logger, regionPositionCompensation,
                 getWaitBeforeScreenshots(), debugScreenshotsProvider, screenshotFactory,
                 new ScrollPositionProvider(logger, getJsExecutor()),
                 scaleProviderFactory,
                 cutProviderHandler.get(),
                 getStitchOverlap(),
-                imageProvider);
+                imageProvider,
+                stitchingPool,
+                getStitchingMemoryBudget(),
+                getDetectScreenStability() ? new ScreenStabilityDetector(logger, imageProvider) : null);
+        algo.setCheckpointTimings(getCheckpointTimings());
+        return algo;
     }
 
     @Override
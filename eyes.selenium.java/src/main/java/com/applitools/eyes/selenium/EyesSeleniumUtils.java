@@ -276,9 +276,9 @@ public class EyesSeleniumUtils {
         try {
             return getViewportSize((JavascriptExecutor) driver);
         } catch (Exception ex) {
-            logger.verbose(String.format(
+            logger.verbose(
                     "Failed to extract viewport size using Javascript: %s",
-                    ex.getMessage()));
+                    ex.getMessage());
         }
         // If we failed to extract the viewport size using JS, will use the
         // window size instead.
@@ -298,7 +298,7 @@ public class EyesSeleniumUtils {
         } catch (WebDriverException e) {
             // Not every WebDriver supports querying for orientation.
         }
-        logger.verbose(String.format("Done! Size %d x %d", width, height));
+        logger.verbose("Done! Size %d x %d", width, height);
         return new RectangleSize(width, height);
     }
 
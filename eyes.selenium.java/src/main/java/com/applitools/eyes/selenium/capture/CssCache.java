@@ -0,0 +1,302 @@
+package com.applitools.eyes.selenium.capture;
+
+import com.applitools.eyes.DownloadResult;
+import com.applitools.eyes.EyesException;
+import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.reader.CSSReader;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * A size bounded LRU cache of downloaded and parsed style sheets, shared by
+ * the DOM captures of all the checkpoints. Cached style sheets are
+ * revalidated with the server (using their ETag / Last-Modified) once they
+ * are older than the freshness time, and concurrent requests for the same
+ * style sheet share a single download.
+ */
+public class CssCache {
+
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024; // characters
+    public static final int DEFAULT_FRESHNESS_TIME = 60 * 1000; // milliseconds
+
+    private static final CssCache defaultCache = new CssCache(DEFAULT_MAX_SIZE, DEFAULT_FRESHNESS_TIME);
+
+    /**
+     * A cached style sheet.
+     */
+    public static class Entry {
+        private final String text;
+        private final CascadingStyleSheet styleSheet;
+        private final String eTag;
+        private final String lastModified;
+        private volatile long validatedAt;
+
+        Entry(String text, CascadingStyleSheet styleSheet, String eTag, String lastModified) {
+            this.text = text;
+            this.styleSheet = styleSheet;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return The style sheet text.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return The parsed style sheet, or {@code null} if it isn't valid
+         * CSS.
+         */
+        public CascadingStyleSheet getStyleSheet() {
+            return styleSheet;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private long maxSize;
+    private int freshnessTime;
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong sharedFetches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize       The maximal total length of the cached style
+     *                      sheets (characters).
+     * @param freshnessTime The time a style sheet is used without
+     *                      revalidating it (ms).
+     */
+    public CssCache(long maxSize, int freshnessTime) {
+        ArgumentGuard.greaterThanOrEqualToZero(maxSize, "maxSize");
+        ArgumentGuard.greaterThanOrEqualToZero(freshnessTime, "freshnessTime");
+        this.maxSize = maxSize;
+        this.freshnessTime = freshnessTime;
+    }
+
+    /**
+     * @return The cache shared by all the DOM captures.
+     */
+    public static CssCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Gets a style sheet, downloading it only if it isn't cached or was
+     * modified. If downloading fails, a cached copy is used even if it is
+     * stale.
+     * @param url     The absolute URL of the style sheet.
+     * @param fetcher The fetcher to download the style sheet with.
+     * @param logger  A logger instance.
+     * @return A future of the style sheet, which fails if it couldn't be
+     * downloaded and isn't cached.
+     */
+    public CompletableFuture<Entry> get(final URL url, ResourceFetcher fetcher, final Logger logger) {
+        ArgumentGuard.notNull(url, "url");
+        final String key = url.toString();
+
+        final Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null && System.currentTimeMillis() - cached.validatedAt < freshnessTime) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        final CompletableFuture<Entry> result = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            sharedFetches.incrementAndGet();
+            return existing;
+        }
+
+        logger.verbose((cached == null ? "Downloading " : "Revalidating ") + key);
+        fetcher.fetch(url, cached != null ? cached.eTag : null, cached != null ? cached.lastModified : null)
+                .whenComplete(new BiConsumer<DownloadResult, Throwable>() {
+                    @Override
+                    public void accept(DownloadResult download, Throwable e) {
+                        if (e == null && download.isNotModified() && cached != null) {
+                            revalidations.incrementAndGet();
+                            cached.validatedAt = System.currentTimeMillis();
+                            finish(key, result, cached);
+                            return;
+                        }
+                        if (e == null && !download.isNotModified() && download.getContent() != null) {
+                            misses.incrementAndGet();
+                            String text = download.getContent();
+                            Entry entry = new Entry(text, CSSReader.readFromString(text, ECSSVersion.CSS30),
+                                    download.getETag(), download.getLastModified());
+                            put(key, entry);
+                            finish(key, result, entry);
+                            return;
+                        }
+
+                        failures.incrementAndGet();
+                        if (cached != null) {
+                            logger.verbose("Revalidating failed, using the cached " + key);
+                            finish(key, result, cached);
+                            return;
+                        }
+                        inFlight.remove(key, result);
+                        result.completeExceptionally(e != null ? e : new EyesException("Failed to download " + key));
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Sets the maximal total length of the cached style sheets, evicting
+     * the least recently used ones if needed.
+     * @param maxSize The maximal size (characters).
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        ArgumentGuard.greaterThanOrEqualToZero(maxSize, "maxSize");
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param freshnessTime The time a style sheet is used without
+     *                      revalidating it (ms).
+     */
+    public synchronized void setFreshnessTime(int freshnessTime) {
+        ArgumentGuard.greaterThanOrEqualToZero(freshnessTime, "freshnessTime");
+        this.freshnessTime = freshnessTime;
+    }
+
+    public synchronized int getFreshnessTime() {
+        return freshnessTime;
+    }
+
+    /**
+     * Removes all the cached style sheets.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return The total length of the cached style sheets (characters).
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of cached style sheets.
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of requests served from the cache without
+     * contacting the server.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of style sheets downloaded.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of cached style sheets the server reported as not
+     * modified.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return The number of requests which waited for a download already in
+     * progress.
+     */
+    public long getSharedFetches() {
+        return sharedFetches.get();
+    }
+
+    /**
+     * @return The number of failed downloads.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The number of style sheets evicted from the cache.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CssCache{" +
+                "count=" + getCount() +
+                ", size=" + getSize() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", revalidations=" + revalidations +
+                ", sharedFetches=" + sharedFetches +
+                ", failures=" + failures +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private void finish(String key, CompletableFuture<Entry> result, Entry entry) {
+        inFlight.remove(key, result);
+        result.complete(entry);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.text.length();
+        }
+        if (entry.text.length() > maxSize) {
+            return;
+        }
+        entries.put(key, entry);
+        size += entry.text.length();
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().text.length();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+}
@@ -1,34 +1,39 @@
 package com.applitools.eyes.selenium.capture;
 
-import com.applitools.eyes.IDownloadListener;
-import com.applitools.eyes.IServerConnector;
 import com.applitools.eyes.Location;
 import com.applitools.eyes.Logger;
 import com.applitools.eyes.selenium.Eyes;
 import com.applitools.eyes.selenium.positioning.ElementPositionProvider;
 import com.applitools.utils.GeneralUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.css.ECSSVersion;
 import com.helger.css.decl.CSSImportRule;
 import com.helger.css.decl.CSSStyleRule;
 import com.helger.css.decl.CascadingStyleSheet;
-import com.helger.css.decl.ICSSTopLevelRule;
 import com.helger.css.reader.CSSReader;
 import com.helger.css.writer.CSSWriterSettings;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public class DomCapture {
 
@@ -36,9 +41,33 @@ public class DomCapture {
     private static String CAPTURE_FRAME_SCRIPT;
 
     private static String CAPTURE_CSSOM_SCRIPT;
-    private final Phaser treePhaser = new Phaser(1); // Phaser for syncing all callbacks on a single Frame
-    private final Phaser mainPhaser = new Phaser(1); // Phaser for syncing all Frames
 
+    // Mappers are thread safe and costly to create, so they're shared by all
+    // the captures.
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final ObjectWriter domWriter = new ObjectMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .writer();
+
+    // The time to wait for the CSS of all the frames. Frames whose CSS isn't
+    // ready by then are sent without it.
+    private static final int CSS_TIMEOUT = 30 * 1000; // milliseconds
+
+    /**
+     * The CSS of a frame, which is added to the frame's DOM once downloaded.
+     */
+    private static class FrameCss {
+        final Map<String, Object> domTree;
+        final CompletableFuture<String> css;
+
+        FrameCss(Map<String, Object> domTree, CompletableFuture<String> css) {
+            this.domTree = domTree;
+            this.css = css;
+        }
+    }
+
+    private final List<FrameCss> framesCss = new ArrayList<>();
 
     static {
         try {
@@ -51,32 +80,50 @@ public class DomCapture {
     }
 
 
-    private static IServerConnector mServerConnector = null;
+    private final ResourceFetcher fetcher;
+    private final CssCache cssCache = CssCache.getDefault();
     private WebDriver mDriver;
     private final Logger mLogger;
 
     public DomCapture(Eyes eyes) {
-        mServerConnector = eyes.getServerConnector();
         mLogger = eyes.getLogger();
+        fetcher = new ResourceFetcher(eyes.getServerConnector(), mLogger);
     }
 
     public String getFullWindowDom(WebDriver driver, ElementPositionProvider positionProvider) {
-        this.mDriver = driver;
-        Location initialPosition = positionProvider.getCurrentPosition();
-        positionProvider.setPosition(Location.ZERO);
-        Map dom = GetWindowDom();
-        positionProvider.setPosition(initialPosition);
+        Map<String, Object> dom = getFullWindowDomTree(driver, positionProvider);
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
-            String json = objectMapper.writeValueAsString(dom);
-            return json;
+            return domWriter.writeValueAsString(dom);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
         return "";
     }
 
+    /**
+     * Captures the DOM of the whole window, without serializing it.
+     * @return The DOM tree, or {@code null} if it couldn't be parsed.
+     */
+    public Map<String, Object> getFullWindowDomTree(WebDriver driver, ElementPositionProvider positionProvider) {
+        this.mDriver = driver;
+        Location initialPosition = positionProvider.getCurrentPosition();
+        positionProvider.setPosition(Location.ZERO);
+        Map<String, Object> dom = GetWindowDom();
+        positionProvider.setPosition(initialPosition);
+        return dom;
+    }
+
+    /**
+     * Writes a DOM tree as UTF-8 encoded JSON, as it's serialized, rather
+     * than serializing it into a string first.
+     * @param dom    The DOM tree, as returned by {@link #getFullWindowDomTree}.
+     * @param output The stream to write to. It is not closed.
+     * @throws IOException If writing failed.
+     */
+    public static void writeDom(Map<String, Object> dom, OutputStream output) throws IOException {
+        domWriter.writeValue(output, dom);
+    }
+
     public Map<String, Object> GetWindowDom() {
 
         Map argsObj = initMapDom();
@@ -143,9 +190,10 @@ public class DomCapture {
             e.printStackTrace();
         }
 
-        mainPhaser.arriveAndAwaitAdvance();
+        addFramesCss();
 
         mLogger.verbose("Finished going over DOM CSS in - " + (System.currentTimeMillis() - startingTime));
+        mLogger.verbose(cssCache.toString());
 
         return executeScriptMap;
     }
@@ -235,22 +283,7 @@ public class DomCapture {
             boolean isHTML = tagName.equalsIgnoreCase("HTML");
 
             if (isHTML) {
-                mainPhaser.register();
-                getFrameBundledCss(baseUrl, new IDownloadListener() {
-                    @Override
-                    public void onDownloadComplete(String downloadedString) {
-                        domTree.put("css", downloadedString);
-                        mLogger.verbose("Putting css in " + " - CSS = " + downloadedString);
-                        mainPhaser.arriveAndDeregister();
-                    }
-
-                    @Override
-                    public void onDownloadFailed() {
-                        mLogger.verbose("mainPhaser.arriveAndDeregister()");
-                        mainPhaser.arriveAndDeregister();
-
-                    }
-                });
+                framesCss.add(new FrameCss(domTree, getFrameBundledCss(baseUrl)));
                 mLogger.verbose("Finish getFrameBundledCss(baseUrl)");
             }
 
@@ -304,51 +337,77 @@ public class DomCapture {
     }
 
 
-    private void getFrameBundledCss(final URL baseUrl, IDownloadListener listener) {
+    /**
+     * Waits for the CSS of all the frames, up to the CSS timeout, and adds it
+     * to their DOM. Frames whose CSS isn't ready in time are left without it.
+     */
+    private void addFramesCss() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[framesCss.size()];
+        for (int i = 0; i < futures.length; ++i) {
+            futures[i] = framesCss.get(i).css;
+        }
+        try {
+            CompletableFuture.allOf(futures).get(CSS_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            mLogger.log("WARNING! Timed out waiting for the CSS of the DOM");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mLogger.log("WARNING! Interrupted while waiting for the CSS of the DOM");
+        } catch (ExecutionException e) {
+            GeneralUtils.logExceptionStackTrace(mLogger, e);
+        }
+
+        int missingCount = 0;
+        for (FrameCss frameCss : framesCss) {
+            String css = frameCss.css.getNow(null);
+            if (css == null) {
+                ++missingCount;
+                continue;
+            }
+            frameCss.domTree.put("css", css);
+            mLogger.verbose("Putting css in " + " - CSS = " + css);
+        }
+        if (missingCount > 0) {
+            mLogger.log("WARNING! Sending a partial DOM: the CSS of %d of %d frames is missing",
+                    missingCount, framesCss.size());
+        }
+        framesCss.clear();
+    }
+
+    private CompletableFuture<String> getFrameBundledCss(final URL baseUrl) {
         URI uri = URI.create(baseUrl.toString());
         if (!uri.isAbsolute()) {
             mLogger.log("WARNING! Base URL is not an absolute URL!");
         }
-        CssTreeNode root = new CssTreeNode();
+        final CssTreeNode root = new CssTreeNode();
         root.setBaseUrl(baseUrl);
 
         List<String> result = (List<String>) ((JavascriptExecutor) mDriver).executeScript(CAPTURE_CSSOM_SCRIPT);
         final List<CssTreeNode> nodes = new ArrayList<>();
+        List<CompletableFuture<Void>> downloads = new ArrayList<>();
         for (String item : result) {
             String kind = item.substring(0, 5);
             //Value can be either css style or link to a css file
             String value = item.substring(5);
             if (kind.equalsIgnoreCase("text:")) {
                 parseCSS(root, value);
-                root.downloadNodeCss();
+                downloads.add(root.downloadNodeCss());
             } else {
                 final CssTreeNode cssTreeNode = new CssTreeNode();
                 cssTreeNode.setBaseUrl(root.baseUrl);
                 cssTreeNode.setUrlPostfix(value);
-                downloadCss(cssTreeNode, new IDownloadListener() {
-                    @Override
-                    public void onDownloadComplete(String downloadedString) {
-                        mLogger.verbose("DomCapture.onDownloadComplete");
-
-                        parseCSS(cssTreeNode, downloadedString);
-                        if (cssTreeNode.allImportRules != null && !cssTreeNode.allImportRules.isEmpty()) {
-
-                            cssTreeNode.downloadNodeCss();
-                        }
-                    }
-
-                    @Override
-
-                    public void onDownloadFailed() {
-                        mLogger.verbose("DomCapture.onDownloadFailed");
-                    }
-                });
+                downloads.add(downloadCss(cssTreeNode));
                 nodes.add(cssTreeNode);
             }
         }
         root.setDecedents(nodes);
-        treePhaser.arriveAndAwaitAdvance();
-        listener.onDownloadComplete(root.calcCss());
+        return CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(new Function<Void, String>() {
+                    @Override
+                    public String apply(Void ignored) {
+                        return root.calcCss();
+                    }
+                });
     }
 
     class CssTreeNode {
@@ -387,7 +446,12 @@ public class DomCapture {
             return sb.toString();
         }
 
-        void downloadNodeCss() {
+        /**
+         * @return A future which completes once all the style sheets
+         * imported by the node (and the ones they import) were downloaded.
+         */
+        CompletableFuture<Void> downloadNodeCss() {
+            List<CompletableFuture<Void>> downloads = new ArrayList<>();
             if (allImportRules != null) {
 
                 for (CSSImportRule importRule : allImportRules) {
@@ -396,24 +460,11 @@ public class DomCapture {
                     cssTreeNode.setBaseUrl(this.baseUrl);
                     String uri = importRule.getLocation().getURI();
                     cssTreeNode.setUrlPostfix(uri);
-                    downloadCss(cssTreeNode, new IDownloadListener() {
-                        @Override
-                        public void onDownloadComplete(String downloadedString) {
-                            parseCSS(cssTreeNode, downloadedString);
-                            if (!cssTreeNode.allImportRules.isEmpty()) {
-                                cssTreeNode.downloadNodeCss();
-
-                            }
-                        }
-
-                        @Override
-                        public void onDownloadFailed() {
-                            mLogger.verbose("Download Failed");
-                        }
-                    });
+                    downloads.add(downloadCss(cssTreeNode));
                     decedents.add(cssTreeNode);
                 }
             }
+            return CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0]));
         }
 
         public void setUrlPostfix(String urlPostfix) {
@@ -440,61 +491,53 @@ public class DomCapture {
 
     }
 
-    private void downloadCss(final CssTreeNode node, final IDownloadListener listener) {
-        treePhaser.register();
+    /**
+     * Gets the style sheet of the node (and then the style sheets it
+     * imports) through the CSS cache.
+     * @return A future which completes once the style sheet and its imports
+     * were downloaded, or failed to download. It never fails, since a
+     * missing style sheet shouldn't fail the rest of the CSS.
+     */
+    private CompletableFuture<Void> downloadCss(final CssTreeNode node) {
+        if (node.urlPostfix == null) {
+            return CompletableFuture.completedFuture(null);
+        }
         mLogger.verbose("Given URL to download: " + node.urlPostfix);
-        mServerConnector.downloadString(node.urlPostfix, false, new IDownloadListener() {
-            @Override
-            public void onDownloadComplete(String downloadedString) {
-                try {
-                    mLogger.verbose("Download Complete");
-                    listener.onDownloadComplete(downloadedString);
-
-                } catch (Exception e) {
-                    GeneralUtils.logExceptionStackTrace(e);
-                }
-                finally {
-                    treePhaser.arriveAndDeregister();
-                    mLogger.verbose("treePhaser.arriveAndDeregister(); " + node.urlPostfix);
-                    mLogger.verbose("current unarrived  - " + treePhaser.getUnarrivedParties());
-                }
-            }
-
-            @Override
-            public void onDownloadFailed() {
-                treePhaser.arriveAndDeregister();
-                mLogger.verbose("Download Faild");
-                mLogger.verbose("treePhaser.arriveAndDeregister(); " + node.urlPostfix);
-                mLogger.verbose("current unarrived  - " + treePhaser.getUnarrivedParties());
-            }
-        });
+        return cssCache.get(node.urlPostfix, fetcher, mLogger)
+                .thenCompose(new Function<CssCache.Entry, CompletionStage<Void>>() {
+                    @Override
+                    public CompletionStage<Void> apply(CssCache.Entry entry) {
+                        setStyleSheet(node, entry.getStyleSheet());
+                        return node.downloadNodeCss();
+                    }
+                })
+                .exceptionally(new Function<Throwable, Void>() {
+                    @Override
+                    public Void apply(Throwable e) {
+                        mLogger.verbose("Download Failed: " + node.urlPostfix + " - " + e.getMessage());
+                        return null;
+                    }
+                });
     }
 
     private void parseCSS(CssTreeNode node, String css) {
         if (css == null) {
             return;
         }
-        CascadingStyleSheet cascadingStyleSheet = CSSReader.readFromString(css, ECSSVersion.CSS30);
-        if (cascadingStyleSheet == null) {
-            return;
-        }
-        ICommonsList<ICSSTopLevelRule> allRules = cascadingStyleSheet.getAllRules();
-        if (allRules == null) {
+        setStyleSheet(node, CSSReader.readFromString(css, ECSSVersion.CSS30));
+    }
+
+    private void setStyleSheet(CssTreeNode node, CascadingStyleSheet styleSheet) {
+        if (styleSheet == null) {
             return;
         }
-
-        final CascadingStyleSheet aCSS = CSSReader.readFromString(css, ECSSVersion.CSS30);
-        ICommonsList<CSSImportRule> allImportRules = aCSS.getAllImportRules();
-        node.setAllImportRules(allImportRules);
-        node.setAllStyleRules(aCSS.getAllStyleRules());
+        node.setAllImportRules(styleSheet.getAllImportRules());
+        node.setAllStyleRules(styleSheet.getAllStyleRules());
     }
 
     private Map<String, Object> parseStringToMap(String executeScripString) throws IOException {
-        Map<String, Object> executeScriptMap;
-        ObjectMapper mapper = new ObjectMapper();
-        executeScriptMap = mapper.readValue(executeScripString, new TypeReference<Map<String, Object>>() {
+        return jsonMapper.readValue(executeScripString, new TypeReference<Map<String, Object>>() {
         });
-        return executeScriptMap;
     }
 
 
@@ -142,7 +142,7 @@ public class EyesWebDriverScreenshot extends EyesScreenshot {
     }
 
     private Location getUpdatedFrameLocationInScreenshot(Logger logger, Location frameLocationInScreenshot) {
-        logger.verbose(String.format("frameLocationInScreenshot: %s", frameLocationInScreenshot));
+        logger.verbose("frameLocationInScreenshot: %s", frameLocationInScreenshot);
         if (frameChain.size() > 0) {
             frameLocationInScreenshot = calcFrameLocationInScreenshot(logger, this.driver, frameChain, this.screenshotType);
         } else if (frameLocationInScreenshot == null) {
@@ -272,6 +272,14 @@ public class EyesWebDriverScreenshot extends EyesScreenshot {
         return frameWindow;
     }
 
+    /**
+     * @return The scroll position of the current frame when the screenshot
+     * was created.
+     */
+    public Location getCurrentFrameScrollPosition() {
+        return currentFrameScrollPosition;
+    }
+
     /**
      * @return A copy of the frame chain which was available when the
      * screenshot was created.
@@ -283,7 +291,7 @@ public class EyesWebDriverScreenshot extends EyesScreenshot {
     @Override
     public EyesWebDriverScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
 
-        logger.verbose(String.format("getSubScreenshot([%s], %b)", region, throwIfClipped));
+        logger.verbose("getSubScreenshot([%s], %b)", region, throwIfClipped);
 
         ArgumentGuard.notNull(region, "region");
 
@@ -311,7 +319,7 @@ public class EyesWebDriverScreenshot extends EyesScreenshot {
 
     public EyesWebDriverScreenshot getSubScreenshotForRegion(Region region, boolean throwIfClipped) {
 
-        logger.verbose(String.format("getSubScreenshot([%s], %b)", region, throwIfClipped));
+        logger.verbose("getSubScreenshot([%s], %b)", region, throwIfClipped);
 
         ArgumentGuard.notNull(region, "region");
 
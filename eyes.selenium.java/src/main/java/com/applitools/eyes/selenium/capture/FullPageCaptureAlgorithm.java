@@ -3,7 +3,10 @@ package com.applitools.eyes.selenium.capture;
 import com.applitools.eyes.*;
 import com.applitools.eyes.capture.EyesScreenshotFactory;
 import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.capture.ScreenStabilityDetector;
 import com.applitools.eyes.debug.DebugScreenshotsProvider;
+import com.applitools.eyes.metrics.CheckpointTimings;
+import com.applitools.eyes.metrics.Phase;
 import com.applitools.eyes.CutProvider;
 import com.applitools.eyes.positioning.PositionMemento;
 import com.applitools.eyes.positioning.PositionProvider;
@@ -15,10 +18,16 @@ import com.applitools.utils.GeneralUtils;
 import com.applitools.utils.ImageUtils;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class FullPageCaptureAlgorithm {
     private static final int MIN_SCREENSHOT_PART_HEIGHT = 10;
+    public static final long DEFAULT_STITCHING_MEMORY_BUDGET = 128 * 1024 * 1024;
 
     private final Logger logger;
     private final RegionPositionCompensation regionPositionCompensation;
@@ -30,12 +39,38 @@ public class FullPageCaptureAlgorithm {
     private final CutProvider cutProvider;
     private final int stitchingOverlap;
     private final ImageProvider imageProvider;
+    private final Executor stitchingExecutor;
+    private final long stitchingMemoryBudget;
+    private final ScreenStabilityDetector stabilityDetector;
+    private CheckpointTimings checkpointTimings;
 
     public FullPageCaptureAlgorithm(Logger logger, RegionPositionCompensation regionPositionCompensation,
                                     int waitBeforeScreenshots, DebugScreenshotsProvider debugScreenshotsProvider,
                                     EyesScreenshotFactory screenshotFactory, PositionProvider originProvider,
                                     ScaleProviderFactory scaleProviderFactory, CutProvider cutProvider,
                                     int stitchingOverlap, ImageProvider imageProvider) {
+        this(logger, regionPositionCompensation, waitBeforeScreenshots, debugScreenshotsProvider,
+                screenshotFactory, originProvider, scaleProviderFactory, cutProvider, stitchingOverlap,
+                imageProvider, null, DEFAULT_STITCHING_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * @param stitchingExecutor     The executor on which captured parts are cut, cropped, scaled and
+     *                              stitched while the next parts are captured, or {@code null} to process
+     *                              every part before capturing the next one.
+     * @param stitchingMemoryBudget The number of bytes of captured parts which may be waiting to be
+     *                              stitched. At least one part is always allowed.
+     * @param stabilityDetector     The detector used for capturing a part once the screen is stable (waiting
+     *                              at most {@code waitBeforeScreenshots}), or {@code null} to always wait
+     *                              {@code waitBeforeScreenshots} before capturing a part.
+     */
+    public FullPageCaptureAlgorithm(Logger logger, RegionPositionCompensation regionPositionCompensation,
+                                    int waitBeforeScreenshots, DebugScreenshotsProvider debugScreenshotsProvider,
+                                    EyesScreenshotFactory screenshotFactory, PositionProvider originProvider,
+                                    ScaleProviderFactory scaleProviderFactory, CutProvider cutProvider,
+                                    int stitchingOverlap, ImageProvider imageProvider,
+                                    Executor stitchingExecutor, long stitchingMemoryBudget,
+                                    ScreenStabilityDetector stabilityDetector) {
 
         ArgumentGuard.notNull(logger, "logger");
 
@@ -48,6 +83,9 @@ public class FullPageCaptureAlgorithm {
         this.cutProvider = cutProvider;
         this.stitchingOverlap = stitchingOverlap;
         this.imageProvider = imageProvider;
+        this.stitchingExecutor = stitchingExecutor;
+        this.stitchingMemoryBudget = stitchingMemoryBudget;
+        this.stabilityDetector = stabilityDetector;
 
         this.regionPositionCompensation =
                 regionPositionCompensation != null
@@ -55,6 +93,26 @@ public class FullPageCaptureAlgorithm {
                         : new NullRegionPositionCompensation();
     }
 
+    /**
+     * @param checkpointTimings The timings of the checkpoint the stitching is
+     *                          done for, or {@code null}.
+     */
+    public void setCheckpointTimings(CheckpointTimings checkpointTimings) {
+        this.checkpointTimings = checkpointTimings;
+    }
+
+    private void addTime(Phase phase, long start) {
+        if (checkpointTimings != null) {
+            checkpointTimings.addSince(phase, start);
+        }
+    }
+
+    private void addTime(Phase phase, long start, BufferedImage image) {
+        if (checkpointTimings != null) {
+            checkpointTimings.addSince(phase, start, "width", image.getWidth(), "height", image.getHeight());
+        }
+    }
+
     private void saveDebugScreenshotPart(BufferedImage image, Region region, String name) {
 
         String suffix = String.format("part-%s-%d_%d_%dx%d",
@@ -76,7 +134,7 @@ public class FullPageCaptureAlgorithm {
         ArgumentGuard.notNull(region, "region");
         ArgumentGuard.notNull(positionProvider, "positionProvider");
 
-        logger.verbose(String.format("positionProvider: %s ; Region: %s", positionProvider.getClass(), region));
+        logger.verbose("positionProvider: %s ; Region: %s", positionProvider.getClass(), region);
 
         // Saving the original position (in case we were already in the outermost frame).
         PositionMemento originalStitchedState = positionProvider.getState();
@@ -85,14 +143,18 @@ public class FullPageCaptureAlgorithm {
         originProvider.setPosition(Location.ZERO); // first scroll to 0,0 so CSS stitching works.
 
         logger.verbose("Getting top/left image...");
+        long start = System.nanoTime();
         BufferedImage image = imageProvider.getImage();
+        addTime(Phase.CAPTURE_PART, start, image);
         debugScreenshotsProvider.save(image, "original");
+        long capturedImageBytes = (long) image.getWidth() * image.getHeight() * 4;
 
         // FIXME - scaling should be refactored
         ScaleProvider scaleProvider = scaleProviderFactory.getScaleProvider(image.getWidth());
         // Notice that we want to cut/crop an image before we scale it, we need to change
         double pixelRatio = 1 / scaleProvider.getScaleRatio();
 
+        start = System.nanoTime();
         // FIXME - cropping should be overlaid, so a single cut provider will only handle a single part of the image.
         CutProvider scaledCutProvider = cutProvider.scale(pixelRatio);
         if (!(scaledCutProvider instanceof NullCutProvider)) {
@@ -111,6 +173,7 @@ public class FullPageCaptureAlgorithm {
             image = ImageUtils.scaleImage(image, 1.0 / pixelRatio);
             debugScreenshotsProvider.save(image, "scaled");
         }
+        addTime(Phase.CUT_CROP_SCALE, start);
 
         if (fullArea == null || fullArea.isEmpty()) {
             RectangleSize entireSize;
@@ -146,7 +209,7 @@ public class FullPageCaptureAlgorithm {
                 new RectangleSize(image.getWidth(),
                         Math.max(image.getHeight() - stitchingOverlap, MIN_SCREENSHOT_PART_HEIGHT));
 
-        logger.verbose(String.format("entire page region: %s, image part size: %s", fullArea, partImageSize));
+        logger.verbose("entire page region: %s, image part size: %s", fullArea, partImageSize);
 
         // Getting the list of sub-regions composing the whole region (we'll
         // take screenshot for each one).
@@ -159,68 +222,122 @@ public class FullPageCaptureAlgorithm {
 
         logger.verbose("Done! Adding initial screenshot..");
         // Starting with the screenshot we already captured at (0,0).
-        Raster initialPart = image.getData();
-        logger.verbose(String.format("Initial part:(0,0)[%d x %d]",
-                initialPart.getWidth(), initialPart.getHeight()));
-        stitchedImage.getRaster().setRect(0, 0, initialPart);
+        logger.verbose("Initial part:(0,0)[%d x %d]",
+                image.getWidth(), image.getHeight());
+        stitchPart(stitchedImage, image, Location.ZERO);
         logger.verbose("Done!");
 
         lastSuccessfulLocation = new Location(0, 0);
-        lastSuccessfulPartSize = new RectangleSize(initialPart.getWidth(), initialPart.getHeight());
+        lastSuccessfulPartSize = new RectangleSize(image.getWidth(), image.getHeight());
+
+        // In pipelined mode, the parts are processed on the stitching
+        // executor, and are stitched in order (since consecutive parts
+        // overlap). The number of parts which were captured but not yet
+        // stitched is bounded by the memory budget.
+        int maxPartsInFlight = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                stitchingMemoryBudget / capturedImageBytes));
+        final Semaphore partsInFlight = new Semaphore(maxPartsInFlight);
+        if (stitchingExecutor != null) {
+            logger.verbose("Pipelined stitching, parts in flight: " + maxPartsInFlight);
+        }
+        CompletableFuture<Void> lastStitch = CompletableFuture.completedFuture(null);
+        CompletableFuture<BufferedImage> lastPart = null;
 
         // Take screenshot and stitch for each screenshot part.
         logger.verbose("Getting the rest of the image parts...");
         BufferedImage partImage = null;
-        for (Region partRegion : imageParts) {
+        for (final Region partRegion : imageParts) {
             // Skipping screenshot for 0,0 (already taken)
 //            if (partRegion.getLeft() == 0 && partRegion.getTop() == 0) {
 //                continue;
 //            }
-            logger.verbose(String.format("Taking screenshot for %s", partRegion));
+            if (stitchingExecutor != null) {
+                if (lastStitch.isCompletedExceptionally()) {
+                    break;
+                }
+                try {
+                    partsInFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new EyesException("Interrupted while waiting for parts to be stitched", e);
+                }
+            }
+
+            logger.verbose("Taking screenshot for %s", partRegion);
             // Set the position to the part's top/left.
+            long partStart = System.nanoTime();
             positionProvider.setPosition(partRegion.getLocation());
-            // Giving it time to stabilize.
-            GeneralUtils.sleep(waitBeforeScreenshots);
+            addTime(Phase.SCROLL, partStart);
+            partStart = System.nanoTime();
+            BufferedImage stableImage = null;
+            if (stabilityDetector != null) {
+                // Capturing until the screen is stable, waiting at most waitBeforeScreenshots.
+                stableImage = stabilityDetector.getStableImage(waitBeforeScreenshots, "Part " + partRegion);
+            } else {
+                // Giving it time to stabilize.
+                GeneralUtils.sleep(waitBeforeScreenshots);
+            }
             // Screen size may cause the scroll to only reach part of the way.
             Location originPosition = positionProvider.getCurrentPosition();
-            Location targetPosition = originPosition.offset(-fullArea.getLeft(), -fullArea.getTop());
-            logger.verbose(String.format("Origin Position is set to %s", originPosition));
+            final Location targetPosition = originPosition.offset(-fullArea.getLeft(), -fullArea.getTop());
+            final String positionForFilename = originPosition.toStringForFilename();
+            logger.verbose("Origin Position is set to %s", originPosition);
 
             // Actually taking the screenshot.
             logger.verbose("Getting image...");
-            partImage = imageProvider.getImage();
-            debugScreenshotsProvider.save(partImage,
-                    "original-scrolled-" + positionProvider.getCurrentPosition().toStringForFilename());
-
-            // FIXME - cropping should be overlaid (see previous comment re cropping)
-            if (!(scaledCutProvider instanceof NullCutProvider)) {
-                logger.verbose("cutting...");
-                partImage = scaledCutProvider.cut(partImage);
-                debugScreenshotsProvider.save(partImage,
-                        "original-scrolled-cut-" + positionProvider.getCurrentPosition().toStringForFilename());
+            final BufferedImage capturedImage = stableImage != null ? stableImage : imageProvider.getImage();
+            addTime(Phase.CAPTURE_PART, partStart, capturedImage);
+            debugScreenshotsProvider.save(capturedImage, "original-scrolled-" + positionForFilename);
+
+            if (stitchingExecutor == null) {
+                partImage = processPart(capturedImage, partRegion, positionForFilename,
+                        scaledCutProvider, regionInScreenshot, pixelRatio);
+
+                // Stitching the current part.
+                logger.verbose("Stitching part into the image container...");
+                stitchPart(stitchedImage, partImage, targetPosition);
+                logger.verbose("Done!");
+            } else {
+                final CutProvider partCutProvider = scaledCutProvider;
+                final Region partRegionInScreenshot = regionInScreenshot;
+                final double partPixelRatio = pixelRatio;
+                final BufferedImage stitchTarget = stitchedImage;
+                lastPart = CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+                    @Override
+                    public BufferedImage get() {
+                        return processPart(capturedImage, partRegion, positionForFilename,
+                                partCutProvider, partRegionInScreenshot, partPixelRatio);
+                    }
+                }, stitchingExecutor);
+                lastStitch = lastPart.thenAcceptBothAsync(lastStitch, new BiConsumer<BufferedImage, Void>() {
+                    @Override
+                    public void accept(BufferedImage part, Void previous) {
+                        logger.verbose("Stitching part %s into the image container...", partRegion);
+                        stitchPart(stitchTarget, part, targetPosition);
+                    }
+                }, stitchingExecutor);
+                lastStitch.whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(Void result, Throwable throwable) {
+                        partsInFlight.release();
+                    }
+                });
             }
 
-            if (!regionInScreenshot.isSizeEmpty()) {
-                logger.verbose("cropping...");
-                partImage = ImageUtils.getImagePart(partImage, regionInScreenshot);
-                saveDebugScreenshotPart(partImage, partRegion, "original-scrolled-"
-                        + positionProvider.getCurrentPosition().toStringForFilename());
-            }
+            lastSuccessfulLocation = originPosition;
+        }
 
-            if (pixelRatio != 1.0) {
-                logger.verbose("scaling...");
-                // FIXME - scaling should be refactored
-                partImage = ImageUtils.scaleImage(partImage, 1.0 / pixelRatio);
-                saveDebugScreenshotPart(partImage, partRegion,
-                        "original-scrolled-" + positionProvider.getCurrentPosition().toStringForFilename() + "-scaled-");
+        if (lastPart != null) {
+            logger.verbose("Waiting for the remaining parts to be stitched...");
+            try {
+                lastStitch.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new EyesException("Failed to stitch image parts", e.getCause());
             }
-
-            // Stitching the current part.
-            logger.verbose("Stitching part into the image container...");
-            stitchedImage.getRaster().setRect(targetPosition.getX(), targetPosition.getY(), partImage.getData());
-            logger.verbose("Done!");
-
-            lastSuccessfulLocation = originPosition;
+            partImage = lastPart.join();
         }
 
         if (partImage != null) {
@@ -250,6 +367,50 @@ public class FullPageCaptureAlgorithm {
         return stitchedImage;
     }
 
+    /**
+     * Cuts, crops and scales a captured part, as was done for the initial screenshot.
+     */
+    private BufferedImage processPart(BufferedImage partImage, Region partRegion, String positionForFilename,
+                                      CutProvider scaledCutProvider, Region regionInScreenshot,
+                                      double pixelRatio) {
+        long start = System.nanoTime();
+        // FIXME - cropping should be overlaid (see previous comment re cropping)
+        if (!(scaledCutProvider instanceof NullCutProvider)) {
+            logger.verbose("cutting...");
+            partImage = scaledCutProvider.cut(partImage);
+            debugScreenshotsProvider.save(partImage, "original-scrolled-cut-" + positionForFilename);
+        }
+
+        if (!regionInScreenshot.isSizeEmpty()) {
+            logger.verbose("cropping...");
+            // Without scaling, the part is only copied into the stitched
+            // image, so there's no need to copy its pixels beforehand.
+            partImage = pixelRatio == 1.0
+                    ? ImageUtils.getImagePartView(partImage, regionInScreenshot)
+                    : ImageUtils.getImagePart(partImage, regionInScreenshot);
+            saveDebugScreenshotPart(partImage, partRegion, "original-scrolled-" + positionForFilename);
+        }
+
+        if (pixelRatio != 1.0) {
+            logger.verbose("scaling...");
+            // FIXME - scaling should be refactored
+            partImage = ImageUtils.scaleImage(partImage, 1.0 / pixelRatio);
+            saveDebugScreenshotPart(partImage, partRegion,
+                    "original-scrolled-" + positionForFilename + "-scaled-");
+        }
+
+        addTime(Phase.CUT_CROP_SCALE, start);
+        return partImage;
+    }
+
+    private void stitchPart(BufferedImage stitchedImage, BufferedImage partImage, Location targetPosition) {
+        long start = System.nanoTime();
+        // The part's raster is copied directly (rather than through a copy
+        // made by getData()); its origin is always (0,0), even for sub-images.
+        stitchedImage.getRaster().setRect(targetPosition.getX(), targetPosition.getY(), partImage.getRaster());
+        addTime(Phase.STITCH, start, partImage);
+    }
+
     private Region getRegionInScreenshot(Region region, BufferedImage image, double pixelRatio) {
         logger.verbose("Creating screenshot object...");
         // We need the screenshot to be able to convert the region to screenshot coordinates.
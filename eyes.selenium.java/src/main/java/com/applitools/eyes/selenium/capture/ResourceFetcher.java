@@ -0,0 +1,194 @@
+package com.applitools.eyes.selenium.capture;
+
+import com.applitools.eyes.DownloadResult;
+import com.applitools.eyes.EyesException;
+import com.applitools.eyes.IConditionalDownloadListener;
+import com.applitools.eyes.IServerConnector;
+import com.applitools.eyes.Logger;
+import com.applitools.utils.ArgumentGuard;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Fetches the resources of a DOM capture, with a limit on the number of
+ * concurrent requests to each host and a deadline for each resource.
+ */
+public class ResourceFetcher {
+
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 6;
+    public static final int DEFAULT_RESOURCE_TIMEOUT = 10 * 1000; // milliseconds
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "eyes-resource-timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * The requests of a single host.
+     */
+    private static class HostRequests {
+        int active;
+        final Deque<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    private final IServerConnector serverConnector;
+    private final Logger logger;
+    private final int maxRequestsPerHost;
+    private final int resourceTimeout;
+    private final Map<String, HostRequests> hosts = new HashMap<>();
+
+    /**
+     * @param serverConnector    The connector to download the resources with.
+     * @param logger             A logger instance.
+     * @param maxRequestsPerHost The maximal number of concurrent requests to
+     *                           each host.
+     * @param resourceTimeout    The time to wait for each resource, including
+     *                           the time waiting for other requests to the
+     *                           host (ms).
+     */
+    public ResourceFetcher(IServerConnector serverConnector, Logger logger, int maxRequestsPerHost,
+                           int resourceTimeout) {
+        ArgumentGuard.notNull(serverConnector, "serverConnector");
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.greaterThanZero(maxRequestsPerHost, "maxRequestsPerHost");
+        ArgumentGuard.greaterThanZero(resourceTimeout, "resourceTimeout");
+        this.serverConnector = serverConnector;
+        this.logger = logger;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.resourceTimeout = resourceTimeout;
+    }
+
+    /**
+     * Creates a fetcher with the default limits.
+     * @param serverConnector The connector to download the resources with.
+     * @param logger          A logger instance.
+     */
+    public ResourceFetcher(IServerConnector serverConnector, Logger logger) {
+        this(serverConnector, logger, DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_RESOURCE_TIMEOUT);
+    }
+
+    /**
+     * Downloads a resource, unless it wasn't modified since the given
+     * validators. A failed download is retried once.
+     * @param url          The URL of the resource.
+     * @param eTag         The "ETag" of the last download, or {@code null}.
+     * @param lastModified The "Last-Modified" of the last download, or
+     *                     {@code null}.
+     * @return A future of the download, which fails if the download failed
+     * or didn't finish in time.
+     */
+    public CompletableFuture<DownloadResult> fetch(final URL url, final String eTag, final String lastModified) {
+        ArgumentGuard.notNull(url, "url");
+        final CompletableFuture<DownloadResult> result = new CompletableFuture<>();
+
+        final ScheduledFuture<?> timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (result.completeExceptionally(new EyesException(
+                        String.format("Fetching %s timed out after %d ms", url, resourceTimeout)))) {
+                    logger.log("WARNING! Timed out fetching " + url);
+                }
+            }
+        }, resourceTimeout, TimeUnit.MILLISECONDS);
+        result.whenComplete(new BiConsumer<DownloadResult, Throwable>() {
+            @Override
+            public void accept(DownloadResult download, Throwable e) {
+                timeout.cancel(false);
+            }
+        });
+
+        final String host = url.getAuthority();
+        runForHost(host, new Runnable() {
+            @Override
+            public void run() {
+                if (result.isDone()) {
+                    release(host);
+                    return;
+                }
+                download(url, eTag, lastModified, host, result, 1);
+            }
+        });
+        return result;
+    }
+
+    private void download(final URL url, final String eTag, final String lastModified, final String host,
+                          final CompletableFuture<DownloadResult> result, final int attempt) {
+        serverConnector.downloadString(url, eTag, lastModified, new IConditionalDownloadListener() {
+            @Override
+            public void onDownloadComplete(DownloadResult download) {
+                release(host);
+                result.complete(download);
+            }
+
+            @Override
+            public void onDownloadFailed() {
+                if (attempt < MAX_ATTEMPTS && !result.isDone()) {
+                    logger.verbose("Download failed, retrying: " + url);
+                    download(url, eTag, lastModified, host, result, attempt + 1);
+                    return;
+                }
+                release(host);
+                result.completeExceptionally(new EyesException("Failed to download " + url));
+            }
+        });
+    }
+
+    /**
+     * Runs the request now if the host has a free slot, or once one of its
+     * running requests finishes.
+     */
+    private void runForHost(String host, Runnable request) {
+        synchronized (this) {
+            HostRequests requests = hosts.get(host);
+            if (requests == null) {
+                requests = new HostRequests();
+                hosts.put(host, requests);
+            }
+            if (requests.active >= maxRequestsPerHost) {
+                requests.waiting.add(request);
+                return;
+            }
+            ++requests.active;
+        }
+        request.run();
+    }
+
+    /**
+     * Frees the slot of a finished request, passing it to the next waiting
+     * request of the host.
+     */
+    private void release(String host) {
+        Runnable next;
+        synchronized (this) {
+            HostRequests requests = hosts.get(host);
+            next = requests.waiting.poll();
+            if (next == null) {
+                --requests.active;
+                if (requests.active == 0) {
+                    hosts.remove(host);
+                }
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+}
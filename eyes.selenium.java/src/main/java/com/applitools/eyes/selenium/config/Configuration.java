@@ -1,6 +1,7 @@
 package com.applitools.eyes.selenium.config;
 
 import com.applitools.eyes.selenium.StitchMode;
+import com.applitools.eyes.selenium.capture.FullPageCaptureAlgorithm;
 
 public class Configuration extends com.applitools.eyes.config.Configuration {
     private static final int DEFAULT_WAIT_BEFORE_SCREENSHOTS = 100;
@@ -10,6 +11,8 @@ public class Configuration extends com.applitools.eyes.config.Configuration {
     private StitchMode stitchMode = StitchMode.SCROLL;
     private boolean hideScrollbars = true;
     private boolean hideCaret = true;
+    private boolean detectScreenStability;
+    private long stitchingMemoryBudget = FullPageCaptureAlgorithm.DEFAULT_STITCHING_MEMORY_BUDGET;
 
     public boolean getForceFullPageScreenshot() {
         return forceFullPageScreenshot;
@@ -54,4 +57,20 @@ public class Configuration extends com.applitools.eyes.config.Configuration {
     public void setHideCaret(boolean hideCaret) {
         this.hideCaret = hideCaret;
     }
+
+    public long getStitchingMemoryBudget() {
+        return stitchingMemoryBudget;
+    }
+
+    public void setStitchingMemoryBudget(long stitchingMemoryBudget) {
+        this.stitchingMemoryBudget = stitchingMemoryBudget;
+    }
+
+    public boolean getDetectScreenStability() {
+        return detectScreenStability;
+    }
+
+    public void setDetectScreenStability(boolean detectScreenStability) {
+        this.detectScreenStability = detectScreenStability;
+    }
 }
@@ -28,8 +28,27 @@ public class FloatingRegionBySelector implements GetFloatingRegion {
         this.maxRightOffset = maxRightOffset;
     }
 
+    public By getSelector() {
+        return selector;
+    }
+
     @Override
     public List<FloatingMatchSettings> getRegions(EyesBase eyesBase, EyesScreenshot screenshot) {
+        SelectorRegionResolver resolver = ((Eyes) eyesBase).getSelectorRegionResolver();
+        List<Region> resolvedRegions = resolver == null ? null : resolver.getVisibleRegions(this.selector, screenshot);
+        if (resolvedRegions != null) {
+            List<FloatingMatchSettings> values = new ArrayList<>(resolvedRegions.size());
+            for (Region region : resolvedRegions) {
+                // Element's coordinates are context relative, so we need to convert them first.
+                Location adjustedLocation = screenshot.getLocationInScreenshot(region.getLocation(),
+                        CoordinatesType.CONTEXT_RELATIVE);
+                values.add(new FloatingMatchSettings(adjustedLocation.getX(), adjustedLocation.getY(),
+                        region.getWidth(), region.getHeight(), maxUpOffset, maxDownOffset, maxLeftOffset,
+                        maxRightOffset));
+            }
+            return values;
+        }
+
         List<WebElement> elements = ((Eyes) eyesBase).getDriver().findElements(this.selector);
         List<FloatingMatchSettings> values = new ArrayList<>();
 
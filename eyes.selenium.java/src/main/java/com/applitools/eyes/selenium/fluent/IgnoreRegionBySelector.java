@@ -18,8 +18,25 @@ public class IgnoreRegionBySelector implements GetRegion {
         this.selector = selector;
     }
 
+    public By getSelector() {
+        return selector;
+    }
+
     @Override
     public List<Region> getRegions(EyesBase eyesBase, EyesScreenshot screenshot, boolean adjustLocation) {
+        SelectorRegionResolver resolver = ((Eyes) eyesBase).getSelectorRegionResolver();
+        List<Region> resolvedRegions = resolver == null ? null : resolver.getRegions(this.selector, screenshot);
+        if (resolvedRegions != null) {
+            List<Region> values = new ArrayList<>(resolvedRegions.size());
+            for (Region region : resolvedRegions) {
+                // Element's coordinates are context relative, so we need to convert them first.
+                Location adjustedLocation = screenshot.getLocationInScreenshot(region.getLocation(),
+                        CoordinatesType.CONTEXT_RELATIVE);
+                values.add(new Region(adjustedLocation, region.getSize(), CoordinatesType.SCREENSHOT_AS_IS));
+            }
+            return values;
+        }
+
         List<WebElement> elements = ((Eyes)eyesBase).getDriver().findElements(this.selector);
         List<Region> values = new ArrayList<>(elements.size());
         for (WebElement element : elements) {
@@ -0,0 +1,318 @@
+package com.applitools.eyes.selenium.fluent;
+
+import com.applitools.eyes.*;
+import com.applitools.eyes.fluent.GetFloatingRegion;
+import com.applitools.eyes.fluent.GetRegion;
+import com.applitools.eyes.fluent.ICheckSettingsInternal;
+import com.applitools.eyes.selenium.capture.EyesWebDriverScreenshot;
+import com.applitools.eyes.selenium.frames.FrameChain;
+import com.applitools.utils.ArgumentGuard;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.*;
+
+/**
+ * Resolves the elements of all the selectors of a check (ignore, layout,
+ * strict, content and floating regions) with a single script call, instead
+ * of finding each element and getting its location and size separately.
+ * <p>
+ * The resolved regions are reused across match retries, as long as the
+ * screenshots are of the same frame at the same scroll position.
+ */
+public class SelectorRegionResolver {
+
+    /**
+     * Expects an array of [type, value] selectors as its first argument, and
+     * returns an array of [left, top, width, height, visibleWidth,
+     * visibleHeight] arrays for each selector. Locations are relative to the
+     * current frame's document, like {@code WebElement.getLocation()}. The
+     * visible size is the size of the intersection of the element with its
+     * ancestors, like {@code EyesSeleniumUtils.getElementVisibleSize}.
+     */
+    private static final String JS_GET_SELECTOR_RECTS =
+            "var selectors = arguments[0]; " +
+                    "var scrollX = window.pageXOffset || document.documentElement.scrollLeft || 0; " +
+                    "var scrollY = window.pageYOffset || document.documentElement.scrollTop || 0; " +
+                    "var byLinkText = function(text, partial) { " +
+                    "var links = document.getElementsByTagName('a'); var matches = []; " +
+                    "for (var i = 0; i < links.length; ++i) { " +
+                    "var linkText = (links[i].innerText || links[i].textContent || '').trim(); " +
+                    "if (partial ? linkText.indexOf(text) >= 0 : linkText === text) { matches.push(links[i]); } " +
+                    "} " +
+                    "return matches; " +
+                    "}; " +
+                    "var find = function(type, value) { " +
+                    "switch (type) { " +
+                    "case 'css': return document.querySelectorAll(value); " +
+                    "case 'id': return document.querySelectorAll('[id=\"' + value.replace(/([\"\\\\])/g, '\\\\$1') + '\"]'); " +
+                    "case 'name': return document.getElementsByName(value); " +
+                    "case 'className': return document.getElementsByClassName(value); " +
+                    "case 'tagName': return document.getElementsByTagName(value); " +
+                    "case 'linkText': return byLinkText(value, false); " +
+                    "case 'partialLinkText': return byLinkText(value, true); " +
+                    "case 'xpath': " +
+                    "var snapshot = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null); " +
+                    "var nodes = []; " +
+                    "for (var i = 0; i < snapshot.snapshotLength; ++i) { nodes.push(snapshot.snapshotItem(i)); } " +
+                    "return nodes; " +
+                    "} " +
+                    "return []; " +
+                    "}; " +
+                    "var result = []; " +
+                    "for (var s = 0; s < selectors.length; ++s) { " +
+                    "var elements = find(selectors[s][0], selectors[s][1]); var rects = []; " +
+                    "for (var e = 0; e < elements.length; ++e) { " +
+                    "var elem = elements[e]; " +
+                    "if (!elem.getBoundingClientRect) { continue; } " +
+                    "var r = elem.getBoundingClientRect(); " +
+                    "var left = r.left, top = r.top, right = r.right, bottom = r.bottom; " +
+                    "for (var p = elem.parentElement; p && left < right && top < bottom; p = p.parentElement) { " +
+                    "var pr = p.getBoundingClientRect(); " +
+                    "left = Math.max(left, pr.left); top = Math.max(top, pr.top); " +
+                    "right = Math.min(right, pr.right); bottom = Math.min(bottom, pr.bottom); " +
+                    "} " +
+                    "rects.push([r.left + scrollX, r.top + scrollY, r.width, r.height, " +
+                    "Math.max(0, right - left), Math.max(0, bottom - top)]); " +
+                    "} " +
+                    "result.push(rects); " +
+                    "} " +
+                    "return result;";
+
+    private static final Map<Class<? extends By>, String> SELECTOR_TYPES = new LinkedHashMap<>();
+    private static final Map<String, String> SELECTOR_PREFIXES = new HashMap<>();
+
+    static {
+        addSelectorType(By.ByCssSelector.class, "css", "By.cssSelector: ");
+        addSelectorType(By.ById.class, "id", "By.id: ");
+        addSelectorType(By.ByName.class, "name", "By.name: ");
+        addSelectorType(By.ByClassName.class, "className", "By.className: ");
+        addSelectorType(By.ByTagName.class, "tagName", "By.tagName: ");
+        addSelectorType(By.ByLinkText.class, "linkText", "By.linkText: ");
+        addSelectorType(By.ByPartialLinkText.class, "partialLinkText", "By.partialLinkText: ");
+        addSelectorType(By.ByXPath.class, "xpath", "By.xpath: ");
+    }
+
+    private static void addSelectorType(Class<? extends By> selectorClass, String type, String prefix) {
+        SELECTOR_TYPES.put(selectorClass, type);
+        SELECTOR_PREFIXES.put(type, prefix);
+    }
+
+    /**
+     * The location and size of an element, and the size of its part which is
+     * visible within its ancestors.
+     */
+    private static class ElementRect {
+        private final Location location;
+        private final RectangleSize size;
+        private final RectangleSize visibleSize;
+
+        ElementRect(Location location, RectangleSize size, RectangleSize visibleSize) {
+            this.location = location;
+            this.size = size;
+            this.visibleSize = visibleSize;
+        }
+    }
+
+    private final Logger logger;
+    private final JavascriptExecutor jsExecutor;
+    private final List<By> selectors;
+
+    private Map<String, List<ElementRect>> resolvedRects;
+    private EyesScreenshot resolvedScreenshot;
+    private FrameChain resolvedFrameChain;
+    private Location resolvedScrollPosition;
+    private boolean resolveFailed;
+
+    /**
+     * @param logger        The logger to use.
+     * @param jsExecutor    The executor of the script which resolves the selectors.
+     * @param checkSettings The settings whose selectors should be resolved.
+     */
+    public SelectorRegionResolver(Logger logger, JavascriptExecutor jsExecutor,
+                                  ICheckSettingsInternal checkSettings) {
+        ArgumentGuard.notNull(logger, "logger");
+        ArgumentGuard.notNull(jsExecutor, "jsExecutor");
+        ArgumentGuard.notNull(checkSettings, "checkSettings");
+
+        this.logger = logger;
+        this.jsExecutor = jsExecutor;
+        this.selectors = collectSelectors(checkSettings);
+    }
+
+    /**
+     * @return The selectors of all the region providers of the check settings
+     * which can be resolved by a script.
+     */
+    private static List<By> collectSelectors(ICheckSettingsInternal checkSettings) {
+        Map<String, By> selectors = new LinkedHashMap<>();
+        List<GetRegion> regionProviders = new ArrayList<>();
+        regionProviders.addAll(Arrays.asList(checkSettings.getIgnoreRegions()));
+        regionProviders.addAll(Arrays.asList(checkSettings.getLayoutRegions()));
+        regionProviders.addAll(Arrays.asList(checkSettings.getStrictRegions()));
+        regionProviders.addAll(Arrays.asList(checkSettings.getContentRegions()));
+        for (GetRegion regionProvider : regionProviders) {
+            if (regionProvider instanceof IgnoreRegionBySelector) {
+                addSelector(selectors, ((IgnoreRegionBySelector) regionProvider).getSelector());
+            }
+        }
+        for (GetFloatingRegion regionProvider : checkSettings.getFloatingRegions()) {
+            if (regionProvider instanceof FloatingRegionBySelector) {
+                addSelector(selectors, ((FloatingRegionBySelector) regionProvider).getSelector());
+            }
+        }
+        return new ArrayList<>(selectors.values());
+    }
+
+    private static void addSelector(Map<String, By> selectors, By selector) {
+        if (getSelectorType(selector) != null) {
+            selectors.put(selector.toString(), selector);
+        }
+    }
+
+    /**
+     * @return The type of the selector in the script, or {@code null} if the
+     * selector can't be resolved by the script.
+     */
+    private static String getSelectorType(By selector) {
+        String type = SELECTOR_TYPES.get(selector.getClass());
+        if (type == null || !selector.toString().startsWith(SELECTOR_PREFIXES.get(type))) {
+            return null;
+        }
+        return type;
+    }
+
+    /**
+     * @param selector The selector to encode.
+     * @return The [type, value] pair the script would use for the selector,
+     * or {@code null} if it can't be resolved by the script.
+     */
+    private static List<String> toScriptSelector(By selector) {
+        String type = getSelectorType(selector);
+        if (type == null) {
+            return null;
+        }
+        return Arrays.asList(type, selector.toString().substring(SELECTOR_PREFIXES.get(type).length()));
+    }
+
+    /**
+     * @param selector   The selector of the elements.
+     * @param screenshot The screenshot the regions are for.
+     * @return The context relative regions of the elements, or {@code null}
+     * if the selector could not be resolved by the script.
+     */
+    public List<Region> getRegions(By selector, EyesScreenshot screenshot) {
+        List<ElementRect> rects = getRects(selector, screenshot);
+        if (rects == null) {
+            return null;
+        }
+        List<Region> regions = new ArrayList<>(rects.size());
+        for (ElementRect rect : rects) {
+            regions.add(new Region(rect.location, rect.size, CoordinatesType.CONTEXT_RELATIVE));
+        }
+        return regions;
+    }
+
+    /**
+     * @param selector   The selector of the elements.
+     * @param screenshot The screenshot the regions are for.
+     * @return The context relative regions of the elements, with the size of
+     * the part of each element which is visible within its ancestors, or
+     * {@code null} if the selector could not be resolved by the script.
+     */
+    public List<Region> getVisibleRegions(By selector, EyesScreenshot screenshot) {
+        List<ElementRect> rects = getRects(selector, screenshot);
+        if (rects == null) {
+            return null;
+        }
+        List<Region> regions = new ArrayList<>(rects.size());
+        for (ElementRect rect : rects) {
+            regions.add(new Region(rect.location, rect.visibleSize, CoordinatesType.CONTEXT_RELATIVE));
+        }
+        return regions;
+    }
+
+    private List<ElementRect> getRects(By selector, EyesScreenshot screenshot) {
+        // Not trying again if the script failed (e.g., in a native context).
+        if (resolveFailed || getSelectorType(selector) == null) {
+            return null;
+        }
+
+        if (!isResolvedFor(screenshot)) {
+            resolve(screenshot);
+        }
+
+        return resolvedRects == null ? null : resolvedRects.get(selector.toString());
+    }
+
+    /**
+     * @return Whether the resolved regions can be used for the given
+     * screenshot, i.e., it is the screenshot they were resolved for, or a
+     * screenshot of the same frame at the same scroll position.
+     */
+    private boolean isResolvedFor(EyesScreenshot screenshot) {
+        if (resolvedScreenshot == null) {
+            return false;
+        }
+        if (resolvedScreenshot == screenshot) {
+            return true;
+        }
+        if (resolvedScrollPosition == null || !(screenshot instanceof EyesWebDriverScreenshot)) {
+            return false;
+        }
+        EyesWebDriverScreenshot webDriverScreenshot = (EyesWebDriverScreenshot) screenshot;
+        return resolvedScrollPosition.equals(webDriverScreenshot.getCurrentFrameScrollPosition()) &&
+                FrameChain.isSameFrameChain(resolvedFrameChain, webDriverScreenshot.getFrameChain());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resolve(EyesScreenshot screenshot) {
+        resolvedScreenshot = screenshot;
+        resolvedFrameChain = null;
+        resolvedScrollPosition = null;
+        if (screenshot instanceof EyesWebDriverScreenshot) {
+            EyesWebDriverScreenshot webDriverScreenshot = (EyesWebDriverScreenshot) screenshot;
+            resolvedFrameChain = webDriverScreenshot.getFrameChain();
+            resolvedScrollPosition = webDriverScreenshot.getCurrentFrameScrollPosition();
+        }
+
+        List<List<String>> scriptSelectors = new ArrayList<>(selectors.size());
+        for (By selector : selectors) {
+            scriptSelectors.add(toScriptSelector(selector));
+        }
+
+        logger.verbose("Resolving %d selectors...", selectors.size());
+        try {
+            List<Object> result = (List<Object>) jsExecutor.executeScript(JS_GET_SELECTOR_RECTS, scriptSelectors);
+            resolvedRects = new HashMap<>();
+            for (int i = 0; i < selectors.size(); ++i) {
+                List<ElementRect> rects = new ArrayList<>();
+                for (Object rectObject : (List<Object>) result.get(i)) {
+                    rects.add(parseRect((List<Object>) rectObject));
+                }
+                resolvedRects.put(selectors.get(i).toString(), rects);
+            }
+            logger.verbose("Done!");
+        } catch (WebDriverException | ClassCastException | IndexOutOfBoundsException e) {
+            logger.verbose("Failed to resolve selectors, falling back to finding elements: " + e.getMessage());
+            resolvedRects = null;
+            resolveFailed = true;
+        }
+    }
+
+    private static ElementRect parseRect(List<Object> values) {
+        // Rounding and ceiling as EyesRemoteWebElement does for the location and size.
+        Location location = new Location(
+                (int) Math.round(getNumber(values, 0)), (int) Math.round(getNumber(values, 1)));
+        RectangleSize size = new RectangleSize(
+                (int) Math.ceil(getNumber(values, 2)), (int) Math.ceil(getNumber(values, 3)));
+        RectangleSize visibleSize = new RectangleSize(
+                (int) Math.ceil(getNumber(values, 4)), (int) Math.ceil(getNumber(values, 5)));
+        return new ElementRect(location, size, visibleSize);
+    }
+
+    private static double getNumber(List<Object> values, int index) {
+        return ((Number) values.get(index)).doubleValue();
+    }
+}
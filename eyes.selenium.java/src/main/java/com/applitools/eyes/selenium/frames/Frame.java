@@ -51,9 +51,9 @@ public final class Frame {
         ArgumentGuard.notNull(originalLocation, "originalLocation");
         ArgumentGuard.notNull(jsExecutor, "jsExecutor");
 
-        logger.verbose(String.format(
+        logger.verbose(
                 "Frame(logger, reference, %s, %s, %s, %s)",
-                location, outerSize, innerSize, originalLocation));
+                location, outerSize, innerSize, originalLocation);
 
         this.logger = logger;
         this.reference = reference;
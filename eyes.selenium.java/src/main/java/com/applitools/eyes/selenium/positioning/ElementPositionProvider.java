@@ -3,6 +3,7 @@ package com.applitools.eyes.selenium.positioning;
 import com.applitools.eyes.*;
 import com.applitools.eyes.positioning.PositionMemento;
 import com.applitools.eyes.positioning.PositionProvider;
+import com.applitools.eyes.selenium.ElementGeometry;
 import com.applitools.eyes.selenium.wrappers.EyesRemoteWebElement;
 import com.applitools.eyes.selenium.wrappers.EyesWebDriver;
 import com.applitools.utils.ArgumentGuard;
@@ -30,9 +31,10 @@ public class ElementPositionProvider implements PositionProvider {
     public Location getCurrentPosition() {
         logger.verbose("getCurrentScrollPosition()");
 
-        Location result = new Location(element.getScrollLeft(), element.getScrollTop());
+        ElementGeometry geometry = element.getGeometrySnapshot();
+        Location result = new Location(geometry.getScrollLeft(), geometry.getScrollTop());
 
-        logger.verbose(String.format("Current position: %s", result));
+        logger.verbose("Current position: %s", result);
 
         return result;
     }
@@ -42,7 +44,7 @@ public class ElementPositionProvider implements PositionProvider {
      * @param location The position to scroll to.
      */
     public void setPosition(Location location) {
-        logger.verbose(String.format("Scrolling element to %s", location));
+        logger.verbose("Scrolling element to %s", location);
 
         element.scrollTo(location);
 
@@ -57,7 +59,8 @@ public class ElementPositionProvider implements PositionProvider {
     public RectangleSize getEntireSize() {
         logger.verbose("enter");
 
-        RectangleSize result = new RectangleSize(element.getScrollWidth(), element.getScrollHeight());
+        ElementGeometry geometry = element.getGeometrySnapshot();
+        RectangleSize result = new RectangleSize(geometry.getScrollWidth(), geometry.getScrollHeight());
 
         logger.verbose("Entire size: " + result);
         return result;
@@ -2,6 +2,7 @@ package com.applitools.eyes.selenium.wrappers;
 
 import com.applitools.eyes.*;
 import com.applitools.eyes.positioning.PositionProvider;
+import com.applitools.eyes.selenium.ElementGeometry;
 import com.applitools.eyes.selenium.SizeAndBorders;
 import com.applitools.eyes.triggers.MouseAction;
 import com.applitools.utils.ArgumentGuard;
@@ -89,6 +90,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
                     "return retVal;";
 
     private PositionProvider positionProvider;
+    private ElementGeometry geometrySnapshot;
 
     public EyesRemoteWebElement(Logger logger, EyesWebDriver eyesDriver, WebElement webElement) {
         super();
@@ -149,6 +151,31 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         return new Region(left, top, width, height, CoordinatesType.CONTEXT_RELATIVE);
     }
 
+    /**
+     * Returns the scroll, client, border and overflow data of the element,
+     * read by a single script call. The snapshot is cached until
+     * the element is scrolled or its overflow is set through this object (or
+     * until {@link #invalidateGeometrySnapshot()} is called).
+     * @return The geometry snapshot of the element.
+     */
+    @SuppressWarnings("unchecked")
+    public ElementGeometry getGeometrySnapshot() {
+        if (geometrySnapshot == null) {
+            Object result = eyesDriver.executeScript(ElementGeometry.JS_GET_GEOMETRY, this);
+            geometrySnapshot = ElementGeometry.fromScriptResult((Map<String, Object>) result);
+            logger.verbose("Element geometry: " + geometrySnapshot);
+        }
+        return geometrySnapshot;
+    }
+
+    /**
+     * Discards the cached geometry snapshot, for when the element might have
+     * changed by other means than this object.
+     */
+    public void invalidateGeometrySnapshot() {
+        geometrySnapshot = null;
+    }
+
     /**
      * Returns the computed value of the style property for the current
      * element.
@@ -243,6 +270,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
      * @param location The location to scroll to.
      */
     public void scrollTo(Location location) {
+        invalidateGeometrySnapshot();
         eyesDriver.executeScript(String.format(JS_SCROLL_TO_FORMATTED_STR,
                 location.getX(), location.getY()), this);
     }
@@ -259,6 +287,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
      * @param overflow The overflow to set.
      */
     public void setOverflow(String overflow) {
+        invalidateGeometrySnapshot();
         eyesDriver.executeScript(String.format(JS_SET_OVERFLOW_FORMATTED_STR, overflow), this);
     }
 
@@ -268,7 +297,7 @@ public class EyesRemoteWebElement extends RemoteWebElement {
         // Letting the driver know about the current action.
         Region currentControl = getBounds();
         eyesDriver.getEyes().addMouseTrigger(MouseAction.Click, this);
-        logger.verbose(String.format("click(%s)", currentControl));
+        logger.verbose("click(%s)", currentControl);
 
         webElement.click();
     }
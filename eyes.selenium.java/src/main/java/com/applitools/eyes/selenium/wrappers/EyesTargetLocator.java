@@ -85,7 +85,7 @@ public class EyesTargetLocator implements WebDriver.TargetLocator {
     }
 
     public WebDriver frame(int index) {
-        logger.verbose(String.format("(%d)", index));
+        logger.verbose("(%d)", index);
         // Finding the target element so and reporting it using onWillSwitch.
         logger.verbose("Getting frames list...");
         List<WebElement> frames = driver.findElementsByCssSelector("frame, iframe");
@@ -103,7 +103,7 @@ public class EyesTargetLocator implements WebDriver.TargetLocator {
     }
 
     public WebDriver frame(String nameOrId) {
-        logger.verbose(String.format("('%s')", nameOrId));
+        logger.verbose("('%s')", nameOrId);
         // Finding the target element so we can report it.
         // We use find elements(plural) to avoid exception when the element
         // is not found.
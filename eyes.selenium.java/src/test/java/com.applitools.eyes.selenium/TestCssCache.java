@@ -0,0 +1,149 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.Logger;
+import com.applitools.eyes.ServerConnector;
+import com.applitools.eyes.selenium.capture.CssCache;
+import com.applitools.eyes.selenium.capture.ResourceFetcher;
+import com.applitools.utils.GeneralUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCssCache {
+
+    private static final String CSS = "body { color: red; }";
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private String serverUrl;
+    private ResourceFetcher fetcher;
+    private final AtomicInteger requestsCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private volatile int responseDelay;
+
+    /**
+     * Serves a style sheet with an ETag, answering conditional requests with
+     * 304.
+     */
+    private class CssHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requestsCount.incrementAndGet();
+            GeneralUtils.sleep(responseDelay);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = CSS.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "text/css");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+    }
+
+    @BeforeClass
+    public void InitOnce() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 20);
+        server.createContext("/", new CssHandler());
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new ResourceFetcher(new ServerConnector(new Logger()), new Logger());
+    }
+
+    @AfterClass
+    public void TearDownOnce() {
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    public void Init() {
+        requestsCount.set(0);
+        notModifiedCount.set(0);
+        responseDelay = 0;
+    }
+
+    @Test
+    public void TestGet_CachedAndParsedOnce() throws Exception {
+        CssCache cache = new CssCache(CssCache.DEFAULT_MAX_SIZE, 60 * 1000);
+        URL url = new URL(serverUrl + "/style.css");
+
+        CssCache.Entry first = cache.get(url, fetcher, new Logger()).get();
+        CssCache.Entry second = cache.get(url, fetcher, new Logger()).get();
+
+        Assert.assertEquals(first.getText(), CSS);
+        Assert.assertNotNull(first.getStyleSheet());
+        Assert.assertSame(second, first);
+        Assert.assertEquals(requestsCount.get(), 1);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void TestGet_RevalidatesWithETag() throws Exception {
+        CssCache cache = new CssCache(CssCache.DEFAULT_MAX_SIZE, 0);
+        URL url = new URL(serverUrl + "/style.css");
+
+        CssCache.Entry first = cache.get(url, fetcher, new Logger()).get();
+        CssCache.Entry second = cache.get(url, fetcher, new Logger()).get();
+
+        Assert.assertSame(second, first);
+        Assert.assertEquals(requestsCount.get(), 2);
+        Assert.assertEquals(notModifiedCount.get(), 1);
+        Assert.assertEquals(cache.getRevalidations(), 1);
+    }
+
+    @Test
+    public void TestGet_SharesInFlightDownload() throws Exception {
+        CssCache cache = new CssCache(CssCache.DEFAULT_MAX_SIZE, 60 * 1000);
+        URL url = new URL(serverUrl + "/style.css");
+        responseDelay = 300;
+
+        List<CompletableFuture<CssCache.Entry>> results = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            results.add(cache.get(url, fetcher, new Logger()));
+        }
+        for (CompletableFuture<CssCache.Entry> result : results) {
+            Assert.assertEquals(result.get().getText(), CSS);
+        }
+
+        Assert.assertEquals(requestsCount.get(), 1);
+        Assert.assertEquals(cache.getSharedFetches(), 9);
+    }
+
+    @Test
+    public void TestGet_EvictsLeastRecentlyUsed() throws Exception {
+        CssCache cache = new CssCache(2 * CSS.length(), 60 * 1000);
+        URL first = new URL(serverUrl + "/first.css");
+        URL second = new URL(serverUrl + "/second.css");
+        URL third = new URL(serverUrl + "/third.css");
+
+        cache.get(first, fetcher, new Logger()).get();
+        cache.get(second, fetcher, new Logger()).get();
+        cache.get(first, fetcher, new Logger()).get();
+        cache.get(third, fetcher, new Logger()).get();
+
+        Assert.assertEquals(cache.getCount(), 2);
+        Assert.assertEquals(cache.getEvictions(), 1);
+        cache.get(first, fetcher, new Logger()).get();
+        Assert.assertEquals(requestsCount.get(), 3, "the recently used style sheet was evicted");
+    }
+}
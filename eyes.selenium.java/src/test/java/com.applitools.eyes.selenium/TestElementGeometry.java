@@ -0,0 +1,58 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.RectangleSize;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestElementGeometry {
+
+    @Test
+    public void TestFromScriptResult() {
+        // The types WebDriver returns for a script result object.
+        Map<String, Object> result = new HashMap<>();
+        result.put("scrollLeft", 0L);
+        result.put("scrollTop", 120.4);
+        result.put("scrollWidth", 800L);
+        result.put("scrollHeight", 2500L);
+        result.put("clientWidth", 785L);
+        result.put("clientHeight", 600L);
+        result.put("borderLeftWidth", "1px");
+        result.put("borderTopWidth", "2.6px");
+        result.put("borderRightWidth", "0px");
+        result.put("borderBottomWidth", "medium");
+        result.put("overflow", "");
+        result.put("display", "block");
+
+        ElementGeometry geometry = ElementGeometry.fromScriptResult(result);
+
+        Assert.assertEquals(geometry.getScrollLeft(), 0);
+        Assert.assertEquals(geometry.getScrollTop(), 121);
+        Assert.assertEquals(geometry.getScrollWidth(), 800);
+        Assert.assertEquals(geometry.getScrollHeight(), 2500);
+        Assert.assertEquals(geometry.getClientSize(), new RectangleSize(785, 600));
+        Assert.assertEquals(geometry.getBorders().getLeft(), 1);
+        Assert.assertEquals(geometry.getBorders().getTop(), 3);
+        Assert.assertEquals(geometry.getBorders().getRight(), 0);
+        Assert.assertEquals(geometry.getBorders().getBottom(), 0);
+        Assert.assertEquals(geometry.getOverflow(), "");
+        Assert.assertEquals(geometry.getDisplay(), "block");
+    }
+
+    @Test
+    public void TestFromScriptResult_MissingValues() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("scrollWidth", 100L);
+        result.put("scrollHeight", 200L);
+
+        ElementGeometry geometry = ElementGeometry.fromScriptResult(result);
+
+        Assert.assertEquals(geometry.getScrollWidth(), 100);
+        Assert.assertEquals(geometry.getScrollHeight(), 200);
+        Assert.assertEquals(geometry.getBorders().getLeft(), 0);
+        Assert.assertEquals(geometry.getOverflow(), "");
+        Assert.assertEquals(geometry.getDisplay(), "");
+    }
+}
@@ -0,0 +1,189 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.*;
+import com.applitools.eyes.capture.EyesScreenshotFactory;
+import com.applitools.eyes.capture.ImageProvider;
+import com.applitools.eyes.debug.NullDebugScreenshotProvider;
+import com.applitools.eyes.positioning.PositionMemento;
+import com.applitools.eyes.positioning.PositionProvider;
+import com.applitools.eyes.scaling.FixedScaleProviderFactory;
+import com.applitools.eyes.selenium.capture.FullPageCaptureAlgorithm;
+import com.applitools.utils.ImageUtils;
+import com.applitools.utils.SimplePropertyHandler;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestFullPageCaptureAlgorithm {
+
+    private static final int VIEWPORT_WIDTH = 300;
+    private static final int VIEWPORT_HEIGHT = 200;
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void InitOnce() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public static void TearDownOnce() {
+        executor.shutdown();
+    }
+
+    /**
+     * A page which is scrolled by setting the position, and whose viewport
+     * screenshot is the part of the page image at that position.
+     */
+    private static class FakePage implements PositionProvider, ImageProvider {
+        private final BufferedImage pageImage;
+        private Location position = Location.ZERO;
+
+        FakePage(BufferedImage pageImage) {
+            this.pageImage = pageImage;
+        }
+
+        @Override
+        public Location getCurrentPosition() {
+            return position;
+        }
+
+        @Override
+        public void setPosition(Location location) {
+            int x = Math.min(location.getX(), pageImage.getWidth() - VIEWPORT_WIDTH);
+            int y = Math.min(location.getY(), pageImage.getHeight() - VIEWPORT_HEIGHT);
+            position = new Location(x, y);
+        }
+
+        @Override
+        public RectangleSize getEntireSize() {
+            return new RectangleSize(pageImage.getWidth(), pageImage.getHeight());
+        }
+
+        @Override
+        public PositionMemento getState() {
+            final Location state = position;
+            return new PositionMemento() {
+                @Override
+                public String toString() {
+                    return state.toString();
+                }
+            };
+        }
+
+        @Override
+        public void restoreState(PositionMemento state) {
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            return ImageUtils.getImagePart(pageImage, new Region(position.getX(), position.getY(),
+                    VIEWPORT_WIDTH, VIEWPORT_HEIGHT));
+        }
+    }
+
+    private static class FakeScreenshot extends EyesScreenshot {
+        FakeScreenshot(BufferedImage image) {
+            super(new Logger(), image);
+        }
+
+        @Override
+        public EyesScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
+            return this;
+        }
+
+        @Override
+        public Location convertLocation(Location location, CoordinatesType from, CoordinatesType to) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, Location originalLocation,
+                                                CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Region getIntersectedRegion(Region region, CoordinatesType coordinatesType) {
+            Region intersected = new Region(region);
+            intersected.intersect(new Region(0, 0, image.getWidth(), image.getHeight()));
+            return intersected;
+        }
+    }
+
+    private static BufferedImage createPageImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, ImageUtils.REQUIRED_IMAGE_TYPE);
+        Random random = new Random(42);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                image.setRGB(x, y, random.nextInt() | 0xFF000000);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage getStitchedImage(BufferedImage pageImage, Region region, double scaleRatio,
+                                                  CutProvider cutProvider, ExecutorService executor,
+                                                  long memoryBudget) {
+        FakePage page = new FakePage(pageImage);
+        EyesScreenshotFactory screenshotFactory = new EyesScreenshotFactory() {
+            @Override
+            public EyesScreenshot makeScreenshot(BufferedImage image) {
+                return new FakeScreenshot(image);
+            }
+        };
+        FullPageCaptureAlgorithm algorithm = new FullPageCaptureAlgorithm(new Logger(), null, 0,
+                new NullDebugScreenshotProvider(), screenshotFactory, page,
+                new FixedScaleProviderFactory(scaleRatio, new SimplePropertyHandler<ScaleProvider>()),
+                cutProvider, 10, page, executor, memoryBudget, null);
+        return algorithm.getStitchedRegion(region, null, page);
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth(), "widths differ");
+        Assert.assertEquals(actual.getHeight(), expected.getHeight(), "heights differ");
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        Assert.assertEquals(actual.getRGB(0, 0, width, height, null, 0, width),
+                expected.getRGB(0, 0, width, height, null, 0, width), "pixels differ");
+    }
+
+    @Test
+    public void TestGetStitchedRegion_Pipelined() {
+        BufferedImage pageImage = createPageImage(VIEWPORT_WIDTH, 1234);
+        Region region = new Region(0, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+
+        BufferedImage sequential = getStitchedImage(pageImage, region, 1, new NullCutProvider(), null, 0);
+        assertSamePixels(sequential, pageImage);
+
+        // A budget of a single part, and of many parts.
+        long partBytes = VIEWPORT_WIDTH * VIEWPORT_HEIGHT * 4;
+        assertSamePixels(getStitchedImage(pageImage, region, 1, new NullCutProvider(), executor, 0),
+                sequential);
+        assertSamePixels(getStitchedImage(pageImage, region, 1, new NullCutProvider(), executor,
+                partBytes * 100), sequential);
+    }
+
+    @Test
+    public void TestGetStitchedRegion_Pipelined_CutAndScaled() {
+        BufferedImage pageImage = createPageImage(VIEWPORT_WIDTH, 1501);
+        Region region = new Region(0, 0, VIEWPORT_WIDTH / 2, VIEWPORT_HEIGHT / 2);
+        CutProvider cutProvider = new UnscaledFixedCutProvider(6, 4, 0, 0);
+
+        BufferedImage sequential = getStitchedImage(pageImage, region, 0.5, cutProvider, null, 0);
+        BufferedImage pipelined = getStitchedImage(pageImage, region, 0.5, cutProvider, executor,
+                FullPageCaptureAlgorithm.DEFAULT_STITCHING_MEMORY_BUDGET);
+        assertSamePixels(pipelined, sequential);
+    }
+}
@@ -0,0 +1,118 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.DownloadResult;
+import com.applitools.eyes.Logger;
+import com.applitools.eyes.ServerConnector;
+import com.applitools.eyes.selenium.capture.ResourceFetcher;
+import com.applitools.utils.GeneralUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestResourceFetcher {
+
+    private static final String CSS = "body { color: red; }";
+
+    private HttpServer server;
+    private String serverUrl;
+    private ServerConnector serverConnector;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private volatile int responseDelay;
+
+    /**
+     * Serves a style sheet after a delay, recording the number of requests
+     * handled at the same time.
+     */
+    private class SlowHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int active = activeRequests.incrementAndGet();
+            synchronized (maxActiveRequests) {
+                maxActiveRequests.set(Math.max(maxActiveRequests.get(), active));
+            }
+            GeneralUtils.sleep(responseDelay);
+            activeRequests.decrementAndGet();
+            byte[] body = CSS.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "text/css");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+    }
+
+    @BeforeClass
+    public void InitOnce() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 20);
+        server.createContext("/", new SlowHandler());
+        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.start();
+        serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        serverConnector = new ServerConnector(new Logger());
+    }
+
+    @AfterClass
+    public void TearDownOnce() {
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    public void Init() {
+        activeRequests.set(0);
+        maxActiveRequests.set(0);
+        responseDelay = 0;
+    }
+
+    @Test
+    public void TestFetch_LimitsRequestsPerHost() throws Exception {
+        ResourceFetcher fetcher = new ResourceFetcher(serverConnector, new Logger(), 2, 10 * 1000);
+        responseDelay = 200;
+
+        List<CompletableFuture<DownloadResult>> results = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            results.add(fetcher.fetch(new URL(serverUrl + "/style" + i + ".css"), null, null));
+        }
+        for (CompletableFuture<DownloadResult> result : results) {
+            Assert.assertEquals(result.get().getContent(), CSS);
+        }
+
+        Assert.assertEquals(maxActiveRequests.get(), 2);
+    }
+
+    @Test
+    public void TestFetch_TimesOut() throws Exception {
+        ResourceFetcher fetcher = new ResourceFetcher(serverConnector, new Logger(), 1, 300);
+        responseDelay = 1000;
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<DownloadResult> slow = fetcher.fetch(new URL(serverUrl + "/slow.css"), null, null);
+        CompletableFuture<DownloadResult> queued = fetcher.fetch(new URL(serverUrl + "/queued.css"), null, null);
+        try {
+            slow.get();
+            Assert.fail("the download should have timed out");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000, "the download wasn't cut off");
+        }
+        try {
+            queued.get();
+            Assert.fail("the deadline should include waiting for the host");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000, "the queued download wasn't cut off");
+        }
+    }
+}
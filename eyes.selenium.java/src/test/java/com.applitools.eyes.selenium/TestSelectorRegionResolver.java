@@ -0,0 +1,137 @@
+package com.applitools.eyes.selenium;
+
+import com.applitools.eyes.*;
+import com.applitools.eyes.fluent.ICheckSettingsInternal;
+import com.applitools.eyes.selenium.fluent.SelectorRegionResolver;
+import com.applitools.eyes.selenium.fluent.Target;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.pagefactory.ByChained;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestSelectorRegionResolver {
+
+    /**
+     * Returns the given result for every script, and records the selectors it
+     * was called with.
+     */
+    private static class FakeJsExecutor implements JavascriptExecutor {
+        private final Object result;
+        private int callsCount;
+        private Object lastSelectors;
+
+        FakeJsExecutor(Object result) {
+            this.result = result;
+        }
+
+        @Override
+        public Object executeScript(String script, Object... args) {
+            ++callsCount;
+            lastSelectors = args[0];
+            if (result == null) {
+                throw new WebDriverException("Not supported in this context");
+            }
+            return result;
+        }
+
+        @Override
+        public Object executeAsyncScript(String script, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class FakeScreenshot extends EyesScreenshot {
+        FakeScreenshot() {
+            super(new Logger(), new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+        }
+
+        @Override
+        public EyesScreenshot getSubScreenshot(Region region, boolean throwIfClipped) {
+            return this;
+        }
+
+        @Override
+        public Location convertLocation(Location location, CoordinatesType from, CoordinatesType to) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Location getLocationInScreenshot(Location location, Location originalLocation,
+                                                CoordinatesType coordinatesType) {
+            return location;
+        }
+
+        @Override
+        public Region getIntersectedRegion(Region region, CoordinatesType coordinatesType) {
+            return region;
+        }
+    }
+
+    private static List<Object> rect(Number... values) {
+        return Arrays.<Object>asList(values);
+    }
+
+    @Test
+    public void TestGetRegions_SingleScriptCall() {
+        ICheckSettingsInternal checkSettings = (ICheckSettingsInternal) Target.window()
+                .ignore(By.cssSelector(".ad"), By.id("banner"))
+                .layout(By.cssSelector(".ad"))
+                .floating(By.xpath("//div[@id='news']"), 5, 5, 5, 5);
+
+        List<Object> result = Arrays.<Object>asList(
+                Arrays.<Object>asList(rect(10L, 20L, 100L, 50L, 100L, 50L), rect(10.4, 80.6, 99.2, 50L, 20L, 50L)),
+                Collections.emptyList(),
+                Collections.singletonList(rect(0L, 300L, 800L, 200L, 800L, 120.5)));
+        FakeJsExecutor jsExecutor = new FakeJsExecutor(result);
+        SelectorRegionResolver resolver = new SelectorRegionResolver(new Logger(), jsExecutor, checkSettings);
+        EyesScreenshot screenshot = new FakeScreenshot();
+
+        List<Region> ads = resolver.getRegions(By.cssSelector(".ad"), screenshot);
+        Assert.assertEquals(ads.size(), 2);
+        Assert.assertEquals(ads.get(0), new Region(10, 20, 100, 50, CoordinatesType.CONTEXT_RELATIVE));
+        Assert.assertEquals(ads.get(1), new Region(10, 81, 100, 50, CoordinatesType.CONTEXT_RELATIVE));
+        Assert.assertEquals(resolver.getRegions(By.id("banner"), screenshot).size(), 0);
+        Assert.assertEquals(resolver.getVisibleRegions(By.xpath("//div[@id='news']"), screenshot).get(0),
+                new Region(0, 300, 800, 121, CoordinatesType.CONTEXT_RELATIVE));
+
+        Assert.assertEquals(jsExecutor.callsCount, 1);
+        Assert.assertEquals(jsExecutor.lastSelectors, Arrays.asList(
+                Arrays.asList("css", ".ad"), Arrays.asList("id", "banner"),
+                Arrays.asList("xpath", "//div[@id='news']")));
+
+        // Another screenshot which can't be compared with the first resolves again.
+        resolver.getRegions(By.cssSelector(".ad"), new FakeScreenshot());
+        Assert.assertEquals(jsExecutor.callsCount, 2);
+    }
+
+    @Test
+    public void TestGetRegions_Unsupported() {
+        By chained = new ByChained(By.id("a"), By.id("b"));
+        ICheckSettingsInternal checkSettings = (ICheckSettingsInternal) Target.window()
+                .ignore(chained, By.name("q"));
+
+        FakeJsExecutor jsExecutor = new FakeJsExecutor(null);
+        SelectorRegionResolver resolver = new SelectorRegionResolver(new Logger(), jsExecutor, checkSettings);
+        EyesScreenshot screenshot = new FakeScreenshot();
+
+        Assert.assertNull(resolver.getRegions(chained, screenshot));
+        Assert.assertEquals(jsExecutor.callsCount, 0);
+
+        // The script fails once, and isn't tried again.
+        Assert.assertNull(resolver.getRegions(By.name("q"), screenshot));
+        Assert.assertNull(resolver.getRegions(By.name("q"), new FakeScreenshot()));
+        Assert.assertEquals(jsExecutor.callsCount, 1);
+    }
+}